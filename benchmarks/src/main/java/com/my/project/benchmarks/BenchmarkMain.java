@@ -0,0 +1,42 @@
+package com.my.project.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 依次以 1, 2, 4, ... N（CPU 核数）个线程运行基准测试，并打开 GC profiler 统计分配量
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.my.project.benchmarks.BenchmarkMain [benchmark 正则] [最大线程数]
+ * 结果输出到 jmh-result-t{线程数}.json。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class BenchmarkMain {
+
+    public static void main( String[] args ) throws Exception {
+        String include = args.length > 0 ? args[0] : "com.my.project.benchmarks.*";
+        int maxThreads = args.length > 1 ? Integer.parseInt( args[1] ) : Runtime.getRuntime().availableProcessors();
+
+        List < Integer > threadCounts = new ArrayList < Integer >();
+        for ( int t = 1; t < maxThreads; t <<= 1 ) {
+            threadCounts.add( t );
+        }
+        threadCounts.add( maxThreads );
+
+        for ( int threads : threadCounts ) {
+            ChainedOptionsBuilder options = new OptionsBuilder().include( include ).threads( threads )
+                    .addProfiler( GCProfiler.class ).resultFormat( ResultFormatType.JSON )
+                    .result( "jmh-result-t" + threads + ".json" );
+            new Runner( options.build() ).run();
+        }
+    }
+}
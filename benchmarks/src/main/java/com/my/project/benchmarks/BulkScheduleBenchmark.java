@@ -0,0 +1,121 @@
+package com.my.project.benchmarks;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+
+import com.my.project.quartz.bulk.BulkScheduleResult;
+import com.my.project.quartz.bulk.BulkScheduler;
+
+/**
+ * 启动时注册大量 Job 的耗时
+ *
+ * <pre>
+ * 每次调用都是一个新的、已启动的 Scheduler，注册 jobs 个 Job（每个 Job 一个 1~2 小时之后才触发的 Trigger），
+ * 对比逐个 scheduleJob（single）和 BulkScheduler（bulk）。JobDetail 和 Trigger 在 Setup 中创建，不计入耗时。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 3 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+public class BulkScheduleBenchmark {
+
+    static final long                            HOUR      = TimeUnit.HOURS.toMillis( 1 );
+    static final AtomicLong                      INSTANCES = new AtomicLong();
+
+    @Param( { "single", "bulk" } )
+    public String                                mode;
+
+    @Param( { "org.quartz.simpl.RAMJobStore", "com.my.project.quartz.store.InstrumentedRAMJobStore",
+            "com.my.project.quartz.store.ShardedRAMJobStore" } )
+    public String                                jobStore;
+
+    @Param( { "10000", "100000", "1000000" } )
+    public int                                   jobs;
+
+    Scheduler                                    scheduler;
+    Map < JobDetail, Set < ? extends Trigger > > definitions;
+
+    @Setup( Level.Invocation )
+    public void setUp() throws Exception {
+        Properties props = new Properties();
+        props.setProperty( "org.quartz.scheduler.instanceName", "bulk" + INSTANCES.incrementAndGet() );
+        props.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+        props.setProperty( "org.quartz.threadPool.threadCount", "4" );
+        props.setProperty( "org.quartz.jobStore.class", jobStore );
+        scheduler = new StdSchedulerFactory( props ).getScheduler();
+        scheduler.start();
+
+        long now = System.currentTimeMillis();
+        definitions = new LinkedHashMap < JobDetail, Set < ? extends Trigger > >( jobs * 2 );
+        for ( int i = 0; i < jobs; i++ ) {
+            JobDetail job = JobBuilder.newJob( NoopJob.class ).withIdentity( "job" + i, "g" + i % 16 ).build();
+            Trigger trigger = TriggerBuilder.newTrigger().withIdentity( "trigger" + i, "g" + i % 16 )
+                    .startAt( new Date( now + HOUR + i % HOUR ) ).build();
+            definitions.put( job, Collections.singleton( trigger ) );
+        }
+    }
+
+    @TearDown( Level.Invocation )
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+        definitions = null;
+    }
+
+    @Benchmark
+    public int register() throws Exception {
+        if ( "bulk".equals( mode ) ) {
+            BulkScheduleResult result = new BulkScheduler( scheduler ).scheduleJobs( definitions, false );
+            if ( !result.isSuccessful() ) {
+                throw new IllegalStateException( result.toString() );
+            }
+            return result.getScheduledJobs();
+        }
+        int count = 0;
+        for ( Map.Entry < JobDetail, Set < ? extends Trigger > > e : definitions.entrySet() ) {
+            scheduler.scheduleJob( e.getKey(), e.getValue().iterator().next() );
+            count++;
+        }
+        return count;
+    }
+
+    public static class NoopJob implements Job {
+
+        @Override
+        public void execute( JobExecutionContext context ) {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.my.project.benchmarks;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.impl.calendar.HolidayCalendar;
+
+import com.my.project.quartz.calendar.BitmapHolidayCalendar;
+
+/**
+ * 检查时间是否被 Calendar 排除：Quartz HolidayCalendar 与 BitmapHolidayCalendar 对比
+ *
+ * <pre>
+ * 10 年的节假日，每年 holidays 个随机日期，其中一部分是连续 7 天的长假；
+ * 时间每次前进约 1 小时，超过 10 年后回到起点。配合 -prof gc 可以看到 BitmapHolidayCalendar 每次调用的分配量为 0。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CalendarBenchmark {
+
+    private static final int     YEARS = 10;
+
+    @Param( { "15", "120" } )
+    public int                   holidays;
+
+    @Param( { "Asia/Shanghai", "America/New_York" } )
+    public String                zone;
+
+    HolidayCalendar              quartz;
+    BitmapHolidayCalendar        bitmap;
+    long                         start;
+    long                         end;
+    long                         time;
+
+    @Setup
+    public void setUp() {
+        ZoneId zoneId = ZoneId.of( zone );
+        quartz = new HolidayCalendar();
+        quartz.setTimeZone( TimeZone.getTimeZone( zone ) );
+        bitmap = new BitmapHolidayCalendar( TimeZone.getTimeZone( zone ) );
+        Random random = new Random( 42 );
+        LocalDate first = LocalDate.of( 2016, 1, 1 );
+        for ( int year = 0; year < YEARS; year++ ) {
+            for ( int i = 0; i < holidays; i++ ) {
+                LocalDate date = first.plusYears( year ).plusDays( random.nextInt( 365 ) );
+                int length = i % 5 == 0 ? 7 : 1;
+                for ( int day = 0; day < length; day++ ) {
+                    Date excluded = Date.from( date.plusDays( day ).atStartOfDay( zoneId ).toInstant() );
+                    quartz.addExcludedDate( excluded );
+                    bitmap.addExcludedDate( excluded );
+                }
+            }
+        }
+        start = first.atStartOfDay( zoneId ).toInstant().toEpochMilli();
+        end = first.plusYears( YEARS ).atStartOfDay( zoneId ).toInstant().toEpochMilli();
+        time = start;
+    }
+
+    private long advance() {
+        time += 3600007L;
+        if ( time >= end ) {
+            time = start;
+        }
+        return time;
+    }
+
+    @Benchmark
+    public boolean quartzIsTimeIncluded() {
+        return quartz.isTimeIncluded( advance() );
+    }
+
+    @Benchmark
+    public boolean bitmapIsTimeIncluded() {
+        return bitmap.isTimeIncluded( advance() );
+    }
+
+    @Benchmark
+    public long quartzGetNextIncludedTime() {
+        return quartz.getNextIncludedTime( advance() );
+    }
+
+    @Benchmark
+    public long bitmapGetNextIncludedTime() {
+        return bitmap.getNextIncludedTime( advance() );
+    }
+}
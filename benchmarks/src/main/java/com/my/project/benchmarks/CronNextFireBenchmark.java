@@ -0,0 +1,84 @@
+package com.my.project.benchmarks;
+
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.CronExpression;
+
+import com.my.project.cron.CompiledCronExpression;
+
+/**
+ * 计算下一次触发时间：Quartz CronExpression 与 CompiledCronExpression 对比
+ *
+ * <pre>
+ * 配合 -prof gc 可以看到 CompiledCronExpression.nextFireAfter 每次调用的分配量为 0。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CronNextFireBenchmark {
+
+    @Param( { "10 38 16 ? * TUE", "0 0/5 * * * ?", "0 0 12 1,15 * ?" } )
+    public String          expression;
+
+    @Param( { "Asia/Shanghai", "America/New_York" } )
+    public String          zone;
+
+    CronExpression         quartz;
+    CompiledCronExpression compiled;
+    ZoneId                 zoneId;
+    long[]                 out = new long[64];
+    long                   time;
+
+    @Setup
+    public void setUp() throws Exception {
+        quartz = new CronExpression( expression );
+        quartz.setTimeZone( TimeZone.getTimeZone( zone ) );
+        compiled = CompiledCronExpression.compile( expression );
+        zoneId = ZoneId.of( zone );
+        time = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long quartzGetTimeAfter() {
+        time += 997;
+        return quartz.getTimeAfter( new Date( time ) ).getTime();
+    }
+
+    @Benchmark
+    public long compiledNextFireAfter() {
+        time += 997;
+        return compiled.nextFireAfter( time, zoneId );
+    }
+
+    /**
+     * 一次计算 64 个触发时间，结果按每个触发时间平均
+     */
+    @Benchmark
+    @OperationsPerInvocation( 64 )
+    public int compiledNextN() {
+        time += 997;
+        return compiled.nextN( time, zoneId, out );
+    }
+}
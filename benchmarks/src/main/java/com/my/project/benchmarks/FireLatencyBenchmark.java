@@ -0,0 +1,76 @@
+package com.my.project.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 触发延迟：从提交一个立即到期的任务到任务开始执行的时间
+ *
+ * <pre>
+ * 使用 SampleTime 模式输出延迟分布（p50/p99/p99.9）。配合 -prof gc 可以得到每次触发的分配量
+ * （gc.alloc.rate.norm，单位 B/op），即每个被触发的任务在调度路径上分配的字节数。
+ * 没有延迟调度的线程池在 SubmitLatencyBenchmark 中测量。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+public class FireLatencyBenchmark {
+
+    @Param( { SchedulerAdapter.TIMER, SchedulerAdapter.SCHEDULED_EXECUTOR, SchedulerAdapter.TIMING_WHEEL,
+            SchedulerAdapter.QUARTZ_RAM, SchedulerAdapter.QUARTZ_INSTRUMENTED, SchedulerAdapter.QUARTZ_SHARDED,
+            SchedulerAdapter.QUARTZ_FORK_JOIN, SchedulerAdapter.QUARTZ_VIRTUAL } )
+    public String    backend;
+
+    @Param( { "1000", "1000000" } )
+    public int       pending;
+
+    @Param( { "4" } )
+    public int       workerThreads;
+
+    SchedulerAdapter adapter;
+
+    @Setup( Level.Trial )
+    public void setUp() throws Exception {
+        adapter = SchedulerAdapter.create( backend, workerThreads );
+        ScheduleCancelBenchmark.prefill( adapter, pending );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws Exception {
+        adapter.close();
+    }
+
+    @Benchmark
+    public void scheduleAndAwaitFire() throws Exception {
+        final CountDownLatch fired = new CountDownLatch( 1 );
+        adapter.schedule( new Runnable() {
+
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 0 );
+        fired.await();
+    }
+}
@@ -0,0 +1,95 @@
+package com.my.project.benchmarks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.spi.TriggerFiredBundle;
+
+import com.my.project.quartz.data.CompactDataMap;
+
+/**
+ * 每次触发时合并 JobDataMap 并读取数据：普通 JobDataMap 与 CompactDataMap 对比
+ *
+ * <pre>
+ * 每次调用都新建 JobExecutionContextImpl（Quartz 在其构造方法中合并 JobDetail 和 Trigger 的 JobDataMap），
+ * 然后读取一个 String、一个 int 和一个 long。JobDetail 上有 entries 项数据，Trigger 上有 1 项。
+ * 需要配合 -prof gc 查看每次触发的分配量（gc.alloc.rate.norm）。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class JobDataMergeBenchmark {
+
+    @Param( { "4", "16" } )
+    public int         entries;
+
+    TriggerFiredBundle plain;
+    TriggerFiredBundle compact;
+
+    @Setup
+    public void setUp() {
+        JobDataMap jobData = new JobDataMap();
+        CompactDataMap.Builder builder = CompactDataMap.builder();
+        jobData.put( "type", "Simple" );
+        builder.put( "type", "Simple" );
+        jobData.put( "retries", 3 );
+        builder.put( "retries", 3 );
+        for ( int i = 2; i < entries; i++ ) {
+            jobData.put( "key" + i, 1000L + i );
+            builder.put( "key" + i, 1000L + i );
+        }
+        JobDataMap triggerData = new JobDataMap();
+        triggerData.put( "timeout", 30000L );
+        plain = bundle( jobData, triggerData );
+        compact = bundle( builder.build().toJobDataMap(), CompactDataMap.builder().put( "timeout", 30000L ).build()
+                .toJobDataMap() );
+    }
+
+    @Benchmark
+    public long plainJobDataMap() {
+        JobExecutionContext context = new JobExecutionContextImpl( null, plain, null );
+        JobDataMap data = context.getMergedJobDataMap();
+        return data.getString( "type" ).length() + data.getInt( "retries" ) + data.getLong( "timeout" );
+    }
+
+    @Benchmark
+    public long compactDataMap() {
+        JobExecutionContext context = new JobExecutionContextImpl( null, compact, null );
+        CompactDataMap data = CompactDataMap.merged( context );
+        return data.getString( "type" ).length() + data.getInt( "retries", 0 ) + data.getLong( "timeout", 0 );
+    }
+
+    private static TriggerFiredBundle bundle( JobDataMap jobData, JobDataMap triggerData ) {
+        JobDetail jobDetail = JobBuilder.newJob( BulkScheduleBenchmark.NoopJob.class ).withIdentity( "job" )
+                .usingJobData( jobData ).build();
+        SimpleTriggerImpl trigger = (SimpleTriggerImpl) TriggerBuilder.newTrigger().forJob( jobDetail )
+                .usingJobData( triggerData ).build();
+        Date now = new Date();
+        return new TriggerFiredBundle( jobDetail, trigger, null, false, now, now, null, null );
+    }
+}
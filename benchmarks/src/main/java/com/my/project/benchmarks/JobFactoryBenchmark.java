@@ -0,0 +1,134 @@
+package com.my.project.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerContext;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.simpl.PropertySettingJobFactory;
+import org.quartz.spi.TriggerFiredBundle;
+
+import com.my.project.quartz.factory.PooledJobFactory;
+import com.my.project.quartz.factory.StatelessJob;
+
+/**
+ * 每次触发时创建 Job 实例：Quartz 默认的 PropertySettingJobFactory 与 PooledJobFactory 对比
+ *
+ * <pre>
+ * JobDetail 和 Trigger 上各有 2 项数据。
+ *   - quartzDefault：Class.newInstance 创建新实例，合并 JobDataMap 并设置属性
+ *   - pooledNewInstance：没有 @StatelessJob 的类，MethodHandle 创建新实例并设置属性
+ *   - pooledNoInject：同上，但 injectJobData=false
+ *   - pooledShared：@StatelessJob 的类，复用同一个实例
+ * 配合 -prof gc 查看每次创建的分配量。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class JobFactoryBenchmark {
+
+    PropertySettingJobFactory quartz;
+    PooledJobFactory          pooled;
+    PooledJobFactory          pooledNoInject;
+    Scheduler                 scheduler;
+    TriggerFiredBundle        plainBundle;
+    TriggerFiredBundle        statelessBundle;
+
+    @Setup
+    public void setUp() {
+        quartz = new PropertySettingJobFactory();
+        pooled = new PooledJobFactory();
+        pooledNoInject = new PooledJobFactory();
+        pooledNoInject.setInjectJobData( false );
+        final SchedulerContext context = new SchedulerContext();
+        scheduler = (Scheduler) Proxy.newProxyInstance( Scheduler.class.getClassLoader(),
+                new Class < ? >[] { Scheduler.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) {
+                        return "getContext".equals( method.getName() ) ? context : null;
+                    }
+                } );
+        plainBundle = bundle( PlainJob.class );
+        statelessBundle = bundle( SharedJob.class );
+    }
+
+    @Benchmark
+    public Job quartzDefault() throws Exception {
+        return quartz.newJob( plainBundle, scheduler );
+    }
+
+    @Benchmark
+    public Job pooledNewInstance() throws Exception {
+        return pooled.newJob( plainBundle, scheduler );
+    }
+
+    @Benchmark
+    public Job pooledNoInject() throws Exception {
+        return pooledNoInject.newJob( plainBundle, scheduler );
+    }
+
+    @Benchmark
+    public Job pooledShared() throws Exception {
+        return pooled.newJob( statelessBundle, scheduler );
+    }
+
+    private static TriggerFiredBundle bundle( Class < ? extends Job > jobClass ) {
+        JobDetail jobDetail = JobBuilder.newJob( jobClass ).withIdentity( "job" ).usingJobData( "type", "Simple" )
+                .usingJobData( "retries", 3 ).build();
+        SimpleTriggerImpl trigger = (SimpleTriggerImpl) TriggerBuilder.newTrigger().forJob( jobDetail )
+                .usingJobData( "timeout", 30000L ).usingJobData( "priority", 5 ).build();
+        Date now = new Date();
+        return new TriggerFiredBundle( jobDetail, trigger, null, false, now, now, null, null );
+    }
+
+    public static class PlainJob implements Job {
+
+        private String type;
+
+        public void setType( String type ) {
+            this.type = type;
+        }
+
+        @Override
+        public void execute( JobExecutionContext context ) throws JobExecutionException {
+            context.setResult( type );
+        }
+    }
+
+    @StatelessJob
+    public static class SharedJob implements Job {
+
+        @Override
+        public void execute( JobExecutionContext context ) throws JobExecutionException {
+            context.setResult( context.getMergedJobDataMap().getString( "type" ) );
+        }
+    }
+}
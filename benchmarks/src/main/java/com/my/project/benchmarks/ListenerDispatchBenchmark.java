@@ -0,0 +1,135 @@
+package com.my.project.benchmarks;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Matcher;
+import org.quartz.TriggerBuilder;
+import org.quartz.core.ListenerManagerImpl;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.KeyMatcher;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.listeners.JobListenerSupport;
+import org.quartz.spi.TriggerFiredBundle;
+
+import com.my.project.quartz.listener.IndexedListenerRegistry;
+
+/**
+ * 每次触发时查找并调用匹配的 JobListener：Quartz 逐个判断 Matcher 与 IndexedListenerRegistry 对比
+ *
+ * <pre>
+ * listeners 个监听器中每 10 个有一个按分组注册，其余按 JobKey 注册，每次触发的 Job 只匹配其中少数几个。
+ * quartzLinearScan 与 QuartzScheduler.notifyJobListenersToBeExecuted 的做法相同：
+ * 遍历所有监听器，取出各自的 Matcher 列表逐个判断。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ListenerDispatchBenchmark {
+
+    @Param( { "10", "100", "500" } )
+    public int                   listeners;
+
+    ListenerManagerImpl          quartz;
+    IndexedListenerRegistry      indexed;
+    JobExecutionContext[]        contexts;
+    int                          next;
+    long                         calls;
+
+    @Setup
+    public void setUp() {
+        quartz = new ListenerManagerImpl();
+        indexed = new IndexedListenerRegistry();
+        for ( int i = 0; i < listeners; i++ ) {
+            JobListener listener = new CountingListener( "listener" + i );
+            if ( i % 10 == 0 ) {
+                quartz.addJobListener( listener, GroupMatcher.jobGroupEquals( "group" + ( i / 10 ) ) );
+                indexed.addJobListener( listener, GroupMatcher.jobGroupEquals( "group" + ( i / 10 ) ) );
+            } else {
+                JobKey key = JobKey.jobKey( "job" + i, "group" + ( i / 10 ) );
+                quartz.addJobListener( listener, KeyMatcher.keyEquals( key ) );
+                indexed.addJobListener( listener, KeyMatcher.keyEquals( key ) );
+            }
+        }
+        contexts = new JobExecutionContext[64];
+        for ( int i = 0; i < contexts.length; i++ ) {
+            int job = ( i * 7 ) % listeners;
+            JobDetail jobDetail = JobBuilder.newJob( BulkScheduleBenchmark.NoopJob.class )
+                    .withIdentity( "job" + job, "group" + ( job / 10 ) ).build();
+            SimpleTriggerImpl trigger = (SimpleTriggerImpl) TriggerBuilder.newTrigger().forJob( jobDetail ).build();
+            Date now = new Date();
+            TriggerFiredBundle bundle = new TriggerFiredBundle( jobDetail, trigger, null, false, now, now, null,
+                    null );
+            contexts[i] = new JobExecutionContextImpl( null, bundle, null );
+        }
+    }
+
+    @Benchmark
+    public long quartzLinearScan() {
+        JobExecutionContext context = contexts[next++ & 63];
+        JobKey key = context.getJobDetail().getKey();
+        for ( JobListener listener : quartz.getJobListeners() ) {
+            List < Matcher < JobKey > > matchers = quartz.getJobListenerMatchers( listener.getName() );
+            if ( matchers == null ) {
+                continue;
+            }
+            for ( Matcher < JobKey > matcher : matchers ) {
+                if ( matcher.isMatch( key ) ) {
+                    listener.jobToBeExecuted( context );
+                    break;
+                }
+            }
+        }
+        return calls;
+    }
+
+    @Benchmark
+    public long indexed() {
+        indexed.jobToBeExecuted( contexts[next++ & 63] );
+        return calls;
+    }
+
+    final class CountingListener extends JobListenerSupport {
+
+        private final String name;
+
+        CountingListener( String name ) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void jobToBeExecuted( JobExecutionContext context ) {
+            calls++;
+        }
+    }
+}
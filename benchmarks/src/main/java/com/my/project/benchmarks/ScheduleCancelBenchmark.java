@@ -0,0 +1,85 @@
+package com.my.project.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 调度 + 取消的吞吐量
+ *
+ * <pre>
+ * 预先放入 pending 个 1~2 小时之后才到期的任务，然后测量"调度一个远期任务再立即取消"的吞吐量，
+ * 对应大量短生命周期超时任务的场景。线程数通过 JMH 的 -t 参数或 BenchmarkMain 控制。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+public class ScheduleCancelBenchmark {
+
+    static final long      HOUR      = TimeUnit.HOURS.toMillis( 1 );
+    static final Runnable  NOOP      = new Runnable() {
+
+                                         @Override
+                                         public void run() {
+                                         }
+                                     };
+
+    @Param( { SchedulerAdapter.TIMER, SchedulerAdapter.SCHEDULED_EXECUTOR, SchedulerAdapter.TIMING_WHEEL,
+            SchedulerAdapter.QUARTZ_RAM, SchedulerAdapter.QUARTZ_INSTRUMENTED, SchedulerAdapter.QUARTZ_SHARDED } )
+    public String          backend;
+
+    @Param( { "1000", "10000", "100000", "1000000" } )
+    public int             pending;
+
+    @Param( { "4" } )
+    public int             workerThreads;
+
+    SchedulerAdapter       adapter;
+
+    @Setup( Level.Trial )
+    public void setUp() throws Exception {
+        adapter = SchedulerAdapter.create( backend, workerThreads );
+        prefill( adapter, pending );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws Exception {
+        adapter.close();
+    }
+
+    @Benchmark
+    public void scheduleAndCancel() throws Exception {
+        Object handle = adapter.schedule( NOOP, HOUR + ThreadLocalRandom.current().nextLong( HOUR ) );
+        adapter.cancel( handle );
+    }
+
+    /**
+     * 放入 count 个 1~2 小时之后到期的任务，模拟积压的定时器
+     */
+    static void prefill( SchedulerAdapter adapter, int count ) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for ( int i = 0; i < count; i++ ) {
+            adapter.schedule( NOOP, HOUR + random.nextLong( HOUR ) );
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.my.project.benchmarks;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+
+import com.my.project.scheduled.wheel.TimingWheelScheduledExecutor;
+
+/**
+ * 把项目中演示的几种调度方式统一成 schedule / cancel 两个操作，供基准测试使用；
+ * 没有延迟调度的线程池见 SubmitAdapter
+ *
+ * @author yang.dongdong
+ *
+ */
+public abstract class SchedulerAdapter {
+
+    public static final String TIMER               = "timer";
+    public static final String SCHEDULED_EXECUTOR  = "scheduledExecutor";
+    public static final String TIMING_WHEEL        = "timingWheel";
+    public static final String QUARTZ_RAM          = "quartzRam";
+    public static final String QUARTZ_SHARDED      = "quartzSharded";
+    public static final String QUARTZ_INSTRUMENTED = "quartzInstrumented";
+    public static final String QUARTZ_FORK_JOIN    = "quartzForkJoin";
+    public static final String QUARTZ_VIRTUAL      = "quartzVirtual";
+
+    /**
+     * @param name 调度方式，取值为本类中的常量
+     * @param threads 执行任务的线程数（Timer 固定为 1）
+     */
+    public static SchedulerAdapter create( String name, int threads ) throws Exception {
+        if ( TIMER.equals( name ) ) {
+            return new TimerAdapter();
+        } else if ( SCHEDULED_EXECUTOR.equals( name ) ) {
+            return new ExecutorAdapter( new ScheduledThreadPoolExecutor( threads ) );
+        } else if ( TIMING_WHEEL.equals( name ) ) {
+            return new ExecutorAdapter( new TimingWheelScheduledExecutor( threads ) );
+        } else if ( QUARTZ_RAM.equals( name ) ) {
+            return new QuartzAdapter( threads, "org.quartz.simpl.RAMJobStore" );
+        } else if ( QUARTZ_SHARDED.equals( name ) ) {
+            return new QuartzAdapter( threads, "com.my.project.quartz.store.ShardedRAMJobStore" );
+        } else if ( QUARTZ_INSTRUMENTED.equals( name ) ) {
+            return new QuartzAdapter( threads, "com.my.project.quartz.store.InstrumentedRAMJobStore" );
+        } else if ( QUARTZ_FORK_JOIN.equals( name ) ) {
+            return new QuartzAdapter( threads, "org.quartz.simpl.RAMJobStore",
+                    "com.my.project.quartz.pool.WorkStealingThreadPool" );
+        } else if ( QUARTZ_VIRTUAL.equals( name ) ) {
+            return new QuartzAdapter( threads, "org.quartz.simpl.RAMJobStore",
+                    "com.my.project.quartz.pool.VirtualThreadPool" );
+        }
+        throw new IllegalArgumentException( "Unknown scheduler: " + name );
+    }
+
+    /**
+     * @return 用于取消任务的句柄
+     */
+    public abstract Object schedule( Runnable task, long delayMillis ) throws Exception;
+
+    public abstract void cancel( Object handle ) throws Exception;
+
+    public abstract void close() throws Exception;
+
+    static class TimerAdapter extends SchedulerAdapter {
+
+        private final Timer      timer     = new Timer( true );
+        private final AtomicLong cancelled = new AtomicLong();
+
+        @Override
+        public Object schedule( final Runnable task, long delayMillis ) {
+            TimerTask timerTask = new TimerTask() {
+
+                @Override
+                public void run() {
+                    task.run();
+                }
+            };
+            timer.schedule( timerTask, delayMillis );
+            return timerTask;
+        }
+
+        @Override
+        public void cancel( Object handle ) {
+            ( (TimerTask) handle ).cancel();
+            // Timer 取消任务只是打标记，任务仍然留在堆中，需要定期 purge（O(n)）防止堆无限增长
+            if ( ( cancelled.incrementAndGet() & 4095 ) == 0 ) {
+                timer.purge();
+            }
+        }
+
+        @Override
+        public void close() {
+            timer.cancel();
+        }
+    }
+
+    static class ExecutorAdapter extends SchedulerAdapter {
+
+        private final ScheduledExecutorService service;
+
+        ExecutorAdapter( ScheduledExecutorService service ) {
+            this.service = service;
+            if ( service instanceof ScheduledThreadPoolExecutor ) {
+                // 与时间轮的取消语义保持一致：取消后立即从队列中移除
+                ( (ScheduledThreadPoolExecutor) service ).setRemoveOnCancelPolicy( true );
+            }
+        }
+
+        @Override
+        public Object schedule( Runnable task, long delayMillis ) {
+            return service.schedule( task, delayMillis, TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        public void cancel( Object handle ) {
+            ( (ScheduledFuture < ? >) handle ).cancel( false );
+        }
+
+        @Override
+        public void close() {
+            service.shutdownNow();
+        }
+    }
+
+    static class QuartzAdapter extends SchedulerAdapter {
+
+        private static final AtomicLong                            INSTANCES = new AtomicLong();
+        private static final ConcurrentHashMap < String, Runnable > TASKS     = new ConcurrentHashMap < String, Runnable >();
+
+        private final AtomicLong                                   ids       = new AtomicLong();
+        private final Scheduler                                    scheduler;
+        private final String                                       prefix;
+
+        QuartzAdapter( int threads, String jobStoreClass ) throws SchedulerException {
+            this( threads, jobStoreClass, "org.quartz.simpl.SimpleThreadPool" );
+        }
+
+        QuartzAdapter( int threads, String jobStoreClass, String threadPoolClass ) throws SchedulerException {
+            Properties props = new Properties();
+            prefix = "bench" + INSTANCES.incrementAndGet();
+            props.setProperty( "org.quartz.scheduler.instanceName", prefix );
+            props.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+            props.setProperty( "org.quartz.threadPool.class", threadPoolClass );
+            props.setProperty( "org.quartz.threadPool.threadCount", String.valueOf( threads ) );
+            props.setProperty( "org.quartz.jobStore.class", jobStoreClass );
+            scheduler = new StdSchedulerFactory( props ).getScheduler();
+            scheduler.start();
+        }
+
+        @Override
+        public Object schedule( Runnable task, long delayMillis ) throws SchedulerException {
+            String id = prefix + "-" + ids.incrementAndGet();
+            TASKS.put( id, task );
+            JobDetail job = JobBuilder.newJob( RunnableJob.class ).withIdentity( id ).build();
+            Trigger trigger = TriggerBuilder.newTrigger().withIdentity( id )
+                    .startAt( new Date( System.currentTimeMillis() + delayMillis ) ).build();
+            scheduler.scheduleJob( job, trigger );
+            return job.getKey();
+        }
+
+        @Override
+        public void cancel( Object handle ) throws SchedulerException {
+            JobKey key = (JobKey) handle;
+            scheduler.deleteJob( key );
+            TASKS.remove( key.getName() );
+        }
+
+        @Override
+        public void close() throws SchedulerException {
+            scheduler.shutdown( false );
+        }
+
+        public static class RunnableJob implements Job {
+
+            @Override
+            public void execute( JobExecutionContext context ) {
+                Runnable task = TASKS.remove( context.getJobDetail().getKey().getName() );
+                if ( task != null ) {
+                    task.run();
+                }
+            }
+        }
+    }
+}
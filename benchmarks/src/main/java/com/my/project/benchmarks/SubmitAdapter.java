@@ -0,0 +1,51 @@
+package com.my.project.benchmarks;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.my.project.AutoscalingThreadPoolExecutor;
+import com.my.project.BackpressurePolicy;
+import com.my.project.PausableThreadPoolExecutor;
+
+/**
+ * 没有延迟调度的线程池（PausableThreadPoolExecutor、AutoscalingThreadPoolExecutor），只能立即提交任务，
+ * 用于测量提交到执行的开销；有延迟调度的见 SchedulerAdapter
+ *
+ * @author yang.dongdong
+ *
+ */
+public class SubmitAdapter {
+
+    public static final String               PAUSABLE_EXECUTOR    = "pausableExecutor";
+    public static final String               AUTOSCALING_EXECUTOR = "autoscalingExecutor";
+
+    private final PausableThreadPoolExecutor executor;
+
+    SubmitAdapter( PausableThreadPoolExecutor executor ) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param name 线程池，取值为本类中的常量
+     * @param threads 执行任务的线程数（AutoscalingThreadPoolExecutor 最多扩展到 8 倍）
+     */
+    public static SubmitAdapter create( String name, int threads ) {
+        if ( PAUSABLE_EXECUTOR.equals( name ) ) {
+            return new SubmitAdapter( new PausableThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue < Runnable >() ) );
+        } else if ( AUTOSCALING_EXECUTOR.equals( name ) ) {
+            return new SubmitAdapter( new AutoscalingThreadPoolExecutor( threads, threads * 8, 65536,
+                    BackpressurePolicy.BLOCK ) );
+        }
+        throw new IllegalArgumentException( "Unknown executor: " + name );
+    }
+
+    public Future < ? > submit( Runnable task ) {
+        return executor.submit( task );
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+}
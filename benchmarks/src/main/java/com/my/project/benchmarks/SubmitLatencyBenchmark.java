@@ -0,0 +1,69 @@
+package com.my.project.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 提交延迟：从向没有延迟调度的线程池提交任务到任务开始执行的时间
+ *
+ * <pre>
+ * PausableThreadPoolExecutor 和 AutoscalingThreadPoolExecutor 只能立即执行任务，没有积压的定时任务，
+ * 所以与 FireLatencyBenchmark 分开，不带 pending 参数，结果可以与其中 pending 最小的一组对比。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+public class SubmitLatencyBenchmark {
+
+    @Param( { SubmitAdapter.PAUSABLE_EXECUTOR, SubmitAdapter.AUTOSCALING_EXECUTOR } )
+    public String backend;
+
+    @Param( { "4" } )
+    public int    workerThreads;
+
+    SubmitAdapter adapter;
+
+    @Setup( Level.Trial )
+    public void setUp() {
+        adapter = SubmitAdapter.create( backend, workerThreads );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        adapter.close();
+    }
+
+    @Benchmark
+    public void submitAndAwaitRun() throws Exception {
+        final CountDownLatch ran = new CountDownLatch( 1 );
+        adapter.submit( new Runnable() {
+
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        } );
+        ran.await();
+    }
+}
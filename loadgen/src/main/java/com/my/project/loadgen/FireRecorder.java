@@ -0,0 +1,115 @@
+package com.my.project.loadgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.my.project.metrics.Histogram;
+
+/**
+ * 记录每次触发的 jitter（实际触发时间 - 计划触发时间，毫秒）和 misfire
+ *
+ * <pre>
+ * misfire 包括两种情况，二者不会重复计数：
+ *   - Quartz 的 JobStore 发现 Trigger 错过了触发时间（TriggerListener.triggerMisfired）；
+ *   - 触发时已经晚于计划时间超过 misfireThreshold（Timer、ScheduledThreadPoolExecutor 没有 misfire 的概念，
+ *     只会晚点执行）。
+ * 计划时间早于 recordFrom 的触发（注册期间的追赶）不计入统计。
+ * 采样线程定期调用 nextWindow 取出一个采样区间的统计，同时累计全部运行时间的统计。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class FireRecorder {
+
+    /** jitter 超过 1 小时的计入最后一个桶 */
+    static final long                           HIGHEST_JITTER = 3600000L;
+
+    private final long                          misfireThreshold;
+    private final long                          recordFrom;
+    private final Histogram                     total          = newHistogram();
+    private final AtomicReference < Histogram > window         = new AtomicReference < Histogram >( newHistogram() );
+    private final AtomicLong                    fires          = new AtomicLong();
+    private final AtomicLong                    misfires       = new AtomicLong();
+    private long                                windowFires;
+    private long                                windowMisfires;
+
+    public FireRecorder( long misfireThreshold, long recordFrom ) {
+        this.misfireThreshold = misfireThreshold;
+        this.recordFrom = recordFrom;
+    }
+
+    /**
+     * 一次触发
+     */
+    public void fired( long scheduledMillis, long actualMillis ) {
+        if ( scheduledMillis < recordFrom ) {
+            return;
+        }
+        long jitter = actualMillis - scheduledMillis;
+        window.get().record( jitter );
+        total.record( jitter );
+        fires.incrementAndGet();
+        if ( jitter > misfireThreshold ) {
+            misfires.incrementAndGet();
+        }
+    }
+
+    /**
+     * JobStore 报告的 misfire
+     */
+    public void misfired( long scheduledMillis ) {
+        if ( scheduledMillis >= recordFrom ) {
+            misfires.incrementAndGet();
+        }
+    }
+
+    public long getRecordFrom() {
+        return recordFrom;
+    }
+
+    public long getFires() {
+        return fires.get();
+    }
+
+    public long getMisfires() {
+        return misfires.get();
+    }
+
+    public Histogram.Snapshot getTotal() {
+        return total.snapshot();
+    }
+
+    /**
+     * 结束当前采样区间，只由采样线程调用
+     */
+    Window nextWindow() {
+        Histogram previous = window.getAndSet( newHistogram() );
+        long f = fires.get();
+        long m = misfires.get();
+        Window result = new Window( f - windowFires, m - windowMisfires, previous.snapshot() );
+        windowFires = f;
+        windowMisfires = m;
+        return result;
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram( HIGHEST_JITTER, 5 );
+    }
+
+    /**
+     * 一个采样区间内的触发统计
+     */
+    static class Window {
+
+        final long               fires;
+        final long               misfires;
+        final Histogram.Snapshot jitter;
+
+        Window( long fires, long misfires, Histogram.Snapshot jitter ) {
+            this.fires = fires;
+            this.misfires = misfires;
+            this.jitter = jitter;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.my.project.loadgen;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.TriggerListenerSupport;
+
+import com.my.project.quartz.bulk.BulkScheduleResult;
+import com.my.project.quartz.bulk.BulkScheduler;
+import com.my.project.scheduled.wheel.TimingWheelScheduledExecutor;
+
+/**
+ * 负载生成器使用的调度方式，名称与 benchmarks 模块的 SchedulerAdapter 相同
+ *
+ * <pre>
+ * Timer 和 ScheduledExecutorService 只能表达固定频率：无限重复且没有结束时间的 SimpleTrigger 直接使用
+ * scheduleAtFixedRate；其他 Trigger（CronTrigger、DailyTimeIntervalTrigger、有限次重复的 SimpleTrigger）
+ * 每次触发后用 Trigger.getFireTimeAfter 计算下一次时间，再调度一个一次性任务，相当于在这些调度器上自己实现 cron，
+ * repeatCount 和 endTime 因此与 Quartz 一致。
+ * Quartz 为每个 Trigger 注册一个 Job（与 QuartzTest 相同），通过 BulkScheduler 批量注册后再启动 Scheduler。
+ * 系统属性中以 org.quartz. 开头的配置会覆盖默认配置，例如 -Dorg.quartz.scheduler.batchTriggerAcquisitionMaxCount=10。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public abstract class LoadBackend {
+
+    public static final String TIMER              = "timer";
+    public static final String SCHEDULED_EXECUTOR = "scheduledExecutor";
+    public static final String TIMING_WHEEL       = "timingWheel";
+    public static final String QUARTZ_RAM         = "quartzRam";
+    public static final String QUARTZ_SHARDED     = "quartzSharded";
+
+    protected final FireRecorder recorder;
+
+    protected LoadBackend( FireRecorder recorder ) {
+        this.recorder = recorder;
+    }
+
+    public static LoadBackend create( LoadConfig config, FireRecorder recorder ) throws SchedulerException {
+        String name = config.backend;
+        if ( TIMER.equals( name ) ) {
+            return new TimerBackend( recorder );
+        } else if ( SCHEDULED_EXECUTOR.equals( name ) ) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( config.threads );
+            executor.setRemoveOnCancelPolicy( true );
+            return new ExecutorBackend( executor, recorder );
+        } else if ( TIMING_WHEEL.equals( name ) ) {
+            return new ExecutorBackend( new TimingWheelScheduledExecutor( config.threads ), recorder );
+        } else if ( QUARTZ_RAM.equals( name ) ) {
+            return new QuartzBackend( config, "org.quartz.simpl.RAMJobStore", recorder );
+        } else if ( QUARTZ_SHARDED.equals( name ) ) {
+            return new QuartzBackend( config, "com.my.project.quartz.store.ShardedRAMJobStore", recorder );
+        }
+        throw new IllegalArgumentException( "Unknown backend: " + name );
+    }
+
+    /**
+     * 注册一个 Trigger，在 start 之前调用
+     */
+    public abstract void add( Trigger trigger ) throws SchedulerException;
+
+    /**
+     * 注册完成，开始触发
+     */
+    public abstract void start() throws SchedulerException;
+
+    public abstract void close() throws SchedulerException;
+
+    /**
+     * Timer 和 ScheduledExecutorService 共用的部分
+     */
+    abstract static class DelayBackend extends LoadBackend {
+
+        DelayBackend( FireRecorder recorder ) {
+            super( recorder );
+        }
+
+        @Override
+        public void add( Trigger trigger ) {
+            if ( trigger instanceof SimpleTrigger
+                    && ( (SimpleTrigger) trigger ).getRepeatCount() == SimpleTrigger.REPEAT_INDEFINITELY
+                    && trigger.getEndTime() == null ) {
+                long period = ( (SimpleTrigger) trigger ).getRepeatInterval();
+                long first = trigger.getStartTime().getTime();
+                scheduleAtFixedRate( new FixedRateFire( first, period ), first, period );
+            } else {
+                Date first = trigger.getFireTimeAfter( new Date( trigger.getStartTime().getTime() - 1 ) );
+                if ( first != null ) {
+                    scheduleOnce( new NextFire( trigger, first.getTime() ), first.getTime() );
+                }
+            }
+        }
+
+        @Override
+        public void start() {
+        }
+
+        abstract void scheduleOnce( Runnable task, long atMillis );
+
+        abstract void scheduleAtFixedRate( Runnable task, long firstMillis, long periodMillis );
+
+        /**
+         * 计划时间为 first + n * period
+         */
+        class FixedRateFire implements Runnable {
+
+            private final long first;
+            private final long period;
+            private long       count;
+
+            FixedRateFire( long first, long period ) {
+                this.first = first;
+                this.period = period;
+            }
+
+            @Override
+            public void run() {
+                recorder.fired( first + count++ * period, System.currentTimeMillis() );
+            }
+        }
+
+        /**
+         * 每次触发后按 Trigger 计算下一次触发时间
+         */
+        class NextFire implements Runnable {
+
+            private final Trigger trigger;
+            private long          scheduled;
+
+            NextFire( Trigger trigger, long scheduled ) {
+                this.trigger = trigger;
+                this.scheduled = scheduled;
+            }
+
+            @Override
+            public void run() {
+                recorder.fired( scheduled, System.currentTimeMillis() );
+                Date next = trigger.getFireTimeAfter( new Date( scheduled ) );
+                if ( next != null ) {
+                    scheduled = next.getTime();
+                    scheduleOnce( this, scheduled );
+                }
+            }
+        }
+    }
+
+    static class TimerBackend extends DelayBackend {
+
+        private final Timer timer = new Timer( "loadgen-timer", true );
+
+        TimerBackend( FireRecorder recorder ) {
+            super( recorder );
+        }
+
+        @Override
+        void scheduleOnce( final Runnable task, long atMillis ) {
+            // TimerTask 不能重复调度，每次触发都需要新的实例
+            timer.schedule( new TimerTask() {
+
+                @Override
+                public void run() {
+                    task.run();
+                }
+            }, new Date( atMillis ) );
+        }
+
+        @Override
+        void scheduleAtFixedRate( final Runnable task, long firstMillis, long periodMillis ) {
+            timer.scheduleAtFixedRate( new TimerTask() {
+
+                @Override
+                public void run() {
+                    task.run();
+                }
+            }, new Date( firstMillis ), periodMillis );
+        }
+
+        @Override
+        public void close() {
+            timer.cancel();
+        }
+    }
+
+    static class ExecutorBackend extends DelayBackend {
+
+        private final ScheduledExecutorService service;
+
+        ExecutorBackend( ScheduledExecutorService service, FireRecorder recorder ) {
+            super( recorder );
+            this.service = service;
+        }
+
+        @Override
+        void scheduleOnce( Runnable task, long atMillis ) {
+            service.schedule( task, atMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        void scheduleAtFixedRate( Runnable task, long firstMillis, long periodMillis ) {
+            service.scheduleAtFixedRate( task, firstMillis - System.currentTimeMillis(), periodMillis,
+                    TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        public void close() {
+            service.shutdownNow();
+        }
+    }
+
+    static class QuartzBackend extends LoadBackend {
+
+        static final String         RECORDER = "recorder";
+
+        private final Scheduler     scheduler;
+        private final BulkScheduler bulk;
+
+        QuartzBackend( LoadConfig config, String jobStoreClass, FireRecorder recorder ) throws SchedulerException {
+            super( recorder );
+            Properties props = new Properties();
+            props.setProperty( "org.quartz.scheduler.instanceName", "loadgen" );
+            props.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+            props.setProperty( "org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool" );
+            props.setProperty( "org.quartz.threadPool.threadCount", String.valueOf( config.threads ) );
+            props.setProperty( "org.quartz.jobStore.class", jobStoreClass );
+            props.setProperty( "org.quartz.jobStore.misfireThreshold", String.valueOf( config.misfireThreshold ) );
+            for ( Map.Entry < Object, Object > entry : System.getProperties().entrySet() ) {
+                if ( entry.getKey().toString().startsWith( "org.quartz." ) ) {
+                    props.put( entry.getKey(), entry.getValue() );
+                }
+            }
+            scheduler = new StdSchedulerFactory( props ).getScheduler();
+            // PropertySettingJobFactory 把 SchedulerContext 中的 recorder 注入到每个 LoadJob
+            scheduler.getContext().put( RECORDER, recorder );
+            scheduler.getListenerManager().addTriggerListener( new MisfireListener( recorder ),
+                    EverythingMatcher.allTriggers() );
+            bulk = new BulkScheduler( scheduler );
+        }
+
+        @Override
+        public void add( Trigger trigger ) {
+            bulk.add( JobBuilder.newJob( LoadJob.class ).withIdentity( trigger.getKey().getName(),
+                    trigger.getKey().getGroup() ).build(), trigger );
+        }
+
+        @Override
+        public void start() throws SchedulerException {
+            BulkScheduleResult result = bulk.execute( false );
+            if ( !result.isSuccessful() ) {
+                throw new SchedulerException( "Failed to schedule " + result.getFailures().size() + " jobs: "
+                        + result.getFailures() );
+            }
+            scheduler.start();
+        }
+
+        @Override
+        public void close() throws SchedulerException {
+            scheduler.shutdown( false );
+        }
+    }
+
+    public static class LoadJob implements Job {
+
+        private FireRecorder recorder;
+
+        public void setRecorder( FireRecorder recorder ) {
+            this.recorder = recorder;
+        }
+
+        @Override
+        public void execute( JobExecutionContext context ) {
+            recorder.fired( context.getScheduledFireTime().getTime(), System.currentTimeMillis() );
+        }
+    }
+
+    static class MisfireListener extends TriggerListenerSupport {
+
+        private final FireRecorder recorder;
+
+        MisfireListener( FireRecorder recorder ) {
+            this.recorder = recorder;
+        }
+
+        @Override
+        public String getName() {
+            return "loadgen-misfires";
+        }
+
+        @Override
+        public void triggerMisfired( Trigger trigger ) {
+            // JobStore 在更新 Trigger 之前通知，nextFireTime 仍然是错过的时间
+            recorder.misfired( trigger.getNextFireTime().getTime() );
+        }
+    }
+}
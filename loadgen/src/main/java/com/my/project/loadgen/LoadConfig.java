@@ -0,0 +1,109 @@
+package com.my.project.loadgen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 负载生成器的运行参数，命令行格式为 --name=value
+ *
+ * <pre>
+ * --backend           调度方式：timer, scheduledExecutor, timingWheel, quartzRam, quartzSharded（默认 quartzRam）
+ * --triggers          Trigger 总数（默认 100000）
+ * --mix               三种 Trigger 的比例（默认 cron=1,simple=1,daily=1）
+ * --period            每个 Trigger 的触发周期，秒（默认 60），触发速率 = triggers / period
+ * --threads           执行线程数（默认 10，与 quartz.properties 相同；Timer 固定为 1）
+ * --duration          运行时间，秒（默认 600）
+ * --startDelay        第一次触发距离开始注册的时间，秒（默认 10），注册 10^6 个 Trigger 时应适当加大；
+ *                     计划时间早于此刻的触发不计入统计
+ * --sample            采样间隔，秒（默认 10）
+ * --misfireThreshold  晚于计划时间多少毫秒算 misfire（默认 60000，与 Quartz 相同）
+ * --out               输出文件前缀（默认 loadgen，输出 loadgen.csv 和 loadgen.json）
+ * --seed              生成 Trigger 的随机种子（默认 42），相同的种子生成相同的 Trigger
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class LoadConfig {
+
+    String                  backend           = LoadBackend.QUARTZ_RAM;
+    int                     triggers          = 100000;
+    Map < String, Integer > mix               = parseMix( "cron=1,simple=1,daily=1" );
+    int                     periodSeconds     = 60;
+    int                     threads           = 10;
+    long                    durationSeconds   = 600;
+    long                    startDelaySeconds = 10;
+    long                    sampleSeconds     = 10;
+    long                    misfireThreshold  = 60000;
+    String                  out               = "loadgen";
+    long                    seed              = 42;
+
+    public static LoadConfig parse( String[] args ) {
+        LoadConfig config = new LoadConfig();
+        for ( String arg : args ) {
+            int eq = arg.indexOf( '=' );
+            if ( !arg.startsWith( "--" ) || eq < 0 ) {
+                throw new IllegalArgumentException( "Expected --name=value: " + arg );
+            }
+            String name = arg.substring( 2, eq );
+            String value = arg.substring( eq + 1 );
+            if ( "backend".equals( name ) ) {
+                config.backend = value;
+            } else if ( "triggers".equals( name ) ) {
+                config.triggers = Integer.parseInt( value );
+            } else if ( "mix".equals( name ) ) {
+                config.mix = parseMix( value );
+            } else if ( "period".equals( name ) ) {
+                config.periodSeconds = Integer.parseInt( value );
+            } else if ( "threads".equals( name ) ) {
+                config.threads = Integer.parseInt( value );
+            } else if ( "duration".equals( name ) ) {
+                config.durationSeconds = Long.parseLong( value );
+            } else if ( "startDelay".equals( name ) ) {
+                config.startDelaySeconds = Long.parseLong( value );
+            } else if ( "sample".equals( name ) ) {
+                config.sampleSeconds = Long.parseLong( value );
+            } else if ( "misfireThreshold".equals( name ) ) {
+                config.misfireThreshold = Long.parseLong( value );
+            } else if ( "out".equals( name ) ) {
+                config.out = value;
+            } else if ( "seed".equals( name ) ) {
+                config.seed = Long.parseLong( value );
+            } else {
+                throw new IllegalArgumentException( "Unknown option: " + name );
+            }
+        }
+        if ( config.triggers <= 0 || config.periodSeconds <= 0 || config.threads <= 0
+                || config.durationSeconds <= 0 || config.sampleSeconds <= 0 || config.startDelaySeconds < 0 ) {
+            throw new IllegalArgumentException(
+                    "triggers, period, threads, duration and sample must be positive, startDelay must not be negative" );
+        }
+        return config;
+    }
+
+    static Map < String, Integer > parseMix( String value ) {
+        Map < String, Integer > mix = new LinkedHashMap < String, Integer >();
+        for ( String part : value.split( "," ) ) {
+            String[] kv = part.trim().split( "=" );
+            TriggerMix.Kind.valueOf( kv[0].trim().toUpperCase() );
+            mix.put( kv[0].trim().toLowerCase(), Integer.parseInt( kv[1].trim() ) );
+        }
+        return mix;
+    }
+
+    void appendJson( StringBuilder json ) {
+        json.append( "{\"backend\":\"" ).append( backend ).append( "\",\"triggers\":" ).append( triggers )
+                .append( ",\"mix\":{" );
+        boolean first = true;
+        for ( Map.Entry < String, Integer > entry : mix.entrySet() ) {
+            json.append( first ? "" : "," ).append( '"' ).append( entry.getKey() ).append( "\":" )
+                    .append( entry.getValue() );
+            first = false;
+        }
+        json.append( "},\"periodSeconds\":" ).append( periodSeconds ).append( ",\"threads\":" ).append( threads )
+                .append( ",\"durationSeconds\":" ).append( durationSeconds ).append( ",\"sampleSeconds\":" )
+                .append( sampleSeconds ).append( ",\"startDelaySeconds\":" ).append( startDelaySeconds )
+                .append( ",\"misfireThresholdMillis\":" ).append( misfireThreshold )
+                .append( ",\"seed\":" ).append( seed ).append( '}' );
+    }
+}
@@ -0,0 +1,88 @@
+package com.my.project.loadgen;
+
+import java.util.Date;
+
+/**
+ * 调度器的规模和长时间运行（soak）测试
+ *
+ * <pre>
+ * JMH 基准测试只测量几秒钟内的单个操作，本程序按 QuartzTest 中的三种 Trigger（cron、simple、daily interval）
+ * 注册大量（10^6 级）周期性 Trigger，运行数小时，定期采样：
+ *   - 触发 jitter（实际触发时间 - 计划触发时间）的 p50 / p90 / p99 / p99.9 / max；
+ *   - misfire 次数和比例；
+ *   - GC 次数、时间和最长停顿；
+ *   - 堆内存使用量和 GC 之后的使用量，汇总中给出每小时的增长速度。
+ * 结果写入 {out}.csv（时间序列）和 {out}.json（汇总），用于对比不同调度方式、参数或版本的运行结果。
+ * 完全在本地运行，不需要数据库或其他服务。
+ *
+ * mvn install
+ * cd loadgen
+ * mvn package
+ * java -Xmx4g -jar target/loadgen.jar --backend=quartzRam --triggers=1000000 --period=3600 --duration=14400 \
+ *      --startDelay=120 --out=quartz-1m
+ * java -Xmx4g -jar target/loadgen.jar --backend=scheduledExecutor --triggers=1000000 --period=3600 ...
+ *
+ * 参数见 LoadConfig。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class LoadGenerator {
+
+    public static void main( String[] args ) throws Exception {
+        LoadConfig config = LoadConfig.parse( args );
+
+        long begin = System.currentTimeMillis();
+        long start = begin + config.startDelaySeconds * 1000;
+        FireRecorder recorder = new FireRecorder( config.misfireThreshold, start );
+        RuntimeSampler runtime = new RuntimeSampler();
+        LoadBackend backend = LoadBackend.create( config, recorder );
+        TriggerMix mix = new TriggerMix( config.mix, config.periodSeconds, new Date( start ), config.seed );
+        for ( int i = 0; i < config.triggers; i++ ) {
+            backend.add( mix.next( i ) );
+        }
+        backend.start();
+        long setupMillis = System.currentTimeMillis() - begin;
+        System.out.println( String.format( "Registered %d triggers on %s in %dms", config.triggers, config.backend,
+                setupMillis ) );
+        if ( System.currentTimeMillis() > start ) {
+            System.out.println( "WARN: registration took longer than --startDelay, "
+                    + "the first fires are late and count as jitter" );
+        }
+
+        Report report = new Report( config.out + ".csv" );
+        try {
+            sleepUntil( start );
+            // 丢弃注册期间的 GC，从第一次触发开始采样；计划时间早于 start 的触发 recorder 本来就不记录
+            runtime.reset();
+
+            long sampleMillis = config.sampleSeconds * 1000;
+            long end = start + config.durationSeconds * 1000;
+            long windowStart = start;
+            while ( windowStart < end ) {
+                long windowEnd = Math.min( windowStart + sampleMillis, end );
+                sleepUntil( windowEnd );
+                System.out.println( report.add( ( windowEnd - start ) / 1000.0, ( windowEnd - windowStart ) / 1000.0,
+                        recorder.nextWindow(), runtime.nextWindow() ) );
+                windowStart = windowEnd;
+            }
+        } finally {
+            backend.close();
+            report.close();
+        }
+        report.writeSummary( config.out + ".json", config, setupMillis, config.durationSeconds, recorder, runtime );
+        System.out.println( String.format( "fires=%d misfires=%d jitter: %s", recorder.getFires(),
+                recorder.getMisfires(), recorder.getTotal() ) );
+        // misfireThreshold 过小时 RAMJobStore 会在 acquireNextTriggers 中反复处理 misfire，
+        // Quartz 的调度线程（非 daemon）停不下来，结果已经写完，直接退出
+        System.exit( 0 );
+    }
+
+    private static void sleepUntil( long millis ) throws InterruptedException {
+        long now;
+        while ( ( now = System.currentTimeMillis() ) < millis ) {
+            Thread.sleep( millis - now );
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.my.project.loadgen;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.my.project.metrics.Histogram;
+
+/**
+ * 输出负载生成器的结果
+ *
+ * <pre>
+ * {out}.csv：每个采样区间一行，每行写完立即 flush，长时间运行中途停止也能得到已经采集的数据；
+ * {out}.json：运行结束后的汇总，包括运行参数、全部时间的 jitter 百分位、misfire 比例、GC 停顿，
+ * 以及用最小二乘法拟合的堆内存增长速度（MB/小时）。
+ * jitter 和 GC 时间的单位为毫秒，内存单位为 MB。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class Report implements Closeable {
+
+    static final String             CSV_HEADER = "elapsedSeconds,fires,firesPerSecond,jitterP50,jitterP90,jitterP99,"
+                                                       + "jitterP999,jitterMax,misfires,misfireRate,gcCount,gcTime,"
+                                                       + "gcMaxPause,heapUsed,heapCommitted,heapAfterGc";
+
+    private final PrintWriter       csv;
+    private final List < double[] > heap       = new ArrayList < double[] >();
+    private double                  heapMax;
+
+    public Report( String csvPath ) throws IOException {
+        csv = new PrintWriter( new OutputStreamWriter( new FileOutputStream( csvPath ), "UTF-8" ) );
+        csv.println( CSV_HEADER );
+        csv.flush();
+    }
+
+    /**
+     * 写入一个采样区间
+     *
+     * @param elapsedSeconds 区间结束时距离开始触发的时间
+     * @return 用于控制台输出的一行摘要
+     */
+    String add( double elapsedSeconds, double windowSeconds, FireRecorder.Window window,
+            RuntimeSampler.Sample runtime ) {
+        Histogram.Snapshot jitter = window.jitter;
+        csv.println( format( "%.0f,%d,%.1f,%d,%d,%d,%d,%d,%d,%.6f,%d,%d,%d,%.1f,%.1f,%.1f", elapsedSeconds,
+                window.fires, window.fires / windowSeconds, jitter.getValueAtPercentile( 50 ),
+                jitter.getValueAtPercentile( 90 ), jitter.getValueAtPercentile( 99 ),
+                jitter.getValueAtPercentile( 99.9 ), jitter.getMax(), window.misfires,
+                rate( window.misfires, window.fires ), runtime.gcCount, runtime.gcTimeMillis, runtime.gcMaxPauseMillis,
+                runtime.heapUsed, runtime.heapCommitted, runtime.heapAfterGc ) );
+        csv.flush();
+        heap.add( new double[] { elapsedSeconds / 3600, runtime.heapUsed, runtime.heapAfterGc } );
+        heapMax = Math.max( heapMax, runtime.heapUsed );
+        return format( "%6.0fs fires=%d/s jitter p99=%dms max=%dms misfires=%d gc=%d (%dms, max %dms) heap=%.0fMB",
+                elapsedSeconds, Math.round( window.fires / windowSeconds ), jitter.getValueAtPercentile( 99 ),
+                jitter.getMax(), window.misfires, runtime.gcCount, runtime.gcTimeMillis, runtime.gcMaxPauseMillis,
+                runtime.heapUsed );
+    }
+
+    /**
+     * 写入汇总
+     *
+     * @param setupMillis 注册全部 Trigger 的耗时
+     */
+    void writeSummary( String jsonPath, LoadConfig config, long setupMillis, double elapsedSeconds,
+            FireRecorder recorder, RuntimeSampler runtime ) throws IOException {
+        StringBuilder json = new StringBuilder( "{\"config\":" );
+        config.appendJson( json );
+        Histogram.Snapshot jitter = recorder.getTotal();
+        json.append( ",\"setupMillis\":" ).append( setupMillis ).append( ",\"elapsedSeconds\":" )
+                .append( format( "%.1f", elapsedSeconds ) ).append( ",\"fires\":" ).append( recorder.getFires() )
+                .append( ",\"firesPerSecond\":" ).append( format( "%.1f", recorder.getFires() / elapsedSeconds ) )
+                .append( ",\"misfires\":" ).append( recorder.getMisfires() ).append( ",\"misfireRate\":" )
+                .append( format( "%.6f", rate( recorder.getMisfires(), recorder.getFires() ) ) )
+                .append( ",\"jitterMillis\":" );
+        appendSnapshot( json, jitter );
+        json.append( ",\"gc\":{\"count\":" ).append( runtime.getTotalCount() ).append( ",\"timeMillis\":" )
+                .append( runtime.getTotalTime() ).append( ",\"pauseMillis\":" );
+        appendSnapshot( json, runtime.getPauses() );
+        json.append( "},\"heapMB\":{" );
+        if ( !heap.isEmpty() ) {
+            double[] first = heap.get( 0 );
+            double[] last = heap.get( heap.size() - 1 );
+            json.append( "\"usedStart\":" ).append( format( "%.1f", first[1] ) ).append( ",\"usedEnd\":" )
+                    .append( format( "%.1f", last[1] ) ).append( ",\"usedMax\":" ).append( format( "%.1f", heapMax ) )
+                    .append( ",\"afterGcStart\":" ).append( format( "%.1f", first[2] ) ).append( ",\"afterGcEnd\":" )
+                    .append( format( "%.1f", last[2] ) ).append( ",\"usedGrowthPerHour\":" )
+                    .append( format( "%.3f", slope( 1 ) ) ).append( ",\"afterGcGrowthPerHour\":" )
+                    .append( format( "%.3f", slope( 2 ) ) );
+        }
+        json.append( "}}" );
+        Writer writer = new OutputStreamWriter( new FileOutputStream( jsonPath ), "UTF-8" );
+        try {
+            writer.write( json.toString() );
+            writer.write( '\n' );
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        csv.close();
+    }
+
+    private static void appendSnapshot( StringBuilder json, Histogram.Snapshot snapshot ) {
+        if ( snapshot == null ) {
+            json.append( "null" );
+            return;
+        }
+        json.append( "{\"count\":" ).append( snapshot.getCount() ).append( ",\"mean\":" )
+                .append( format( "%.3f", snapshot.getMean() ) ).append( ",\"p50\":" )
+                .append( snapshot.getValueAtPercentile( 50 ) ).append( ",\"p90\":" )
+                .append( snapshot.getValueAtPercentile( 90 ) ).append( ",\"p99\":" )
+                .append( snapshot.getValueAtPercentile( 99 ) ).append( ",\"p999\":" )
+                .append( snapshot.getValueAtPercentile( 99.9 ) ).append( ",\"max\":" ).append( snapshot.getMax() )
+                .append( '}' );
+    }
+
+    /**
+     * 堆内存第 column 列对时间（小时）的最小二乘斜率
+     */
+    private double slope( int column ) {
+        int n = heap.size();
+        if ( n < 2 ) {
+            return 0;
+        }
+        double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+        for ( double[] row : heap ) {
+            sumX += row[0];
+            sumY += row[column];
+            sumXY += row[0] * row[column];
+            sumXX += row[0] * row[0];
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        return denominator == 0 ? 0 : ( n * sumXY - sumX * sumY ) / denominator;
+    }
+
+    /**
+     * misfire 比例 = misfires / fires，没有触发时只要有 misfire 就是 1
+     */
+    private static double rate( long misfires, long fires ) {
+        if ( fires == 0 ) {
+            return misfires == 0 ? 0 : 1;
+        }
+        return (double) misfires / fires;
+    }
+
+    private static String format( String format, Object... args ) {
+        return String.format( Locale.ROOT, format, args );
+    }
+}
@@ -0,0 +1,202 @@
+package com.my.project.loadgen;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.my.project.metrics.Histogram;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * 采集 GC 停顿和堆内存
+ *
+ * <pre>
+ * GC 次数和总时间来自 GarbageCollectorMXBean，所有 JVM 都支持；
+ * 每次停顿的时长来自 HotSpot 的 GC 通知（com.sun.management），不支持时 maxPause 为 -1。
+ * 名称中带 Concurrent 或 Cycles 的收集器（G1 Concurrent GC、ZGC Cycles、Shenandoah Cycles）统计的是
+ * 与应用线程并发执行的周期，不是停顿，不计入。
+ *
+ * 堆内存同时记录当前使用量和上一次 GC 之后的使用量（MemoryPoolMXBean.getCollectionUsage 之和），
+ * 后者近似存活对象的大小，用于判断长时间运行时堆是否持续增长。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class RuntimeSampler {
+
+    private static final long                     MB            = 1024 * 1024;
+
+    private final List < GarbageCollectorMXBean > collectors    = new ArrayList < GarbageCollectorMXBean >();
+    private final List < MemoryPoolMXBean >       heapPools     = new ArrayList < MemoryPoolMXBean >();
+    private volatile Histogram                    pauses        = newPauses();
+    private final AtomicReference < AtomicLong >  windowMax     = new AtomicReference < AtomicLong >( new AtomicLong() );
+    private final boolean                         notifications;
+    private long                                  lastCount;
+    private long                                  lastTime;
+    private long                                  totalCount;
+    private long                                  totalTime;
+
+    public RuntimeSampler() {
+        for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() ) {
+            if ( isPause( collector.getName() ) ) {
+                collectors.add( collector );
+            }
+        }
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+            if ( pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() ) {
+                heapPools.add( pool );
+            }
+        }
+        notifications = listen();
+        lastCount = collectionCount();
+        lastTime = collectionTime();
+    }
+
+    private boolean listen() {
+        try {
+            NotificationListener listener = new NotificationListener() {
+
+                @Override
+                public void handleNotification( Notification notification, Object handback ) {
+                    if ( !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals( notification
+                            .getType() ) ) {
+                        return;
+                    }
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                            .from( (CompositeData) notification.getUserData() );
+                    if ( !isPause( info.getGcName() ) ) {
+                        return;
+                    }
+                    long duration = info.getGcInfo().getDuration();
+                    pauses.record( duration );
+                    AtomicLong max = windowMax.get();
+                    long current;
+                    while ( duration > ( current = max.get() ) ) {
+                        if ( max.compareAndSet( current, duration ) ) {
+                            break;
+                        }
+                    }
+                }
+            };
+            for ( GarbageCollectorMXBean collector : collectors ) {
+                ( (NotificationEmitter) collector ).addNotificationListener( listener, null, null );
+            }
+            return true;
+        } catch ( Throwable e ) {
+            // 非 HotSpot 的 JVM 没有 com.sun.management，只统计次数和总时间
+            return false;
+        }
+    }
+
+    private static boolean isPause( String collectorName ) {
+        return !collectorName.contains( "Concurrent" ) && !collectorName.contains( "Cycles" );
+    }
+
+    /**
+     * 丢弃到目前为止的统计（注册 Trigger 期间的 GC），从现在开始采样
+     */
+    void reset() {
+        lastCount = collectionCount();
+        lastTime = collectionTime();
+        totalCount = 0;
+        totalTime = 0;
+        pauses = newPauses();
+        windowMax.set( new AtomicLong() );
+    }
+
+    /**
+     * 结束当前采样区间，只由采样线程调用
+     */
+    Sample nextWindow() {
+        long count = collectionCount();
+        long time = collectionTime();
+        long maxPause = notifications ? windowMax.getAndSet( new AtomicLong() ).get() : -1;
+        Sample sample = new Sample( count - lastCount, time - lastTime, maxPause, ManagementFactory.getMemoryMXBean()
+                .getHeapMemoryUsage(), heapAfterGc() );
+        totalCount += count - lastCount;
+        totalTime += time - lastTime;
+        lastCount = count;
+        lastTime = time;
+        return sample;
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return 每次停顿的时长（毫秒），不支持 GC 通知时为 null
+     */
+    Histogram.Snapshot getPauses() {
+        return notifications ? pauses.snapshot() : null;
+    }
+
+    private static Histogram newPauses() {
+        return new Histogram( 600000, 5 );
+    }
+
+    private long collectionCount() {
+        long count = 0;
+        for ( GarbageCollectorMXBean collector : collectors ) {
+            count += Math.max( 0, collector.getCollectionCount() );
+        }
+        return count;
+    }
+
+    private long collectionTime() {
+        long time = 0;
+        for ( GarbageCollectorMXBean collector : collectors ) {
+            time += Math.max( 0, collector.getCollectionTime() );
+        }
+        return time;
+    }
+
+    private long heapAfterGc() {
+        long used = 0;
+        for ( MemoryPoolMXBean pool : heapPools ) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if ( usage != null ) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * 一个采样区间内的 GC 和采样时刻的堆内存，内存单位为 MB
+     */
+    static class Sample {
+
+        final long   gcCount;
+        final long   gcTimeMillis;
+        final long   gcMaxPauseMillis;
+        final double heapUsed;
+        final double heapCommitted;
+        final double heapAfterGc;
+
+        Sample( long gcCount, long gcTimeMillis, long gcMaxPauseMillis, MemoryUsage heap, long heapAfterGc ) {
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+            this.gcMaxPauseMillis = gcMaxPauseMillis;
+            this.heapUsed = (double) heap.getUsed() / MB;
+            this.heapCommitted = (double) heap.getCommitted() / MB;
+            this.heapAfterGc = (double) heapAfterGc / MB;
+        }
+    }
+}
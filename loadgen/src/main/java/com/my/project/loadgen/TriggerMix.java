@@ -0,0 +1,124 @@
+package com.my.project.loadgen;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.quartz.DailyTimeIntervalScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TimeOfDay;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+import com.my.project.quartz.cron.CompiledCronScheduleBuilder;
+
+/**
+ * 按比例生成 QuartzTest 中用到的三种 Trigger，每个 Trigger 每 period 秒触发一次
+ *
+ * <pre>
+ * 每个 Trigger 在周期内随机取一个偏移，使触发均匀分布，而不是集中在周期的同一时刻：
+ *   - CRON：与 QuartzTest 相同使用 CompiledCronScheduleBuilder，如 period = 60 时为 "s m/1 * * * ?"，
+ *     period 必须整除 1 分钟、1 小时或 1 天；
+ *   - SIMPLE：SimpleTrigger，repeatForever，开始时间为 start + 偏移（毫秒）；
+ *   - DAILY：DailyTimeIntervalTrigger，每天从偏移对应的时刻开始每 period 秒触发一次。
+ * 所有 Trigger 都使用默认的 misfire 策略（smart policy），与 QuartzTest 相同。
+ * 解析 CronExpression 比生成 Trigger 的其他部分慢一个数量级，一个周期内最多 period 种表达式，
+ * 相同表达式的 Trigger 共享一个 CronExpression（只读；Quartz 的 JobStore 保存 Trigger 时仍会各自复制）。
+ * Trigger 的 group 为类型名（cron, simple, daily）。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class TriggerMix {
+
+    public enum Kind {
+        CRON, SIMPLE, DAILY
+    }
+
+    private final Kind[]                                      sequence;
+    private final int                                         periodSeconds;
+    private final Date                                        start;
+    private final Random                                      random;
+    private final Map < String, CompiledCronScheduleBuilder > cronSchedules;
+
+    /**
+     * @param mix 类型名到权重的映射
+     * @param start 第一次触发不早于该时间
+     */
+    public TriggerMix( Map < String, Integer > mix, int periodSeconds, Date start, long seed ) {
+        List < Kind > kinds = new ArrayList < Kind >();
+        for ( Map.Entry < String, Integer > entry : mix.entrySet() ) {
+            Kind kind = Kind.valueOf( entry.getKey().toUpperCase() );
+            for ( int i = 0; i < entry.getValue(); i++ ) {
+                kinds.add( kind );
+            }
+        }
+        if ( kinds.isEmpty() ) {
+            throw new IllegalArgumentException( "Empty trigger mix: " + mix );
+        }
+        this.sequence = kinds.toArray( new Kind[kinds.size()] );
+        this.periodSeconds = periodSeconds;
+        this.start = start;
+        this.random = new Random( seed );
+        this.cronSchedules = new HashMap < String, CompiledCronScheduleBuilder >();
+        if ( kinds.contains( Kind.CRON ) ) {
+            cronExpression( 0 );
+        }
+    }
+
+    /**
+     * 生成第 index 个 Trigger，需要按 index 递增的顺序调用才能保证相同的种子生成相同的 Trigger
+     */
+    public Trigger next( int index ) {
+        Kind kind = sequence[index % sequence.length];
+        TriggerBuilder < Trigger > builder = TriggerBuilder.newTrigger().withIdentity( "t" + index,
+                kind.name().toLowerCase() );
+        switch ( kind ) {
+        case CRON:
+            String expression = cronExpression( random.nextInt( periodSeconds ) );
+            CompiledCronScheduleBuilder schedule = cronSchedules.get( expression );
+            if ( schedule == null ) {
+                schedule = CompiledCronScheduleBuilder.cronSchedule( expression );
+                cronSchedules.put( expression, schedule );
+            }
+            return builder.startAt( start ).withSchedule( schedule ).build();
+        case SIMPLE:
+            long periodMillis = periodSeconds * 1000L;
+            long offset = (long) ( random.nextDouble() * periodMillis );
+            return builder.startAt( new Date( start.getTime() + offset ) )
+                    .withSchedule( SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds( periodMillis )
+                            .repeatForever() ).build();
+        default:
+            int second = random.nextInt( Math.min( periodSeconds, 86400 ) );
+            return builder.startAt( start )
+                    .withSchedule( DailyTimeIntervalScheduleBuilder.dailyTimeIntervalSchedule()
+                            .withIntervalInSeconds( periodSeconds )
+                            .startingDailyAt( new TimeOfDay( second / 3600, second / 60 % 60, second % 60 ) ) )
+                    .build();
+        }
+    }
+
+    /**
+     * @param offset 周期内的偏移，秒
+     */
+    String cronExpression( int offset ) {
+        int p = periodSeconds;
+        if ( p < 60 && 60 % p == 0 ) {
+            return field( offset, p, 60 ) + " * * * * ?";
+        } else if ( p % 60 == 0 && 3600 % p == 0 ) {
+            return offset % 60 + " " + field( offset / 60, p / 60, 60 ) + " * * * ?";
+        } else if ( p % 3600 == 0 && 86400 % p == 0 ) {
+            return offset % 60 + " " + offset / 60 % 60 + " " + field( offset / 3600, p / 3600, 24 ) + " * * ?";
+        }
+        throw new IllegalArgumentException( "Cron triggers need a period that divides a minute, an hour or a day: "
+                + p );
+    }
+
+    private static String field( int value, int step, int range ) {
+        return step == range ? String.valueOf( value ) : value + "/" + step;
+    }
+}
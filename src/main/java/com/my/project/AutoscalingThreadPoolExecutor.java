@@ -0,0 +1,434 @@
+package com.my.project;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根据队列深度和任务耗时自动调整线程数、队列有界的 PausableThreadPoolExecutor
+ *
+ * <pre>
+ * PausableThreadPoolExecutor 默认使用无界队列，线程数永远停留在 corePoolSize，突发任务全部堆积在队列中。
+ * 本类使用容量为 queueCapacity 的 ArrayBlockingQueue，并由一个后台线程每隔 scaleInterval 调整 corePoolSize：
+ *
+ *   需要的线程数 = 正在执行任务的线程数 / targetUtilisation
+ *               + 队列中的任务数 × 平均任务耗时 / targetQueueLatency
+ *
+ * 需要的线程数大于当前值时立即扩容（不超过 maxThreads），连续 scaleDownTicks 次小于当前值时缩容，
+ * 每次缩小一半差距（不低于 minThreads）。暂停期间不做调整。
+ *
+ * 队列已满且线程数已达上限时按 BackpressurePolicy 处理新任务；被丢弃的任务如果是 Future 会被取消，
+ * 调用 get() 的线程会得到 CancellationException。线程池暂停时 worker 不取新任务，队列满了之后同样按策略处理，
+ * 只是 CALLER_RUNS 改为阻塞提交线程，避免任务绕过暂停。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class AutoscalingThreadPoolExecutor extends PausableThreadPoolExecutor {
+
+    private static final AtomicInteger      POOL_SEQ           = new AtomicInteger();
+
+    private final int                       minThreads;
+    private final int                       maxThreads;
+    private final int                       queueCapacity;
+    private final BackpressurePolicy        policy;
+    private final ScheduledExecutorService  scaler;
+    private volatile double                 targetUtilisation  = 0.75;
+    private volatile long                   targetQueueLatency = TimeUnit.MILLISECONDS.toNanos( 100 );
+    private volatile int                    scaleDownTicks     = 10;
+
+    private final ThreadLocal < long[] >    taskStart          = new ThreadLocal < long[] >() {
+
+                                                                   @Override
+                                                                   protected long[] initialValue() {
+                                                                       return new long[1];
+                                                                   }
+                                                               };
+    private final LongAdder                 busyNanos          = new LongAdder();
+    private final LongAdder                 completed          = new LongAdder();
+    private final AtomicLong                shed               = new AtomicLong();
+    private final AtomicLong                rejected           = new AtomicLong();
+    private final AtomicLong                callerRuns         = new AtomicLong();
+    private final AtomicLong                blocked            = new AtomicLong();
+    private final AtomicLong                scaleUps           = new AtomicLong();
+    private final AtomicLong                scaleDowns         = new AtomicLong();
+    private volatile int                    peakQueueDepth;
+    private volatile double                 utilisation;
+    private volatile long                   averageTaskNanos;
+
+    /** 以下字段只在 scaler 线程中访问 */
+    private long                            lastTick;
+    private long                            lastBusyNanos;
+    private long                            lastCompleted;
+    private int                             lowTicks;
+
+    public AutoscalingThreadPoolExecutor( int minThreads, int maxThreads, int queueCapacity, BackpressurePolicy policy ) {
+        this( minThreads, maxThreads, queueCapacity, policy, 100, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * @param minThreads 最少线程数，也是初始线程数
+     * @param maxThreads 最多线程数
+     * @param queueCapacity 队列容量
+     * @param policy 队列已满时的处理方式
+     * @param scaleInterval 调整线程数的间隔
+     */
+    public AutoscalingThreadPoolExecutor( int minThreads, int maxThreads, int queueCapacity,
+            BackpressurePolicy policy, long scaleInterval, TimeUnit unit ) {
+        super( minThreads, maxThreads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue < Runnable >( queueCapacity ) );
+        if ( minThreads < 1 || maxThreads < minThreads ) {
+            throw new IllegalArgumentException( "minThreads=" + minThreads + " maxThreads=" + maxThreads );
+        }
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        setRejectedExecutionHandler( new Backpressure() );
+
+        final String name = "autoscaler-" + POOL_SEQ.incrementAndGet();
+        scaler = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, name );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        lastTick = System.nanoTime();
+        scaler.scheduleWithFixedDelay( new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    rescale();
+                } catch ( RuntimeException e ) {
+                    // 不能让异常终止定时任务
+                    Thread t = Thread.currentThread();
+                    t.getUncaughtExceptionHandler().uncaughtException( t, e );
+                }
+            }
+        }, scaleInterval, scaleInterval, unit );
+    }
+
+    /**
+     * 实现这个接口的任务在 SHED_BY_PRIORITY 策略下按优先级丢弃，值越大越重要；其他任务的优先级为 0
+     */
+    public interface Prioritized {
+
+        int getPriority();
+    }
+
+    /**
+     * 目标利用率（正在执行任务的线程数 / 线程数），默认为 0.75
+     */
+    public void setTargetUtilisation( double targetUtilisation ) {
+        if ( targetUtilisation <= 0 || targetUtilisation > 1 ) {
+            throw new IllegalArgumentException( "targetUtilisation must be in (0, 1]: " + targetUtilisation );
+        }
+        this.targetUtilisation = targetUtilisation;
+    }
+
+    /**
+     * 希望任务在队列中等待的最长时间，默认为 100 毫秒
+     */
+    public void setTargetQueueLatency( long latency, TimeUnit unit ) {
+        this.targetQueueLatency = Math.max( 1, unit.toNanos( latency ) );
+    }
+
+    /**
+     * 连续多少次调整时需要的线程数都小于当前值才缩容，默认为 10
+     */
+    public void setScaleDownTicks( int scaleDownTicks ) {
+        this.scaleDownTicks = Math.max( 1, scaleDownTicks );
+    }
+
+    public BackpressurePolicy getBackpressurePolicy() {
+        return policy;
+    }
+
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return 观察到的最大队列深度（每次调整线程数时采样，队列满时记为容量）
+     */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    /**
+     * @return SHED_OLDEST / SHED_BY_PRIORITY 策略丢弃的任务数
+     */
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    /**
+     * @return 因为线程池已关闭、或者等待队列空位时被中断而拒绝的任务数
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return CALLER_RUNS 策略由提交线程执行的任务数
+     */
+    public long getCallerRunsCount() {
+        return callerRuns.get();
+    }
+
+    /**
+     * @return BLOCK 策略阻塞提交线程的次数
+     */
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    public long getScaleUpCount() {
+        return scaleUps.get();
+    }
+
+    public long getScaleDownCount() {
+        return scaleDowns.get();
+    }
+
+    /**
+     * @return 最近一次调整时的利用率
+     */
+    public double getUtilisation() {
+        return utilisation;
+    }
+
+    /**
+     * @return 最近一个调整间隔内任务的平均耗时（纳秒）
+     */
+    public long getAverageTaskNanos() {
+        return averageTaskNanos;
+    }
+
+    @Override
+    protected void beforeExecute( Thread t, Runnable r ) {
+        // 暂停时 super.beforeExecute 会一直等待，等待的时间不计入任务耗时
+        super.beforeExecute( t, r );
+        taskStart.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    protected void afterExecute( Runnable r, Throwable t ) {
+        busyNanos.add( System.nanoTime() - taskStart.get()[0] );
+        completed.increment();
+        super.afterExecute( r, t );
+    }
+
+    @Override
+    protected void terminated() {
+        scaler.shutdownNow();
+        super.terminated();
+    }
+
+    @Override
+    protected < T > RunnableFuture < T > newTaskFor( Callable < T > callable ) {
+        if ( callable instanceof Prioritized ) {
+            return new PrioritizedFutureTask < T >( callable, ( (Prioritized) callable ).getPriority() );
+        }
+        return super.newTaskFor( callable );
+    }
+
+    @Override
+    protected < T > RunnableFuture < T > newTaskFor( Runnable runnable, T value ) {
+        if ( runnable instanceof Prioritized ) {
+            return new PrioritizedFutureTask < T >( runnable, value, ( (Prioritized) runnable ).getPriority() );
+        }
+        return super.newTaskFor( runnable, value );
+    }
+
+    /**
+     * 根据最近一个间隔的利用率、任务耗时和队列深度调整 corePoolSize
+     */
+    void rescale() {
+        long now = System.nanoTime();
+        long busy = busyNanos.sum();
+        long done = completed.sum();
+        long elapsed = now - lastTick;
+        long busyDelta = busy - lastBusyNanos;
+        long doneDelta = done - lastCompleted;
+        lastTick = now;
+        lastBusyNanos = busy;
+        lastCompleted = done;
+
+        int depth = getQueue().size();
+        if ( depth > peakQueueDepth ) {
+            peakQueueDepth = depth;
+        }
+        if ( doneDelta > 0 ) {
+            averageTaskNanos = busyDelta / doneDelta;
+        }
+        if ( isPaused() || isShutdown() || elapsed <= 0 ) {
+            lowTicks = 0;
+            return;
+        }
+
+        int poolSize = Math.max( 1, getPoolSize() );
+        int active = getActiveCount();
+        // 已完成任务的耗时占比，加上仍在执行的任务（长任务在完成之前不会计入 busyNanos）
+        utilisation = Math.min( 1.0, Math.max( (double) busyDelta / ( elapsed * (double) poolSize ), (double) active
+                / poolSize ) );
+
+        double demand = utilisation * poolSize / targetUtilisation;
+        if ( depth > 0 ) {
+            long service = averageTaskNanos;
+            demand += service > 0 ? (double) depth * service / targetQueueLatency : 1;
+        }
+        int desired = (int) Math.min( maxThreads, Math.max( minThreads, Math.ceil( demand ) ) );
+        int core = getCorePoolSize();
+        if ( desired > core ) {
+            // 增大 corePoolSize 时 ThreadPoolExecutor 会立即为队列中的任务启动新线程
+            setCorePoolSize( desired );
+            scaleUps.incrementAndGet();
+            lowTicks = 0;
+        } else if ( desired < core ) {
+            if ( ++lowTicks >= scaleDownTicks ) {
+                // 每次缩小一半差距，避免负载短暂回落时一次缩得太多
+                setCorePoolSize( core - Math.max( 1, ( core - desired ) / 2 ) );
+                scaleDowns.incrementAndGet();
+                lowTicks = 0;
+            }
+        } else {
+            lowTicks = 0;
+        }
+    }
+
+    private static int priorityOf( Runnable r ) {
+        return r instanceof Prioritized ? ( (Prioritized) r ).getPriority() : 0;
+    }
+
+    private void shed( Runnable r ) {
+        shed.incrementAndGet();
+        if ( r instanceof Future ) {
+            ( (Future < ? >) r ).cancel( false );
+        }
+    }
+
+    private RejectedExecutionException reject( Runnable r, String reason ) {
+        rejected.incrementAndGet();
+        return new RejectedExecutionException( "Task " + r + " rejected from " + this + ": " + reason );
+    }
+
+    /**
+     * 队列已满且线程数已达上限（或者线程池已关闭）时由 ThreadPoolExecutor 调用
+     */
+    private final class Backpressure implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution( Runnable r, ThreadPoolExecutor executor ) {
+            if ( isShutdown() ) {
+                throw reject( r, "shutdown" );
+            }
+            peakQueueDepth = queueCapacity;
+            BlockingQueue < Runnable > queue = getQueue();
+            // 暂停时由提交线程执行会绕过暂停，改为阻塞等待
+            BackpressurePolicy effective = policy == BackpressurePolicy.CALLER_RUNS && isPaused() ? BackpressurePolicy.BLOCK
+                    : policy;
+            switch ( effective ) {
+                case BLOCK:
+                    blocked.incrementAndGet();
+                    try {
+                        queue.put( r );
+                    } catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                        throw reject( r, "interrupted while waiting for queue space" );
+                    }
+                    // 等待期间线程池被关闭，任务可能永远不会执行
+                    if ( isShutdown() && queue.remove( r ) ) {
+                        throw reject( r, "shutdown" );
+                    }
+                    break;
+                case SHED_OLDEST:
+                    while ( !queue.offer( r ) ) {
+                        if ( isShutdown() ) {
+                            throw reject( r, "shutdown" );
+                        }
+                        Runnable oldest = queue.poll();
+                        if ( oldest != null ) {
+                            shed( oldest );
+                        }
+                    }
+                    break;
+                case SHED_BY_PRIORITY:
+                    shedByPriority( r, queue );
+                    break;
+                default:
+                    callerRuns.incrementAndGet();
+                    r.run();
+                    break;
+            }
+        }
+
+        /**
+         * 找出队列中优先级最低的任务，比新任务低时替换它，否则丢弃新任务。只在队列满时扫描一次队列
+         */
+        private synchronized void shedByPriority( Runnable r, BlockingQueue < Runnable > queue ) {
+            int priority = priorityOf( r );
+            while ( !queue.offer( r ) ) {
+                Runnable victim = null;
+                int lowest = priority;
+                for ( Iterator < Runnable > it = queue.iterator(); it.hasNext(); ) {
+                    Runnable queued = it.next();
+                    int p = priorityOf( queued );
+                    if ( p < lowest ) {
+                        lowest = p;
+                        victim = queued;
+                    }
+                }
+                if ( victim == null ) {
+                    shed( r );
+                    return;
+                }
+                if ( queue.remove( victim ) ) {
+                    shed( victim );
+                }
+            }
+        }
+    }
+
+    private static final class PrioritizedFutureTask < T > extends FutureTask < T > implements Prioritized {
+
+        private final int priority;
+
+        PrioritizedFutureTask( Callable < T > callable, int priority ) {
+            super( callable );
+            this.priority = priority;
+        }
+
+        PrioritizedFutureTask( Runnable runnable, T value, int priority ) {
+            super( runnable, value );
+            this.priority = priority;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.my.project;
+
+/**
+ * AutoscalingThreadPoolExecutor 的队列已满、线程数已达上限时如何处理新任务
+ *
+ * @author yang.dongdong
+ *
+ */
+public enum BackpressurePolicy {
+
+    /** 阻塞提交任务的线程，直到队列有空位（线程池暂停时会一直阻塞到恢复） */
+    BLOCK,
+
+    /** 丢弃队列中最早的任务，再放入新任务 */
+    SHED_OLDEST,
+
+    /**
+     * 丢弃队列中优先级最低的任务（见 AutoscalingThreadPoolExecutor.Prioritized），
+     * 新任务的优先级不高于它时丢弃新任务
+     */
+    SHED_BY_PRIORITY,
+
+    /** 由提交任务的线程直接执行 */
+    CALLER_RUNS
+}
@@ -0,0 +1,25 @@
+package com.my.project;
+
+/**
+ * 固定频率的任务一次执行超过周期（overrun）时如何处理错过的周期
+ *
+ * <pre>
+ * ScheduledThreadPoolExecutor.scheduleAtFixedRate 在执行结束后立即补上所有错过的周期，
+ * 依赖变慢一次就会产生一串背靠背的执行；Quartz 在 misfireThreshold 之内也会逐个补触发。
+ * OverrunScheduler 和 OverrunGuard 按本策略处理，不再追赶。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public enum OverrunPolicy {
+
+    /** 丢弃错过的周期，在下一个周期时间点继续执行 */
+    SKIP,
+
+    /** 把错过的所有周期合并为一次，执行结束后立即补执行一次，之后回到原来的周期时间点 */
+    COALESCE,
+
+    /** 每个周期时间点都开始执行，同时执行的数量达到上限时丢弃该周期 */
+    OVERLAP
+}
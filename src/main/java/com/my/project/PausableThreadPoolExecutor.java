@@ -1,27 +1,78 @@
 package com.my.project;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
-class PausableThreadPoolExecutor extends ThreadPoolExecutor {
+/**
+ * 可以暂停、恢复的线程池
+ *
+ * <pre>
+ * 暂停状态保存在一个不可变的 Gate 对象中，未暂停时 gate 为 null。
+ * 因此 beforeExecute 的快速路径只有一次 volatile 读，既不加锁也不分配对象；
+ * 只有在暂停状态下，worker 才会进入加锁的慢速路径并等待 resume。
+ *
+ * 除了整体暂停，还支持按分组暂停：通过 execute(Runnable, Object) / submit(Callable, Object)
+ * 提交的任务带有分组标识，分组被暂停时这些任务会被挂起到分组的等待队列中，不占用 worker，
+ * 分组恢复后重新提交执行。
+ *
+ * shutdown() 会放行被暂停的分组：已经挂起的任务重新提交，之后轮到的任务不再挂起，全部执行完线程池才终止；
+ * shutdownNow() 返回的任务包括被挂起的任务。
+ * </pre>
+ */
+public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
 
-    private boolean       isPaused;
-    private ReentrantLock pauseLock = new ReentrantLock();
-    private Condition     unpaused  = pauseLock.newCondition();
+    /** 暂停状态，null 表示没有任何暂停 */
+    private volatile Gate                                          gate;
+    private final ReentrantLock                                    pauseLock   = new ReentrantLock();
+    private final Condition                                        unpaused    = pauseLock.newCondition();
+    private final Condition                                        parked      = pauseLock.newCondition();
+    /** 当前在 gate 上等待的 worker 数，只在 pauseLock 内修改 */
+    private int                                                    parkedCount;
+    /** 调用了 shutdown 或 shutdownNow，分组暂停不再生效 */
+    private volatile boolean                                       draining;
+    private final ConcurrentHashMap < Object, ConcurrentLinkedQueue < Runnable > > heldTasks = new ConcurrentHashMap < Object, ConcurrentLinkedQueue < Runnable > >();
 
+    /**
+     * 10 个线程、无界队列：队列无界时线程数不会超过 corePoolSize，所以两者相同
+     */
     public PausableThreadPoolExecutor() {
-        super( 10, 2, 3, TimeUnit.MILLISECONDS, new LinkedBlockingQueue < Runnable >() );
+        this( 10, 10, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue < Runnable >() );
+    }
+
+    public PausableThreadPoolExecutor( int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+            BlockingQueue < Runnable > workQueue ) {
+        super( corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue );
     }
 
     protected void beforeExecute( Thread t, Runnable r ) {
         super.beforeExecute( t, r );
+        Gate g = gate;
+        if ( g == null || !g.all ) {
+            return;
+        }
         pauseLock.lock();
         try {
-            while ( isPaused )
-                unpaused.await();
+            parkedCount++;
+            parked.signalAll();
+            try {
+                while ( gate != null && gate.all )
+                    unpaused.await();
+            } finally {
+                parkedCount--;
+            }
         } catch ( InterruptedException ie ) {
             t.interrupt();
         } finally {
@@ -32,7 +83,8 @@ class PausableThreadPoolExecutor extends ThreadPoolExecutor {
     public void pause() {
         pauseLock.lock();
         try {
-            isPaused = true;
+            Gate g = gate;
+            gate = new Gate( true, g == null ? Collections.emptySet() : g.groups );
         } finally {
             pauseLock.unlock();
         }
@@ -41,10 +93,203 @@ class PausableThreadPoolExecutor extends ThreadPoolExecutor {
     public void resume() {
         pauseLock.lock();
         try {
-            isPaused = false;
+            Gate g = gate;
+            gate = ( g == null || g.groups.isEmpty() ) ? null : new Gate( false, g.groups );
             unpaused.signalAll();
         } finally {
             pauseLock.unlock();
         }
     }
+
+    public boolean isPaused() {
+        Gate g = gate;
+        return g != null && g.all;
+    }
+
+    /**
+     * 暂停线程池，并等待正在执行的任务全部结束
+     *
+     * @return 超时之前所有正在执行的任务都已结束返回 true，否则返回 false（线程池仍保持暂停状态）
+     */
+    public boolean pauseAndAwaitQuiescence( long timeout, TimeUnit unit ) throws InterruptedException {
+        pause();
+        long deadline = System.nanoTime() + unit.toNanos( timeout );
+        pauseLock.lock();
+        try {
+            // getActiveCount 包含在 gate 上等待的 worker，减去之后就是仍在执行任务的 worker。
+            // 任务结束时不会发信号（否则快速路径需要加锁），所以这里定期重新检查。
+            while ( getActiveCount() - parkedCount > 0 ) {
+                long remaining = deadline - System.nanoTime();
+                if ( remaining <= 0 ) {
+                    return false;
+                }
+                parked.awaitNanos( Math.min( remaining, TimeUnit.MILLISECONDS.toNanos( 5 ) ) );
+            }
+            return true;
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * 暂停某个分组，已经开始执行的任务不受影响，之后轮到执行的任务会被挂起
+     */
+    public void pause( Object group ) {
+        pauseLock.lock();
+        try {
+            Gate g = gate;
+            Set < Object > groups = new HashSet < Object >( g == null ? Collections.emptySet() : g.groups );
+            groups.add( group );
+            gate = new Gate( g != null && g.all, Collections.unmodifiableSet( groups ) );
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * 恢复某个分组，并重新提交该分组被挂起的任务
+     */
+    public void resume( Object group ) {
+        pauseLock.lock();
+        try {
+            Gate g = gate;
+            if ( g == null || !g.groups.contains( group ) ) {
+                return;
+            }
+            Set < Object > groups = new HashSet < Object >( g.groups );
+            groups.remove( group );
+            gate = ( !g.all && groups.isEmpty() ) ? null : new Gate( g.all, Collections.unmodifiableSet( groups ) );
+        } finally {
+            pauseLock.unlock();
+        }
+        ConcurrentLinkedQueue < Runnable > held = heldTasks.get( group );
+        if ( held != null ) {
+            Runnable task;
+            // shutdown 之后由 shutdown 或 hold 负责执行
+            while ( !draining && ( task = held.poll() ) != null ) {
+                execute( task );
+            }
+        }
+    }
+
+    /**
+     * 重新提交所有被挂起的任务后再关闭，被暂停的分组中的任务也会执行
+     */
+    @Override
+    public void shutdown() {
+        draining = true;
+        for ( ConcurrentLinkedQueue < Runnable > held : heldTasks.values() ) {
+            Runnable task;
+            while ( ( task = held.poll() ) != null ) {
+                execute( task );
+            }
+        }
+        super.shutdown();
+    }
+
+    /**
+     * @return 队列中没有执行的任务，以及被暂停的分组挂起的任务
+     */
+    @Override
+    public List < Runnable > shutdownNow() {
+        draining = true;
+        List < Runnable > tasks = super.shutdownNow();
+        for ( ConcurrentLinkedQueue < Runnable > held : heldTasks.values() ) {
+            Runnable task;
+            while ( ( task = held.poll() ) != null ) {
+                tasks.add( task );
+            }
+        }
+        return tasks;
+    }
+
+    public boolean isPaused( Object group ) {
+        Gate g = gate;
+        return g != null && g.groups.contains( group );
+    }
+
+    /**
+     * @return 分组被暂停而挂起的任务数
+     */
+    public int getHeldTaskCount( Object group ) {
+        ConcurrentLinkedQueue < Runnable > held = heldTasks.get( group );
+        return held == null ? 0 : held.size();
+    }
+
+    /**
+     * 提交一个属于 group 分组的任务
+     */
+    public void execute( Runnable command, Object group ) {
+        if ( command == null || group == null ) {
+            throw new NullPointerException();
+        }
+        execute( new GroupedRunnable( command, group ) );
+    }
+
+    /**
+     * 提交一个属于 group 分组的任务
+     */
+    public < T > Future < T > submit( Callable < T > task, Object group ) {
+        if ( task == null || group == null ) {
+            throw new NullPointerException();
+        }
+        FutureTask < T > future = new FutureTask < T >( task );
+        execute( new GroupedRunnable( future, group ) );
+        return future;
+    }
+
+    private void hold( GroupedRunnable task ) {
+        ConcurrentLinkedQueue < Runnable > held = heldTasks.get( task.group );
+        if ( held == null ) {
+            ConcurrentLinkedQueue < Runnable > created = new ConcurrentLinkedQueue < Runnable >();
+            held = heldTasks.putIfAbsent( task.group, created );
+            if ( held == null ) {
+                held = created;
+            }
+        }
+        held.offer( task );
+        // shutdown 可能已经在挂起之前清空了等待队列，线程池不再接受任务，只能在当前 worker 中执行
+        if ( draining ) {
+            if ( held.remove( task ) ) {
+                task.task.run();
+            }
+            return;
+        }
+        // resume(group) 可能已经在挂起之前执行完毕，这时需要自己重新提交
+        if ( !isPaused( task.group ) && held.remove( task ) ) {
+            execute( task );
+        }
+    }
+
+    private static final class Gate {
+
+        final boolean        all;
+        final Set < Object > groups;
+
+        Gate( boolean all, Set < Object > groups ) {
+            this.all = all;
+            this.groups = groups;
+        }
+    }
+
+    private final class GroupedRunnable implements Runnable {
+
+        final Runnable task;
+        final Object   group;
+
+        GroupedRunnable( Runnable task, Object group ) {
+            this.task = task;
+            this.group = group;
+        }
+
+        @Override
+        public void run() {
+            Gate g = gate;
+            if ( g != null && g.groups.contains( group ) && !draining ) {
+                hold( this );
+                return;
+            }
+            task.run();
+        }
+    }
 }
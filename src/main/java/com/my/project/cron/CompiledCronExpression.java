@@ -0,0 +1,414 @@
+package com.my.project.cron;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Locale;
+
+/**
+ * 预编译的 Cron 表达式
+ *
+ * <pre>
+ * Quartz 的 CronExpression 用 TreeSet 保存每个字段的取值，每次计算下一次触发时间都要
+ * 遍历 TreeSet 并反复修改 java.util.Calendar。本类在构造时把每个字段编译成位图：
+ *
+ *   秒、分    -> long（第 0~59 位）
+ *   时        -> long（第 0~23 位）
+ *   日        -> long（第 1~31 位）
+ *   月        -> long（第 1~12 位）
+ *   星期      -> long（第 1~7 位，1 = 星期日，与 Quartz 一致）
+ *   年（可选）-> long[]（1970 ~ 2199）
+ *
+ * 计算下一次触发时间时，先把时间换算成本地时间的"秒数"，用 Long.numberOfTrailingZeros
+ * 直接找到下一个满足条件的秒/分/时，日期部分使用纯整数运算（不使用 Calendar），
+ * 整个过程不分配对象。时区偏移按 [from, until) 区间缓存，只有跨越夏令时切换点时才会重新计算。
+ *
+ * 支持的语法：* ? , - / 以及月份、星期的英文缩写，和 Quartz 一样要求日与星期中必须有一个为 ?。
+ * 不支持 L、W、#，遇到这些字符会抛出 ParseException。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class CompiledCronExpression {
+
+    public static final int         MIN_YEAR     = 1970;
+    public static final int         MAX_YEAR     = 2199;
+
+    private static final long       SECONDS_PER_DAY = 86400L;
+    private static final long       MAX_OFFSET   = 18 * 3600L;
+    private static final String[]   MONTH_NAMES  = { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP",
+            "OCT", "NOV", "DEC" };
+    private static final String[]   DAY_NAMES    = { "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT" };
+
+    private final String            expression;
+    private final long              seconds;
+    private final long              minutes;
+    private final long              hours;
+    private final long              daysOfMonth;
+    private final long              months;
+    private final long              daysOfWeek;
+    private final long[]            years;
+    /** 日字段为 ?，只按星期匹配 */
+    private final boolean           dayOfMonthAny;
+    /** 星期字段为 ?，只按日匹配 */
+    private final boolean           dayOfWeekAny;
+
+    /** 最近一次使用的时区偏移区间，只有跨越切换点时才重新分配 */
+    private volatile OffsetWindow   offsetWindow;
+
+    private CompiledCronExpression( String expression, long seconds, long minutes, long hours, long daysOfMonth,
+            long months, long daysOfWeek, long[] years, boolean dayOfMonthAny, boolean dayOfWeekAny ) {
+        this.expression = expression;
+        this.seconds = seconds;
+        this.minutes = minutes;
+        this.hours = hours;
+        this.daysOfMonth = daysOfMonth;
+        this.months = months;
+        this.daysOfWeek = daysOfWeek;
+        this.years = years;
+        this.dayOfMonthAny = dayOfMonthAny;
+        this.dayOfWeekAny = dayOfWeekAny;
+    }
+
+    /**
+     * 编译一个 Quartz 格式的 Cron 表达式，例如 "10 38 16 ? * TUE"
+     */
+    public static CompiledCronExpression compile( String expression ) throws ParseException {
+        if ( expression == null ) {
+            throw new ParseException( "Cron expression cannot be null", 0 );
+        }
+        String[] fields = expression.trim().toUpperCase( Locale.US ).split( "\\s+" );
+        if ( fields.length < 6 || fields.length > 7 ) {
+            throw new ParseException( "Cron expression must have 6 or 7 fields: " + expression, 0 );
+        }
+        boolean domAny = "?".equals( fields[3] );
+        boolean dowAny = "?".equals( fields[5] );
+        if ( domAny == dowAny ) {
+            throw new ParseException(
+                    "Exactly one of day-of-month and day-of-week must be '?': " + expression, 0 );
+        }
+        long[] years = new long[( MAX_YEAR - MIN_YEAR ) / 64 + 1];
+        if ( fields.length == 7 ) {
+            parseField( fields[6], MIN_YEAR, MAX_YEAR, null, years, MIN_YEAR );
+        } else {
+            setRange( years, 0, MAX_YEAR - MIN_YEAR, 1 );
+        }
+        return new CompiledCronExpression( expression, parse( fields[0], 0, 59, null ), parse( fields[1], 0, 59, null ),
+                parse( fields[2], 0, 23, null ), domAny ? 0L : parse( fields[3], 1, 31, null ), parse( fields[4], 1,
+                        12, MONTH_NAMES ), dowAny ? 0L : parse( fields[5], 1, 7, DAY_NAMES ), years, domAny, dowAny );
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 计算 epochMillis 之后（不包含 epochMillis 所在的那一秒）的下一次触发时间，语义与
+     * CronExpression.getTimeAfter 相同
+     *
+     * @return 下一次触发时间的毫秒数，没有更多触发时间时返回 -1
+     */
+    public long nextFireAfter( long epochMillis, ZoneId zone ) {
+        long startSecond = Math.floorDiv( epochMillis, 1000L ) + 1;
+        long local = startSecond + offsetAt( zone, startSecond );
+        while ( true ) {
+            long candidate = nextLocal( local );
+            if ( candidate < 0 ) {
+                return -1;
+            }
+            // 本地时间换算回 UTC。偏移量不超过 ±18 小时，所以只需要检查前后 18 小时处的两个偏移量；
+            // 本地时间重复（夏令时结束）时与 java.util.Calendar 一样取较晚的那个时刻，
+            // 本地时间不存在（夏令时开始）时跳过
+            int before = offsetAt( zone, candidate - MAX_OFFSET );
+            int after = offsetAt( zone, candidate + MAX_OFFSET );
+            long epochSecond = -1;
+            if ( offsetAt( zone, candidate - after ) == after ) {
+                epochSecond = candidate - after;
+            }
+            if ( before != after && offsetAt( zone, candidate - before ) == before ) {
+                epochSecond = Math.max( epochSecond, candidate - before );
+            }
+            if ( epochSecond >= startSecond ) {
+                return epochSecond * 1000L;
+            }
+            local = candidate + 1;
+        }
+    }
+
+    /**
+     * 批量计算 epochMillis 之后的 out.length 个触发时间
+     *
+     * @return 实际写入 out 的个数
+     */
+    public int nextN( long epochMillis, ZoneId zone, long[] out ) {
+        long time = epochMillis;
+        for ( int i = 0; i < out.length; i++ ) {
+            time = nextFireAfter( time, zone );
+            if ( time < 0 ) {
+                return i;
+            }
+            out[i] = time;
+        }
+        return out.length;
+    }
+
+    /**
+     * 在本地时间（从 1970-01-01T00:00 起的秒数，不含时区）上查找不早于 local 的下一个匹配时刻
+     */
+    long nextLocal( long local ) {
+        long day = Math.floorDiv( local, SECONDS_PER_DAY );
+        int secondOfDay = (int) Math.floorMod( local, SECONDS_PER_DAY );
+        while ( true ) {
+            // 由天数计算年月日（Howard Hinnant 的 civil_from_days 算法）
+            long z = day + 719468;
+            long era = Math.floorDiv( z, 146097 );
+            long doe = z - era * 146097;
+            long yoe = ( doe - doe / 1460 + doe / 36524 - doe / 146096 ) / 365;
+            long doy = doe - ( 365 * yoe + yoe / 4 - yoe / 100 );
+            long mp = ( 5 * doy + 2 ) / 153;
+            int dayOfMonth = (int) ( doy - ( 153 * mp + 2 ) / 5 + 1 );
+            int month = (int) ( mp < 10 ? mp + 3 : mp - 9 );
+            int year = (int) ( yoe + era * 400 + ( month <= 2 ? 1 : 0 ) );
+
+            if ( year > MAX_YEAR ) {
+                return -1;
+            }
+            if ( year < MIN_YEAR ) {
+                day = daysFromCivil( MIN_YEAR, 1, 1 );
+                secondOfDay = 0;
+                continue;
+            }
+            if ( !isYearSet( year ) ) {
+                int next = nextYear( year + 1 );
+                if ( next < 0 ) {
+                    return -1;
+                }
+                day = daysFromCivil( next, 1, 1 );
+                secondOfDay = 0;
+                continue;
+            }
+            if ( ( months & ( 1L << month ) ) == 0 ) {
+                int next = nextBit( months, month + 1 );
+                day = next < 0 ? daysFromCivil( year + 1, 1, 1 ) : daysFromCivil( year, next, 1 );
+                secondOfDay = 0;
+                continue;
+            }
+            boolean dayMatches;
+            if ( dayOfWeekAny ) {
+                dayMatches = ( daysOfMonth & ( 1L << dayOfMonth ) ) != 0;
+            } else {
+                int dayOfWeek = (int) Math.floorMod( day + 4, 7 ) + 1;
+                dayMatches = ( daysOfWeek & ( 1L << dayOfWeek ) ) != 0;
+            }
+            if ( dayMatches ) {
+                int time = nextTimeOfDay( secondOfDay );
+                if ( time >= 0 ) {
+                    return day * SECONDS_PER_DAY + time;
+                }
+            }
+            day++;
+            secondOfDay = 0;
+        }
+    }
+
+    /**
+     * @return 不早于 secondOfDay 的第一个匹配的时分秒（一天中的秒数），当天没有则返回 -1
+     */
+    private int nextTimeOfDay( int secondOfDay ) {
+        int h = secondOfDay / 3600;
+        int m = secondOfDay / 60 % 60;
+        int s = secondOfDay % 60;
+        if ( ( hours & ( 1L << h ) ) == 0 ) {
+            h = nextBit( hours, h + 1 );
+            m = nextBit( minutes, 0 );
+            s = nextBit( seconds, 0 );
+        } else if ( ( minutes & ( 1L << m ) ) == 0 ) {
+            m = nextBit( minutes, m + 1 );
+            s = nextBit( seconds, 0 );
+            if ( m < 0 ) {
+                h = nextBit( hours, h + 1 );
+                m = nextBit( minutes, 0 );
+            }
+        } else {
+            s = nextBit( seconds, s );
+            if ( s < 0 ) {
+                s = nextBit( seconds, 0 );
+                m = nextBit( minutes, m + 1 );
+                if ( m < 0 ) {
+                    h = nextBit( hours, h + 1 );
+                    m = nextBit( minutes, 0 );
+                }
+            }
+        }
+        if ( h < 0 ) {
+            return -1;
+        }
+        return h * 3600 + m * 60 + s;
+    }
+
+    private boolean isYearSet( int year ) {
+        int i = year - MIN_YEAR;
+        return ( years[i >>> 6] & ( 1L << i ) ) != 0;
+    }
+
+    private int nextYear( int year ) {
+        for ( int i = year - MIN_YEAR; i <= MAX_YEAR - MIN_YEAR; ) {
+            long word = years[i >>> 6] & ( -1L << i );
+            if ( word != 0 ) {
+                return MIN_YEAR + ( ( i & ~63 ) | Long.numberOfTrailingZeros( word ) );
+            }
+            i = ( i & ~63 ) + 64;
+        }
+        return -1;
+    }
+
+    private int offsetAt( ZoneId zone, long epochSecond ) {
+        OffsetWindow window = offsetWindow;
+        if ( window != null && window.zone == zone && epochSecond >= window.from && epochSecond < window.until ) {
+            return window.offset;
+        }
+        window = OffsetWindow.of( zone, epochSecond );
+        offsetWindow = window;
+        return window.offset;
+    }
+
+    static long daysFromCivil( int year, int month, int dayOfMonth ) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv( y, 400 );
+        long yoe = y - era * 400;
+        long doy = ( 153 * ( month > 2 ? month - 3 : month + 9 ) + 2 ) / 5 + dayOfMonth - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int nextBit( long mask, int from ) {
+        if ( from > 63 ) {
+            return -1;
+        }
+        long word = mask & ( -1L << from );
+        return word == 0 ? -1 : Long.numberOfTrailingZeros( word );
+    }
+
+    private static long parse( String field, int min, int max, String[] names ) throws ParseException {
+        long[] bits = new long[1];
+        parseField( field, min, max, names, bits, 0 );
+        return bits[0];
+    }
+
+    /**
+     * 解析一个字段，把匹配的值 v 写入 bits 的第 (v - base) 位
+     */
+    private static void parseField( String field, int min, int max, String[] names, long[] bits, int base )
+            throws ParseException {
+        for ( String part : field.split( "," ) ) {
+            if ( part.isEmpty() ) {
+                throw new ParseException( "Empty value in cron field: " + field, 0 );
+            }
+            String symbols = part;
+            if ( names != null ) {
+                for ( String name : names ) {
+                    symbols = symbols.replace( name, "" );
+                }
+            }
+            if ( symbols.indexOf( 'L' ) >= 0 || symbols.indexOf( 'W' ) >= 0 || symbols.indexOf( '#' ) >= 0 ) {
+                throw new ParseException( "L, W and # are not supported by the compiled evaluator: " + field, 0 );
+            }
+            int step = 1;
+            int slash = part.indexOf( '/' );
+            String range = part;
+            if ( slash >= 0 ) {
+                step = parseNumber( part.substring( slash + 1 ), 1, max, null );
+                range = part.substring( 0, slash );
+            }
+            int from;
+            int to;
+            if ( "*".equals( range ) ) {
+                from = min;
+                to = max;
+            } else {
+                int dash = range.indexOf( '-' );
+                if ( dash >= 0 ) {
+                    from = parseNumber( range.substring( 0, dash ), min, max, names );
+                    to = parseNumber( range.substring( dash + 1 ), min, max, names );
+                } else {
+                    from = parseNumber( range, min, max, names );
+                    // "a/n" 表示从 a 开始到最大值，每隔 n
+                    to = slash >= 0 ? max : from;
+                }
+            }
+            // from > to 表示跨越最大值的范围，例如小时 22-2
+            int span = max - min + 1;
+            int length = from <= to ? to - from : to + span - from;
+            for ( int k = 0; k <= length; k += step ) {
+                int value = from + k > max ? from + k - span : from + k;
+                setRange( bits, value - base, value - base, 1 );
+            }
+        }
+    }
+
+    private static int parseNumber( String text, int min, int max, String[] names ) throws ParseException {
+        if ( names != null ) {
+            for ( int i = 0; i < names.length; i++ ) {
+                if ( names[i].equals( text ) ) {
+                    return i + 1;
+                }
+            }
+        }
+        int value;
+        try {
+            value = Integer.parseInt( text );
+        } catch ( NumberFormatException e ) {
+            throw new ParseException( "Invalid cron value: " + text, 0 );
+        }
+        if ( value < min || value > max ) {
+            throw new ParseException( "Cron value " + value + " out of range [" + min + ", " + max + "]", 0 );
+        }
+        return value;
+    }
+
+    private static void setRange( long[] bits, int from, int to, int step ) {
+        for ( int i = from; i <= to; i += step ) {
+            bits[i >>> 6] |= 1L << i;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * 一段偏移量不变的时间区间 [from, until)，单位为秒
+     */
+    private static final class OffsetWindow {
+
+        final ZoneId zone;
+        final long   from;
+        final long   until;
+        final int    offset;
+
+        OffsetWindow( ZoneId zone, long from, long until, int offset ) {
+            this.zone = zone;
+            this.from = from;
+            this.until = until;
+            this.offset = offset;
+        }
+
+        static OffsetWindow of( ZoneId zone, long epochSecond ) {
+            ZoneRules rules = zone.getRules();
+            Instant instant = Instant.ofEpochSecond( epochSecond );
+            ZoneOffset offset = rules.getOffset( instant );
+            if ( rules.isFixedOffset() ) {
+                return new OffsetWindow( zone, Long.MIN_VALUE, Long.MAX_VALUE, offset.getTotalSeconds() );
+            }
+            ZoneOffsetTransition previous = rules.previousTransition( instant.plusSeconds( 1 ) );
+            ZoneOffsetTransition next = rules.nextTransition( instant );
+            return new OffsetWindow( zone, previous == null ? Long.MIN_VALUE : previous.toEpochSecond(),
+                    next == null ? Long.MAX_VALUE : next.toEpochSecond(), offset.getTotalSeconds() );
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.my.project.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单写者、单读者的执行事件环形缓冲区
+ *
+ * <pre>
+ * 每个事件由几个基本类型字段组成，分别保存在预先分配好的数组中（按列存储），
+ * 写入时只有数组赋值和一次 lazySet，不分配对象，也不加锁。
+ *
+ * 写者是拥有该缓冲区的线程，读者是 ExecutionEvents 的后台线程；
+ * 缓冲区满时丢弃新事件并计数，绝不阻塞写者。
+ * 线程的名称、优先级和线程组在创建缓冲区时记录一次，不再随每个事件保存。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class EventRing {
+
+    private final int        mask;
+    private final int[]      jobIds;
+    private final int[]      outcomes;
+    private final long[]     timestamps;
+    private final long[]     durations;
+    /** 下一个写入位置，只有写者修改 */
+    private final AtomicLong head    = new AtomicLong();
+    /** 下一个读取位置，只有读者修改 */
+    private final AtomicLong tail    = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread     owner;
+    private final long       threadId;
+    private final String     threadName;
+    private final int        threadPriority;
+    private final String     threadGroupName;
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    EventRing( Thread owner, int capacity ) {
+        int size = Integer.highestOneBit( Math.max( 2, capacity - 1 ) ) << 1;
+        this.mask = size - 1;
+        this.jobIds = new int[size];
+        this.outcomes = new int[size];
+        this.timestamps = new long[size];
+        this.durations = new long[size];
+        this.owner = owner;
+        this.threadId = owner.getId();
+        this.threadName = owner.getName();
+        this.threadPriority = owner.getPriority();
+        ThreadGroup group = owner.getThreadGroup();
+        this.threadGroupName = group == null ? "" : group.getName();
+    }
+
+    /**
+     * 写入一个事件，只能由 owner 线程调用
+     *
+     * @return 缓冲区已满时返回 false
+     */
+    boolean offer( int jobId, int outcome, long timestamp, long duration ) {
+        long h = head.get();
+        if ( h - tail.get() > mask ) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int index = (int) h & mask;
+        jobIds[index] = jobId;
+        outcomes[index] = outcome;
+        timestamps[index] = timestamp;
+        durations[index] = duration;
+        // 先写字段再发布 head，读者看到新的 head 时字段一定已经可见
+        head.lazySet( h + 1 );
+        return true;
+    }
+
+    /**
+     * 读出所有已发布的事件，只能由读者线程调用
+     *
+     * @return 读出的事件数
+     */
+    int drainTo( Handler handler ) {
+        long t = tail.get();
+        long h = head.get();
+        for ( long i = t; i < h; i++ ) {
+            int index = (int) i & mask;
+            handler.onEvent( this, jobIds[index], outcomes[index], timestamps[index], durations[index] );
+        }
+        // 读完之后才归还位置，写者不会覆盖正在读的事件
+        tail.lazySet( h );
+        return (int) ( h - t );
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * @return 读取并清零丢弃的事件数
+     */
+    long takeDropped() {
+        return dropped.get() == 0 ? 0 : dropped.getAndSet( 0 );
+    }
+
+    Thread getOwner() {
+        return owner;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public int getThreadPriority() {
+        return threadPriority;
+    }
+
+    public String getThreadGroupName() {
+        return threadGroupName;
+    }
+
+    /**
+     * 事件的处理方法，由读者线程调用
+     */
+    interface Handler {
+
+        void onEvent( EventRing ring, int jobId, int outcome, long timestamp, long duration );
+    }
+}
@@ -0,0 +1,230 @@
+package com.my.project.event;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * 执行事件：任务执行时只记录基本类型字段，由后台线程批量格式化并输出到 log4j
+ *
+ * <pre>
+ * 原来每次执行任务都要 new Date() 并调用 String.format 拼接线程名、线程组等信息，
+ * 这些分配和格式化都发生在触发路径上。现在任务只需要：
+ *
+ *   private final int jobId = ExecutionEvents.register( "job1" );  // 同一个名称总是得到同一个 jobId
+ *   ...
+ *   ExecutionEvents.publish( jobId, ExecutionEvents.SUCCESS );      // 每次执行时发布事件
+ *
+ * publish 把 jobId、结果、时间戳写入当前线程自己的 EventRing（单写者，不加锁，不分配对象），
+ * 名为 execution-event-drainer 的守护线程每隔 drainIntervalMillis 毫秒读出所有缓冲区，
+ * 按原来的格式渲染后输出到名为 com.my.project.event.ExecutionEvents 的 Logger：
+ *
+ *   [pool-1-thread-1, 5, main, 2016-03-01 16:38:10] execute job1 (SUCCESS, 12us)
+ *
+ * 缓冲区满时丢弃事件并在下一批输出时告警。程序退出前可以调用 flush 输出剩余的事件。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class ExecutionEvents {
+
+    public static final int  SUCCESS               = 0;
+    public static final int  FAILURE               = 1;
+    public static final int  VETOED                = 2;
+
+    /** 每个线程的缓冲区容量，可以用系统属性 executionEvents.ringCapacity 修改 */
+    static final int         RING_CAPACITY         = Integer.getInteger( "executionEvents.ringCapacity", 1024 );
+    /** 后台线程的输出间隔，可以用系统属性 executionEvents.drainIntervalMillis 修改 */
+    static final long        DRAIN_INTERVAL_MILLIS = Long.getLong( "executionEvents.drainIntervalMillis", 100L );
+
+    private static final Logger                            logger    = Logger.getLogger( ExecutionEvents.class );
+    private static final String[]                          OUTCOMES  = { "SUCCESS", "FAILURE", "VETOED" };
+    private static final ThreadLocal < EventRing >         RINGS     = new RingLocal();
+    private static final List < EventRing >                ALL_RINGS = new CopyOnWriteArrayList < EventRing >();
+    private static final ConcurrentMap < Object, Integer > IDS       = new ConcurrentHashMap < Object, Integer >();
+    private static final Renderer                          RENDERER  = new Renderer();
+    private static volatile String[]                       names     = new String[16];
+    private static int                                     nameCount;
+    private static Thread                                  drainer;
+
+    private ExecutionEvents() {
+    }
+
+    /**
+     * 注册一个任务名称，同一个名称只注册一次
+     *
+     * @return 用于 publish 的 jobId，重复注册时返回同一个 jobId
+     */
+    public static int register( String name ) {
+        return register( name, name );
+    }
+
+    /**
+     * 为 key（例如 JobKey）注册名称，同一个 key 只注册一次
+     *
+     * @return 用于 publish 的 jobId
+     */
+    public static int register( Object key, String name ) {
+        Integer id = IDS.get( key );
+        if ( id != null ) {
+            return id;
+        }
+        synchronized ( IDS ) {
+            id = IDS.get( key );
+            if ( id == null ) {
+                if ( nameCount == names.length ) {
+                    names = Arrays.copyOf( names, nameCount * 2 );
+                }
+                names[nameCount] = name;
+                id = nameCount++;
+                IDS.put( key, id );
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return key 对应的 jobId，没有注册过时返回 -1
+     */
+    public static int lookup( Object key ) {
+        Integer id = IDS.get( key );
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * 发布一个执行事件，时间戳为当前时间
+     */
+    public static void publish( int jobId, int outcome ) {
+        RINGS.get().offer( jobId, outcome, System.currentTimeMillis(), -1 );
+    }
+
+    /**
+     * 发布一个执行事件
+     *
+     * @param startNanos 任务开始时的 System.nanoTime()，用于计算执行时间
+     */
+    public static void publish( int jobId, int outcome, long startNanos ) {
+        RINGS.get().offer( jobId, outcome, System.currentTimeMillis(), System.nanoTime() - startNanos );
+    }
+
+    /**
+     * 立即输出所有缓冲区中的事件
+     */
+    public static void flush() {
+        drain();
+    }
+
+    private static synchronized EventRing newRing( Thread thread ) {
+        EventRing ring = new EventRing( thread, RING_CAPACITY );
+        ALL_RINGS.add( ring );
+        if ( drainer == null ) {
+            drainer = new Thread( new Runnable() {
+
+                @Override
+                public void run() {
+                    while ( true ) {
+                        LockSupport.parkNanos( DRAIN_INTERVAL_MILLIS * 1000000L );
+                        try {
+                            drain();
+                        } catch ( Throwable t ) {
+                            logger.error( "Failed to drain execution events", t );
+                        }
+                    }
+                }
+            }, "execution-event-drainer" );
+            drainer.setDaemon( true );
+            drainer.start();
+        }
+        return ring;
+    }
+
+    private static void drain() {
+        // 每个缓冲区只能有一个读者，后台线程和 flush 互斥
+        synchronized ( RENDERER ) {
+            RENDERER.drainAll();
+        }
+    }
+
+    /**
+     * 第一次在某个线程中发布事件时创建该线程的缓冲区
+     */
+    private static final class RingLocal extends ThreadLocal < EventRing > {
+
+        @Override
+        protected EventRing initialValue() {
+            return newRing( Thread.currentThread() );
+        }
+    }
+
+    /**
+     * 只在持有自身的锁时使用，格式化用的对象可以复用
+     */
+    private static final class Renderer implements EventRing.Handler {
+
+        private final SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" );
+        private final Date             date   = new Date();
+        private final StringBuilder    batch  = new StringBuilder( 4096 );
+        private int                    pending;
+
+        void drainAll() {
+            for ( EventRing ring : ALL_RINGS ) {
+                ring.drainTo( this );
+                long dropped = ring.takeDropped();
+                if ( dropped > 0 ) {
+                    flushBatch();
+                    logger.warn( "Dropped " + dropped + " execution events of thread " + ring.getThreadName()
+                            + ", consider increasing executionEvents.ringCapacity" );
+                }
+                // 线程结束后，缓冲区读空就不再需要了
+                if ( !ring.getOwner().isAlive() && ring.isEmpty() ) {
+                    ALL_RINGS.remove( ring );
+                }
+            }
+            flushBatch();
+        }
+
+        @Override
+        public void onEvent( EventRing ring, int jobId, int outcome, long timestamp, long duration ) {
+            if ( pending > 0 ) {
+                batch.append( System.lineSeparator() );
+            }
+            date.setTime( timestamp );
+            batch.append( '[' ).append( ring.getThreadName() ).append( ", " ).append( ring.getThreadPriority() )
+                    .append( ", " ).append( ring.getThreadGroupName() ).append( ", " ).append( format.format( date ) )
+                    .append( "] execute " ).append( nameOf( jobId ) ).append( " (" ).append( outcomeOf( outcome ) );
+            if ( duration >= 0 ) {
+                batch.append( ", " ).append( duration / 1000 ).append( "us" );
+            }
+            batch.append( ')' );
+            // 一批输出一条日志，减少 Appender 的加锁和 I/O 次数
+            if ( ++pending >= 64 ) {
+                flushBatch();
+            }
+        }
+
+        private void flushBatch() {
+            if ( pending > 0 ) {
+                logger.info( batch.toString() );
+                batch.setLength( 0 );
+                pending = 0;
+            }
+        }
+
+        private static String nameOf( int jobId ) {
+            String[] current = names;
+            return jobId >= 0 && jobId < current.length && current[jobId] != null ? current[jobId] : "job#" + jobId;
+        }
+
+        private static String outcomeOf( int outcome ) {
+            return outcome >= 0 && outcome < OUTCOMES.length ? OUTCOMES[outcome] : String.valueOf( outcome );
+        }
+    }
+}
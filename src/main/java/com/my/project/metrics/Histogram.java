@@ -0,0 +1,178 @@
+package com.my.project.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁、固定内存的对数-线性直方图（HdrHistogram 的简化版本）
+ *
+ * <pre>
+ * 把每个 2 的幂区间 [2^k, 2^(k+1)) 再等分为 2^precisionBits 个桶，
+ * 相对误差不超过 1 / 2^precisionBits（precisionBits = 5 时约 3%）。
+ * 小于 2^precisionBits 的值每个值一个桶，是精确的。
+ *
+ * 桶数在构造时确定，record 只有几次原子加，不分配对象，可以在任意线程并发调用；
+ * 超过 highestTrackableValue 的值计入最后一个桶，max 仍然记录真实值。
+ * snapshot 不阻塞 record，各个计数之间不保证严格一致，用于观测足够了。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class Histogram {
+
+    private final int            precisionBits;
+    private final int            subBucketCount;
+    private final long           highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong     totalCount = new AtomicLong();
+    private final AtomicLong     totalSum   = new AtomicLong();
+    private final AtomicLong     maxValue   = new AtomicLong();
+
+    /**
+     * @param highestTrackableValue 需要区分的最大值
+     * @param precisionBits 每个 2 的幂区间的桶数取 2 为底的对数，1 ~ 10
+     */
+    public Histogram( long highestTrackableValue, int precisionBits ) {
+        if ( precisionBits < 1 || precisionBits > 10 ) {
+            throw new IllegalArgumentException( "precisionBits must be in [1, 10]: " + precisionBits );
+        }
+        if ( highestTrackableValue < 2L << precisionBits ) {
+            throw new IllegalArgumentException( "highestTrackableValue is too small: " + highestTrackableValue );
+        }
+        this.precisionBits = precisionBits;
+        this.subBucketCount = 1 << precisionBits;
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray( indexOf( highestTrackableValue ) + 1 );
+    }
+
+    /**
+     * 记录一个值，负数按 0 记录
+     */
+    public void record( long value ) {
+        if ( value < 0 ) {
+            value = 0;
+        }
+        counts.incrementAndGet( indexOf( Math.min( value, highestTrackableValue ) ) );
+        totalCount.incrementAndGet();
+        totalSum.addAndGet( value );
+        long max;
+        while ( value > ( max = maxValue.get() ) ) {
+            if ( maxValue.compareAndSet( max, value ) ) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * @return 直方图占用的桶数
+     */
+    public int getBucketCount() {
+        return counts.length();
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long count = 0;
+        for ( int i = 0; i < copy.length; i++ ) {
+            copy[i] = counts.get( i );
+            count += copy[i];
+        }
+        return new Snapshot( this, copy, count, totalSum.get(), maxValue.get() );
+    }
+
+    int indexOf( long value ) {
+        if ( value < subBucketCount ) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - precisionBits;
+        // value >>> shift 落在 [subBucketCount, 2 * subBucketCount)，各个区间首尾相接
+        return ( shift << precisionBits ) + (int) ( value >>> shift );
+    }
+
+    long lowestValueAt( int index ) {
+        if ( index < subBucketCount ) {
+            return index;
+        }
+        int shift = ( index >> precisionBits ) - 1;
+        long mantissa = index - ( (long) shift << precisionBits );
+        return mantissa << shift;
+    }
+
+    long highestValueAt( int index ) {
+        if ( index < subBucketCount ) {
+            return index;
+        }
+        int shift = ( index >> precisionBits ) - 1;
+        return lowestValueAt( index ) + ( 1L << shift ) - 1;
+    }
+
+    /**
+     * 直方图某一时刻的只读副本
+     */
+    public static class Snapshot {
+
+        private final Histogram histogram;
+        private final long[]    counts;
+        private final long      count;
+        private final long      sum;
+        private final long      max;
+
+        Snapshot( Histogram histogram, long[] counts, long count, long sum, long max ) {
+            this.histogram = histogram;
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile 0 ~ 100
+         * @return 不小于该百分位的最小桶上界，不超过 max
+         */
+        public long getValueAtPercentile( double percentile ) {
+            if ( count == 0 ) {
+                return 0;
+            }
+            long rank = (long) Math.ceil( Math.min( 100, Math.max( 0, percentile ) ) / 100 * count );
+            if ( rank < 1 ) {
+                rank = 1;
+            }
+            long seen = 0;
+            for ( int i = 0; i < counts.length; i++ ) {
+                seen += counts[i];
+                if ( seen >= rank ) {
+                    return Math.min( histogram.highestValueAt( i ), max );
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format( "count=%d mean=%.1f p50=%d p90=%d p99=%d p999=%d max=%d", count, getMean(),
+                    getValueAtPercentile( 50 ), getValueAtPercentile( 90 ), getValueAtPercentile( 99 ),
+                    getValueAtPercentile( 99.9 ), max );
+        }
+    }
+}
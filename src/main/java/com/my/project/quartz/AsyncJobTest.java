@@ -0,0 +1,199 @@
+package com.my.project.quartz;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.log4j.Logger;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.matchers.EverythingMatcher;
+
+import com.my.project.quartz.async.AsyncJob;
+import com.my.project.quartz.async.AsyncJobSupport;
+import com.my.project.quartz.metrics.JobMetricsListener;
+
+/**
+ * AsyncJob：3 个工作线程驱动数千个等待 I/O 的执行
+ *
+ * <pre>
+ * 每个 Job 模拟一次 500ms 的远程调用，与 QuartzTest 相同的 3 个工作线程：
+ *   - sync：60 个 SleepJob 在工作线程中等待，每次只能同时等待 3 个，需要约 10 秒；
+ *   - async：3000 个 RemoteCallJob 返回 CompletableFuture，由一个模拟 I/O 的线程完成，
+ *     工作线程只负责发起调用，全部完成只需要比 500ms 稍长的时间。
+ * async 运行期间另有一个标记了 DisallowConcurrentExecution 的 SerialJob，每 100ms 触发一次，
+ * 每次调用 350ms，同时执行的数量始终为 1，执行期间到达的触发合并为结束后的一次补执行。
+ *
+ * jobWasExecuted 在调用完成时回调，JobMetricsListener 统计的执行时间是调用的时间而不是发起调用的时间。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class AsyncJobTest {
+
+    private static final Logger                   logger      = Logger.getLogger( AsyncJobTest.class );
+
+    private static final int                      SYNC_JOBS   = 60;
+    private static final int                      ASYNC_JOBS  = 3000;
+    private static final long                     CALL_MILLIS = 500L;
+    /** 模拟 I/O 客户端的线程，按时完成所有等待中的调用 */
+    private static final ScheduledExecutorService io          = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = new Thread( r, "simulated-io" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+
+    public static void main( String[] args ) {
+        try {
+            run( false, SYNC_JOBS );
+            run( true, ASYNC_JOBS );
+        } catch ( Exception e ) {
+            logger.error( "Application Error!", e );
+        }
+    }
+
+    private static void run( boolean async, int jobs ) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty( "org.quartz.scheduler.instanceName", async ? "AsyncScheduler" : "SyncScheduler" );
+        properties.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+        properties.setProperty( "org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool" );
+        properties.setProperty( "org.quartz.threadPool.threadCount", "3" );
+        properties.setProperty( "org.quartz.scheduler.batchTriggerAcquisitionMaxCount", "100" );
+        properties.setProperty( "org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore" );
+        properties.setProperty( "org.quartz.jobStore.misfireThreshold", "60000" );
+        Scheduler scheduler = new StdSchedulerFactory( properties ).getScheduler();
+        JobMetricsListener metrics = new JobMetricsListener();
+        metrics.register( scheduler );
+        final CountDownLatch done = new CountDownLatch( jobs );
+        scheduler.getListenerManager().addJobListener( new JobListener() {
+
+            @Override
+            public String getName() {
+                return "CompletionCounter";
+            }
+
+            @Override
+            public void jobToBeExecuted( JobExecutionContext context ) {
+            }
+
+            @Override
+            public void jobExecutionVetoed( JobExecutionContext context ) {
+            }
+
+            @Override
+            public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+                if ( !"serialGroup".equals( context.getJobDetail().getKey().getGroup() ) ) {
+                    done.countDown();
+                }
+            }
+        }, EverythingMatcher.allJobs() );
+        AsyncJobSupport support = new AsyncJobSupport( "AsyncJobSupport", 10000 );
+        if ( async ) {
+            // 在其他监听器之后注册，之前注册的 jobWasExecuted 都推迟到调用完成时
+            support.register( scheduler );
+            scheduler.scheduleJob( JobBuilder.newJob( SerialJob.class ).withIdentity( "serial", "serialGroup" ).build(),
+                    TriggerBuilder.newTrigger().withIdentity( "serial", "serialGroup" ).startNow()
+                            .withSchedule( SimpleScheduleBuilder.simpleSchedule()
+                                    .withIntervalInMilliseconds( 100 ).repeatForever() ).build() );
+        }
+        Class < ? extends Job > jobClass = async ? RemoteCallJob.class : SleepJob.class;
+        for ( int i = 0; i < jobs; i++ ) {
+            scheduler.scheduleJob(
+                    JobBuilder.newJob( jobClass ).withIdentity( "call" + i, "callGroup" ).build(),
+                    TriggerBuilder.newTrigger().withIdentity( "call" + i, "callGroup" ).startNow().build() );
+        }
+
+        long start = System.currentTimeMillis();
+        scheduler.start();
+        done.await();
+        long elapsed = System.currentTimeMillis() - start;
+        scheduler.shutdown( true );
+        logger.info( ( async ? "async: " : "sync: " ) + jobs + " calls of " + CALL_MILLIS
+                + "ms on 3 threads finished in " + elapsed + "ms" );
+        if ( async ) {
+            logger.info( support + ", serial job max concurrent calls: " + SerialJob.maxRunning.get() );
+        }
+        for ( Map.Entry < String, JobMetricsListener.StatsSnapshot > e : metrics.getGroupSnapshots().entrySet() ) {
+            logger.info( e.getKey() + ": " + e.getValue() );
+        }
+    }
+
+    private static CompletableFuture < String > call( long millis ) {
+        final CompletableFuture < String > response = new CompletableFuture < String >();
+        io.schedule( new Runnable() {
+
+            @Override
+            public void run() {
+                response.complete( "200 OK" );
+            }
+        }, millis, TimeUnit.MILLISECONDS );
+        return response;
+    }
+
+    public static class SleepJob implements Job {
+
+        @Override
+        public void execute( JobExecutionContext context ) throws JobExecutionException {
+            try {
+                context.setResult( call( CALL_MILLIS ).get() );
+            } catch ( Exception e ) {
+                throw new JobExecutionException( e );
+            }
+        }
+    }
+
+    public static class RemoteCallJob implements AsyncJob {
+
+        @Override
+        public CompletionStage < ? > executeAsync( JobExecutionContext context ) {
+            return call( CALL_MILLIS );
+        }
+    }
+
+    @DisallowConcurrentExecution
+    public static class SerialJob implements AsyncJob {
+
+        static final AtomicInteger running    = new AtomicInteger();
+        static final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public CompletionStage < ? > executeAsync( JobExecutionContext context ) {
+            int current = running.incrementAndGet();
+            for ( int max = maxRunning.get(); current > max; max = maxRunning.get() ) {
+                if ( maxRunning.compareAndSet( max, current ) ) {
+                    break;
+                }
+            }
+            return call( 350L ).thenApply( new Function < String, String >() {
+
+                @Override
+                public String apply( String response ) {
+                    running.decrementAndGet();
+                    return response;
+                }
+            } );
+        }
+    }
+}
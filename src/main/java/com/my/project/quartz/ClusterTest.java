@@ -0,0 +1,317 @@
+package com.my.project.quartz;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.spi.OperableTrigger;
+
+import com.my.project.metrics.Histogram;
+import com.my.project.quartz.bulk.BulkScheduler;
+import com.my.project.quartz.cluster.PartitionedJobStore;
+
+/**
+ * PartitionedJobStore：多个本地 JVM 组成的集群
+ *
+ * <pre>
+ * 每个节点是一个单独的 JVM（本程序以 node 参数启动的子进程），使用 udp 传输，注册相同的 triggers 个 Job，
+ * 每个 Trigger 每 periodMillis 触发一次，触发时间在周期内均匀分布；Job 只计数。
+ *
+ * 1. 扩展性：依次用 1、2、4 个节点运行，输出集群每秒的触发次数和各节点触发延迟的 p99。
+ *    每秒需要的触发次数超过单个节点的获取能力时，单节点的延迟持续增长，
+ *    节点数增加后每个节点只获取自己的分区，集群的触发次数随节点数近似线性增长（需要足够的 CPU 核数）。
+ * 2. 失效接管：3 个节点，运行 10 秒后强制结束其中一个进程（相当于 kill -9），
+ *    其余节点在 failureTimeout 之后接管它的分区，错过的触发在 misfireThreshold 之内延迟执行。
+ *    在该节点刚输出统计之后结束进程，它执行过的触发都已计入；
+ *    按计划触发时间统计每一秒的触发次数，与期望值比较得到遗漏和重复的次数，
+ *    重复的是它最后一次心跳之后执行过、又被接管者执行的触发（至少一次）。
+ * 3. 接管的边界：acquiredUntil 是原拥有者还没有执行的最早触发时间，接管时正好在该时间的触发仍然要执行。
+ *
+ * java -cp ... com.my.project.quartz.ClusterTest [triggers] [periodMillis]
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class ClusterTest {
+
+    private static final Logger logger    = Logger.getLogger( ClusterTest.class );
+
+    private static final int    BASE_PORT = 7801;
+
+    public static void main( String[] args ) {
+        try {
+            if ( args.length > 0 && "node".equals( args[0] ) ) {
+                node( Integer.parseInt( args[1] ), Integer.parseInt( args[2] ), Integer.parseInt( args[3] ),
+                        Long.parseLong( args[4] ), Long.parseLong( args[5] ), Long.parseLong( args[6] ) );
+                return;
+            }
+            checkTakeoverHorizon();
+            int triggers = args.length > 0 ? Integer.parseInt( args[0] ) : 20000;
+            long periodMillis = args.length > 1 ? Long.parseLong( args[1] ) : 1000L;
+            for ( int nodes : new int[] { 1, 2, 4 } ) {
+                Cluster cluster = new Cluster( nodes, triggers, periodMillis, 15 );
+                cluster.awaitEnd();
+                logger.info( String.format( "%d node(s): %.0f fires/s (expected %d), lag p99 per node %s", nodes,
+                        cluster.firesPerSecond( 5, 14 ), triggers * 1000L / periodMillis, cluster.lags ) );
+            }
+            Cluster cluster = new Cluster( 3, triggers / 4, periodMillis, 25 );
+            Thread.sleep( cluster.start + 10000 - System.currentTimeMillis() );
+            cluster.killAfterNextReport( 1 );
+            cluster.awaitEnd();
+            cluster.reportSlots( 25 );
+        } catch ( Exception e ) {
+            logger.error( "Application Error!", e );
+        }
+    }
+
+    /**
+     * 在单个分区上模拟接管：原拥有者报告的 acquiredUntil 正好是某个 Trigger 的下一次触发时间，
+     * 推进之后这次触发必须保留，只跳过更早的触发
+     */
+    private static void checkTakeoverHorizon() throws Exception {
+        long period = 1000L;
+        long first = System.currentTimeMillis() + 60000;
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger().withIdentity( "takeover" )
+                .forJob( "takeover" ).startAt( new Date( first ) ).withSchedule( SimpleScheduleBuilder
+                        .simpleSchedule().withIntervalInMilliseconds( period ).repeatForever() ).build();
+        trigger.computeFirstFireTime( null );
+        PartitionedJobStore.Partition partition = new PartitionedJobStore.Partition();
+        partition.storeJobAndTrigger( JobBuilder.newJob( CountJob.class ).withIdentity( "takeover" ).build(), trigger );
+        long horizon = first + 2 * period;
+        int skipped = partition.advance( horizon );
+        long next = partition.peekNextFireTime();
+        if ( skipped != 2 || next != horizon ) {
+            throw new IllegalStateException( "Takeover at " + horizon + " skipped " + skipped
+                    + " fires, next fire " + next );
+        }
+        logger.info( "Takeover skipped " + skipped + " fires before the horizon and kept the fire at the horizon" );
+    }
+
+    /**
+     * 子进程：一个集群节点，每秒输出一次触发统计，运行 seconds 秒后退出
+     */
+    private static void node( int index, int nodes, int triggers, long periodMillis, long start, long seconds )
+            throws Exception {
+        StringBuilder peers = new StringBuilder();
+        for ( int i = 0; i < nodes; i++ ) {
+            peers.append( i == 0 ? "" : "," ).append( "127.0.0.1:" ).append( BASE_PORT + i );
+        }
+        Properties properties = new Properties();
+        properties.setProperty( "org.quartz.scheduler.instanceName", "ClusterScheduler" );
+        properties.setProperty( "org.quartz.scheduler.instanceId", "node" + index );
+        properties.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+        properties.setProperty( "org.quartz.threadPool.threadCount", "8" );
+        properties.setProperty( "org.quartz.jobStore.class", PartitionedJobStore.class.getName() );
+        properties.setProperty( "org.quartz.jobStore.misfireThreshold", "10000" );
+        properties.setProperty( "org.quartz.jobStore.transport", PartitionedJobStore.UDP );
+        properties.setProperty( "org.quartz.jobStore.bind", "127.0.0.1:" + ( BASE_PORT + index ) );
+        properties.setProperty( "org.quartz.jobStore.peers", peers.toString() );
+        properties.setProperty( "org.quartz.jobStore.heartbeatIntervalMillis", "500" );
+        properties.setProperty( "org.quartz.jobStore.failureTimeoutMillis", "2000" );
+        Scheduler scheduler = new StdSchedulerFactory( properties ).getScheduler();
+        BulkScheduler bulk = new BulkScheduler( scheduler );
+        for ( int i = 0; i < triggers; i++ ) {
+            bulk.add( JobBuilder.newJob( CountJob.class ).withIdentity( "job" + i, "clusterGroup" ).build(),
+                    TriggerBuilder.newTrigger().withIdentity( "trigger" + i, "clusterGroup" )
+                            .startAt( new Date( start + i * periodMillis / triggers ) )
+                            .withSchedule( SimpleScheduleBuilder.simpleSchedule()
+                                    .withIntervalInMilliseconds( periodMillis ).repeatForever() ).build() );
+        }
+        bulk.execute( false );
+        scheduler.start();
+
+        long end = start + seconds * 1000;
+        Map < Long, Long > reported = new HashMap < Long, Long >();
+        while ( System.currentTimeMillis() < end ) {
+            Thread.sleep( 1000 );
+            StringBuilder line = new StringBuilder( "STATS " ).append( CountJob.FIRED.getAndSet( 0 ) ).append( ' ' )
+                    .append( CountJob.nextLags().getValueAtPercentile( 99 ) );
+            // 每个计划触发秒的增量，父进程按秒累加各节点的结果
+            for ( Map.Entry < Long, AtomicLong > e : CountJob.SLOTS.entrySet() ) {
+                long count = e.getValue().get();
+                Long last = reported.put( e.getKey(), count );
+                if ( last == null || last != count ) {
+                    line.append( ' ' ).append( e.getKey() ).append( '=' )
+                            .append( count - ( last == null ? 0 : last ) );
+                }
+            }
+            System.out.println( line );
+            System.out.flush();
+        }
+        scheduler.shutdown( false );
+        System.exit( 0 );
+    }
+
+    public static class CountJob implements Job {
+
+        static final AtomicLong                         FIRED = new AtomicLong();
+        static final ConcurrentMap < Long, AtomicLong > SLOTS = new ConcurrentHashMap < Long, AtomicLong >();
+        private static volatile Histogram               lags  = new Histogram( 600000, 5 );
+
+        static Histogram.Snapshot nextLags() {
+            Histogram current = lags;
+            lags = new Histogram( 600000, 5 );
+            return current.snapshot();
+        }
+
+        @Override
+        public void execute( JobExecutionContext context ) {
+            long scheduled = context.getScheduledFireTime().getTime();
+            lags.record( Math.max( 0, System.currentTimeMillis() - scheduled ) );
+            FIRED.incrementAndGet();
+            Cluster.add( SLOTS, scheduled / 1000, 1 );
+        }
+    }
+
+    /**
+     * 父进程中的一次运行：启动 nodes 个子进程并汇总它们的输出
+     */
+    private static class Cluster {
+
+        final int                                triggers;
+        final long                               periodMillis;
+        final long                               start;
+        final List < Process >                   processes       = new ArrayList < Process >();
+        final List < Thread >                    readers         = new ArrayList < Thread >();
+        /** 父进程收到的每秒触发次数，按收到的时间（距 start 的秒数）累加 */
+        final ConcurrentMap < Long, AtomicLong > fired           = new ConcurrentHashMap < Long, AtomicLong >();
+        final ConcurrentMap < Long, AtomicLong > slots           = new ConcurrentHashMap < Long, AtomicLong >();
+        final Map < Integer, Long >              lags            = new TreeMap < Integer, Long >();
+        volatile int                             killAfterReport = -1;
+
+        Cluster( int nodes, int triggers, long periodMillis, long seconds ) throws IOException {
+            this.triggers = triggers;
+            this.periodMillis = periodMillis;
+            // 留出 JVM 启动、注册和加入集群的时间
+            this.start = ( System.currentTimeMillis() / 1000 + 6 ) * 1000;
+            String java = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+            for ( int i = 0; i < nodes; i++ ) {
+                final int index = i;
+                final Process process = new ProcessBuilder( java, "-cp", System.getProperty( "java.class.path" ),
+                        ClusterTest.class.getName(), "node", String.valueOf( i ), String.valueOf( nodes ),
+                        String.valueOf( triggers ), String.valueOf( periodMillis ), String.valueOf( start ),
+                        String.valueOf( seconds ) ).redirectErrorStream( true ).start();
+                processes.add( process );
+                Thread reader = new Thread( new Runnable() {
+
+                    @Override
+                    public void run() {
+                        read( index, process );
+                    }
+                }, "node" + i + "-reader" );
+                reader.start();
+                readers.add( reader );
+            }
+        }
+
+        private void read( int index, Process process ) {
+            try {
+                BufferedReader reader = new BufferedReader( new InputStreamReader( process.getInputStream() ) );
+                String line;
+                while ( ( line = reader.readLine() ) != null ) {
+                    if ( line.startsWith( "STATS " ) ) {
+                        String[] parts = line.split( " " );
+                        add( fired, ( System.currentTimeMillis() - start ) / 1000, Long.parseLong( parts[1] ) );
+                        synchronized ( lags ) {
+                            Long max = lags.get( index );
+                            lags.put( index, Math.max( max == null ? 0 : max, Long.parseLong( parts[2] ) ) );
+                        }
+                        for ( int i = 3; i < parts.length; i++ ) {
+                            int eq = parts[i].indexOf( '=' );
+                            add( slots, Long.parseLong( parts[i].substring( 0, eq ) ),
+                                    Long.parseLong( parts[i].substring( eq + 1 ) ) );
+                        }
+                        if ( index == killAfterReport ) {
+                            process.destroyForcibly();
+                            logger.info( "Killed node" + index );
+                        }
+                    } else if ( line.contains( "[quartz-cluster-" ) || line.contains( "[ERROR]" ) ) {
+                        logger.info( "node" + index + " | " + line );
+                    }
+                }
+            } catch ( IOException e ) {
+                logger.warn( "node" + index + " output closed: " + e.getMessage() );
+            }
+        }
+
+        static void add( ConcurrentMap < Long, AtomicLong > counts, Long key, long delta ) {
+            AtomicLong count = counts.get( key );
+            if ( count == null ) {
+                AtomicLong created = new AtomicLong();
+                count = counts.putIfAbsent( key, created );
+                if ( count == null ) {
+                    count = created;
+                }
+            }
+            count.addAndGet( delta );
+        }
+
+        /**
+         * 节点刚报告完时结束它的进程，它执行过的触发都已经计入，之后被接管者再次执行的触发计为重复
+         */
+        void killAfterNextReport( int index ) {
+            killAfterReport = index;
+        }
+
+        void awaitEnd() throws InterruptedException {
+            for ( Process process : processes ) {
+                process.waitFor();
+            }
+            for ( Thread reader : readers ) {
+                reader.join();
+            }
+        }
+
+        /**
+         * @return 距 start [from, to) 秒之间集群平均每秒的触发次数
+         */
+        double firesPerSecond( long from, long to ) {
+            long total = 0;
+            for ( long s = from; s < to; s++ ) {
+                AtomicLong count = fired.get( s );
+                total += count == null ? 0 : count.get();
+            }
+            return (double) total / ( to - from );
+        }
+
+        /**
+         * 按计划触发时间逐秒比较触发次数与期望值
+         */
+        void reportSlots( long seconds ) {
+            long expected = triggers * 1000L / periodMillis;
+            long missing = 0;
+            long duplicated = 0;
+            StringBuilder counts = new StringBuilder();
+            // 最后几秒的触发可能还没有报告
+            for ( long s = start / 1000; s < start / 1000 + seconds - 3; s++ ) {
+                AtomicLong count = slots.get( s );
+                long c = count == null ? 0 : count.get();
+                counts.append( c ).append( ' ' );
+                missing += Math.max( 0, expected - c );
+                duplicated += Math.max( 0, c - expected );
+            }
+            logger.info( "Fires per scheduled second (expected " + expected + "): " + counts );
+            logger.info( "Missing " + missing + ", duplicated " + duplicated );
+        }
+    }
+}
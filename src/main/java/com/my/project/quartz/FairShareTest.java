@@ -0,0 +1,100 @@
+package com.my.project.quartz;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+
+import com.my.project.quartz.metrics.JobMetricsListener;
+import com.my.project.quartz.pool.FairShareThreadPool;
+
+/**
+ * FairShareThreadPool：偏斜负载下按分组公平调度
+ *
+ * <pre>
+ * 与 QuartzTest 相同的 3 个工作线程，两个分组：
+ *   - burstGroup：同一时刻触发 60 个 Job，每个执行 100ms，单独执行完需要约 2 秒；
+ *   - myJobCronGroup：每 200ms 触发一次，每次执行 10ms。
+ * 按先来先执行，突发期间 myJobCronGroup 的每次触发都要排在剩余的 burstGroup 后面；
+ * 按赤字轮询，myJobCronGroup 排队时最多等一个 burstGroup 任务执行完。
+ * burstGroup 的并发上限为 2，始终留一个线程给其他分组。
+ *
+ * 运行结束时输出各分组的排队延迟（微秒），对比两个分组的 p99。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class FairShareTest {
+
+    private static final Logger logger = Logger.getLogger( FairShareTest.class );
+
+    public static void main( String[] args ) {
+        try {
+            run( "org.quartz.simpl.SimpleThreadPool" );
+            run( FairShareThreadPool.class.getName() );
+        } catch ( Exception e ) {
+            logger.error( "Application Error!", e );
+        }
+    }
+
+    private static void run( String threadPoolClass ) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty( "org.quartz.scheduler.instanceName", "FairShareScheduler" );
+        properties.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+        properties.setProperty( "org.quartz.threadPool.class", threadPoolClass );
+        properties.setProperty( "org.quartz.threadPool.threadCount", "3" );
+        if ( FairShareThreadPool.class.getName().equals( threadPoolClass ) ) {
+            properties.setProperty( "org.quartz.threadPool.queueCapacity", "100" );
+            properties.setProperty( "org.quartz.threadPool.groupWeights", "burstGroup=1,myJobCronGroup=3" );
+            properties.setProperty( "org.quartz.threadPool.groupMaxConcurrency", "burstGroup=2" );
+        }
+        properties.setProperty( "org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore" );
+        Scheduler scheduler = new StdSchedulerFactory( properties ).getScheduler();
+        // 两种线程池都用 JobMetricsListener 统计触发延迟（毫秒），FairShareThreadPool 关闭时另外输出排队延迟
+        JobMetricsListener metrics = new JobMetricsListener();
+        metrics.register( scheduler );
+        scheduler.start();
+
+        for ( int i = 0; i < 60; i++ ) {
+            scheduler.scheduleJob(
+                    JobBuilder.newJob( SleepJob.class ).withIdentity( "burst" + i, "burstGroup" )
+                            .usingJobData( SleepJob.MILLIS, 100L ).build(),
+                    TriggerBuilder.newTrigger().withIdentity( "burst" + i, "burstGroup" ).startNow().build() );
+        }
+        scheduler.scheduleJob(
+                JobBuilder.newJob( SleepJob.class ).withIdentity( "myJobCron", "myJobCronGroup" )
+                        .usingJobData( SleepJob.MILLIS, 10L ).build(),
+                TriggerBuilder.newTrigger().withIdentity( "cronTrigger", "cronTriggerGroup" ).startNow()
+                        .withSchedule( SimpleScheduleBuilder.simpleSchedule()
+                                .withIntervalInMilliseconds( 200 ).repeatForever() ).build() );
+
+        Thread.sleep( 5000 );
+        scheduler.shutdown( true );
+        for ( Map.Entry < String, JobMetricsListener.StatsSnapshot > e : metrics.getGroupSnapshots().entrySet() ) {
+            logger.info( threadPoolClass + " " + e.getKey() + ": " + e.getValue() );
+        }
+    }
+
+    public static class SleepJob implements Job {
+
+        static final String MILLIS = "millis";
+
+        @Override
+        public void execute( JobExecutionContext context ) throws JobExecutionException {
+            try {
+                Thread.sleep( context.getMergedJobDataMap().getLong( MILLIS ) );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.my.project.quartz;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+
+/**
+ * InstrumentedRAMJobStore + InstrumentationPlugin：查看调度器内部的锁竞争、批量获取和工作线程饱和
+ *
+ * <pre>
+ * 与 quartz.properties 中的 MyScheduler 相同的 3 个工作线程。10 个 Job 每 200ms 触发一次，每次执行 150ms，
+ * 需要约 7.5 个线程，工作线程一直饱和，Trigger 在 JobStore 中积压，超过 misfireThreshold（1 秒）后开始 misfire。
+ * 运行 5 秒后分别通过 HTTP（Prometheus 文本格式）和 JMX 读取指标。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class InstrumentationTest {
+
+    private static final Logger logger    = Logger.getLogger( InstrumentationTest.class );
+
+    private static final int    HTTP_PORT = 9404;
+    private static final int    JOBS      = 10;
+
+    public static void main( String[] args ) {
+        try {
+            run();
+        } catch ( Exception e ) {
+            logger.error( "Application Error!", e );
+        }
+    }
+
+    private static void run() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty( "org.quartz.scheduler.instanceName", "InstrumentedScheduler" );
+        properties.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+        properties.setProperty( "org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool" );
+        properties.setProperty( "org.quartz.threadPool.threadCount", "3" );
+        properties.setProperty( "org.quartz.jobStore.class", "com.my.project.quartz.store.InstrumentedRAMJobStore" );
+        properties.setProperty( "org.quartz.jobStore.misfireThreshold", "1000" );
+        properties.setProperty( "org.quartz.plugin.instrumentation.class",
+                "com.my.project.quartz.metrics.InstrumentationPlugin" );
+        properties.setProperty( "org.quartz.plugin.instrumentation.httpPort", String.valueOf( HTTP_PORT ) );
+        Scheduler scheduler = new StdSchedulerFactory( properties ).getScheduler();
+
+        for ( int i = 0; i < JOBS; i++ ) {
+            scheduler.scheduleJob(
+                    JobBuilder.newJob( BusyJob.class ).withIdentity( "busy" + i, "instrumentedGroup" ).build(),
+                    TriggerBuilder.newTrigger().withIdentity( "busy" + i, "instrumentedGroup" ).startNow()
+                            .withSchedule( SimpleScheduleBuilder.repeatSecondlyForever().withIntervalInMilliseconds(
+                                    200 ) )
+                            .build() );
+        }
+        scheduler.start();
+        Thread.sleep( 5000 );
+
+        HttpURLConnection connection = (HttpURLConnection) new URL( "http://127.0.0.1:" + HTTP_PORT + "/metrics" )
+                .openConnection();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader( connection.getInputStream(), StandardCharsets.UTF_8 ) );
+        try {
+            String line;
+            while ( ( line = reader.readLine() ) != null ) {
+                if ( !line.startsWith( "#" ) ) {
+                    logger.info( line );
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName( "com.my.project.quartz:type=SchedulerInstruments,name=\"InstrumentedScheduler\"" );
+        for ( String attribute : new String[] { "PoolSize", "BusyWorkers", "Saturations", "SaturatedMillis", "Backlog",
+                "Misfires", "MeanBatchSize" } ) {
+            logger.info( "JMX " + attribute + " = " + server.getAttribute( name, attribute ) );
+        }
+        scheduler.shutdown( true );
+    }
+
+    public static class BusyJob implements Job {
+
+        @Override
+        public void execute( JobExecutionContext context ) throws JobExecutionException {
+            try {
+                Thread.sleep( 150 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
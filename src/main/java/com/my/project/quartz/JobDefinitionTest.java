@@ -0,0 +1,133 @@
+package com.my.project.quartz;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SimpleTrigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.StdSchedulerFactory;
+
+import com.my.project.quartz.definition.JobDefinitionLoader;
+import com.my.project.quartz.definition.JobDefinitionResult;
+
+/**
+ * JobDefinitionLoader：从 JSON Lines 文件加载 Job 定义，文件变化后只写入变化的部分
+ *
+ * <pre>
+ * 生成 10 万个 Job 的定义文件并加载，然后开始监视文件：
+ * 修改其中 1% 的 interval，删除 500 个，新增 500 个，以"写临时文件再改名"的方式保存，
+ * 由监视线程重新加载，日志中可以看到只有 2000 个 Job 被写入调度器。
+ * Trigger 在一天之后才开始触发。
+ *
+ * RAMJobStore 替换或删除一个 Job 时要遍历全部 Trigger，这里使用 ShardedRAMJobStore，
+ * 每次只遍历一个分片。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class JobDefinitionTest {
+
+    private static final Logger logger   = Logger.getLogger( JobDefinitionTest.class );
+
+    private static final int    JOBS     = 100000;
+    private static final int    MODIFIED = JOBS / 100;
+    private static final int    CHANGED  = 500;
+    private static final long   HOUR     = 60 * 60 * 1000L;
+    private static final long   DAY      = 24 * HOUR;
+
+    public static void main( String[] args ) {
+        try {
+            run();
+        } catch ( Exception e ) {
+            logger.error( "Application Error!", e );
+        }
+    }
+
+    private static void run() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty( "org.quartz.scheduler.instanceName", "DefinitionScheduler" );
+        properties.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+        properties.setProperty( "org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool" );
+        properties.setProperty( "org.quartz.threadPool.threadCount", "1" );
+        properties.setProperty( "org.quartz.jobStore.class", "com.my.project.quartz.store.ShardedRAMJobStore" );
+        properties.setProperty( "org.quartz.jobStore.shardCount", "16" );
+        Scheduler scheduler = new StdSchedulerFactory( properties ).getScheduler();
+
+        Path directory = Files.createTempDirectory( "definitions" );
+        Path file = directory.resolve( "jobs.jsonl" );
+        write( file, 0, JOBS, -1 );
+        JobDefinitionLoader loader = new JobDefinitionLoader( scheduler, file );
+        logger.info( "Initial load: " + loader.reload() );
+        logger.info( "Reload without changes: " + loader.reload() );
+
+        loader.watch( 200 );
+        // 删除前 CHANGED 个，新增 CHANGED 个，修改其后的 MODIFIED 个
+        Path temp = directory.resolve( "jobs.jsonl.tmp" );
+        write( temp, CHANGED, JOBS + CHANGED, CHANGED + MODIFIED );
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+        // 删除在写入之后执行，job0 不存在时重新加载已经完成
+        JobKey removed = JobKey.jobKey( "job0", "definitions" );
+        long deadline = System.currentTimeMillis() + 30000;
+        while ( scheduler.checkExists( removed ) && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 50 );
+        }
+        JobKey added = JobKey.jobKey( "job" + ( JOBS + CHANGED - 1 ), "definitions" );
+        SimpleTrigger modified = (SimpleTrigger) scheduler.getTrigger( TriggerKey.triggerKey( "job" + CHANGED,
+                "definitions" ) );
+        logger.info( "Removed " + removed + " exists: " + scheduler.checkExists( removed ) );
+        logger.info( "Added " + added + " exists: " + scheduler.checkExists( added ) );
+        logger.info( "Modified job" + CHANGED + " interval: " + modified.getRepeatInterval() + "ms" );
+        logger.info( "Jobs managed by loader: " + loader.getJobCount() );
+
+        Files.write( file, "{\"job\":\"broken\"".getBytes( StandardCharsets.UTF_8 ),
+                StandardOpenOption.APPEND );
+        JobDefinitionResult result = loader.reload();
+        logger.info( "Reload with an error: " + result + " " + result.getErrors() );
+
+        loader.close();
+        scheduler.shutdown();
+        Files.delete( file );
+        Files.delete( directory );
+    }
+
+    /**
+     * 写入 job[from, to)，其中 job[from, modifiedTo) 每两小时触发一次，其余每小时一次
+     */
+    private static void write( Path file, int from, int to, int modifiedTo ) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter( file, StandardCharsets.UTF_8 );
+        try {
+            writer.write( "# generated by JobDefinitionTest" );
+            writer.newLine();
+            for ( int i = from; i < to; i++ ) {
+                writer.write( "{\"job\":\"job" + i + "\",\"group\":\"definitions\",\"class\":\""
+                        + NoopJob.class.getName() + "\",\"data\":{\"index\":" + i + "},\"triggers\":[{\"interval\":"
+                        + ( i < modifiedTo ? 2 * HOUR : HOUR ) + ",\"startDelay\":" + DAY
+                        + ",\"misfire\":\"doNothing\"}]}" );
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    public static class NoopJob implements Job {
+
+        @Override
+        public void execute( JobExecutionContext context ) throws JobExecutionException {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.my.project.quartz;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.log4j.Logger;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+
+import com.my.project.quartz.pipeline.JobPipeline;
+import com.my.project.quartz.pipeline.PipelineJob;
+import com.my.project.quartz.pipeline.PipelineResult;
+import com.my.project.quartz.pipeline.PipelineRunner;
+
+/**
+ * JobPipeline：上游完成时立即触发下游
+ *
+ * <pre>
+ * QuartzTest 中的 Job 各自按 cron 触发，有依赖的 Job 只能按上游最坏的执行时间再加余量错开触发时间。
+ * 这里把 4 个 Job 组成一个 pipeline：
+ *
+ *   extract[4] --+--> transform --+--> load
+ *                +--> audit ------+
+ *
+ * extract 按 4 个分区执行，transform 和 audit 并行执行，load 等两者都完成后汇总结果；
+ * 3 个工作线程，一次运行最多同时执行 3 个 Job。先由 PipelineJob 按 Trigger 运行一次，再连续运行 10 次，
+ * 最后一次让 audit 失败，load 不再执行。输出每次运行的结果和端到端延迟的分布。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class PipelineTest {
+
+    private static final Logger logger    = Logger.getLogger( PipelineTest.class );
+
+    private static final JobKey EXTRACT   = new JobKey( "extract", "pipelineGroup" );
+    private static final JobKey TRANSFORM = new JobKey( "transform", "pipelineGroup" );
+    private static final JobKey AUDIT     = new JobKey( "audit", "pipelineGroup" );
+    private static final JobKey LOAD      = new JobKey( "load", "pipelineGroup" );
+
+    public static void main( String[] args ) {
+        try {
+            run();
+        } catch ( Exception e ) {
+            logger.error( "Application Error!", e );
+        }
+    }
+
+    private static void run() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty( "org.quartz.scheduler.instanceName", "PipelineScheduler" );
+        properties.setProperty( "org.quartz.scheduler.skipUpdateCheck", "true" );
+        properties.setProperty( "org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool" );
+        properties.setProperty( "org.quartz.threadPool.threadCount", "3" );
+        properties.setProperty( "org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore" );
+        Scheduler scheduler = new StdSchedulerFactory( properties ).getScheduler();
+        PipelineRunner runner = new PipelineRunner();
+        runner.register( scheduler );
+
+        // 节点只有 JobDetail，没有 Trigger，需要 storeDurably
+        scheduler.addJob( stage( EXTRACT, 100 ), false );
+        scheduler.addJob( stage( TRANSFORM, 200 ), false );
+        scheduler.addJob( stage( AUDIT, 150 ), false );
+        scheduler.addJob( stage( LOAD, 50 ), false );
+        JobPipeline pipeline = JobPipeline.builder( "nightly" )
+                .fanOut( EXTRACT, 4 )
+                .job( TRANSFORM, EXTRACT )
+                .job( AUDIT, EXTRACT )
+                .job( LOAD, TRANSFORM, AUDIT )
+                .maxParallelism( 3 )
+                .build();
+        runner.addPipeline( pipeline );
+        logger.info( pipeline );
+        scheduler.start();
+
+        // pipeline 的入口由一个 Trigger 开始
+        scheduler.scheduleJob(
+                JobBuilder.newJob( PipelineJob.class ).withIdentity( "nightlyPipeline", "pipelineGroup" )
+                        .usingJobData( PipelineRunner.PIPELINE, "nightly" ).build(),
+                TriggerBuilder.newTrigger().withIdentity( "nightlyPipeline", "pipelineGroup" ).startNow().build() );
+        Thread.sleep( 1500 );
+
+        for ( int i = 0; i < 10; i++ ) {
+            JobDataMap parameters = new JobDataMap();
+            parameters.put( "failAudit", i == 9 );
+            CompletableFuture < PipelineResult > future = runner.start( pipeline, parameters );
+            PipelineResult result = future.get();
+            logger.info( result + " " + result.getResults() );
+        }
+        scheduler.shutdown( true );
+        for ( Map.Entry < String, PipelineRunner.PipelineStats > e : runner.getStats().entrySet() ) {
+            logger.info( e.getKey() + ": " + e.getValue() );
+        }
+    }
+
+    private static JobDetail stage( JobKey key, long millis ) {
+        return JobBuilder.newJob( StageJob.class ).withIdentity( key ).usingJobData( StageJob.MILLIS, millis )
+                .storeDurably().build();
+    }
+
+    /**
+     * 模拟一个阶段：等待 MILLIS 毫秒，结果为处理的行数
+     */
+    public static class StageJob implements Job {
+
+        static final String MILLIS = "millis";
+
+        @Override
+        public void execute( JobExecutionContext context ) throws JobExecutionException {
+            JobDataMap data = context.getMergedJobDataMap();
+            JobKey key = context.getJobDetail().getKey();
+            try {
+                Thread.sleep( data.getLong( MILLIS ) );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            if ( AUDIT.equals( key ) && data.getBoolean( "failAudit" ) ) {
+                throw new JobExecutionException( "Audit found inconsistent rows" );
+            }
+            if ( EXTRACT.equals( key ) ) {
+                context.setResult( 1000 * ( data.getInt( PipelineRunner.PARTITION ) + 1 ) );
+            } else if ( TRANSFORM.equals( key ) || AUDIT.equals( key ) ) {
+                int rows = 0;
+                for ( Object partition : (List < ? >) PipelineRunner.upstreamResult( context, EXTRACT ) ) {
+                    rows += (Integer) partition;
+                }
+                context.setResult( rows );
+            } else {
+                context.setResult( "loaded " + PipelineRunner.upstreamResult( context, TRANSFORM ) + " rows, audited "
+                        + PipelineRunner.upstreamResult( context, AUDIT ) );
+            }
+        }
+    }
+}
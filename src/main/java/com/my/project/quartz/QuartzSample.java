@@ -13,6 +13,8 @@ import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import com.my.project.quartz.factory.StatelessJob;
+
 /**
  * 一个简单的Quartz的示例
  * @author yang
@@ -58,6 +60,7 @@ public class QuartzSample {
 	 * 实现具体job执行逻辑
 	 * @author yang
 	 */
+	@StatelessJob
 	public static class HelloJob implements Job {
 		@Override
 		public void execute(JobExecutionContext context) throws JobExecutionException {
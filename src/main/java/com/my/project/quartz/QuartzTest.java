@@ -3,7 +3,6 @@ package com.my.project.quartz;
 import java.util.Calendar;
 
 import org.apache.log4j.Logger;
-import org.quartz.CronScheduleBuilder;
 import org.quartz.DailyTimeIntervalScheduleBuilder;
 import org.quartz.DateBuilder;
 import org.quartz.DateBuilder.IntervalUnit;
@@ -13,15 +12,23 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.quartz.JobKey;
 import org.quartz.JobListener;
-import org.quartz.Matcher;
 import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
 import org.quartz.TimeOfDay;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
 import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.impl.matchers.KeyMatcher;
 
+import com.my.project.quartz.bulk.BulkScheduleResult;
+import com.my.project.quartz.bulk.BulkScheduler;
+import com.my.project.quartz.cron.CompiledCronScheduleBuilder;
+import com.my.project.quartz.data.CompactDataMap;
 import com.my.project.quartz.jobs.HelloJob;
+import com.my.project.quartz.listener.DeadlineEnforcer;
+import com.my.project.quartz.listener.IndexedListenerRegistry;
+import com.my.project.quartz.metrics.JobMetricsListener;
+import com.my.project.quartz.retry.RetryBudget;
+import com.my.project.quartz.retry.RetryJobListener;
 
 /**
  * Quartz
@@ -73,35 +80,39 @@ import com.my.project.quartz.jobs.HelloJob;
  */
 public class QuartzTest {
 
-    private static final Logger logger = Logger.getLogger( QuartzTest.class );
+    private static final Logger             logger  = Logger.getLogger( QuartzTest.class );
+    private static final JobMetricsListener metrics = new JobMetricsListener();
 
     public static void main( String[] args ) {
         try {
             // 创建一个Scheduler
             Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
 
-            // 添加一个JobListener
-            scheduler.getListenerManager().addJobListener( new MyListener(), new Matcher < JobKey >() {
-
-                private static final long serialVersionUID = -4010606345084704760L;
-
-                @Override
-                public boolean isMatch( JobKey key ) {
-                    if ( "myJobCron".equals( key.getName() ) && "myJobCronGroup".equals( key.getGroup() ) ) {
-                        return true;
-                    }
-                    return false;
-                }
-            } );
+            // 统计所有Job的触发延迟、执行时间和misfire次数
+            metrics.register( scheduler );
+            // 失败的Job按@RetryOnFailure退避后重试，先于其他JobListener注册，每个分组每秒最多补充1次重试
+            RetryJobListener retries = new RetryJobListener();
+            retries.setGroupBudget( "myJobCronGroup", new RetryBudget( 5, 1 ) );
+            retries.register( scheduler );
+            // 添加一个JobListener，按JobKey索引，每次触发不需要逐个判断Matcher
+            IndexedListenerRegistry listeners = new IndexedListenerRegistry();
+            listeners.register( scheduler );
+            listeners.addJobListener( new MyListener(),
+                    KeyMatcher.keyEquals( JobKey.jobKey( "myJobCron", "myJobCronGroup" ) ) );
+            // 限制每个Job的执行时间：超时后先中断，仍不结束时由线程池放弃该线程
+            DeadlineEnforcer deadlines = new DeadlineEnforcer();
+            deadlines.setDefaultDeadlineMillis( 30000 );
+            deadlines.register( scheduler );
             scheduler.start();
 
             // 创建JobDetail，指明name，groupname，以及具体的Job类名，
             // 该Job负责定义需要执行任务
             JobDetail jobDetail = JobBuilder.newJob( HelloJob.class ).withIdentity( "myJob", "myJobGroup" ).build();
-            jobDetail.getJobDataMap().put( HelloJob.JOB_TYPE, "Simple" );
+            CompactDataMap.builder().put( HelloJob.JOB_TYPE, "Simple" ).build().storeIn( jobDetail.getJobDataMap() );
             JobDetail jobDetailCron = JobBuilder.newJob( HelloJob.class ).withIdentity( "myJobCron", "myJobCronGroup" )
                     .build();
-            jobDetailCron.getJobDataMap().put( HelloJob.JOB_TYPE, "Crontab" );
+            CompactDataMap.builder().put( HelloJob.JOB_TYPE, "Crontab" ).build()
+                    .storeIn( jobDetailCron.getJobDataMap() );
 
             // 创建每周触发的Trigger
             Trigger trigger = TriggerBuilder.newTrigger()
@@ -116,11 +127,16 @@ public class QuartzTest {
                                     .startingDailyAt( TimeOfDay.hourMinuteAndSecondOfDay( 16, 38, 10 ) ) ).build();
             Trigger triggerCron = TriggerBuilder.newTrigger().withIdentity( "cronTrigger", "cronTriggerGroup" )
                     .startAt( DateBuilder.futureDate( 1, IntervalUnit.SECOND ) )
-                    .withSchedule( CronScheduleBuilder.cronSchedule( "10 38 16 ? * TUE" ) ).build();
+                    // 与CronScheduleBuilder用法相同，使用预编译的位图计算触发时间
+                    .withSchedule( CompiledCronScheduleBuilder.cronSchedule( "10 38 16 ? * TUE" ) ).build();
 
             // 用scheduler将JobDetail与Trigger关联在一起，开始调度任务
-            scheduler.scheduleJob( jobDetail, trigger );
-            scheduler.scheduleJob( jobDetailCron, triggerCron );
+            // 批量注册：一次存储、一次唤醒调度线程，失败的Job单独报告
+            BulkScheduleResult result = new BulkScheduler( scheduler ).add( jobDetail, trigger )
+                    .add( jobDetailCron, triggerCron ).execute( false );
+            if ( !result.isSuccessful() ) {
+                logger.error( "Failed to schedule jobs: " + result.getFailures() );
+            }
         } catch ( Exception e ) {
             logger.error( "Application Error!", e );
         }
@@ -145,14 +161,11 @@ public class QuartzTest {
 
         @Override
         public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
-            if ( jobException != null ) {
-                try {
-                    // 停止Scheduler
-                    context.getScheduler().shutdown();
-                    // TODO 给管理员发送邮件
-                } catch ( SchedulerException e ) {
-                    logger.error( "Error occurs when executing jobs, shut down the scheduler.", e );
-                }
+            logger.info( "jobWasExecuted(): " + metrics.getJobSnapshot( context.getJobDetail().getKey() ) );
+            // 已经安排了重试的失败不需要处理，重试用完后不再停止Scheduler，其他Job照常执行
+            if ( jobException != null && !RetryJobListener.isRetryScheduled( context ) ) {
+                logger.error( "Job failed after " + RetryJobListener.getAttempt( context ) + " attempts.", jobException );
+                // TODO 给管理员发送邮件
             }
         }
     }
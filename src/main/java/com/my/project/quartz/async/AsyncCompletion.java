@@ -0,0 +1,127 @@
+package com.my.project.quartz.async;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一次异步执行的完成状态，放在 JobExecutionContext 中
+ *
+ * <pre>
+ * 监听器的回调先排队，CompletionStage 完成后按排队顺序逐个执行；完成之后排队的回调立即执行。
+ * 同一次执行的回调不会并发，顺序与 Quartz 调用监听器的顺序一致。
+ * 回调在完成 CompletionStage 的线程中执行（例如 I/O 客户端的线程），也可能在工作线程中执行。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+final class AsyncCompletion implements BiConsumer < Object, Throwable > {
+
+    private static final Logger            LOG       = LoggerFactory.getLogger( AsyncCompletion.class );
+
+    private final AsyncJobSupport          support;
+    private final AsyncJob                 job;
+    private final JobExecutionContext      context;
+    private volatile long                  startTime;
+    private final ArrayDeque < Runnable >  callbacks = new ArrayDeque < Runnable >();
+    private volatile JobExecutionException exception;
+    private boolean                        done;
+    private boolean                        draining;
+
+    AsyncCompletion( AsyncJobSupport support, AsyncJob job, JobExecutionContext context ) {
+        this.support = support;
+        this.job = job;
+        this.context = context;
+    }
+
+    AsyncJob getJob() {
+        return job;
+    }
+
+    JobExecutionContext getContext() {
+        return context;
+    }
+
+    /**
+     * 即将调用 executeAsync，getJobRunTime 从这里开始计算，不包括排队等待的时间
+     */
+    void started() {
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return 异常完成时的异常，只在完成之后的回调中有意义
+     */
+    JobExecutionException getException() {
+        return exception;
+    }
+
+    /**
+     * 完成之后执行 callback
+     */
+    void defer( Runnable callback ) {
+        synchronized ( this ) {
+            callbacks.add( callback );
+            if ( !done || draining ) {
+                return;
+            }
+            draining = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void accept( Object result, Throwable failure ) {
+        if ( failure != null ) {
+            exception = toJobExecutionException( failure );
+        } else {
+            context.setResult( result );
+        }
+        if ( context instanceof JobExecutionContextImpl ) {
+            ( (JobExecutionContextImpl) context ).setJobRunTime( System.currentTimeMillis() - startTime );
+        }
+        synchronized ( this ) {
+            done = true;
+            draining = true;
+        }
+        drain();
+        support.completed( this );
+    }
+
+    private void drain() {
+        while ( true ) {
+            Runnable callback;
+            synchronized ( this ) {
+                callback = callbacks.poll();
+                if ( callback == null ) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                callback.run();
+            } catch ( RuntimeException e ) {
+                LOG.error( "Listener of job " + context.getJobDetail().getKey() + " failed on completion", e );
+            }
+        }
+    }
+
+    static JobExecutionException toJobExecutionException( Throwable failure ) {
+        while ( ( failure instanceof CompletionException || failure instanceof ExecutionException )
+                && failure.getCause() != null ) {
+            failure = failure.getCause();
+        }
+        if ( failure instanceof JobExecutionException ) {
+            return (JobExecutionException) failure;
+        }
+        return new JobExecutionException( failure );
+    }
+}
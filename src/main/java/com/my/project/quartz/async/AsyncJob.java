@@ -0,0 +1,46 @@
+package com.my.project.quartz.async;
+
+import java.util.concurrent.CompletionStage;
+
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * 异步执行的 Job：返回 CompletionStage 后立即释放工作线程
+ *
+ * <pre>
+ * 等待 I/O 的 Job 同步执行时，整个等待期间都占用一个工作线程，3 个线程最多同时等待 3 个请求。
+ * 实现 executeAsync 发起请求并返回 CompletionStage，工作线程在返回后立即去执行其他触发，
+ * 少量线程就可以同时驱动成千上万个等待中的执行。
+ *
+ * 需要先用 AsyncJobSupport.register 注册到 Scheduler，之后：
+ *   - JobListener.jobWasExecuted、TriggerListener.triggerComplete 在 CompletionStage 完成时回调，
+ *     getResult 为完成的值，getJobRunTime 为从开始到完成的时间，异常完成时传入 JobExecutionException；
+ *   - 标记了 DisallowConcurrentExecution 的 Job 在完成之前不会开始下一次执行；
+ *   - AsyncJobSupport 配置的并发上限按完成时释放计算。
+ * 没有注册 AsyncJobSupport 时，execute 在工作线程中等待 CompletionStage 完成，行为与同步 Job 相同。
+ *
+ * 注意不要覆盖 execute。
+ * Job 不能按返回值重载 execute，所以异步方法命名为 executeAsync，execute 由默认方法桥接。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public interface AsyncJob extends Job {
+
+    /**
+     * 开始执行，不能阻塞等待 I/O
+     *
+     * @return 执行完成时完成的 CompletionStage，不能为 null；异常完成时如果异常是 JobExecutionException，
+     *         其中的 refireImmediately、unscheduleFiringTrigger 等标志照常生效
+     * @throws JobExecutionException 开始之前失败，等同于同步 Job 抛出异常
+     */
+    CompletionStage < ? > executeAsync( JobExecutionContext context ) throws JobExecutionException;
+
+    @Override
+    default void execute( JobExecutionContext context ) throws JobExecutionException {
+        AsyncJobSupport.execute( this, context );
+    }
+}
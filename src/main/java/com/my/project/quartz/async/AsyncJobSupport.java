@@ -0,0 +1,529 @@
+package com.my.project.quartz.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.ListenerManager;
+import org.quartz.Matcher;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerKey;
+import org.quartz.TriggerListener;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 在 Scheduler 中执行 AsyncJob：工作线程只负责开始执行，完成时再处理监听器和并发限制
+ *
+ * <pre>
+ * Quartz 认为 Job.execute 返回时执行就结束了：通知监听器、解除 DisallowConcurrentExecution 的阻塞、
+ * 处理 JobExecutionException 的标志。AsyncJob 返回时执行才刚开始，本类把这些处理推迟到完成时：
+ *   - register 把已经注册的 JobListener 和 TriggerListener 替换为包装，jobWasExecuted 和
+ *     triggerComplete 在完成时回调，匹配条件和注册顺序不变；之后注册的监听器用 wrap 包装。
+ *     实现了 ThreadBoundListener 的监听器不包装；
+ *   - 已经开始、还没有完成的执行（包括等待开始的）达到 maxInFlight 时，工作线程等待有执行完成，
+ *     限制内存和下游压力；
+ *   - setGroupLimit 限制一个 Job 分组同时执行的数量，标记了 DisallowConcurrentExecution 的 Job
+ *     同一时间只执行一次。超过限制的执行不占用工作线程，排队到有执行完成时再调用 executeAsync；
+ *     DisallowConcurrentExecution 的 Job 最多排队一次，之后的触发被否决，与 Quartz 阻塞 Trigger 时
+ *     错过的触发在解除阻塞后合并执行相近；
+ *   - 异常完成时按 JobExecutionException 的标志取消 Trigger 或 triggerJob 重新执行，
+ *     标记了 PersistJobDataAfterExecution 的 Job 完成后保存 JobDataMap。
+ * Trigger 已经结束的非持久 Job 在工作线程返回时被 JobStore 删除，排队中的执行照常开始，只是不再保存和重新执行。
+ * 每个 Job 的状态只在有执行或等待时保留，最后一次执行完成、Job 被删除或调度数据被清空时丢弃。
+ *
+ * 用法：
+ *   AsyncJobSupport async = new AsyncJobSupport( "AsyncJobSupport", 10000 );
+ *   async.setGroupLimit( "httpGroup", 500 );
+ *   async.register( scheduler ); // 在其他监听器之后注册
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class AsyncJobSupport implements JobListener, TriggerListener {
+
+    /** SchedulerContext 中本对象的键 */
+    public static final String                      KEY         = AsyncJobSupport.class.getName();
+
+    private static final Logger                     LOG         = LoggerFactory.getLogger( AsyncJobSupport.class );
+    /** 放在 JobExecutionContext 中，本次执行的 AsyncCompletion */
+    private static final String                     COMPLETION  = KEY + ".completion";
+
+    private final String                            name;
+    private final int                               maxInFlight;
+    private final Semaphore                         permits;
+    private final ConcurrentMap < String, Integer > groupLimits = new ConcurrentHashMap < String, Integer >();
+    /** 以下状态只在 synchronized ( this ) 内访问；states 只包含有执行或等待开始的 Job */
+    private final Map < JobKey, State >             states      = new HashMap < JobKey, State >();
+    private final Map < String, Group >             groups      = new HashMap < String, Group >();
+    private int                                     inFlight;
+    private int                                     peakInFlight;
+    private long                                    started;
+    private long                                    completed;
+    private long                                    failed;
+    private long                                    deferred;
+    private long                                    coalesced;
+
+    /** 当前线程中正在 launch 的执行之后要开始的执行 */
+    private final ThreadLocal < ArrayDeque < AsyncCompletion > > launching =
+            new ThreadLocal < ArrayDeque < AsyncCompletion > >();
+
+    public AsyncJobSupport() {
+        this( "AsyncJobSupport", 10000 );
+    }
+
+    /**
+     * @param maxInFlight 同时执行的异步 Job 的上限，达到上限时工作线程等待
+     */
+    public AsyncJobSupport( String name, int maxInFlight ) {
+        if ( maxInFlight <= 0 ) {
+            throw new IllegalArgumentException( "maxInFlight must be > 0" );
+        }
+        this.name = name;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore( maxInFlight );
+    }
+
+    /**
+     * 放入 SchedulerContext，包装已经注册的监听器，再把本对象注册为所有 Job 和 Trigger 的监听器，
+     * 并在 Job 被删除时丢弃它的状态
+     */
+    public void register( Scheduler scheduler ) throws SchedulerException {
+        scheduler.getContext().put( KEY, this );
+        ListenerManager manager = scheduler.getListenerManager();
+        // 全部移除后按原来的顺序重新注册，保持回调顺序
+        List < JobListener > jobListeners = new ArrayList < JobListener >( manager.getJobListeners() );
+        List < List < Matcher < JobKey > > > jobMatchers = new ArrayList < List < Matcher < JobKey > > >();
+        for ( JobListener listener : jobListeners ) {
+            jobMatchers.add(
+                    new ArrayList < Matcher < JobKey > >( manager.getJobListenerMatchers( listener.getName() ) ) );
+            manager.removeJobListener( listener.getName() );
+        }
+        for ( int i = 0; i < jobListeners.size(); i++ ) {
+            manager.addJobListener( wrap( jobListeners.get( i ) ), jobMatchers.get( i ) );
+        }
+        List < TriggerListener > triggerListeners = new ArrayList < TriggerListener >( manager.getTriggerListeners() );
+        List < List < Matcher < TriggerKey > > > triggerMatchers = new ArrayList < List < Matcher < TriggerKey > > >();
+        for ( TriggerListener listener : triggerListeners ) {
+            triggerMatchers.add( new ArrayList < Matcher < TriggerKey > >(
+                    manager.getTriggerListenerMatchers( listener.getName() ) ) );
+            manager.removeTriggerListener( listener.getName() );
+        }
+        for ( int i = 0; i < triggerListeners.size(); i++ ) {
+            manager.addTriggerListener( wrap( triggerListeners.get( i ) ), triggerMatchers.get( i ) );
+        }
+        manager.addJobListener( this, EverythingMatcher.allJobs() );
+        manager.addTriggerListener( this, EverythingMatcher.allTriggers() );
+        manager.addSchedulerListener( new SchedulerListenerSupport() {
+
+            @Override
+            public void jobDeleted( JobKey jobKey ) {
+                synchronized ( AsyncJobSupport.this ) {
+                    State state = states.get( jobKey );
+                    if ( state != null ) {
+                        prune( jobKey, state );
+                    }
+                }
+            }
+
+            @Override
+            public void schedulingDataCleared() {
+                synchronized ( AsyncJobSupport.this ) {
+                    for ( Iterator < State > it = states.values().iterator(); it.hasNext(); ) {
+                        if ( it.next().idle() ) {
+                            it.remove();
+                        }
+                    }
+                }
+            }
+        } );
+    }
+
+    /**
+     * @return jobWasExecuted 在异步执行完成时回调的包装，ThreadBoundListener 原样返回
+     */
+    public static JobListener wrap( JobListener listener ) {
+        if ( listener instanceof ThreadBoundListener || listener instanceof DeferredJobListener
+                || listener instanceof AsyncJobSupport ) {
+            return listener;
+        }
+        return new DeferredJobListener( listener );
+    }
+
+    /**
+     * @return triggerComplete 在异步执行完成时回调的包装，ThreadBoundListener 原样返回
+     */
+    public static TriggerListener wrap( TriggerListener listener ) {
+        if ( listener instanceof ThreadBoundListener || listener instanceof DeferredTriggerListener
+                || listener instanceof AsyncJobSupport ) {
+            return listener;
+        }
+        return new DeferredTriggerListener( listener );
+    }
+
+    /**
+     * 限制分组中同时执行的异步 Job 数量
+     */
+    public void setGroupLimit( String group, int limit ) {
+        if ( limit <= 0 ) {
+            throw new IllegalArgumentException( "limit must be > 0" );
+        }
+        groupLimits.put( group, limit );
+    }
+
+    public void removeGroupLimit( String group ) {
+        groupLimits.remove( group );
+    }
+
+    /**
+     * @return 异步执行中的 CompletionStage，同步 Job 或者没有注册本类时返回 null
+     */
+    static AsyncCompletion completionOf( JobExecutionContext context ) {
+        return (AsyncCompletion) context.get( COMPLETION );
+    }
+
+    /**
+     * AsyncJob.execute 的实现：注册了本类时开始执行后立即返回，否则在当前线程中等待完成
+     */
+    static void execute( AsyncJob job, JobExecutionContext context ) throws JobExecutionException {
+        AsyncJobSupport support;
+        try {
+            support = (AsyncJobSupport) context.getScheduler().getContext().get( KEY );
+        } catch ( SchedulerException e ) {
+            throw new JobExecutionException( e );
+        }
+        if ( support != null ) {
+            support.start( job, context );
+            return;
+        }
+        CompletionStage < ? > stage = job.executeAsync( context );
+        try {
+            context.setResult( stage.toCompletableFuture().get() );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new JobExecutionException( e );
+        } catch ( ExecutionException e ) {
+            throw AsyncCompletion.toJobExecutionException( e );
+        }
+    }
+
+    private void start( AsyncJob job, JobExecutionContext context ) throws JobExecutionException {
+        try {
+            permits.acquire();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new JobExecutionException( "Interrupted while waiting for an in-flight slot", e );
+        }
+        AsyncCompletion completion = new AsyncCompletion( this, job, context );
+        context.put( COMPLETION, completion );
+        JobKey key = context.getJobDetail().getKey();
+        synchronized ( this ) {
+            inFlight++;
+            peakInFlight = Math.max( peakInFlight, inFlight );
+            State state = state( key );
+            state.concurrentExecutionDisallowed = context.getJobDetail().isConcurrentExectionDisallowed();
+            Group group = group( key.getGroup() );
+            if ( !admissible( state, group ) ) {
+                // 工作线程不等待，完成一个执行后再开始
+                state.waiting++;
+                group.waiting.add( completion );
+                deferred++;
+                return;
+            }
+            state.running++;
+            group.running++;
+        }
+        launch( completion );
+    }
+
+    /**
+     * 调用 executeAsync；已经完成的 CompletionStage 会在当前线程中回调 completed，
+     * 其中开始的下一个执行放入 launching 由外层循环处理，避免递归
+     */
+    private void launch( AsyncCompletion completion ) {
+        ArrayDeque < AsyncCompletion > queue = launching.get();
+        if ( queue != null ) {
+            queue.add( completion );
+            return;
+        }
+        queue = new ArrayDeque < AsyncCompletion >();
+        launching.set( queue );
+        try {
+            for ( AsyncCompletion next = completion; next != null; next = queue.poll() ) {
+                synchronized ( this ) {
+                    started++;
+                }
+                next.started();
+                CompletionStage < ? > stage;
+                try {
+                    stage = next.getJob().executeAsync( next.getContext() );
+                    if ( stage == null ) {
+                        throw new JobExecutionException(
+                                "executeAsync of " + next.getContext().getJobDetail().getKey() + " returned null" );
+                    }
+                } catch ( Throwable e ) {
+                    next.accept( null, e );
+                    continue;
+                }
+                stage.whenComplete( next );
+            }
+        } finally {
+            launching.remove();
+        }
+    }
+
+    /**
+     * CompletionStage 完成、推迟的监听器回调执行之后调用
+     */
+    void completed( AsyncCompletion completion ) {
+        JobExecutionContext context = completion.getContext();
+        JobExecutionException exception = completion.getException();
+        JobKey key = context.getJobDetail().getKey();
+        AsyncCompletion next = null;
+        synchronized ( this ) {
+            inFlight--;
+            completed++;
+            if ( exception != null ) {
+                failed++;
+            }
+            State state = state( key );
+            Group group = group( key.getGroup() );
+            state.running--;
+            group.running--;
+            for ( Iterator < AsyncCompletion > it = group.waiting.iterator(); it.hasNext(); ) {
+                AsyncCompletion candidate = it.next();
+                State candidateState = state( candidate.getContext().getJobDetail().getKey() );
+                if ( admissible( candidateState, group ) ) {
+                    it.remove();
+                    candidateState.waiting--;
+                    candidateState.running++;
+                    group.running++;
+                    next = candidate;
+                    break;
+                }
+            }
+            prune( key, state );
+        }
+        permits.release();
+        applyInstructions( context, exception );
+        if ( next != null ) {
+            launch( next );
+        }
+    }
+
+    private void applyInstructions( JobExecutionContext context, JobExecutionException exception ) {
+        JobDetail job = context.getJobDetail();
+        Trigger trigger = context.getTrigger();
+        Scheduler scheduler = context.getScheduler();
+        try {
+            if ( exception != null && exception.unscheduleAllTriggers() ) {
+                for ( Trigger t : scheduler.getTriggersOfJob( job.getKey() ) ) {
+                    scheduler.unscheduleJob( t.getKey() );
+                }
+                return;
+            }
+            if ( exception != null && exception.unscheduleFiringTrigger() ) {
+                scheduler.unscheduleJob( trigger.getKey() );
+                return;
+            }
+            // Trigger 已经结束的非持久 Job 已经被删除，不再保存或重新执行
+            if ( !scheduler.checkExists( job.getKey() ) ) {
+                return;
+            }
+            if ( job.isPersistJobDataAfterExecution() ) {
+                scheduler.addJob( job, true, true );
+            }
+            if ( exception != null && exception.refireImmediately() ) {
+                scheduler.triggerJob( job.getKey(), new JobDataMap( trigger.getJobDataMap() ) );
+            }
+        } catch ( SchedulerException e ) {
+            LOG.warn( "Failed to complete async execution of job " + job.getKey() + ": " + e.getMessage() );
+        }
+    }
+
+    private boolean admissible( State state, Group group ) {
+        if ( state.concurrentExecutionDisallowed && state.running > 0 ) {
+            return false;
+        }
+        Integer limit = groupLimits.get( group.name );
+        return limit == null || group.running < limit;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void triggerFired( Trigger trigger, JobExecutionContext context ) {
+    }
+
+    /**
+     * 标记了 DisallowConcurrentExecution 的 Job 已经有一次触发在等待开始时，否决新的触发，合并到等待的那次中
+     */
+    @Override
+    public boolean vetoJobExecution( Trigger trigger, JobExecutionContext context ) {
+        JobDetail job = context.getJobDetail();
+        if ( !AsyncJob.class.isAssignableFrom( job.getJobClass() ) ) {
+            return false;
+        }
+        synchronized ( this ) {
+            // 没有状态说明没有执行，也就没有等待开始的执行
+            State state = states.get( job.getKey() );
+            if ( state == null ) {
+                return false;
+            }
+            state.concurrentExecutionDisallowed = job.isConcurrentExectionDisallowed();
+            if ( state.concurrentExecutionDisallowed && state.waiting > 0 ) {
+                coalesced++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void triggerMisfired( Trigger trigger ) {
+    }
+
+    @Override
+    public void triggerComplete( Trigger trigger, JobExecutionContext context,
+            CompletedExecutionInstruction triggerInstructionCode ) {
+    }
+
+    @Override
+    public void jobToBeExecuted( JobExecutionContext context ) {
+    }
+
+    @Override
+    public void jobExecutionVetoed( JobExecutionContext context ) {
+    }
+
+    @Override
+    public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return 已经开始、还没有完成的异步执行数
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getPeakInFlight() {
+        return peakInFlight;
+    }
+
+    public synchronized long getStarted() {
+        return started;
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return 异常完成的执行数
+     */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return 因为并发限制没有立即开始、等待其他执行完成的执行数
+     */
+    public synchronized long getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * @return 标记了 DisallowConcurrentExecution 的 Job 合并到等待中的执行、被否决的触发数
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + "[inFlight=" + inFlight + " peak=" + peakInFlight + " started=" + started + " completed="
+                + completed + " failed=" + failed + " deferred=" + deferred + " coalesced=" + coalesced + "]";
+    }
+
+    private State state( JobKey key ) {
+        State state = states.get( key );
+        if ( state == null ) {
+            state = new State();
+            states.put( key, state );
+        }
+        return state;
+    }
+
+    /**
+     * 丢弃没有执行、也没有等待开始的 Job 的状态；仍在执行的 Job 被删除时，状态在最后一次执行完成时丢弃
+     */
+    private void prune( JobKey key, State state ) {
+        if ( state.idle() ) {
+            states.remove( key );
+        }
+    }
+
+    private Group group( String name ) {
+        Group group = groups.get( name );
+        if ( group == null ) {
+            group = new Group( name );
+            groups.put( name, group );
+        }
+        return group;
+    }
+
+    /**
+     * 一个 Job 的异步执行状态，只在 synchronized ( AsyncJobSupport.this ) 内访问
+     */
+    private static final class State {
+
+        int     running;
+        /** 在 Group.waiting 中等待开始的执行数 */
+        int     waiting;
+        boolean concurrentExecutionDisallowed;
+
+        boolean idle() {
+            return running == 0 && waiting == 0;
+        }
+    }
+
+    private static final class Group {
+
+        final String                         name;
+        int                                  running;
+        /** 等待开始的执行，按开始的顺序 */
+        final ArrayDeque < AsyncCompletion > waiting = new ArrayDeque < AsyncCompletion >();
+
+        Group( String name ) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.my.project.quartz.async;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobListener;
+
+/**
+ * 把 jobWasExecuted 推迟到异步执行完成时调用，其他回调和同步 Job 直接转发
+ *
+ * @author yang.dongdong
+ *
+ */
+final class DeferredJobListener implements JobListener {
+
+    private final JobListener delegate;
+
+    DeferredJobListener( JobListener delegate ) {
+        this.delegate = delegate;
+    }
+
+    JobListener getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void jobToBeExecuted( JobExecutionContext context ) {
+        delegate.jobToBeExecuted( context );
+    }
+
+    @Override
+    public void jobExecutionVetoed( JobExecutionContext context ) {
+        delegate.jobExecutionVetoed( context );
+    }
+
+    @Override
+    public void jobWasExecuted( final JobExecutionContext context, JobExecutionException jobException ) {
+        final AsyncCompletion completion = AsyncJobSupport.completionOf( context );
+        if ( completion == null ) {
+            delegate.jobWasExecuted( context, jobException );
+            return;
+        }
+        completion.defer( new Runnable() {
+
+            @Override
+            public void run() {
+                delegate.jobWasExecuted( context, completion.getException() );
+            }
+        } );
+    }
+
+    @Override
+    public String toString() {
+        return "Deferred[" + delegate + "]";
+    }
+}
@@ -0,0 +1,69 @@
+package com.my.project.quartz.async;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+import org.quartz.spi.OperableTrigger;
+
+/**
+ * 把 triggerComplete 推迟到异步执行完成时调用，指令按完成时的结果重新计算
+ *
+ * @author yang.dongdong
+ *
+ */
+final class DeferredTriggerListener implements TriggerListener {
+
+    private final TriggerListener delegate;
+
+    DeferredTriggerListener( TriggerListener delegate ) {
+        this.delegate = delegate;
+    }
+
+    TriggerListener getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void triggerFired( Trigger trigger, JobExecutionContext context ) {
+        delegate.triggerFired( trigger, context );
+    }
+
+    @Override
+    public boolean vetoJobExecution( Trigger trigger, JobExecutionContext context ) {
+        return delegate.vetoJobExecution( trigger, context );
+    }
+
+    @Override
+    public void triggerMisfired( Trigger trigger ) {
+        delegate.triggerMisfired( trigger );
+    }
+
+    @Override
+    public void triggerComplete( final Trigger trigger, final JobExecutionContext context,
+            CompletedExecutionInstruction triggerInstructionCode ) {
+        final AsyncCompletion completion = AsyncJobSupport.completionOf( context );
+        if ( completion == null || !( trigger instanceof OperableTrigger ) ) {
+            delegate.triggerComplete( trigger, context, triggerInstructionCode );
+            return;
+        }
+        completion.defer( new Runnable() {
+
+            @Override
+            public void run() {
+                delegate.triggerComplete( trigger, context,
+                        ( (OperableTrigger) trigger ).executionComplete( context, completion.getException() ) );
+            }
+        } );
+    }
+
+    @Override
+    public String toString() {
+        return "Deferred[" + delegate + "]";
+    }
+}
@@ -0,0 +1,16 @@
+package com.my.project.quartz.async;
+
+/**
+ * 标记与工作线程绑定的 JobListener 或 TriggerListener
+ *
+ * <pre>
+ * AsyncJobSupport.register 会把已经注册的监听器包装为在 CompletionStage 完成时才回调。
+ * 按线程工作的监听器（例如中断执行线程的 DeadlineEnforcer）需要在工作线程返回时回调，
+ * 否则完成之前工作线程已经在执行其他 Job。实现本接口的监听器不被包装。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public interface ThreadBoundListener {
+}
@@ -0,0 +1,80 @@
+package com.my.project.quartz.bulk;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+
+/**
+ * BulkScheduler 的注册结果
+ *
+ * @author yang.dongdong
+ *
+ */
+public class BulkScheduleResult {
+
+    private final Map < JobKey, SchedulerException > failures = new LinkedHashMap < JobKey, SchedulerException >();
+    private int                                      scheduledJobs;
+    private int                                      scheduledTriggers;
+    private int                                      batches;
+    private long                                     elapsedNanos;
+
+    void onBatch() {
+        batches++;
+    }
+
+    void onScheduled( int jobs, int triggers ) {
+        scheduledJobs += jobs;
+        scheduledTriggers += triggers;
+    }
+
+    void onFailure( JobKey key, SchedulerException e ) {
+        failures.put( key, e );
+    }
+
+    void setElapsedNanos( long elapsedNanos ) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return 所有 Job 都注册成功时返回 true
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    public int getScheduledJobs() {
+        return scheduledJobs;
+    }
+
+    public int getScheduledTriggers() {
+        return scheduledTriggers;
+    }
+
+    /**
+     * @return 注册失败的 Job 及原因
+     */
+    public Map < JobKey, SchedulerException > getFailures() {
+        return Collections.unmodifiableMap( failures );
+    }
+
+    /**
+     * @return 调用 scheduleJobs 的次数，包括失败后拆分重试的次数
+     */
+    public int getBatches() {
+        return batches;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis( elapsedNanos );
+    }
+
+    @Override
+    public String toString() {
+        return "scheduledJobs=" + scheduledJobs + " scheduledTriggers=" + scheduledTriggers + " failures="
+                + failures.size() + " batches=" + batches + " elapsed=" + getElapsedMillis() + "ms";
+    }
+}
@@ -0,0 +1,143 @@
+package com.my.project.quartz.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+
+/**
+ * 批量注册 Job 和 Trigger
+ *
+ * <pre>
+ * 逐个调用 scheduler.scheduleJob( jobDetail, trigger ) 时，每次调用都要获取 JobStore 的锁、
+ * 唤醒调度线程并通知 SchedulerListener（jobAdded + jobScheduled）。
+ * 本类把 Job 按 batchSize 分批交给 scheduler.scheduleJobs：每批只调用一次 storeJobsAndTriggers
+ * （RAMJobStore 加一次锁，ShardedRAMJobStore 每个分片加一次锁，JournalingJobStore 只等待一次刷盘），
+ * 只唤醒一次调度线程，并且只通知 jobAdded。
+ * jobAdded 仍然是每个 Job 一次：通知由 QuartzScheduler.scheduleJobs 逐个发出，不经过 JobStore，
+ * 也没有批量的 SchedulerListener 方法，合并只能替换 QuartzScheduler。
+ *
+ * scheduleJobs 是“全部成功或全部失败”的。某一批失败时把它对半拆开重试，
+ * 直到定位到失败的单个 Job，其余的 Job 照常注册，失败的 Job 和原因记录在结果中。
+ *
+ *   BulkScheduleResult result = new BulkScheduler( scheduler )
+ *           .add( job1, trigger1 )
+ *           .add( job2, trigger2, trigger3 )
+ *           .execute( false );
+ *
+ * batchSize 限制了一次持有 JobStore 锁的时间，避免加载大量 Job 时调度线程长时间停顿。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class BulkScheduler {
+
+    public static final int                                    DEFAULT_BATCH_SIZE = 50000;
+
+    private final Scheduler                                    scheduler;
+    private final int                                          batchSize;
+    private final Map < JobDetail, Set < ? extends Trigger > > pending            = new LinkedHashMap < JobDetail, Set < ? extends Trigger > >();
+
+    public BulkScheduler( Scheduler scheduler ) {
+        this( scheduler, DEFAULT_BATCH_SIZE );
+    }
+
+    public BulkScheduler( Scheduler scheduler, int batchSize ) {
+        if ( batchSize < 1 ) {
+            throw new IllegalArgumentException( "batchSize must be > 0: " + batchSize );
+        }
+        this.scheduler = scheduler;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 添加一个 Job 及其 Trigger，调用 execute 时才注册
+     */
+    public BulkScheduler add( JobDetail job, Trigger... triggers ) {
+        Set < Trigger > set = new LinkedHashSet < Trigger >( triggers.length * 2 );
+        Collections.addAll( set, triggers );
+        pending.put( job, set );
+        return this;
+    }
+
+    /**
+     * @return 已添加、还没有注册的 Job 数
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * 注册所有已添加的 Job，然后清空
+     *
+     * @param replace 是否替换已经存在的 Job 和 Trigger
+     */
+    public BulkScheduleResult execute( boolean replace ) {
+        try {
+            return scheduleJobs( pending, replace );
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * 分批注册 triggersAndJobs
+     *
+     * @param replace 是否替换已经存在的 Job 和 Trigger
+     */
+    public BulkScheduleResult scheduleJobs( Map < JobDetail, Set < ? extends Trigger > > triggersAndJobs,
+            boolean replace ) {
+        BulkScheduleResult result = new BulkScheduleResult();
+        long start = System.nanoTime();
+        List < Map.Entry < JobDetail, Set < ? extends Trigger > > > batch = new ArrayList < Map.Entry < JobDetail, Set < ? extends Trigger > > >(
+                Math.min( batchSize, triggersAndJobs.size() ) );
+        for ( Map.Entry < JobDetail, Set < ? extends Trigger > > entry : triggersAndJobs.entrySet() ) {
+            batch.add( entry );
+            if ( batch.size() == batchSize ) {
+                submit( batch, replace, result );
+                batch.clear();
+            }
+        }
+        if ( !batch.isEmpty() ) {
+            submit( batch, replace, result );
+        }
+        result.setElapsedNanos( System.nanoTime() - start );
+        return result;
+    }
+
+    /**
+     * 提交一批，失败时对半拆开重试
+     */
+    private void submit( List < Map.Entry < JobDetail, Set < ? extends Trigger > > > entries, boolean replace,
+            BulkScheduleResult result ) {
+        Map < JobDetail, Set < ? extends Trigger > > batch = new LinkedHashMap < JobDetail, Set < ? extends Trigger > >(
+                entries.size() * 2 );
+        int triggerCount = 0;
+        for ( Map.Entry < JobDetail, Set < ? extends Trigger > > entry : entries ) {
+            batch.put( entry.getKey(), entry.getValue() );
+            triggerCount += entry.getValue() == null ? 0 : entry.getValue().size();
+        }
+        try {
+            result.onBatch();
+            scheduler.scheduleJobs( batch, replace );
+            result.onScheduled( entries.size(), triggerCount );
+        } catch ( SchedulerException e ) {
+            if ( entries.size() == 1 ) {
+                result.onFailure( entries.get( 0 ).getKey().getKey(), e );
+                return;
+            }
+            int half = entries.size() / 2;
+            submit( entries.subList( 0, half ), replace, result );
+            submit( entries.subList( half, entries.size() ), replace, result );
+        }
+    }
+}
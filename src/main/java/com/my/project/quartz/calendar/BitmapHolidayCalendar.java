@@ -0,0 +1,593 @@
+package com.my.project.quartz.calendar;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import org.quartz.Calendar;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.impl.calendar.HolidayCalendar;
+
+/**
+ * 用位图保存排除日期和每天排除时段的 Calendar
+ *
+ * <pre>
+ * Quartz 的 HolidayCalendar 用 TreeSet&lt;Date&gt; 保存节假日，isTimeIncluded 每次都要创建 java.util.Calendar
+ * 求当天零点再查 TreeSet，getNextIncludedTime 逐天调用 isTimeIncluded。本类：
+ *
+ *   排除日期 -> long[]，按整年分配，每天一位（从 1970-01-01 起的天数，起点按 64 对齐）
+ *   排除时段 -> 每个星期几一个 long[23]，每分钟一位（一天 1440 分钟）
+ *
+ * isTimeIncluded 只做一次时区偏移查找和两次位运算；getNextIncludedTime 用 Long.numberOfTrailingZeros
+ * 按 64 位整字跳过连续的排除日期和排除分钟，不逐天、逐分钟循环。两者都不分配对象。
+ * 时区偏移按 [from, until) 区间缓存，只有跨越夏令时切换点时才重新计算；查找下一个包含时刻时在区间内
+ * 按本地时间计算，超出区间就从切换点重新开始，夏令时开始时跳过的本地时间和结束时重复的本地时间都能正确处理。
+ *
+ *   BitmapHolidayCalendar calendar = new BitmapHolidayCalendar( TimeZone.getTimeZone( "Asia/Shanghai" ) );
+ *   calendar.addExcludedDates( LocalDate.of( 2016, 10, 1 ), LocalDate.of( 2016, 10, 7 ) );
+ *   // 每天 23:00 ~ 次日 01:00，以及整个周六
+ *   calendar.addExcludedWindow( LocalTime.of( 23, 0 ), LocalTime.of( 1, 0 ) );
+ *   calendar.addExcludedWindow( DayOfWeek.SATURDAY, LocalTime.MIDNIGHT, LocalTime.MIDNIGHT );
+ *   scheduler.addCalendar( "holidays", calendar, false, false );
+ *
+ * 序列化时只写出排除日期的区间（变长整数编码的差值）和非 0 的时段字，一年的节假日通常只有几十个字节。
+ * 修改方法不是线程安全的，应当在加入 Scheduler 之前配置好；加入 Scheduler 后的查询可以并发调用。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class BitmapHolidayCalendar extends BaseCalendar {
+
+    private static final long               serialVersionUID = 1L;
+
+    private static final long               DAY_MILLIS       = 86400000L;
+    private static final long               MINUTE_MILLIS    = 60000L;
+    private static final int                MINUTES_PER_DAY  = 1440;
+    private static final int                WINDOW_WORDS     = ( MINUTES_PER_DAY + 63 ) >>> 6;
+    private static final int                ALL_WEEKDAYS     = 0x7F;
+    /** 与基础 Calendar 交替查找的最大次数 */
+    private static final int                MAX_ROUNDS       = 10000;
+    private static final int                FORMAT_VERSION   = 1;
+
+    /** 第 i 位表示 dayBase + i 这一天被排除 */
+    private transient long[]                days;
+    private transient long                  dayBase;
+    private transient int                   firstYear;
+    private transient int                   lastYear;
+    /** 按星期几（0 = 星期一）排除的分钟 */
+    private transient long[][]              windows          = new long[7][WINDOW_WORDS];
+    /** 整天都被时段排除的星期几 */
+    private transient int                   fullWeekdays;
+
+    private transient volatile ZoneId       zone;
+    /** 最近一次使用的时区偏移区间，只有跨越切换点时才重新分配 */
+    private transient volatile OffsetWindow offsetWindow;
+
+    public BitmapHolidayCalendar() {
+        super();
+    }
+
+    public BitmapHolidayCalendar( Calendar baseCalendar ) {
+        super( baseCalendar );
+    }
+
+    public BitmapHolidayCalendar( TimeZone timeZone ) {
+        super( timeZone );
+    }
+
+    public BitmapHolidayCalendar( Calendar baseCalendar, TimeZone timeZone ) {
+        super( baseCalendar, timeZone );
+    }
+
+    /**
+     * 由 HolidayCalendar 转换，保留基础 Calendar、时区和描述
+     */
+    public static BitmapHolidayCalendar of( HolidayCalendar holidays ) {
+        BitmapHolidayCalendar calendar = new BitmapHolidayCalendar( holidays.getBaseCalendar(),
+                holidays.getTimeZone() );
+        calendar.setDescription( holidays.getDescription() );
+        for ( Date date : holidays.getExcludedDates() ) {
+            calendar.addExcludedDate( date );
+        }
+        return calendar;
+    }
+
+    /**
+     * 排除 date 所在的一整天（按本 Calendar 的时区），与 HolidayCalendar.addExcludedDate 相同
+     */
+    public void addExcludedDate( Date date ) {
+        addExcludedDate( Instant.ofEpochMilli( date.getTime() ).atZone( zone() ).toLocalDate() );
+    }
+
+    public void addExcludedDate( LocalDate date ) {
+        addExcludedDates( date, date );
+    }
+
+    /**
+     * 排除 [from, to] 之间的每一天（包含两端）
+     */
+    public void addExcludedDates( LocalDate from, LocalDate to ) {
+        if ( from.isAfter( to ) ) {
+            throw new IllegalArgumentException( "from " + from + " is after to " + to );
+        }
+        ensureYears( from.getYear(), to.getYear() );
+        setDays( from.toEpochDay(), to.toEpochDay() );
+    }
+
+    public void removeExcludedDate( LocalDate date ) {
+        long index = date.toEpochDay() - dayBase;
+        if ( days != null && index >= 0 && ( index >>> 6 ) < days.length ) {
+            days[(int) ( index >>> 6 )] &= ~( 1L << index );
+        }
+    }
+
+    public boolean isDateExcluded( LocalDate date ) {
+        return isDayExcluded( date.toEpochDay() );
+    }
+
+    /**
+     * @return 全部排除日期，按时间顺序
+     */
+    public SortedSet < LocalDate > getExcludedDates() {
+        SortedSet < LocalDate > dates = new TreeSet < LocalDate >();
+        long[] bits = days;
+        if ( bits == null ) {
+            return dates;
+        }
+        for ( int i = 0; i < bits.length; i++ ) {
+            for ( long word = bits[i]; word != 0; word &= word - 1 ) {
+                dates.add( LocalDate.ofEpochDay( dayBase + ( i << 6 ) + Long.numberOfTrailingZeros( word ) ) );
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * 每天排除 [from, to) 这段时间，按分钟计算（from 向下、to 向上取整到分钟）
+     *
+     * <pre>
+     * to 不晚于 from 时表示跨过午夜，例如 23:00 ~ 01:00；from 等于 to 表示一整天。
+     * </pre>
+     */
+    public void addExcludedWindow( LocalTime from, LocalTime to ) {
+        for ( DayOfWeek day : DayOfWeek.values() ) {
+            addExcludedWindow( day, from, to );
+        }
+    }
+
+    /**
+     * 在每个 day 排除 [from, to) 这段时间，跨过午夜的部分算在第二天
+     */
+    public void addExcludedWindow( DayOfWeek day, LocalTime from, LocalTime to ) {
+        int start = from.toSecondOfDay() / 60;
+        int end = ( to.toSecondOfDay() + 59 ) / 60;
+        int weekday = day.getValue() - 1;
+        if ( end > start ) {
+            setMinutes( windows[weekday], start, end );
+        } else {
+            setMinutes( windows[weekday], start, MINUTES_PER_DAY );
+            setMinutes( windows[( weekday + 1 ) % 7], 0, end );
+        }
+        updateFullWeekdays();
+    }
+
+    public void clearExcludedWindows() {
+        windows = new long[7][WINDOW_WORDS];
+        fullWeekdays = 0;
+    }
+
+    @Override
+    public void setTimeZone( TimeZone timeZone ) {
+        super.setTimeZone( timeZone );
+        zone = null;
+        offsetWindow = null;
+    }
+
+    /**
+     * 先检查基础 Calendar，再检查排除日期和排除时段
+     */
+    @Override
+    public boolean isTimeIncluded( long timeStamp ) {
+        if ( !super.isTimeIncluded( timeStamp ) ) {
+            return false;
+        }
+        long local = timeStamp + offsetWindow( timeStamp ).offset;
+        long day = Math.floorDiv( local, DAY_MILLIS );
+        if ( isDayExcluded( day ) ) {
+            return false;
+        }
+        int minute = (int) ( Math.floorMod( local, DAY_MILLIS ) / MINUTE_MILLIS );
+        return ( windows[weekday( day )][minute >>> 6] & ( 1L << minute ) ) == 0;
+    }
+
+    /**
+     * @return 不早于 timeStamp 的第一个包含的时刻；全部被排除时返回 0
+     */
+    @Override
+    public long getNextIncludedTime( long timeStamp ) {
+        // HolidayCalendar 等实现对包含的时刻返回当天零点，所以取较大者
+        long time = Math.max( timeStamp, super.getNextIncludedTime( timeStamp ) );
+        for ( int round = 0; round < MAX_ROUNDS; round++ ) {
+            long next = nextIncluded( time );
+            if ( next < 0 ) {
+                return 0;
+            }
+            Calendar base = getBaseCalendar();
+            if ( base == null || base.isTimeIncluded( next ) ) {
+                return next;
+            }
+            time = Math.max( next + 1, base.getNextIncludedTime( next ) );
+        }
+        return 0;
+    }
+
+    @Override
+    public Object clone() {
+        BitmapHolidayCalendar clone = (BitmapHolidayCalendar) super.clone();
+        clone.days = days == null ? null : days.clone();
+        clone.windows = new long[7][];
+        for ( int i = 0; i < 7; i++ ) {
+            clone.windows[i] = windows[i].clone();
+        }
+        clone.zone = null;
+        clone.offsetWindow = null;
+        return clone;
+    }
+
+    @Override
+    public String toString() {
+        int excluded = 0;
+        long[] bits = days;
+        if ( bits != null ) {
+            for ( long word : bits ) {
+                excluded += Long.bitCount( word );
+            }
+        }
+        int minutes = 0;
+        for ( long[] window : windows ) {
+            for ( long word : window ) {
+                minutes += Long.bitCount( word );
+            }
+        }
+        return "BitmapHolidayCalendar[excludedDays=" + excluded + ", excludedMinutesPerWeek=" + minutes + ", zone="
+                + zone() + "]";
+    }
+
+    /**
+     * 在一个偏移量不变的区间内按本地时间查找，超出区间就从下一个切换点重新开始
+     *
+     * @return 不早于 time 的第一个不被本 Calendar 排除的时刻，不存在时返回 -1
+     */
+    private long nextIncluded( long time ) {
+        while ( true ) {
+            OffsetWindow window = offsetWindow( time );
+            long local = nextLocal( time + window.offset );
+            if ( local == Long.MIN_VALUE ) {
+                return -1;
+            }
+            long next = local - window.offset;
+            if ( next < window.until ) {
+                return next;
+            }
+            time = window.until;
+        }
+    }
+
+    /**
+     * 在本地时间（从 1970-01-01T00:00 起的毫秒数，不含时区）上查找不早于 local 的第一个包含的时刻
+     *
+     * @return 每个星期几都整天被排除时返回 Long.MIN_VALUE
+     */
+    private long nextLocal( long local ) {
+        long day = Math.floorDiv( local, DAY_MILLIS );
+        if ( !isDayExcluded( day ) ) {
+            int minute = (int) ( Math.floorMod( local, DAY_MILLIS ) / MINUTE_MILLIS );
+            int free = nextFreeMinute( windows[weekday( day )], minute );
+            if ( free == minute ) {
+                return local;
+            }
+            if ( free >= 0 ) {
+                return day * DAY_MILLIS + free * MINUTE_MILLIS;
+            }
+        }
+        if ( fullWeekdays == ALL_WEEKDAYS ) {
+            return Long.MIN_VALUE;
+        }
+        // 排除日期按整字跳过，剩下的最多再跳过 6 个整天被排除的星期几
+        day = nextIncludedDay( day + 1 );
+        while ( ( fullWeekdays & ( 1 << weekday( day ) ) ) != 0 ) {
+            day = nextIncludedDay( day + 1 );
+        }
+        return day * DAY_MILLIS + nextFreeMinute( windows[weekday( day )], 0 ) * MINUTE_MILLIS;
+    }
+
+    private boolean isDayExcluded( long day ) {
+        long[] bits = days;
+        long index = day - dayBase;
+        return bits != null && index >= 0 && ( index >>> 6 ) < bits.length
+                && ( bits[(int) ( index >>> 6 )] & ( 1L << index ) ) != 0;
+    }
+
+    /**
+     * @return 不早于 day 的第一个没有被排除的日期
+     */
+    private long nextIncludedDay( long day ) {
+        long[] bits = days;
+        long index = day - dayBase;
+        if ( bits == null || index < 0 ) {
+            return day;
+        }
+        for ( long i = index; ( i >>> 6 ) < bits.length; i = ( i & ~63 ) + 64 ) {
+            long free = ~bits[(int) ( i >>> 6 )] & ( -1L << i );
+            if ( free != 0 ) {
+                return dayBase + ( ( i & ~63 ) | Long.numberOfTrailingZeros( free ) );
+            }
+        }
+        return Math.max( day, dayBase + ( (long) bits.length << 6 ) );
+    }
+
+    /**
+     * @return 不早于 minute 的第一个没有被排除的分钟，当天没有则返回 -1
+     */
+    private static int nextFreeMinute( long[] window, int minute ) {
+        for ( int i = minute >>> 6; i < WINDOW_WORDS; i++ ) {
+            long free = ~window[i];
+            if ( i == minute >>> 6 ) {
+                free &= -1L << minute;
+            }
+            if ( free != 0 ) {
+                int next = ( i << 6 ) + Long.numberOfTrailingZeros( free );
+                return next < MINUTES_PER_DAY ? next : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 0 = 星期一，1970-01-01 是星期四
+     */
+    private static int weekday( long day ) {
+        return (int) Math.floorMod( day + 3, 7 );
+    }
+
+    private static void setMinutes( long[] window, int from, int to ) {
+        for ( int minute = from; minute < to; minute++ ) {
+            window[minute >>> 6] |= 1L << minute;
+        }
+    }
+
+    private void updateFullWeekdays() {
+        int full = 0;
+        for ( int i = 0; i < 7; i++ ) {
+            if ( nextFreeMinute( windows[i], 0 ) < 0 ) {
+                full |= 1 << i;
+            }
+        }
+        fullWeekdays = full;
+    }
+
+    private void setDays( long from, long to ) {
+        for ( long index = from - dayBase; index <= to - dayBase; index++ ) {
+            days[(int) ( index >>> 6 )] |= 1L << index;
+        }
+    }
+
+    /**
+     * 按整年扩展位图，使其覆盖 [from, to] 这些年份
+     */
+    private void ensureYears( int from, int to ) {
+        if ( days == null ) {
+            firstYear = from;
+            lastYear = to;
+            dayBase = Math.floorDiv( LocalDate.of( from, 1, 1 ).toEpochDay(), 64 ) * 64;
+            days = new long[wordsUntil( to )];
+            return;
+        }
+        if ( from < firstYear ) {
+            long base = Math.floorDiv( LocalDate.of( from, 1, 1 ).toEpochDay(), 64 ) * 64;
+            int shift = (int) ( ( dayBase - base ) >>> 6 );
+            long[] grown = new long[shift + days.length];
+            System.arraycopy( days, 0, grown, shift, days.length );
+            days = grown;
+            dayBase = base;
+            firstYear = from;
+        }
+        if ( to > lastYear ) {
+            days = Arrays.copyOf( days, wordsUntil( to ) );
+            lastYear = to;
+        }
+    }
+
+    private int wordsUntil( int year ) {
+        return (int) ( ( LocalDate.of( year + 1, 1, 1 ).toEpochDay() - dayBase + 63 ) >>> 6 );
+    }
+
+    private ZoneId zone() {
+        ZoneId z = zone;
+        if ( z == null ) {
+            TimeZone timeZone = getTimeZone();
+            z = timeZone == null ? ZoneId.systemDefault() : timeZone.toZoneId();
+            zone = z;
+        }
+        return z;
+    }
+
+    private OffsetWindow offsetWindow( long epochMillis ) {
+        OffsetWindow window = offsetWindow;
+        if ( window != null && epochMillis >= window.from && epochMillis < window.until ) {
+            return window;
+        }
+        window = OffsetWindow.of( zone(), epochMillis );
+        offsetWindow = window;
+        return window;
+    }
+
+    /**
+     * 排除日期写成区间：区间数，然后每个区间与上一个区间结束的间隔和长度；
+     * 排除时段写成有时段的星期几掩码，每个星期几再写非 0 字的掩码和这些字
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        out.defaultWriteObject();
+        out.writeByte( FORMAT_VERSION );
+        long[] bits = days == null ? new long[0] : days;
+        int runs = 0;
+        for ( int i = 0; i < bits.length; i++ ) {
+            // 区间开始的位：本位为 1 且前一位为 0
+            long previous = i == 0 ? 0 : bits[i - 1] >>> 63;
+            runs += Long.bitCount( bits[i] & ~( ( bits[i] << 1 ) | previous ) );
+        }
+        writeVarLong( out, runs );
+        long end = 0;
+        for ( long i = nextSetBit( bits, 0 ); i >= 0; ) {
+            long clear = nextClearBit( bits, i );
+            writeVarLong( out, zigZag( dayBase + i - end ) );
+            writeVarLong( out, clear - i );
+            end = dayBase + clear;
+            i = nextSetBit( bits, clear );
+        }
+        int weekdays = 0;
+        for ( int day = 0; day < 7; day++ ) {
+            if ( nextSetBit( windows[day], 0 ) >= 0 ) {
+                weekdays |= 1 << day;
+            }
+        }
+        out.writeByte( weekdays );
+        for ( int day = 0; day < 7; day++ ) {
+            if ( ( weekdays & ( 1 << day ) ) == 0 ) {
+                continue;
+            }
+            int words = 0;
+            for ( int i = 0; i < WINDOW_WORDS; i++ ) {
+                if ( windows[day][i] != 0 ) {
+                    words |= 1 << i;
+                }
+            }
+            writeVarLong( out, words );
+            for ( int i = 0; i < WINDOW_WORDS; i++ ) {
+                if ( windows[day][i] != 0 ) {
+                    out.writeLong( windows[day][i] );
+                }
+            }
+        }
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int version = in.readByte();
+        if ( version != FORMAT_VERSION ) {
+            throw new IOException( "Unsupported BitmapHolidayCalendar format " + version );
+        }
+        windows = new long[7][WINDOW_WORDS];
+        long runs = readVarLong( in );
+        long end = 0;
+        for ( long run = 0; run < runs; run++ ) {
+            long start = end + unZigZag( readVarLong( in ) );
+            end = start + readVarLong( in );
+            ensureYears( LocalDate.ofEpochDay( start ).getYear(), LocalDate.ofEpochDay( end - 1 ).getYear() );
+            setDays( start, end - 1 );
+        }
+        int weekdays = in.readByte();
+        for ( int day = 0; day < 7; day++ ) {
+            if ( ( weekdays & ( 1 << day ) ) == 0 ) {
+                continue;
+            }
+            long words = readVarLong( in );
+            for ( int i = 0; i < WINDOW_WORDS; i++ ) {
+                if ( ( words & ( 1L << i ) ) != 0 ) {
+                    windows[day][i] = in.readLong();
+                }
+            }
+        }
+        updateFullWeekdays();
+    }
+
+    private static long nextSetBit( long[] bits, long from ) {
+        for ( long i = from; ( i >>> 6 ) < bits.length; i = ( i & ~63 ) + 64 ) {
+            long word = bits[(int) ( i >>> 6 )] & ( -1L << i );
+            if ( word != 0 ) {
+                return ( i & ~63 ) | Long.numberOfTrailingZeros( word );
+            }
+        }
+        return -1;
+    }
+
+    private static long nextClearBit( long[] bits, long from ) {
+        for ( long i = from; ( i >>> 6 ) < bits.length; i = ( i & ~63 ) + 64 ) {
+            long word = ~bits[(int) ( i >>> 6 )] & ( -1L << i );
+            if ( word != 0 ) {
+                return ( i & ~63 ) | Long.numberOfTrailingZeros( word );
+            }
+        }
+        return (long) bits.length << 6;
+    }
+
+    private static long zigZag( long value ) {
+        return ( value << 1 ) ^ ( value >> 63 );
+    }
+
+    private static long unZigZag( long value ) {
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+
+    private static void writeVarLong( ObjectOutputStream out, long value ) throws IOException {
+        while ( ( value & ~0x7FL ) != 0 ) {
+            out.writeByte( (int) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        out.writeByte( (int) value );
+    }
+
+    private static long readVarLong( ObjectInputStream in ) throws IOException {
+        long value = 0;
+        for ( int shift = 0; shift < 64; shift += 7 ) {
+            int b = in.readUnsignedByte();
+            value |= (long) ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 ) {
+                return value;
+            }
+        }
+        throw new IOException( "Malformed varint" );
+    }
+
+    /**
+     * 一段偏移量不变的时间区间 [from, until)，单位为毫秒
+     */
+    private static final class OffsetWindow {
+
+        final long from;
+        final long until;
+        final long offset;
+
+        OffsetWindow( long from, long until, long offset ) {
+            this.from = from;
+            this.until = until;
+            this.offset = offset;
+        }
+
+        static OffsetWindow of( ZoneId zone, long epochMillis ) {
+            ZoneRules rules = zone.getRules();
+            Instant instant = Instant.ofEpochMilli( epochMillis );
+            long offset = rules.getOffset( instant ).getTotalSeconds() * 1000L;
+            if ( rules.isFixedOffset() ) {
+                return new OffsetWindow( Long.MIN_VALUE, Long.MAX_VALUE, offset );
+            }
+            ZoneOffsetTransition previous = rules.previousTransition( instant.plusMillis( 1 ) );
+            ZoneOffsetTransition next = rules.nextTransition( instant );
+            return new OffsetWindow( previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000L,
+                    next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000L, offset );
+        }
+    }
+}
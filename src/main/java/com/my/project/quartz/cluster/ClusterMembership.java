@@ -0,0 +1,293 @@
+package com.my.project.quartz.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 通过心跳维护集群成员
+ *
+ * <pre>
+ * 每 heartbeatInterval 毫秒通过 ClusterTransport 发送一次心跳，超过 failureTimeout 毫秒没有收到心跳的节点被移出集群；
+ * 节点正常关闭时发送 LEAVE，其他节点立即把它移出。
+ *
+ * 启动后先等待 2 个心跳周期（加入阶段）收集其他节点的心跳，再第一次通知 Listener，
+ * 否则新节点在发现其他节点之前会认为自己是唯一的节点，拥有全部分区。
+ *
+ * 所有状态只在一个后台线程中修改，Listener 的方法也都在这个线程中调用，不需要额外同步；
+ * Transport 收到的消息转交给这个线程处理。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class ClusterMembership {
+
+    private static final Logger          LOG     = LoggerFactory.getLogger( ClusterMembership.class );
+
+    private final String                 cluster;
+    private final String                 nodeId;
+    private final ClusterTransport       transport;
+    private final long                   heartbeatIntervalMillis;
+    private final long                   failureTimeoutMillis;
+    private final Listener               listener;
+    /** 其他节点，只在 executor 线程中访问 */
+    private final Map < String, Member > members = new HashMap < String, Member >();
+    /** 正常离开的节点的 incarnation，忽略 LEAVE 之后迟到的心跳 */
+    private final Map < String, Long >   left    = new HashMap < String, Long >();
+    private ScheduledExecutorService     executor;
+    private volatile long                incarnation;
+    private boolean                      joined;
+
+    public ClusterMembership( String cluster, String nodeId, ClusterTransport transport, long heartbeatIntervalMillis,
+            long failureTimeoutMillis, Listener listener ) {
+        if ( heartbeatIntervalMillis <= 0 || failureTimeoutMillis <= heartbeatIntervalMillis ) {
+            throw new IllegalArgumentException( "Expected 0 < heartbeatInterval < failureTimeout but was "
+                    + heartbeatIntervalMillis + ", " + failureTimeoutMillis );
+        }
+        this.cluster = cluster;
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.failureTimeoutMillis = failureTimeoutMillis;
+        this.listener = listener;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return 本节点开始加入集群的时间，start 之前为 0
+     */
+    public long getIncarnation() {
+        return incarnation;
+    }
+
+    public void start() throws IOException {
+        incarnation = System.currentTimeMillis();
+        executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, "quartz-cluster-" + nodeId );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        transport.start( new ClusterTransport.Receiver() {
+
+            @Override
+            public void receive( final ClusterMessage message ) {
+                if ( !cluster.equals( message.getCluster() ) ) {
+                    return;
+                }
+                try {
+                    executor.execute( new Runnable() {
+
+                        @Override
+                        public void run() {
+                            handle( message, System.currentTimeMillis() );
+                        }
+                    } );
+                } catch ( RuntimeException e ) {
+                    // 已经停止
+                }
+            }
+        } );
+        executor.scheduleAtFixedRate( new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    tick( System.currentTimeMillis() );
+                } catch ( Throwable e ) {
+                    // 异常会取消周期任务，心跳停止后本节点会被其他节点移出
+                    LOG.error( "Cluster heartbeat of " + nodeId + " failed", e );
+                }
+            }
+        }, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * 发送 LEAVE 并停止心跳，其他节点立即接管本节点的分区
+     */
+    public void stop() {
+        if ( executor == null ) {
+            return;
+        }
+        try {
+            executor.submit( new Runnable() {
+
+                @Override
+                public void run() {
+                    send( ClusterMessage.Type.LEAVE, System.currentTimeMillis() );
+                }
+            } ).get( heartbeatIntervalMillis, TimeUnit.MILLISECONDS );
+        } catch ( Exception e ) {
+            LOG.warn( "Failed to announce that " + nodeId + " leaves: " + e );
+        }
+        executor.shutdownNow();
+        transport.stop();
+    }
+
+    private void tick( long now ) {
+        send( ClusterMessage.Type.HEARTBEAT, now );
+        List < Member > departed = new ArrayList < Member >();
+        for ( Iterator < Member > it = members.values().iterator(); it.hasNext(); ) {
+            Member member = it.next();
+            if ( now - member.lastSeen > failureTimeoutMillis ) {
+                LOG.warn( "Node " + member.nodeId + " missed heartbeats for " + ( now - member.lastSeen )
+                        + "ms, removed from cluster " + cluster );
+                it.remove();
+                departed.add( member );
+            }
+        }
+        boolean changed = !departed.isEmpty();
+        if ( !joined && now - incarnation >= 2 * heartbeatIntervalMillis ) {
+            joined = true;
+            changed = true;
+            LOG.info( "Node " + nodeId + " joined cluster " + cluster + " with " + members.keySet() );
+        }
+        if ( joined ) {
+            if ( changed ) {
+                listener.membersChanged( snapshot(), departed );
+            }
+            listener.heartbeat( snapshot() );
+        }
+    }
+
+    private void send( ClusterMessage.Type type, long now ) {
+        long acquiredUntil = joined ? Math.min( now, listener.acquiredUntil() ) : incarnation;
+        try {
+            transport.send( new ClusterMessage( type, cluster, nodeId, incarnation, now, acquiredUntil ) );
+        } catch ( IOException e ) {
+            LOG.warn( "Failed to send " + type + " from " + nodeId + ": " + e.getMessage() );
+        }
+    }
+
+    private void handle( ClusterMessage message, long now ) {
+        String id = message.getNodeId();
+        if ( nodeId.equals( id ) ) {
+            if ( message.getIncarnation() != incarnation ) {
+                LOG.error( "Another node uses the same id " + id + " in cluster " + cluster + ", ignored" );
+            }
+            return;
+        }
+        Long leftIncarnation = left.get( id );
+        if ( leftIncarnation != null && leftIncarnation >= message.getIncarnation() ) {
+            return;
+        }
+        Member previous = members.get( id );
+        List < Member > departed = new ArrayList < Member >();
+        if ( previous != null && previous.incarnation > message.getIncarnation() ) {
+            // 重启之前的实例迟到的消息
+            return;
+        }
+        if ( previous != null && previous.incarnation < message.getIncarnation() ) {
+            // 节点重启了，之前的实例已经失效
+            members.remove( id );
+            departed.add( previous );
+            previous = null;
+        }
+        if ( message.getType() == ClusterMessage.Type.LEAVE ) {
+            left.put( id, message.getIncarnation() );
+            if ( previous != null ) {
+                members.remove( id );
+                departed.add( new Member( id, message.getIncarnation(), message.getAcquiredUntil(), now ) );
+                LOG.info( "Node " + id + " left cluster " + cluster );
+            }
+        } else {
+            members.put( id, new Member( id, message.getIncarnation(), message.getAcquiredUntil(), now ) );
+            if ( previous == null ) {
+                LOG.info( "Node " + id + " joined cluster " + cluster );
+            }
+        }
+        if ( joined && ( previous == null || !departed.isEmpty() ) ) {
+            listener.membersChanged( snapshot(), departed );
+        }
+    }
+
+    /**
+     * @return 包括本节点在内的全部成员
+     */
+    private Map < String, Member > snapshot() {
+        Map < String, Member > snapshot = new HashMap < String, Member >( members );
+        snapshot.put( nodeId, new Member( nodeId, incarnation, Long.MAX_VALUE, System.currentTimeMillis() ) );
+        return Collections.unmodifiableMap( snapshot );
+    }
+
+    /**
+     * 成员在某次心跳时的状态，不可变
+     */
+    public static class Member {
+
+        final String nodeId;
+        final long   incarnation;
+        final long   acquiredUntil;
+        final long   lastSeen;
+
+        Member( String nodeId, long incarnation, long acquiredUntil, long lastSeen ) {
+            this.nodeId = nodeId;
+            this.incarnation = incarnation;
+            this.acquiredUntil = acquiredUntil;
+            this.lastSeen = lastSeen;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public long getIncarnation() {
+            return incarnation;
+        }
+
+        /**
+         * @return 该节点最后一次报告的进度：它拥有的分区中计划时间早于该值的触发都已经获取
+         */
+        public long getAcquiredUntil() {
+            return acquiredUntil;
+        }
+
+        @Override
+        public String toString() {
+            return nodeId;
+        }
+    }
+
+    /**
+     * 所有方法都在成员管理线程中调用
+     */
+    public interface Listener {
+
+        /**
+         * @return 本节点拥有的分区中最早的未获取的触发时间，随心跳发送
+         */
+        long acquiredUntil();
+
+        /**
+         * 加入集群后，以及之后每次成员变化时调用
+         *
+         * @param members 当前全部成员（包括本节点）
+         * @param departed 本次离开或失效的节点，保留它们最后一次心跳的状态
+         */
+        void membersChanged( Map < String, Member > members, Collection < Member > departed );
+
+        /**
+         * 加入集群后每个心跳周期调用一次
+         */
+        void heartbeat( Map < String, Member > members );
+    }
+}
@@ -0,0 +1,114 @@
+package com.my.project.quartz.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 集群节点之间的消息
+ *
+ * <pre>
+ * HEARTBEAT：节点每个心跳周期发送一次，超过 failureTimeout 没有收到心跳的节点被认为已经失效；
+ * LEAVE：节点正常关闭时发送，其他节点立即接管它的分区，不需要等待超时。
+ *
+ * incarnation 是节点启动（开始加入集群）的时间，节点重启后使用相同的 nodeId 也能与之前的实例区分；
+ * acquiredUntil 是发送方拥有的分区中，计划触发时间早于该值的 Trigger 都已经获取（不晚于发送时间）。
+ * 发送方失效后，接管它的分区的节点把该值之前的触发视为已经执行，之后的触发按 misfire 处理。
+ *
+ * 编码为固定格式的二进制，一个 UDP 报文可以容纳。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class ClusterMessage {
+
+    public enum Type {
+        HEARTBEAT, LEAVE
+    }
+
+    private static final int MAGIC = 0x51434c31;
+
+    private final Type       type;
+    private final String     cluster;
+    private final String     nodeId;
+    private final long       incarnation;
+    private final long       sentAt;
+    private final long       acquiredUntil;
+
+    public ClusterMessage( Type type, String cluster, String nodeId, long incarnation, long sentAt,
+            long acquiredUntil ) {
+        this.type = type;
+        this.cluster = cluster;
+        this.nodeId = nodeId;
+        this.incarnation = incarnation;
+        this.sentAt = sentAt;
+        this.acquiredUntil = acquiredUntil;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCluster() {
+        return cluster;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getIncarnation() {
+        return incarnation;
+    }
+
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public long getAcquiredUntil() {
+        return acquiredUntil;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 );
+        DataOutputStream out = new DataOutputStream( bytes );
+        try {
+            out.writeInt( MAGIC );
+            out.writeByte( type.ordinal() );
+            out.writeUTF( cluster );
+            out.writeUTF( nodeId );
+            out.writeLong( incarnation );
+            out.writeLong( sentAt );
+            out.writeLong( acquiredUntil );
+        } catch ( IOException e ) {
+            // ByteArrayOutputStream 不会抛出 IOException
+            throw new IllegalStateException( e );
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException 不是 ClusterMessage 或内容不完整
+     */
+    public static ClusterMessage decode( byte[] data, int offset, int length ) throws IOException {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( data, offset, length ) );
+        if ( in.readInt() != MAGIC ) {
+            throw new IOException( "Not a cluster message" );
+        }
+        int type = in.readUnsignedByte();
+        if ( type >= Type.values().length ) {
+            throw new IOException( "Unknown message type: " + type );
+        }
+        return new ClusterMessage( Type.values()[type], in.readUTF(), in.readUTF(), in.readLong(), in.readLong(),
+                in.readLong() );
+    }
+
+    @Override
+    public String toString() {
+        return type + "[cluster=" + cluster + ", node=" + nodeId + ", incarnation=" + incarnation + ", sentAt="
+                + sentAt + ", acquiredUntil=" + acquiredUntil + "]";
+    }
+}
@@ -0,0 +1,37 @@
+package com.my.project.quartz.cluster;
+
+import java.io.IOException;
+
+/**
+ * 集群成员之间传递心跳的方式
+ *
+ * <pre>
+ * 只需要尽力而为的广播：消息可能丢失或乱序，ClusterMembership 通过周期性的心跳和超时容忍这些情况。
+ * 自带两种实现：
+ *   - LoopbackTransport：同一个 JVM 内的多个 Scheduler，用于测试和演示节点失效；
+ *   - UdpTransport：向配置的每个节点地址发送 UDP 报文，用于多个 JVM 或多台机器。
+ * 其他实现（例如组播、消息队列）需要提供无参构造方法，通过 org.quartz.jobStore.transport 指定类名。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public interface ClusterTransport {
+
+    /**
+     * 开始接收消息，receiver 在传输层自己的线程中被调用，不能阻塞
+     */
+    void start( Receiver receiver ) throws IOException;
+
+    /**
+     * 把消息发送给集群中的其他节点（不包括自己）
+     */
+    void send( ClusterMessage message ) throws IOException;
+
+    void stop();
+
+    interface Receiver {
+
+        void receive( ClusterMessage message );
+    }
+}
@@ -0,0 +1,90 @@
+package com.my.project.quartz.cluster;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 一致性哈希环
+ *
+ * <pre>
+ * 每个节点在环上占 virtualNodes 个点（nodeId#i 的哈希），key 属于从它的哈希开始顺时针遇到的第一个点的节点。
+ * 节点离开时只有它的 key 移到环上的下一个节点，节点加入时只从其他节点各拿走一部分 key，
+ * 其余 key 的归属不变；虚拟节点使各节点分到的 key 数量接近。
+ *
+ * 哈希使用 FNV-1a（64 位）加上 MurmurHash3 的 fmix64，不依赖 JVM，所有节点对同一组成员得到相同的环。
+ * 不可变，成员变化时创建新的实例。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class ConsistentHashRing {
+
+    private static final Charset           UTF8   = Charset.forName( "UTF-8" );
+
+    private final TreeMap < Long, String > points = new TreeMap < Long, String >();
+    private final SortedSet < String >     nodes;
+
+    public ConsistentHashRing( Collection < String > nodes, int virtualNodes ) {
+        if ( virtualNodes <= 0 ) {
+            throw new IllegalArgumentException( "virtualNodes must be positive: " + virtualNodes );
+        }
+        // 按 nodeId 排序后加入，哈希冲突时所有节点保留同一个
+        this.nodes = Collections.unmodifiableSortedSet( new TreeSet < String >( nodes ) );
+        for ( String node : this.nodes ) {
+            for ( int i = 0; i < virtualNodes; i++ ) {
+                Long point = hash( node + "#" + i );
+                if ( !points.containsKey( point ) ) {
+                    points.put( point, node );
+                }
+            }
+        }
+    }
+
+    public SortedSet < String > getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * @return key 所属的节点，环为空时返回 null
+     */
+    public String ownerOf( String key ) {
+        if ( points.isEmpty() ) {
+            return null;
+        }
+        Map.Entry < Long, String > entry = points.ceilingEntry( hash( key ) );
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    public String ownerOfPartition( int partition ) {
+        return ownerOf( "partition-" + partition );
+    }
+
+    static long hash( String key ) {
+        long h = 0xcbf29ce484222325L;
+        for ( byte b : key.getBytes( UTF8 ) ) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashRing" + nodes;
+    }
+}
@@ -0,0 +1,81 @@
+package com.my.project.quartz.cluster;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 同一个 JVM 内的传输，名称相同的 LoopbackTransport 组成一个网络
+ *
+ * <pre>
+ * send 在调用线程中直接把消息交给同一网络中其他节点的 Receiver。
+ * setIsolated(true) 模拟节点崩溃或网络隔离：该节点既收不到也发不出消息，但 Scheduler 仍在运行，
+ * 其他节点在 failureTimeout 之后接管它的分区。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class LoopbackTransport implements ClusterTransport {
+
+    private static final ConcurrentMap < String, Network > NETWORKS = new ConcurrentHashMap < String, Network >();
+
+    private final String                                   network;
+    private volatile Receiver                              receiver;
+    private volatile boolean                               isolated;
+
+    public LoopbackTransport( String network ) {
+        this.network = network;
+    }
+
+    private List < LoopbackTransport > members() {
+        Network members = NETWORKS.get( network );
+        if ( members == null ) {
+            Network created = new Network();
+            members = NETWORKS.putIfAbsent( network, created );
+            if ( members == null ) {
+                members = created;
+            }
+        }
+        return members.transports;
+    }
+
+    @Override
+    public void start( Receiver receiver ) {
+        this.receiver = receiver;
+        members().add( this );
+    }
+
+    @Override
+    public void send( ClusterMessage message ) {
+        if ( isolated ) {
+            return;
+        }
+        for ( LoopbackTransport member : members() ) {
+            Receiver target = member.receiver;
+            if ( member != this && !member.isolated && target != null ) {
+                target.receive( message );
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        members().remove( this );
+        receiver = null;
+    }
+
+    public void setIsolated( boolean isolated ) {
+        this.isolated = isolated;
+    }
+
+    public boolean isIsolated() {
+        return isolated;
+    }
+
+    private static class Network {
+
+        final List < LoopbackTransport > transports = new CopyOnWriteArrayList < LoopbackTransport >();
+    }
+}
@@ -0,0 +1,457 @@
+package com.my.project.quartz.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.quartz.Calendar;
+import org.quartz.JobPersistenceException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.quartz.store.ShardedRAMJobStore;
+
+/**
+ * 按一致性哈希把 Trigger 分配给多个 Scheduler 节点的 JobStore
+ *
+ * <pre>
+ * 每个节点都运行相同的启动代码，注册相同的 Job 和 Trigger（本类不在节点之间复制数据），
+ * 但每个 Trigger 只由一个节点获取和触发，集群的获取吞吐量随节点数近似线性增长：
+ *   - 在 ShardedRAMJobStore 的基础上，每个分片就是一个分区（partitionCount 个，所有节点必须相同）；
+ *   - 分区由 ConsistentHashRing 分配给当前存活的节点，acquireNextTriggers 只从本节点拥有的分区获取；
+ *   - 节点之间通过 ClusterMembership 交换心跳，传输方式可替换（loopback、udp 或自定义的 ClusterTransport）。
+ *
+ * 分区按 Trigger 所属 Job 的 JobKey 的哈希划分，而不是 TriggerKey：同一个 Job 的 Trigger 由同一个节点触发，
+ * 这样 @DisallowConcurrentExecution 和非持久 Job 的自动删除仍然在单个节点内成立（与 ShardedRAMJobStore 的理由相同）；
+ * 每个 Job 只有一个 Trigger 时（例如 QuartzTest）两者等价。
+ *
+ * 其他节点的分区不获取，只在每次心跳后把其中的 Trigger 推进到拥有者报告的进度（acquiredUntil），
+ * 推进只计算下一次触发时间，不执行 Job，也不通知监听器。这样接管一个分区时，
+ * 本地的 Trigger 状态与原拥有者相差不超过一个心跳周期。
+ *
+ * 节点失效（超过 failureTimeout 没有心跳）或正常关闭（LEAVE）时，一致性哈希只把它的分区移到其他节点，
+ * 其余分区的归属不变。接管时先把分区推进到原拥有者最后报告的进度，此后的触发都由新拥有者负责：
+ * 在它失效到被发现之间错过的触发，按 Trigger 自己的 misfire 策略和 misfireThreshold 处理（延迟触发或 misfire）。
+ * 失效节点在最后一次心跳之后执行过的触发会被接管者再执行一次（至少一次，重复不超过一个心跳周期）。
+ * 新节点加入时从其他节点各接管一部分分区，以它开始加入的时间为界；
+ * 失去分区的节点已经获取但还没有触发的 Trigger 在 triggersFired 时释放，不会两个节点都执行。
+ *
+ * 在 quartz.properties 中配置：
+ *   org.quartz.scheduler.instanceId = AUTO
+ *   org.quartz.jobStore.class = com.my.project.quartz.cluster.PartitionedJobStore
+ *   org.quartz.jobStore.partitionCount = 64
+ *   org.quartz.jobStore.transport = udp
+ *   org.quartz.jobStore.bind = 127.0.0.1:7801
+ *   org.quartz.jobStore.peers = 127.0.0.1:7801,127.0.0.1:7802,127.0.0.1:7803
+ *   org.quartz.jobStore.heartbeatIntervalMillis = 1000
+ *   org.quartz.jobStore.failureTimeoutMillis = 5000
+ * nodeId 默认使用 Scheduler 的 instanceId，集群名默认使用 instanceName；
+ * 判断失效和接管都使用各节点的系统时间，多台机器时需要同步时钟。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class PartitionedJobStore extends ShardedRAMJobStore {
+
+    public static final String          LOOPBACK                = "loopback";
+    public static final String          UDP                     = "udp";
+
+    private static final Logger         LOG                     = LoggerFactory.getLogger( PartitionedJobStore.class );
+
+    private String                      clusterName;
+    private String                      nodeId;
+    private String                      instanceId;
+    private String                      transport               = LOOPBACK;
+    private String                      bind;
+    private String                      peers;
+    private long                        heartbeatIntervalMillis = 1000L;
+    private long                        failureTimeoutMillis    = 5000L;
+    private int                         virtualNodes            = 64;
+
+    private SchedulerSignaler           signaler;
+    private ClusterTransport            clusterTransport;
+    private ClusterMembership           membership;
+    /** 本节点拥有的分区，只在成员管理线程中替换 */
+    private volatile boolean[]          owned;
+    private volatile ConsistentHashRing ring;
+
+    public PartitionedJobStore() {
+        setShardCount( 64 );
+    }
+
+    public void setPartitionCount( int partitionCount ) {
+        setShardCount( partitionCount );
+    }
+
+    public int getPartitionCount() {
+        return getShardCount();
+    }
+
+    public void setClusterName( String clusterName ) {
+        this.clusterName = clusterName;
+    }
+
+    public void setNodeId( String nodeId ) {
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @param transport loopback、udp，或 ClusterTransport 实现类的类名
+     */
+    public void setTransport( String transport ) {
+        this.transport = transport;
+    }
+
+    /**
+     * @param bind udp 传输本节点绑定的 host:port
+     */
+    public void setBind( String bind ) {
+        this.bind = bind;
+    }
+
+    /**
+     * @param peers udp 传输所有节点的 host:port，逗号分隔
+     */
+    public void setPeers( String peers ) {
+        this.peers = peers;
+    }
+
+    public void setHeartbeatIntervalMillis( long heartbeatIntervalMillis ) {
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    }
+
+    public void setFailureTimeoutMillis( long failureTimeoutMillis ) {
+        this.failureTimeoutMillis = failureTimeoutMillis;
+    }
+
+    public void setVirtualNodes( int virtualNodes ) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    @Override
+    public void setInstanceId( String schedInstId ) {
+        this.instanceId = schedInstId;
+    }
+
+    @Override
+    public void setInstanceName( String schedName ) {
+        if ( clusterName == null ) {
+            clusterName = schedName;
+        }
+    }
+
+    @Override
+    protected Shard createShard( int index ) {
+        return new Partition();
+    }
+
+    @Override
+    public void initialize( ClassLoadHelper loadHelper, SchedulerSignaler signaler ) throws SchedulerConfigException {
+        super.initialize( loadHelper, signaler );
+        this.signaler = signaler;
+        if ( nodeId == null ) {
+            // 默认的 instanceId 是 NON_CLUSTERED，所有节点都相同
+            if ( instanceId == null || "NON_CLUSTERED".equals( instanceId ) ) {
+                throw new SchedulerConfigException( "Set org.quartz.scheduler.instanceId = AUTO "
+                        + "or org.quartz.jobStore.nodeId to a value unique in the cluster" );
+            }
+            nodeId = instanceId;
+        }
+        if ( clusterName == null ) {
+            clusterName = "quartz";
+        }
+        owned = new boolean[shards.length];
+        clusterTransport = createTransport( loadHelper );
+        try {
+            membership = new ClusterMembership( clusterName, nodeId, clusterTransport, heartbeatIntervalMillis,
+                    failureTimeoutMillis, new MembershipListener() );
+        } catch ( IllegalArgumentException e ) {
+            throw new SchedulerConfigException( e.getMessage() );
+        }
+    }
+
+    /**
+     * 按 transport 配置创建传输，子类可以覆盖
+     */
+    protected ClusterTransport createTransport( ClassLoadHelper loadHelper ) throws SchedulerConfigException {
+        if ( LOOPBACK.equals( transport ) ) {
+            return new LoopbackTransport( clusterName );
+        }
+        if ( UDP.equals( transport ) ) {
+            if ( bind == null || peers == null ) {
+                throw new SchedulerConfigException( "The udp transport needs org.quartz.jobStore.bind and "
+                        + "org.quartz.jobStore.peers" );
+            }
+            try {
+                return new UdpTransport( UdpTransport.parseAddress( bind ), UdpTransport.parseAddresses( peers ) );
+            } catch ( IllegalArgumentException e ) {
+                throw new SchedulerConfigException( "Invalid udp address: " + e.getMessage() );
+            }
+        }
+        try {
+            return (ClusterTransport) loadHelper.loadClass( transport ).getDeclaredConstructor().newInstance();
+        } catch ( Exception e ) {
+            throw new SchedulerConfigException( "Unable to create cluster transport " + transport, e );
+        }
+    }
+
+    @Override
+    public void schedulerStarted() throws SchedulerException {
+        super.schedulerStarted();
+        try {
+            membership.start();
+        } catch ( IOException e ) {
+            throw new SchedulerException( "Unable to join cluster " + clusterName + " as " + nodeId, e );
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if ( membership != null ) {
+            membership.stop();
+        }
+        super.shutdown();
+    }
+
+    @Override
+    public boolean isClustered() {
+        // StdSchedulerFactory 只有在 isClustered 时才为 instanceId = AUTO 生成唯一的 id
+        return true;
+    }
+
+    public ClusterTransport getClusterTransport() {
+        return clusterTransport;
+    }
+
+    /**
+     * @return 当前一致性哈希环上的节点，加入集群之前为空
+     */
+    public Set < String > getClusterNodes() {
+        ConsistentHashRing current = ring;
+        return current == null ? Collections.< String > emptySet() : current.getNodes();
+    }
+
+    /**
+     * @return 本节点拥有的分区数
+     */
+    public int getOwnedPartitionCount() {
+        int count = 0;
+        for ( boolean b : owned ) {
+            if ( b ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    protected boolean isAcquirable( int index ) {
+        return owned[index];
+    }
+
+    @Override
+    public List < TriggerFiredResult > triggersFired( List < OperableTrigger > firedTriggers )
+            throws JobPersistenceException {
+        // 获取之后分区可能已经交给了其他节点，释放这些 Trigger，由新的拥有者触发
+        boolean[] current = owned;
+        List < OperableTrigger > mine = new ArrayList < OperableTrigger >( firedTriggers.size() );
+        for ( OperableTrigger trigger : firedTriggers ) {
+            int partition = shardIndex( trigger.getJobKey() );
+            if ( current[partition] ) {
+                mine.add( trigger );
+            } else {
+                shards[partition].releaseAcquiredTrigger( trigger );
+            }
+        }
+        if ( mine.size() == firedTriggers.size() ) {
+            return super.triggersFired( firedTriggers );
+        }
+        List < TriggerFiredResult > fired = mine.isEmpty() ? new ArrayList < TriggerFiredResult >() : super
+                .triggersFired( mine );
+        List < TriggerFiredResult > results = new ArrayList < TriggerFiredResult >( firedTriggers.size() );
+        int next = 0;
+        for ( OperableTrigger trigger : firedTriggers ) {
+            if ( next < mine.size() && mine.get( next ) == trigger ) {
+                results.add( fired.get( next++ ) );
+            } else {
+                results.add( new TriggerFiredResult( (TriggerFiredBundle) null ) );
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 成员变化时重新分配分区，只在成员管理线程中调用
+     */
+    private void rebalance( Map < String, ClusterMembership.Member > members,
+            Collection < ClusterMembership.Member > departed ) {
+        ConsistentHashRing previous = ring;
+        if ( previous == null ) {
+            // 刚加入集群：分区原来属于其他节点（或者还没有节点）
+            List < String > others = new ArrayList < String >( members.keySet() );
+            others.remove( nodeId );
+            previous = new ConsistentHashRing( others, virtualNodes );
+        }
+        Map < String, ClusterMembership.Member > gone = new HashMap < String, ClusterMembership.Member >();
+        for ( ClusterMembership.Member member : departed ) {
+            gone.put( member.getNodeId(), member );
+        }
+        ConsistentHashRing next = new ConsistentHashRing( members.keySet(), virtualNodes );
+        boolean[] current = owned;
+        boolean[] updated = new boolean[current.length];
+        int gained = 0;
+        int lost = 0;
+        int skipped = 0;
+        for ( int p = 0; p < updated.length; p++ ) {
+            updated[p] = nodeId.equals( next.ownerOfPartition( p ) );
+            if ( updated[p] && !current[p] ) {
+                skipped += ( (Partition) shards[p] ).advance( takeoverHorizon( previous.ownerOfPartition( p ), gone ) );
+                gained++;
+            } else if ( !updated[p] && current[p] ) {
+                lost++;
+            }
+        }
+        ring = next;
+        owned = updated;
+        LOG.info( "Node " + nodeId + " owns " + getOwnedPartitionCount() + " of " + updated.length
+                + " partitions (took over " + gained + ", handed off " + lost + ", skipped " + skipped
+                + " fires already executed elsewhere), cluster " + next.getNodes() );
+        if ( gained > 0 || lost > 0 ) {
+            // 唤醒调度线程，按新的分区重新获取
+            signaler.signalSchedulingChange( 0L );
+        }
+    }
+
+    /**
+     * @param previousOwner 分区原来的拥有者，没有时为 null
+     * @return 原拥有者已经负责到的时间，早于该时间的触发不再执行
+     */
+    private long takeoverHorizon( String previousOwner, Map < String, ClusterMembership.Member > departed ) {
+        if ( previousOwner == null ) {
+            // 集群中的第一个节点，之前没有节点触发过
+            return Long.MIN_VALUE;
+        }
+        ClusterMembership.Member member = departed.get( previousOwner );
+        if ( member != null ) {
+            return member.getAcquiredUntil();
+        }
+        // 原拥有者仍然存活，因为本节点加入而交出分区：它从收到本节点的第一次心跳起不再获取
+        return membership.getIncarnation();
+    }
+
+    /**
+     * 把其他节点的分区推进到拥有者报告的进度，只在成员管理线程中调用
+     */
+    private void advanceOthers( Map < String, ClusterMembership.Member > members ) {
+        ConsistentHashRing current = ring;
+        boolean[] mine = owned;
+        for ( int p = 0; p < mine.length; p++ ) {
+            if ( !mine[p] ) {
+                ClusterMembership.Member owner = members.get( current.ownerOfPartition( p ) );
+                if ( owner != null ) {
+                    ( (Partition) shards[p] ).advance( owner.getAcquiredUntil() );
+                }
+            }
+        }
+    }
+
+    /**
+     * 本节点拥有的分区中最早的触发时间
+     */
+    private long earliestOwned() {
+        boolean[] mine = owned;
+        long earliest = Long.MAX_VALUE;
+        for ( int p = 0; p < mine.length; p++ ) {
+            if ( mine[p] ) {
+                earliest = Math.min( earliest, shards[p].peekNextFireTime() );
+            }
+        }
+        return earliest;
+    }
+
+    private class MembershipListener implements ClusterMembership.Listener {
+
+        @Override
+        public long acquiredUntil() {
+            return earliestOwned();
+        }
+
+        @Override
+        public void membersChanged( Map < String, ClusterMembership.Member > members,
+                Collection < ClusterMembership.Member > departed ) {
+            rebalance( members, departed );
+        }
+
+        @Override
+        public void heartbeat( Map < String, ClusterMembership.Member > members ) {
+            advanceOthers( members );
+        }
+    }
+
+    /**
+     * 一个分区，增加了不执行 Job 而推进 Trigger 的方法
+     */
+    public static class Partition extends Shard {
+
+        /**
+         * 把下一次触发时间早于 horizon 的 Trigger 推进到不早于 horizon，效果与这些触发由其他节点执行完相同：
+         * 按 Calendar 计算下一次触发时间，没有下一次的 Trigger 被删除（以及随之没有 Trigger 的非持久 Job）。
+         * 不执行 Job，不通知监听器，也不按 misfire 处理。
+         *
+         * @return 跳过的触发次数
+         */
+        public int advance( long horizon ) {
+            int skipped = 0;
+            synchronized ( lock ) {
+                while ( !timeTriggers.isEmpty() ) {
+                    Object wrapper = timeTriggers.first();
+                    OperableTrigger trigger = triggerOf( wrapper );
+                    Date next = trigger.getNextFireTime();
+                    if ( next == null || next.getTime() >= horizon ) {
+                        break;
+                    }
+                    // timeTriggers 按 nextFireTime 排序，修改之前必须先移出
+                    timeTriggers.remove( wrapper );
+                    Calendar calendar = trigger.getCalendarName() == null ? null : calendarsByName.get( trigger
+                            .getCalendarName() );
+                    do {
+                        trigger.triggered( calendar );
+                        skipped++;
+                    } while ( trigger.getNextFireTime() != null && trigger.getNextFireTime().getTime() < horizon );
+                    if ( trigger.getNextFireTime() == null ) {
+                        removeTrigger( trigger.getKey() );
+                    } else {
+                        addTimeTrigger( wrapper );
+                    }
+                }
+            }
+            return skipped;
+        }
+
+        /**
+         * TriggerWrapper 是包私有类，只能以原始类型放回
+         */
+        @SuppressWarnings( { "unchecked", "rawtypes" } )
+        private void addTimeTrigger( Object wrapper ) {
+            ( (Set) timeTriggers ).add( wrapper );
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.my.project.quartz.cluster;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于 UDP 单播的传输
+ *
+ * <pre>
+ * 每个节点绑定一个地址，send 向 peers 中除自己以外的每个地址发送一个报文，不依赖组播，
+ * 同一台机器上的多个 JVM 使用不同的端口即可：
+ *   org.quartz.jobStore.transport = udp
+ *   org.quartz.jobStore.bind = 127.0.0.1:7801
+ *   org.quartz.jobStore.peers = 127.0.0.1:7801,127.0.0.1:7802,127.0.0.1:7803
+ * 所有节点可以使用相同的 peers 配置。报文丢失由心跳周期和 failureTimeout 容忍，不重传。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class UdpTransport implements ClusterTransport {
+
+    private static final Logger              LOG        = LoggerFactory.getLogger( UdpTransport.class );
+
+    private static final int                 MAX_PACKET = 1024;
+
+    private final InetSocketAddress          bind;
+    private final List < InetSocketAddress > peers;
+    private volatile DatagramSocket          socket;
+
+    public UdpTransport( InetSocketAddress bind, List < InetSocketAddress > peers ) {
+        this.bind = bind;
+        this.peers = new ArrayList < InetSocketAddress >( peers );
+        this.peers.remove( bind );
+    }
+
+    /**
+     * @param address host:port
+     */
+    public static InetSocketAddress parseAddress( String address ) {
+        int colon = address.lastIndexOf( ':' );
+        if ( colon <= 0 ) {
+            throw new IllegalArgumentException( "Expected host:port but was: " + address );
+        }
+        return new InetSocketAddress( address.substring( 0, colon ).trim(),
+                Integer.parseInt( address.substring( colon + 1 ).trim() ) );
+    }
+
+    /**
+     * @param addresses 逗号分隔的 host:port
+     */
+    public static List < InetSocketAddress > parseAddresses( String addresses ) {
+        List < InetSocketAddress > result = new ArrayList < InetSocketAddress >();
+        for ( String address : addresses.split( "," ) ) {
+            if ( address.trim().length() > 0 ) {
+                result.add( parseAddress( address ) );
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void start( final Receiver receiver ) throws IOException {
+        final DatagramSocket socket = new DatagramSocket( bind );
+        this.socket = socket;
+        Thread reader = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                byte[] buffer = new byte[MAX_PACKET];
+                DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+                while ( !socket.isClosed() ) {
+                    try {
+                        packet.setLength( buffer.length );
+                        socket.receive( packet );
+                        receiver.receive( ClusterMessage.decode( buffer, packet.getOffset(), packet.getLength() ) );
+                    } catch ( SocketException e ) {
+                        // stop 关闭了 socket
+                    } catch ( IOException e ) {
+                        LOG.warn( "Dropped a packet from " + packet.getSocketAddress() + ": " + e.getMessage() );
+                    }
+                }
+            }
+        }, "quartz-cluster-udp-" + bind.getPort() );
+        reader.setDaemon( true );
+        reader.start();
+    }
+
+    @Override
+    public void send( ClusterMessage message ) throws IOException {
+        byte[] data = message.encode();
+        IOException failure = null;
+        for ( InetSocketAddress peer : peers ) {
+            try {
+                socket.send( new DatagramPacket( data, data.length, peer ) );
+            } catch ( IOException e ) {
+                // 一个节点的地址不可达不影响发给其他节点
+                failure = e;
+            }
+        }
+        if ( failure != null ) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void stop() {
+        DatagramSocket socket = this.socket;
+        if ( socket != null ) {
+            socket.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UdpTransport[bind=" + bind + ", peers=" + peers + "]";
+    }
+}
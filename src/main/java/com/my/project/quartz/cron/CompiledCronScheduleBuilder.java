@@ -0,0 +1,78 @@
+package com.my.project.quartz.cron;
+
+import java.text.ParseException;
+import java.util.TimeZone;
+
+import org.quartz.CronExpression;
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.spi.MutableTrigger;
+
+/**
+ * 与 CronScheduleBuilder 用法相同，但构造出的 Trigger 使用预编译的位图计算触发时间
+ *
+ * <pre>
+ * TriggerBuilder.newTrigger().withSchedule( CompiledCronScheduleBuilder.cronSchedule( "10 38 16 ? * TUE" ) ).build();
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class CompiledCronScheduleBuilder extends ScheduleBuilder < CronTrigger > {
+
+    private final CronExpression cronExpression;
+    private int                  misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_SMART_POLICY;
+
+    protected CompiledCronScheduleBuilder( CronExpression cronExpression ) {
+        if ( cronExpression == null ) {
+            throw new NullPointerException( "cronExpression cannot be null" );
+        }
+        this.cronExpression = cronExpression;
+    }
+
+    @Override
+    protected MutableTrigger build() {
+        CompiledCronTriggerImpl ct = new CompiledCronTriggerImpl();
+        ct.setCronExpression( cronExpression );
+        ct.setTimeZone( cronExpression.getTimeZone() );
+        ct.setMisfireInstruction( misfireInstruction );
+        return ct;
+    }
+
+    /**
+     * @throws RuntimeException 表达式不合法时抛出
+     */
+    public static CompiledCronScheduleBuilder cronSchedule( String cronExpression ) {
+        try {
+            return new CompiledCronScheduleBuilder( new CronExpression( cronExpression ) );
+        } catch ( ParseException e ) {
+            throw new RuntimeException( "CronExpression '" + cronExpression + "' is invalid.", e );
+        }
+    }
+
+    public static CompiledCronScheduleBuilder cronScheduleNonvalidatedExpression( String cronExpression )
+            throws ParseException {
+        return new CompiledCronScheduleBuilder( new CronExpression( cronExpression ) );
+    }
+
+    public CompiledCronScheduleBuilder inTimeZone( TimeZone timezone ) {
+        cronExpression.setTimeZone( timezone );
+        return this;
+    }
+
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionIgnoreMisfires() {
+        misfireInstruction = Trigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY;
+        return this;
+    }
+
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionDoNothing() {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING;
+        return this;
+    }
+
+    public CompiledCronScheduleBuilder withMisfireHandlingInstructionFireAndProceed() {
+        misfireInstruction = CronTrigger.MISFIRE_INSTRUCTION_FIRE_ONCE_NOW;
+        return this;
+    }
+}
@@ -0,0 +1,107 @@
+package com.my.project.quartz.cron;
+
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.quartz.CronTrigger;
+import org.quartz.ScheduleBuilder;
+import org.quartz.impl.triggers.CronTriggerImpl;
+
+import com.my.project.cron.CompiledCronExpression;
+
+/**
+ * 使用 CompiledCronExpression 计算触发时间的 CronTrigger
+ *
+ * <pre>
+ * 除了下一次触发时间的计算之外，其余行为（misfire 处理、Calendar 排除、序列化等）都与
+ * CronTriggerImpl 完全相同。表达式中包含 CompiledCronExpression 不支持的 L、W、# 时，
+ * 自动退回到 Quartz 自带的 CronExpression。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class CompiledCronTriggerImpl extends CronTriggerImpl {
+
+    private static final long                serialVersionUID = 1416397464371385452L;
+
+    private transient CompiledCronExpression compiled;
+    private transient boolean                compileFailed;
+    private transient ZoneId                 zoneId;
+
+    @Override
+    public void setCronExpression( String cronExpression ) throws ParseException {
+        super.setCronExpression( cronExpression );
+        compiled = null;
+        compileFailed = false;
+    }
+
+    @Override
+    public void setCronExpression( org.quartz.CronExpression cronExpression ) {
+        super.setCronExpression( cronExpression );
+        compiled = null;
+        compileFailed = false;
+    }
+
+    @Override
+    public void setTimeZone( TimeZone timeZone ) {
+        super.setTimeZone( timeZone );
+        zoneId = null;
+    }
+
+    @Override
+    protected Date getTimeAfter( Date afterTime ) {
+        CompiledCronExpression cron = getCompiledExpression();
+        if ( cron == null ) {
+            return super.getTimeAfter( afterTime );
+        }
+        if ( zoneId == null ) {
+            zoneId = getTimeZone().toZoneId();
+        }
+        long next = cron.nextFireAfter( afterTime.getTime(), zoneId );
+        return next < 0 ? null : new Date( next );
+    }
+
+    /**
+     * @return 编译后的表达式，表达式无法编译时返回 null
+     */
+    public CompiledCronExpression getCompiledExpression() {
+        if ( compiled == null && !compileFailed && getCronExpression() != null ) {
+            try {
+                compiled = CompiledCronExpression.compile( getCronExpression() );
+            } catch ( ParseException e ) {
+                compileFailed = true;
+            }
+        }
+        return compiled;
+    }
+
+    @Override
+    public Object clone() {
+        CompiledCronTriggerImpl copy = (CompiledCronTriggerImpl) super.clone();
+        // 编译结果是不可变的，可以直接共享
+        copy.compiled = compiled;
+        copy.compileFailed = compileFailed;
+        return copy;
+    }
+
+    @Override
+    public ScheduleBuilder < CronTrigger > getScheduleBuilder() {
+        CompiledCronScheduleBuilder cb = CompiledCronScheduleBuilder.cronSchedule(
+                getCronExpression() ).inTimeZone( getTimeZone() );
+        switch ( getMisfireInstruction() ) {
+        case MISFIRE_INSTRUCTION_DO_NOTHING:
+            cb.withMisfireHandlingInstructionDoNothing();
+            break;
+        case MISFIRE_INSTRUCTION_FIRE_ONCE_NOW:
+            cb.withMisfireHandlingInstructionFireAndProceed();
+            break;
+        case MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY:
+            cb.withMisfireHandlingInstructionIgnoreMisfires();
+            break;
+        }
+        return cb;
+    }
+}
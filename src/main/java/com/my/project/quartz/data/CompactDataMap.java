@@ -0,0 +1,474 @@
+package com.my.project.quartz.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+
+/**
+ * 不可变、按类型存储值的 Job 数据
+ *
+ * <pre>
+ * 每次触发时 Quartz 都会新建一个 JobDataMap，把 JobDetail 和 Trigger 的 JobDataMap 逐项复制进去
+ * （JobExecutionContextImpl 的构造方法），每一项都要分配 HashMap.Node 和迭代时的 Entry 包装对象，
+ * 数值还要装箱。这个合并过程在 Quartz 内部，无法替换。
+ *
+ * CompactDataMap 把所有数据作为 JobDataMap 中的一项（KEY）保存，每次触发只复制这一项的引用，
+ * 数据本身在所有触发之间共享：
+ *   - 键按顺序存放在 String[] 中，先按引用比较（键通常是常量），再二分查找；
+ *   - int/long/boolean/double 以 long 存放在 long[] 中，不装箱；String 和其他值存放在 Object[] 中；
+ *   - 不可修改，with 返回修改后的新对象（写时复制），再用 storeIn 写回 JobDataMap；
+ *   - merged( context ) 不复制数据，返回 Trigger 数据覆盖在 JobDetail 数据之上的视图，
+ *     只有两边都有数据时才分配一个视图对象。
+ *
+ *   JobDetail job = JobBuilder.newJob( HelloJob.class )
+ *           .usingJobData( CompactDataMap.builder().put( "type", "Simple" ).put( "retries", 3 ).build().toJobDataMap() )
+ *           .build();
+ *
+ *   public void execute( JobExecutionContext context ) {
+ *       CompactDataMap data = CompactDataMap.merged( context );
+ *       int retries = data.getInt( "retries", 0 );
+ *   }
+ *
+ * 配合 JDBCJobStore 的 useProperties=true（只允许 String 值）时不能使用。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class CompactDataMap implements Serializable {
+
+    private static final long          serialVersionUID = 3518424826301944177L;
+
+    /** 在 JobDataMap 中保存 CompactDataMap 的键 */
+    public static final String         KEY              = "__compactDataMap";
+    public static final CompactDataMap EMPTY            = new CompactDataMap( new String[0], new byte[0], new long[0],
+                                                                new Object[0], null );
+
+    static final byte                  INT              = 1;
+    static final byte                  LONG             = 2;
+    static final byte                  BOOLEAN          = 3;
+    static final byte                  DOUBLE           = 4;
+    static final byte                  OBJECT           = 5;
+
+    private final String[]             keys;
+    private final byte[]               types;
+    private final long[]               primitives;
+    private final Object[]             objects;
+    /** 被覆盖的数据，本对象中没有的键到 parent 中查找 */
+    private final CompactDataMap       parent;
+
+    private CompactDataMap( String[] keys, byte[] types, long[] primitives, Object[] objects, CompactDataMap parent ) {
+        this.keys = keys;
+        this.types = types;
+        this.primitives = primitives;
+        this.objects = objects;
+        this.parent = parent;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return map 中保存的 CompactDataMap，没有时返回 EMPTY
+     */
+    public static CompactDataMap from( JobDataMap map ) {
+        if ( map == null ) {
+            return EMPTY;
+        }
+        Object value = map.get( KEY );
+        return value instanceof CompactDataMap ? (CompactDataMap) value : EMPTY;
+    }
+
+    /**
+     * Trigger 的数据覆盖在 JobDetail 的数据之上，与 context.getMergedJobDataMap() 的规则相同，但不复制数据
+     */
+    public static CompactDataMap merged( JobExecutionContext context ) {
+        return overlay( from( context.getTrigger().getJobDataMap() ), from( context.getJobDetail().getJobDataMap() ) );
+    }
+
+    /**
+     * @return top 覆盖在 bottom 之上的视图
+     */
+    public static CompactDataMap overlay( CompactDataMap top, CompactDataMap bottom ) {
+        if ( top.isEmpty() ) {
+            return bottom;
+        }
+        if ( bottom.isEmpty() ) {
+            return top;
+        }
+        return new CompactDataMap( top.keys, top.types, top.primitives, top.objects, top.parent == null ? bottom
+                : overlay( top.parent, bottom ) );
+    }
+
+    /**
+     * 把本对象保存到 map 中（替换原有的 CompactDataMap），map 会被标记为已修改
+     */
+    public void storeIn( JobDataMap map ) {
+        map.put( KEY, this );
+    }
+
+    /**
+     * @return 只包含本对象的新 JobDataMap，可以传给 JobBuilder.usingJobData / TriggerBuilder.usingJobData
+     */
+    public JobDataMap toJobDataMap() {
+        JobDataMap map = new JobDataMap();
+        storeIn( map );
+        return map;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0 && parent == null;
+    }
+
+    public boolean containsKey( String key ) {
+        for ( CompactDataMap map = this; map != null; map = map.parent ) {
+            if ( map.indexOf( key ) >= 0 ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getInt( String key, int defaultValue ) {
+        for ( CompactDataMap map = this; map != null; map = map.parent ) {
+            int index = map.indexOf( key );
+            if ( index >= 0 ) {
+                if ( map.types[index] != INT ) {
+                    throw new ClassCastException( "Value of '" + key + "' is not an int" );
+                }
+                return (int) map.primitives[index];
+            }
+        }
+        return defaultValue;
+    }
+
+    public long getLong( String key, long defaultValue ) {
+        for ( CompactDataMap map = this; map != null; map = map.parent ) {
+            int index = map.indexOf( key );
+            if ( index >= 0 ) {
+                byte type = map.types[index];
+                if ( type != LONG && type != INT ) {
+                    throw new ClassCastException( "Value of '" + key + "' is not a long" );
+                }
+                return map.primitives[index];
+            }
+        }
+        return defaultValue;
+    }
+
+    public boolean getBoolean( String key, boolean defaultValue ) {
+        for ( CompactDataMap map = this; map != null; map = map.parent ) {
+            int index = map.indexOf( key );
+            if ( index >= 0 ) {
+                if ( map.types[index] != BOOLEAN ) {
+                    throw new ClassCastException( "Value of '" + key + "' is not a boolean" );
+                }
+                return map.primitives[index] != 0;
+            }
+        }
+        return defaultValue;
+    }
+
+    public double getDouble( String key, double defaultValue ) {
+        for ( CompactDataMap map = this; map != null; map = map.parent ) {
+            int index = map.indexOf( key );
+            if ( index >= 0 ) {
+                switch ( map.types[index] ) {
+                    case DOUBLE:
+                        return Double.longBitsToDouble( map.primitives[index] );
+                    case INT:
+                    case LONG:
+                        return map.primitives[index];
+                    default:
+                        throw new ClassCastException( "Value of '" + key + "' is not a number" );
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    public String getString( String key ) {
+        for ( CompactDataMap map = this; map != null; map = map.parent ) {
+            int index = map.indexOf( key );
+            if ( index >= 0 ) {
+                if ( map.types[index] == OBJECT ) {
+                    Object value = map.objects[index];
+                    return value == null ? null : value.toString();
+                }
+                return String.valueOf( map.get( key ) );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return key 对应的值，基本类型返回包装类（会装箱），不存在时返回 null
+     */
+    public Object get( String key ) {
+        for ( CompactDataMap map = this; map != null; map = map.parent ) {
+            int index = map.indexOf( key );
+            if ( index >= 0 ) {
+                long value = map.primitives[index];
+                switch ( map.types[index] ) {
+                    case INT:
+                        return Integer.valueOf( (int) value );
+                    case LONG:
+                        return Long.valueOf( value );
+                    case BOOLEAN:
+                        return Boolean.valueOf( value != 0 );
+                    case DOUBLE:
+                        return Double.valueOf( Double.longBitsToDouble( value ) );
+                    default:
+                        return map.objects[index];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 所有的键（包括被覆盖的数据中的键），按字母顺序
+     */
+    public List < String > keys() {
+        if ( parent == null ) {
+            return Collections.unmodifiableList( Arrays.asList( keys ) );
+        }
+        List < String > result = new ArrayList < String >( parent.keys() );
+        for ( String key : keys ) {
+            int index = Collections.binarySearch( result, key );
+            if ( index < 0 ) {
+                result.add( -index - 1, key );
+            }
+        }
+        return Collections.unmodifiableList( result );
+    }
+
+    public int size() {
+        return parent == null ? keys.length : keys().size();
+    }
+
+    public CompactDataMap with( String key, int value ) {
+        return with( key, INT, value, null );
+    }
+
+    public CompactDataMap with( String key, long value ) {
+        return with( key, LONG, value, null );
+    }
+
+    public CompactDataMap with( String key, boolean value ) {
+        return with( key, BOOLEAN, value ? 1 : 0, null );
+    }
+
+    public CompactDataMap with( String key, double value ) {
+        return with( key, DOUBLE, Double.doubleToRawLongBits( value ), null );
+    }
+
+    /**
+     * @param value String 或其他可序列化的对象，基本类型的包装类按基本类型保存
+     */
+    public CompactDataMap with( String key, Object value ) {
+        return toBuilder().put( key, value ).build();
+    }
+
+    public CompactDataMap without( String key ) {
+        if ( !containsKey( key ) ) {
+            return this;
+        }
+        Builder builder = toBuilder();
+        builder.remove( key );
+        return builder.build();
+    }
+
+    /**
+     * @return 包含本对象所有数据（覆盖关系已合并）的 Builder
+     */
+    public Builder toBuilder() {
+        Builder builder = parent == null ? new Builder() : parent.toBuilder();
+        for ( int i = 0; i < keys.length; i++ ) {
+            builder.set( keys[i], types[i], primitives[i], objects[i] );
+        }
+        return builder;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        if ( this == obj ) {
+            return true;
+        }
+        if ( !( obj instanceof CompactDataMap ) ) {
+            return false;
+        }
+        CompactDataMap a = flatten();
+        CompactDataMap b = ( (CompactDataMap) obj ).flatten();
+        return Arrays.equals( a.keys, b.keys ) && Arrays.equals( a.types, b.types )
+                && Arrays.equals( a.primitives, b.primitives ) && Arrays.equals( a.objects, b.objects );
+    }
+
+    @Override
+    public int hashCode() {
+        CompactDataMap map = flatten();
+        return ( Arrays.hashCode( map.keys ) * 31 + Arrays.hashCode( map.primitives ) ) * 31
+                + Arrays.hashCode( map.objects );
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder( "{" );
+        for ( String key : keys() ) {
+            if ( sb.length() > 1 ) {
+                sb.append( ", " );
+            }
+            sb.append( key ).append( '=' ).append( get( key ) );
+        }
+        return sb.append( '}' ).toString();
+    }
+
+    private CompactDataMap with( String key, byte type, long primitive, Object object ) {
+        if ( parent != null ) {
+            return toBuilder().set( key, type, primitive, object ).build();
+        }
+        int index = Arrays.binarySearch( keys, key );
+        if ( index >= 0 ) {
+            if ( types[index] == type && primitives[index] == primitive && objects[index] == object ) {
+                return this;
+            }
+            byte[] newTypes = types.clone();
+            long[] newPrimitives = primitives.clone();
+            Object[] newObjects = objects.clone();
+            newTypes[index] = type;
+            newPrimitives[index] = primitive;
+            newObjects[index] = object;
+            return new CompactDataMap( keys, newTypes, newPrimitives, newObjects, null );
+        }
+        return toBuilder().set( key, type, primitive, object ).build();
+    }
+
+    private CompactDataMap flatten() {
+        return parent == null ? this : toBuilder().build();
+    }
+
+    /**
+     * 键通常是字符串常量，先按引用比较，找不到时再二分查找
+     */
+    private int indexOf( String key ) {
+        String[] keys = this.keys;
+        for ( int i = 0; i < keys.length; i++ ) {
+            if ( keys[i] == key ) {
+                return i;
+            }
+        }
+        return keys.length == 0 ? -1 : Arrays.binarySearch( keys, key );
+    }
+
+    /**
+     * 创建 CompactDataMap，同一个键多次 put 时保留最后一次的值
+     */
+    public static final class Builder {
+
+        private final List < String > keys       = new ArrayList < String >();
+        private final List < Object > values     = new ArrayList < Object >();
+        private byte[]                types      = new byte[8];
+        private long[]                primitives = new long[8];
+
+        private Builder() {
+        }
+
+        public Builder put( String key, int value ) {
+            return set( key, INT, value, null );
+        }
+
+        public Builder put( String key, long value ) {
+            return set( key, LONG, value, null );
+        }
+
+        public Builder put( String key, boolean value ) {
+            return set( key, BOOLEAN, value ? 1 : 0, null );
+        }
+
+        public Builder put( String key, double value ) {
+            return set( key, DOUBLE, Double.doubleToRawLongBits( value ), null );
+        }
+
+        /**
+         * @param value String 或其他可序列化的对象，Integer/Long/Boolean/Double 按基本类型保存
+         */
+        public Builder put( String key, Object value ) {
+            if ( value instanceof Integer ) {
+                return put( key, ( (Integer) value ).intValue() );
+            }
+            if ( value instanceof Long ) {
+                return put( key, ( (Long) value ).longValue() );
+            }
+            if ( value instanceof Boolean ) {
+                return put( key, ( (Boolean) value ).booleanValue() );
+            }
+            if ( value instanceof Double ) {
+                return put( key, ( (Double) value ).doubleValue() );
+            }
+            return set( key, OBJECT, 0, value );
+        }
+
+        /**
+         * 逐项复制 map 中的数据（不包括 KEY）
+         */
+        public Builder putAll( JobDataMap map ) {
+            for ( String key : map.getKeys() ) {
+                if ( !KEY.equals( key ) ) {
+                    put( key, map.get( key ) );
+                }
+            }
+            return this;
+        }
+
+        public Builder remove( String key ) {
+            int index = Collections.binarySearch( keys, key );
+            if ( index >= 0 ) {
+                keys.remove( index );
+                values.remove( index );
+                int moved = keys.size() - index;
+                System.arraycopy( types, index + 1, types, index, moved );
+                System.arraycopy( primitives, index + 1, primitives, index, moved );
+            }
+            return this;
+        }
+
+        public CompactDataMap build() {
+            int size = keys.size();
+            if ( size == 0 ) {
+                return EMPTY;
+            }
+            return new CompactDataMap( keys.toArray( new String[size] ), Arrays.copyOf( types, size ),
+                    Arrays.copyOf( primitives, size ), values.toArray( new Object[size] ), null );
+        }
+
+        Builder set( String key, byte type, long primitive, Object object ) {
+            if ( key == null ) {
+                throw new IllegalArgumentException( "key must not be null" );
+            }
+            int index = Collections.binarySearch( keys, key );
+            if ( index < 0 ) {
+                index = -index - 1;
+                int size = keys.size();
+                if ( size == types.length ) {
+                    types = Arrays.copyOf( types, size * 2 );
+                    primitives = Arrays.copyOf( primitives, size * 2 );
+                }
+                System.arraycopy( types, index, types, index + 1, size - index );
+                System.arraycopy( primitives, index, primitives, index + 1, size - index );
+                keys.add( index, key );
+                values.add( index, object );
+            } else {
+                values.set( index, object );
+            }
+            types[index] = type;
+            primitives[index] = primitive;
+            return this;
+        }
+    }
+}
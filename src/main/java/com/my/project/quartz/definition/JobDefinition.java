@@ -0,0 +1,336 @@
+package com.my.project.quartz.definition;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.quartz.DateBuilder;
+import org.quartz.DateBuilder.IntervalUnit;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+
+import com.my.project.quartz.cron.CompiledCronScheduleBuilder;
+import com.my.project.quartz.data.CompactDataMap;
+
+/**
+ * 定义文件中的一行：一个 Job 及其 Trigger
+ *
+ * <pre>
+ * {"job":"myJobCron","group":"myJobCronGroup","class":"com.my.project.quartz.jobs.HelloJob",
+ *  "data":{"type":"Crontab"},"triggers":[{"name":"myTriggerCron","group":"myTriggerCronGroup",
+ *  "cron":"10 38 16 ? * TUE","misfire":"doNothing"}]}
+ *
+ * Job 的字段：
+ *   job、class     - 必填，class 为 Job 实现类的全名
+ *   group          - 默认 DEFAULT
+ *   description、durable、recover
+ *   data           - JobDataMap，值只能是字符串、数字或布尔值，保存为 CompactDataMap
+ *   triggers       - 没有 Trigger 的 Job 总是 durable
+ * Trigger 的字段：
+ *   name、group    - 默认与 Job 相同
+ *   cron、timeZone - 使用 CompiledCronScheduleBuilder
+ *   interval       - 毫秒，repeat 为重复次数，默认 -1（一直重复）；cron 和 interval 都没有时只触发一次
+ *   startDelay     - 毫秒，从注册时算起
+ *   description、priority、calendar
+ *   misfire        - ignore、fireNow 或 doNothing，默认 smart policy
+ *
+ * 解析只得到 JobKey 和指纹（fingerprint）：字段按名称排序后计算 FNV-1a 64 位哈希，
+ * 与空白和字段顺序无关。指纹与上次加载时相同的行不需要再构造 JobDetail 和 Trigger。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class JobDefinition {
+
+    private static final Set < String > JOB_FIELDS     = new HashSet < String >( Arrays.asList( "job", "group",
+            "class", "description", "durable", "recover", "data", "triggers" ) );
+    private static final Set < String > TRIGGER_FIELDS = new HashSet < String >( Arrays.asList( "name", "group",
+            "description", "cron", "timeZone", "interval", "repeat", "startDelay", "priority", "calendar",
+            "misfire" ) );
+
+    private static final long           FNV_OFFSET     = 0xcbf29ce484222325L;
+    private static final long           FNV_PRIME      = 0x100000001b3L;
+
+    private final Map < String, Object > fields;
+    private final JobKey                 key;
+    private final long                   fingerprint;
+
+    private JobDefinition( Map < String, Object > fields, JobKey key, long fingerprint ) {
+        this.fields = fields;
+        this.key = key;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @throws IllegalArgumentException 不是合法的 JSON 对象、缺少必填字段或者有未知字段
+     */
+    @SuppressWarnings( "unchecked" )
+    public static JobDefinition parse( String line ) {
+        Object value = Json.parse( line );
+        if ( !( value instanceof Map ) ) {
+            throw new IllegalArgumentException( "Job definition must be a JSON object" );
+        }
+        Map < String, Object > fields = (Map < String, Object >) value;
+        checkFields( fields, JOB_FIELDS, "job" );
+        String name = requiredString( fields, "job" );
+        requiredString( fields, "class" );
+        String group = optionalString( fields, "group" );
+        long fingerprint = hash( FNV_OFFSET, fields );
+        // 0 留给 JobDefinitionLoader 表示"未知"
+        return new JobDefinition( fields, JobKey.jobKey( name, group ), fingerprint == 0 ? 1 : fingerprint );
+    }
+
+    public JobKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return 不为 0
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getJobClassName() {
+        return (String) fields.get( "class" );
+    }
+
+    /**
+     * @throws IllegalArgumentException 字段的类型不对
+     */
+    public JobDetail buildJobDetail( Class < ? extends Job > jobClass ) {
+        JobBuilder builder = JobBuilder.newJob( jobClass ).withIdentity( key )
+                .withDescription( optionalString( fields, "description" ) )
+                .requestRecovery( optionalBoolean( fields, "recover", false ) )
+                .storeDurably( optionalBoolean( fields, "durable", false ) || triggerFields().isEmpty() );
+        JobDetail job = builder.build();
+        Object data = fields.get( "data" );
+        if ( data != null ) {
+            if ( !( data instanceof Map ) ) {
+                throw new IllegalArgumentException( "Field \"data\" must be an object" );
+            }
+            CompactDataMap.Builder compact = CompactDataMap.builder();
+            for ( Map.Entry < ?, ? > entry : ( (Map < ?, ? >) data ).entrySet() ) {
+                Object v = entry.getValue();
+                if ( v instanceof Map || v instanceof List || v == null ) {
+                    throw new IllegalArgumentException( "Data \"" + entry.getKey() + "\" must be a scalar" );
+                }
+                compact.put( (String) entry.getKey(), v );
+            }
+            compact.build().storeIn( job.getJobDataMap() );
+        }
+        return job;
+    }
+
+    /**
+     * @throws IllegalArgumentException Trigger 的字段不合法
+     */
+    public Trigger[] buildTriggers() {
+        List < Map < String, Object > > triggerFields = triggerFields();
+        Trigger[] triggers = new Trigger[triggerFields.size()];
+        for ( int i = 0; i < triggers.length; i++ ) {
+            triggers[i] = buildTrigger( triggerFields.get( i ) );
+        }
+        return triggers;
+    }
+
+    private Trigger buildTrigger( Map < String, Object > trigger ) {
+        String name = optionalString( trigger, "name" );
+        String group = optionalString( trigger, "group" );
+        TriggerBuilder < Trigger > builder = TriggerBuilder.newTrigger()
+                .withIdentity( name == null ? key.getName() : name, group == null ? key.getGroup() : group )
+                .forJob( key ).withDescription( optionalString( trigger, "description" ) )
+                .modifiedByCalendar( optionalString( trigger, "calendar" ) );
+        long startDelay = optionalLong( trigger, "startDelay", 0 );
+        if ( startDelay > 0 ) {
+            builder.startAt( DateBuilder.futureDate( (int) Math.min( startDelay, Integer.MAX_VALUE ),
+                    IntervalUnit.MILLISECOND ) );
+        } else {
+            builder.startNow();
+        }
+        if ( trigger.containsKey( "priority" ) ) {
+            builder.withPriority( (int) optionalLong( trigger, "priority", Trigger.DEFAULT_PRIORITY ) );
+        }
+        String misfire = optionalString( trigger, "misfire" );
+        if ( misfire != null && !misfire.equals( "ignore" ) && !misfire.equals( "fireNow" )
+                && !misfire.equals( "doNothing" ) ) {
+            throw new IllegalArgumentException( "Unknown misfire \"" + misfire + "\"" );
+        }
+        String cron = optionalString( trigger, "cron" );
+        if ( cron != null ) {
+            if ( trigger.containsKey( "interval" ) ) {
+                throw new IllegalArgumentException( "Trigger cannot have both \"cron\" and \"interval\"" );
+            }
+            CompiledCronScheduleBuilder schedule;
+            try {
+                schedule = CompiledCronScheduleBuilder.cronScheduleNonvalidatedExpression( cron );
+            } catch ( ParseException e ) {
+                throw new IllegalArgumentException( "Invalid cron \"" + cron + "\": " + e.getMessage() );
+            }
+            String timeZone = optionalString( trigger, "timeZone" );
+            if ( timeZone != null ) {
+                schedule.inTimeZone( TimeZone.getTimeZone( timeZone ) );
+            }
+            if ( "ignore".equals( misfire ) ) {
+                schedule.withMisfireHandlingInstructionIgnoreMisfires();
+            } else if ( "fireNow".equals( misfire ) ) {
+                schedule.withMisfireHandlingInstructionFireAndProceed();
+            } else if ( "doNothing".equals( misfire ) ) {
+                schedule.withMisfireHandlingInstructionDoNothing();
+            }
+            return builder.withSchedule( schedule ).build();
+        }
+        SimpleScheduleBuilder schedule = SimpleScheduleBuilder.simpleSchedule();
+        if ( trigger.containsKey( "interval" ) ) {
+            long interval = optionalLong( trigger, "interval", 0 );
+            if ( interval <= 0 ) {
+                throw new IllegalArgumentException( "Field \"interval\" must be positive" );
+            }
+            long repeat = optionalLong( trigger, "repeat", SimpleTrigger.REPEAT_INDEFINITELY );
+            schedule.withIntervalInMilliseconds( interval ).withRepeatCount( (int) repeat );
+        }
+        if ( "ignore".equals( misfire ) ) {
+            schedule.withMisfireHandlingInstructionIgnoreMisfires();
+        } else if ( "fireNow".equals( misfire ) ) {
+            schedule.withMisfireHandlingInstructionFireNow();
+        } else if ( "doNothing".equals( misfire ) ) {
+            schedule.withMisfireHandlingInstructionNextWithRemainingCount();
+        }
+        return builder.withSchedule( schedule ).build();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List < Map < String, Object > > triggerFields() {
+        Object triggers = fields.get( "triggers" );
+        if ( triggers == null ) {
+            return Collections.emptyList();
+        }
+        if ( !( triggers instanceof List ) ) {
+            throw new IllegalArgumentException( "Field \"triggers\" must be an array" );
+        }
+        List < Map < String, Object > > list = new ArrayList < Map < String, Object > >();
+        for ( Object trigger : (List < ? >) triggers ) {
+            if ( !( trigger instanceof Map ) ) {
+                throw new IllegalArgumentException( "Each trigger must be an object" );
+            }
+            checkFields( (Map < String, Object >) trigger, TRIGGER_FIELDS, "trigger" );
+            list.add( (Map < String, Object >) trigger );
+        }
+        return list;
+    }
+
+    private static void checkFields( Map < String, Object > fields, Set < String > known, String kind ) {
+        for ( String field : fields.keySet() ) {
+            if ( !known.contains( field ) ) {
+                throw new IllegalArgumentException( "Unknown " + kind + " field \"" + field + "\"" );
+            }
+        }
+    }
+
+    private static String requiredString( Map < String, Object > fields, String name ) {
+        String value = optionalString( fields, name );
+        if ( value == null || value.isEmpty() ) {
+            throw new IllegalArgumentException( "Missing field \"" + name + "\"" );
+        }
+        return value;
+    }
+
+    private static String optionalString( Map < String, Object > fields, String name ) {
+        Object value = fields.get( name );
+        if ( value != null && !( value instanceof String ) ) {
+            throw new IllegalArgumentException( "Field \"" + name + "\" must be a string" );
+        }
+        return (String) value;
+    }
+
+    private static boolean optionalBoolean( Map < String, Object > fields, String name, boolean defaultValue ) {
+        Object value = fields.get( name );
+        if ( value == null ) {
+            return defaultValue;
+        }
+        if ( !( value instanceof Boolean ) ) {
+            throw new IllegalArgumentException( "Field \"" + name + "\" must be a boolean" );
+        }
+        return (Boolean) value;
+    }
+
+    private static long optionalLong( Map < String, Object > fields, String name, long defaultValue ) {
+        Object value = fields.get( name );
+        if ( value == null ) {
+            return defaultValue;
+        }
+        if ( !( value instanceof Long ) ) {
+            throw new IllegalArgumentException( "Field \"" + name + "\" must be an integer" );
+        }
+        return (Long) value;
+    }
+
+    /**
+     * 按类型标记、长度和内容计算，对象的字段按名称排序
+     */
+    private static long hash( long h, Object value ) {
+        if ( value instanceof Map ) {
+            Map < ?, ? > map = (Map < ?, ? >) value;
+            String[] names = map.keySet().toArray( new String[map.size()] );
+            Arrays.sort( names );
+            h = mix( h, '{' );
+            for ( String name : names ) {
+                h = hash( h, name );
+                h = hash( h, map.get( name ) );
+            }
+            return mix( h, '}' );
+        }
+        if ( value instanceof List ) {
+            h = mix( h, '[' );
+            for ( Object element : (List < ? >) value ) {
+                h = hash( h, element );
+            }
+            return mix( h, ']' );
+        }
+        if ( value instanceof String ) {
+            String s = (String) value;
+            h = mixLong( mix( h, '"' ), s.length() );
+            for ( int i = 0; i < s.length(); i++ ) {
+                h = mix( h, s.charAt( i ) );
+            }
+            return h;
+        }
+        if ( value instanceof Long ) {
+            return mixLong( mix( h, 'l' ), (Long) value );
+        }
+        if ( value instanceof Double ) {
+            return mixLong( mix( h, 'd' ), Double.doubleToLongBits( (Double) value ) );
+        }
+        if ( value instanceof Boolean ) {
+            return mix( h, (Boolean) value ? 't' : 'f' );
+        }
+        return mix( h, 'n' );
+    }
+
+    private static long mixLong( long h, long v ) {
+        for ( int shift = 0; shift < 64; shift += 16 ) {
+            h = mix( h, (int) ( v >>> shift ) & 0xffff );
+        }
+        return h;
+    }
+
+    /**
+     * FNV-1a，每次处理一个 char
+     */
+    private static long mix( long h, int c ) {
+        return ( h ^ c ) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,401 @@
+package com.my.project.quartz.definition;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.Job;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.quartz.bulk.BulkScheduleResult;
+import com.my.project.quartz.bulk.BulkScheduler;
+
+/**
+ * 从 JSON Lines 文件加载 Job 定义，重新加载时只把变化的部分写入调度器
+ *
+ * <pre>
+ * 文件每行一个 Job（格式见 JobDefinition），空行和 # 开头的行被忽略。
+ * Quartz 的 XMLSchedulingDataProcessorPlugin 每次都把整个 XML 解析成 DOM，再逐个 scheduleJob，
+ * 定义有几十万个时，即使只改了一行，也要重建所有 Job 和 Trigger 并逐个获取 JobStore 的锁。
+ *
+ * 本类逐行读取，每行只解析出 JobKey 和指纹，与上次加载时的指纹比较：
+ *   新增和修改 - 构造 JobDetail 和 Trigger，每 batchSize 个通过 BulkScheduler 替换写入一次；
+ *                修改后不再存在的 Trigger 在同一批之后通过 unscheduleJobs 删除
+ *   删除       - 上次有、这次没有的 Job，每 batchSize 个通过 deleteJobs 删除一次
+ *   未变化     - 不构造对象，也不访问调度器
+ * 常驻内存的只有 JobKey 到指纹的索引；读取时另外只保留当前行的解析结果和一批待写入的 Job。
+ *
+ * 有一行无法解析时不执行删除（无法判断那一行原来是哪个 Job）；写入失败的 Job 在下次加载时重试。
+ * 调度器中不是由本类添加的 Job 不受影响。
+ *
+ * watch 使用 WatchService 监视文件所在的目录，文件变化后等待 quietPeriod 内没有新的变化再重新加载，
+ * 编辑器先写临时文件再改名的保存方式同样可以检测到。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class JobDefinitionLoader implements Closeable {
+
+    private static final Logger                           LOG                  = LoggerFactory
+            .getLogger( JobDefinitionLoader.class );
+
+    public static final long                              DEFAULT_QUIET_PERIOD = 500;
+
+    /** 索引中表示"调度器中的状态未知"，下次加载时总是重新写入 */
+    private static final long                             UNKNOWN              = 0;
+
+    private final Scheduler                               scheduler;
+    private final Path                                    file;
+    private final int                                     batchSize;
+    private final ClassLoader                             classLoader;
+    private final Map < String, Class < ? extends Job > > classes              = new HashMap < String, Class < ? extends Job > >();
+    /** 上次加载的 JobKey 到指纹，由 this 保护 */
+    private Map < JobKey, Long >                          index                = new HashMap < JobKey, Long >();
+    private WatchService                                  watchService;
+    private Thread                                        watcher;
+
+    public JobDefinitionLoader( Scheduler scheduler, Path file ) {
+        this( scheduler, file, BulkScheduler.DEFAULT_BATCH_SIZE, Thread.currentThread().getContextClassLoader() );
+    }
+
+    /**
+     * @param batchSize 每次写入或删除的最大 Job 数
+     * @param classLoader 加载 Job 实现类
+     */
+    public JobDefinitionLoader( Scheduler scheduler, Path file, int batchSize, ClassLoader classLoader ) {
+        if ( batchSize <= 0 ) {
+            throw new IllegalArgumentException( "batchSize must be positive" );
+        }
+        this.scheduler = scheduler;
+        this.file = file;
+        this.batchSize = batchSize;
+        this.classLoader = classLoader;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return 上次加载后由本类管理的 Job 数
+     */
+    public synchronized int getJobCount() {
+        return index.size();
+    }
+
+    /**
+     * 读取整个文件，把与上次加载相比的变化写入调度器
+     *
+     * @throws IOException 文件无法读取，此时调度器和索引都不变
+     */
+    public synchronized JobDefinitionResult reload() throws IOException {
+        long start = System.nanoTime();
+        JobDefinitionResult result = new JobDefinitionResult();
+        Map < JobKey, Long > next = new HashMap < JobKey, Long >( index.size() * 4 / 3 + 16 );
+        Map < JobKey, List < TriggerKey > > stale = new LinkedHashMap < JobKey, List < TriggerKey > >();
+        // 有错误、不在索引中的新 Job，只用于检查重复
+        Set < JobKey > rejected = new HashSet < JobKey >();
+        BulkScheduler bulk = new BulkScheduler( scheduler, batchSize );
+        boolean unparsable = false;
+
+        BufferedReader reader = Files.newBufferedReader( file, StandardCharsets.UTF_8 );
+        try {
+            String line;
+            int lineNumber = 0;
+            while ( ( line = reader.readLine() ) != null ) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if ( trimmed.isEmpty() || trimmed.startsWith( "#" ) ) {
+                    continue;
+                }
+                JobDefinition definition;
+                try {
+                    definition = JobDefinition.parse( trimmed );
+                } catch ( IllegalArgumentException e ) {
+                    result.onError( lineNumber, e.getMessage() );
+                    unparsable = true;
+                    continue;
+                }
+                JobKey key = definition.getKey();
+                if ( next.containsKey( key ) || rejected.contains( key ) ) {
+                    result.onError( lineNumber, "Duplicate job " + key );
+                    continue;
+                }
+                Long previous = index.get( key );
+                if ( previous != null && previous.longValue() == definition.getFingerprint() ) {
+                    next.put( key, previous );
+                    result.onUnchanged();
+                    continue;
+                }
+                if ( !stage( definition, previous, bulk, stale, result, lineNumber ) ) {
+                    // 调度器中仍是原来的定义（或者没有），改正之后会再次写入
+                    if ( previous == null ) {
+                        rejected.add( key );
+                    } else {
+                        next.put( key, previous );
+                    }
+                    continue;
+                }
+                next.put( key, definition.getFingerprint() );
+                if ( previous == null ) {
+                    result.onAdded();
+                } else {
+                    result.onModified();
+                }
+                if ( bulk.size() >= batchSize ) {
+                    flush( bulk, stale, next, result );
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        flush( bulk, stale, next, result );
+
+        if ( unparsable ) {
+            for ( Map.Entry < JobKey, Long > entry : index.entrySet() ) {
+                if ( !next.containsKey( entry.getKey() ) ) {
+                    next.put( entry.getKey(), entry.getValue() );
+                    result.setRemovalsSkipped( true );
+                }
+            }
+        } else {
+            removeMissing( next, result );
+        }
+        index = next;
+        result.setElapsedNanos( System.nanoTime() - start );
+        return result;
+    }
+
+    /**
+     * 构造 JobDetail 和 Trigger 并加入 bulk，修改的 Job 记下将被替换掉的 Trigger
+     *
+     * @return 定义有错误或者无法读取原来的 Trigger 时返回 false
+     */
+    private boolean stage( JobDefinition definition, Long previous, BulkScheduler bulk,
+            Map < JobKey, List < TriggerKey > > stale, JobDefinitionResult result, int lineNumber ) {
+        JobDetail job;
+        Trigger[] triggers;
+        try {
+            job = definition.buildJobDetail( jobClass( definition.getJobClassName() ) );
+            triggers = definition.buildTriggers();
+        } catch ( IllegalArgumentException e ) {
+            result.onError( lineNumber, e.getMessage() );
+            return false;
+        } catch ( ClassNotFoundException e ) {
+            result.onError( lineNumber, "Job class not found: " + e.getMessage() );
+            return false;
+        }
+        if ( previous != null ) {
+            try {
+                Set < TriggerKey > keep = new HashSet < TriggerKey >();
+                for ( Trigger trigger : triggers ) {
+                    keep.add( trigger.getKey() );
+                }
+                List < TriggerKey > removed = new ArrayList < TriggerKey >();
+                for ( Trigger existing : scheduler.getTriggersOfJob( job.getKey() ) ) {
+                    if ( !keep.contains( existing.getKey() ) ) {
+                        removed.add( existing.getKey() );
+                    }
+                }
+                if ( !removed.isEmpty() ) {
+                    stale.put( job.getKey(), removed );
+                }
+            } catch ( SchedulerException e ) {
+                result.onFailure( job.getKey(), e );
+                return false;
+            }
+        }
+        bulk.add( job, triggers );
+        return true;
+    }
+
+    /**
+     * 写入 bulk 中的 Job，再删除其中修改后不再存在的 Trigger；失败的 Job 在索引中标记为 UNKNOWN
+     */
+    private void flush( BulkScheduler bulk, Map < JobKey, List < TriggerKey > > stale, Map < JobKey, Long > next,
+            JobDefinitionResult result ) {
+        if ( bulk.size() == 0 ) {
+            return;
+        }
+        BulkScheduleResult written = bulk.execute( true );
+        result.onBulk( written );
+        for ( JobKey failed : written.getFailures().keySet() ) {
+            next.put( failed, UNKNOWN );
+            stale.remove( failed );
+        }
+        if ( stale.isEmpty() ) {
+            return;
+        }
+        List < TriggerKey > triggerKeys = new ArrayList < TriggerKey >();
+        for ( List < TriggerKey > keys : stale.values() ) {
+            triggerKeys.addAll( keys );
+        }
+        try {
+            result.onBatch();
+            scheduler.unscheduleJobs( triggerKeys );
+        } catch ( SchedulerException e ) {
+            for ( JobKey key : stale.keySet() ) {
+                result.onFailure( key, e );
+                next.put( key, UNKNOWN );
+            }
+        }
+        stale.clear();
+    }
+
+    /**
+     * 删除上次加载过、这次不在文件中的 Job；删除失败的 Job 保留在索引中，下次加载时重试
+     */
+    private void removeMissing( Map < JobKey, Long > next, JobDefinitionResult result ) {
+        List < JobKey > batch = new ArrayList < JobKey >();
+        for ( JobKey key : index.keySet() ) {
+            if ( next.containsKey( key ) ) {
+                continue;
+            }
+            batch.add( key );
+            if ( batch.size() == batchSize ) {
+                delete( batch, next, result );
+                batch.clear();
+            }
+        }
+        if ( !batch.isEmpty() ) {
+            delete( batch, next, result );
+        }
+    }
+
+    private void delete( List < JobKey > keys, Map < JobKey, Long > next, JobDefinitionResult result ) {
+        try {
+            result.onBatch();
+            scheduler.deleteJobs( keys );
+            result.onRemoved( keys.size() );
+        } catch ( SchedulerException e ) {
+            for ( JobKey key : keys ) {
+                result.onFailure( key, e );
+                next.put( key, UNKNOWN );
+            }
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Class < ? extends Job > jobClass( String name ) throws ClassNotFoundException {
+        Class < ? extends Job > jobClass = classes.get( name );
+        if ( jobClass == null ) {
+            Class < ? > loaded = Class.forName( name, true, classLoader );
+            if ( !Job.class.isAssignableFrom( loaded ) ) {
+                throw new IllegalArgumentException( name + " does not implement org.quartz.Job" );
+            }
+            jobClass = (Class < ? extends Job >) loaded;
+            classes.put( name, jobClass );
+        }
+        return jobClass;
+    }
+
+    /**
+     * 开始监视文件，变化后在后台线程中调用 reload
+     *
+     * @param quietPeriodMillis 最后一次变化之后等待多久再加载，合并编辑器保存时的多次写入
+     */
+    public synchronized void watch( final long quietPeriodMillis ) throws IOException {
+        if ( watcher != null ) {
+            throw new IllegalStateException( "Already watching " + file );
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        final Path fileName = file.getFileName();
+        final WatchService service = directory.getFileSystem().newWatchService();
+        directory.register( service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY );
+        watchService = service;
+        watcher = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                watchLoop( service, fileName, quietPeriodMillis );
+            }
+        }, "JobDefinitionLoader-" + fileName );
+        watcher.setDaemon( true );
+        watcher.start();
+    }
+
+    private void watchLoop( WatchService service, Path fileName, long quietPeriodMillis ) {
+        try {
+            while ( true ) {
+                if ( !changed( service.take(), fileName ) ) {
+                    continue;
+                }
+                WatchKey more;
+                while ( ( more = service.poll( quietPeriodMillis, TimeUnit.MILLISECONDS ) ) != null ) {
+                    changed( more, fileName );
+                }
+                try {
+                    JobDefinitionResult result = reload();
+                    if ( result.isSuccessful() ) {
+                        LOG.info( "Reloaded " + file + ": " + result );
+                    } else {
+                        LOG.warn( "Reloaded " + file + " with problems: " + result + " " + result.getErrors() + " "
+                                + result.getFailures().keySet() );
+                    }
+                } catch ( IOException e ) {
+                    LOG.warn( "Could not reload " + file, e );
+                }
+            }
+        } catch ( InterruptedException e ) {
+            // close
+        } catch ( ClosedWatchServiceException e ) {
+            // close
+        }
+    }
+
+    /**
+     * @return key 的事件中是否有 fileName 的变化（OVERFLOW 时丢失了事件，视为变化）
+     */
+    private static boolean changed( WatchKey key, Path fileName ) {
+        boolean changed = false;
+        for ( WatchEvent < ? > event : key.pollEvents() ) {
+            if ( event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals( event.context() ) ) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * 停止监视，已经加载的 Job 不受影响
+     */
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized ( this ) {
+            if ( watcher == null ) {
+                return;
+            }
+            watchService.close();
+            thread = watcher;
+            watcher = null;
+            watchService = null;
+        }
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,125 @@
+package com.my.project.quartz.definition;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.quartz.bulk.BulkScheduler;
+
+/**
+ * 调度器启动时通过 JobDefinitionLoader 加载 Job 定义，之后监视文件的变化
+ *
+ * <pre>
+ * 在 quartz.properties 中配置：
+ *   org.quartz.plugin.jobDefinitions.class = com.my.project.quartz.definition.JobDefinitionPlugin
+ *   org.quartz.plugin.jobDefinitions.fileName = jobs.jsonl
+ *   org.quartz.plugin.jobDefinitions.watch = true
+ *
+ * fileName 先按文件路径查找，找不到时从 classpath 中查找（只支持解压后的目录，不支持 jar 中的文件）。
+ * watch 默认为 true，quietPeriod 默认 500 毫秒，batchSize 默认与 BulkScheduler 相同。
+ * 与 XMLSchedulingDataProcessorPlugin 的 scanInterval 不同，不需要定时检查文件，
+ * 变化后也只写入变化的 Job。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class JobDefinitionPlugin implements SchedulerPlugin {
+
+    private static final Logger LOG         = LoggerFactory.getLogger( JobDefinitionPlugin.class );
+
+    private String              fileName    = "jobs.jsonl";
+    private int                 batchSize   = BulkScheduler.DEFAULT_BATCH_SIZE;
+    private boolean             watch       = true;
+    private long                quietPeriod = JobDefinitionLoader.DEFAULT_QUIET_PERIOD;
+
+    private String              name;
+    private JobDefinitionLoader loader;
+
+    public void setFileName( String fileName ) {
+        this.fileName = fileName;
+    }
+
+    public void setBatchSize( int batchSize ) {
+        this.batchSize = batchSize;
+    }
+
+    public void setWatch( boolean watch ) {
+        this.watch = watch;
+    }
+
+    /**
+     * @param quietPeriod 文件最后一次变化之后等待的毫秒数
+     */
+    public void setQuietPeriod( long quietPeriod ) {
+        this.quietPeriod = quietPeriod;
+    }
+
+    public JobDefinitionLoader getLoader() {
+        return loader;
+    }
+
+    @Override
+    public void initialize( String name, Scheduler scheduler, ClassLoadHelper loadHelper ) throws SchedulerException {
+        this.name = name;
+        loader = new JobDefinitionLoader( scheduler, resolve( loadHelper ), batchSize, loadHelper.getClassLoader() );
+    }
+
+    private Path resolve( ClassLoadHelper loadHelper ) throws SchedulerConfigException {
+        Path path = Paths.get( fileName );
+        if ( Files.exists( path ) ) {
+            return path;
+        }
+        URL url = loadHelper.getResource( fileName );
+        if ( url != null && "file".equals( url.getProtocol() ) ) {
+            try {
+                return Paths.get( url.toURI() );
+            } catch ( URISyntaxException e ) {
+                throw new SchedulerConfigException( "Invalid job definition file " + url, e );
+            }
+        }
+        throw new SchedulerConfigException( "Job definition file " + fileName + " not found" );
+    }
+
+    @Override
+    public void start() {
+        try {
+            JobDefinitionResult result = loader.reload();
+            if ( result.isSuccessful() ) {
+                LOG.info( "Plugin " + name + " loaded " + loader.getFile() + ": " + result );
+            } else {
+                LOG.warn( "Plugin " + name + " loaded " + loader.getFile() + " with problems: " + result + " "
+                        + result.getErrors() + " " + result.getFailures().keySet() );
+            }
+        } catch ( IOException e ) {
+            LOG.error( "Plugin " + name + " could not load " + loader.getFile(), e );
+        }
+        if ( watch ) {
+            try {
+                loader.watch( quietPeriod );
+            } catch ( IOException e ) {
+                LOG.warn( "Plugin " + name + " could not watch " + loader.getFile(), e );
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            loader.close();
+        } catch ( IOException e ) {
+            LOG.debug( "Failed to stop watching " + loader.getFile(), e );
+        }
+    }
+}
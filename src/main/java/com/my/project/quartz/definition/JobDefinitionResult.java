@@ -0,0 +1,142 @@
+package com.my.project.quartz.definition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.JobKey;
+import org.quartz.SchedulerException;
+
+import com.my.project.quartz.bulk.BulkScheduleResult;
+
+/**
+ * JobDefinitionLoader 一次加载的结果
+ *
+ * @author yang.dongdong
+ *
+ */
+public class JobDefinitionResult {
+
+    private final List < String >                    errors   = new ArrayList < String >();
+    private final Map < JobKey, SchedulerException > failures = new LinkedHashMap < JobKey, SchedulerException >();
+    private int                                      added;
+    private int                                      modified;
+    private int                                      removed;
+    private int                                      unchanged;
+    private int                                      batches;
+    private boolean                                  removalsSkipped;
+    private long                                     elapsedNanos;
+
+    void onAdded() {
+        added++;
+    }
+
+    void onModified() {
+        modified++;
+    }
+
+    void onUnchanged() {
+        unchanged++;
+    }
+
+    void onRemoved( int count ) {
+        removed += count;
+    }
+
+    void onError( int line, String message ) {
+        errors.add( "line " + line + ": " + message );
+    }
+
+    void onBulk( BulkScheduleResult bulk ) {
+        batches += bulk.getBatches();
+        failures.putAll( bulk.getFailures() );
+    }
+
+    void onBatch() {
+        batches++;
+    }
+
+    void onFailure( JobKey key, SchedulerException e ) {
+        failures.put( key, e );
+    }
+
+    void setRemovalsSkipped( boolean removalsSkipped ) {
+        this.removalsSkipped = removalsSkipped;
+    }
+
+    void setElapsedNanos( long elapsedNanos ) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return 没有解析错误，所有变化都已写入调度器时返回 true
+     */
+    public boolean isSuccessful() {
+        return errors.isEmpty() && failures.isEmpty();
+    }
+
+    /**
+     * @return 是否有变化，包括写入失败的
+     */
+    public boolean hasChanges() {
+        return added + modified + removed > 0;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getModified() {
+        return modified;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @return 调用调度器（scheduleJobs、unscheduleJobs、deleteJobs）的次数
+     */
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return 有解析错误时不删除定义文件中找不到的 Job，以免一行写错就删掉它
+     */
+    public boolean isRemovalsSkipped() {
+        return removalsSkipped;
+    }
+
+    /**
+     * @return 解析错误，"line 行号: 原因"
+     */
+    public List < String > getErrors() {
+        return Collections.unmodifiableList( errors );
+    }
+
+    /**
+     * @return 写入调度器失败的 Job 及原因，下次加载时重试
+     */
+    public Map < JobKey, SchedulerException > getFailures() {
+        return Collections.unmodifiableMap( failures );
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis( elapsedNanos );
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + added + " modified=" + modified + " removed=" + removed + " unchanged=" + unchanged
+                + " errors=" + errors.size() + " failures=" + failures.size() + " batches=" + batches
+                + ( removalsSkipped ? " removalsSkipped" : "" ) + " elapsed=" + getElapsedMillis() + "ms";
+    }
+}
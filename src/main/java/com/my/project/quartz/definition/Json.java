@@ -0,0 +1,226 @@
+package com.my.project.quartz.definition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 解析一行 JSON，只用于读取 Job 定义
+ *
+ * <pre>
+ * 对象解析为 LinkedHashMap，数组解析为 ArrayList，整数为 Long，其他数字为 Double，
+ * 另有 String、Boolean 和 null。项目没有 JSON 库依赖，定义文件的每一行都很短，递归下降就足够了。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+final class Json {
+
+    private final String text;
+    private int          pos;
+
+    private Json( String text ) {
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException 不是合法的 JSON，或者值之后还有其他字符
+     */
+    static Object parse( String text ) {
+        Json json = new Json( text );
+        Object value = json.value();
+        json.skipWhitespace();
+        if ( json.pos < text.length() ) {
+            throw json.error( "Unexpected trailing characters" );
+        }
+        return value;
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if ( pos >= text.length() ) {
+            throw error( "Unexpected end of input" );
+        }
+        char c = text.charAt( pos );
+        switch ( c ) {
+        case '{':
+            return object();
+        case '[':
+            return array();
+        case '"':
+            return string();
+        case 't':
+            return literal( "true", Boolean.TRUE );
+        case 'f':
+            return literal( "false", Boolean.FALSE );
+        case 'n':
+            return literal( "null", null );
+        default:
+            if ( c == '-' || ( c >= '0' && c <= '9' ) ) {
+                return number();
+            }
+            throw error( "Unexpected character '" + c + "'" );
+        }
+    }
+
+    private Map < String, Object > object() {
+        Map < String, Object > map = new LinkedHashMap < String, Object >();
+        pos++;
+        skipWhitespace();
+        if ( peek() == '}' ) {
+            pos++;
+            return map;
+        }
+        while ( true ) {
+            skipWhitespace();
+            if ( peek() != '"' ) {
+                throw error( "Expected a field name" );
+            }
+            String name = string();
+            skipWhitespace();
+            expect( ':' );
+            if ( map.put( name, value() ) != null ) {
+                throw error( "Duplicate field \"" + name + "\"" );
+            }
+            skipWhitespace();
+            if ( peek() == ',' ) {
+                pos++;
+            } else {
+                expect( '}' );
+                return map;
+            }
+        }
+    }
+
+    private List < Object > array() {
+        List < Object > list = new ArrayList < Object >();
+        pos++;
+        skipWhitespace();
+        if ( peek() == ']' ) {
+            pos++;
+            return list;
+        }
+        while ( true ) {
+            list.add( value() );
+            skipWhitespace();
+            if ( peek() == ',' ) {
+                pos++;
+            } else {
+                expect( ']' );
+                return list;
+            }
+        }
+    }
+
+    private String string() {
+        pos++;
+        StringBuilder out = null;
+        int start = pos;
+        while ( pos < text.length() ) {
+            char c = text.charAt( pos );
+            if ( c == '"' ) {
+                String value = out == null ? text.substring( start, pos ) : out.append( text, start, pos ).toString();
+                pos++;
+                return value;
+            }
+            if ( c != '\\' ) {
+                pos++;
+                continue;
+            }
+            if ( out == null ) {
+                out = new StringBuilder();
+            }
+            out.append( text, start, pos );
+            if ( ++pos >= text.length() ) {
+                break;
+            }
+            char escaped = text.charAt( pos++ );
+            switch ( escaped ) {
+            case 'b':
+                out.append( '\b' );
+                break;
+            case 'f':
+                out.append( '\f' );
+                break;
+            case 'n':
+                out.append( '\n' );
+                break;
+            case 'r':
+                out.append( '\r' );
+                break;
+            case 't':
+                out.append( '\t' );
+                break;
+            case 'u':
+                if ( pos + 4 > text.length() ) {
+                    throw error( "Invalid unicode escape" );
+                }
+                try {
+                    out.append( (char) Integer.parseInt( text.substring( pos, pos + 4 ), 16 ) );
+                } catch ( NumberFormatException e ) {
+                    throw error( "Invalid unicode escape" );
+                }
+                pos += 4;
+                break;
+            default:
+                out.append( escaped );
+            }
+            start = pos;
+        }
+        throw error( "Unterminated string" );
+    }
+
+    private Object number() {
+        int start = pos;
+        boolean decimal = false;
+        if ( peek() == '-' ) {
+            pos++;
+        }
+        while ( pos < text.length() ) {
+            char c = text.charAt( pos );
+            if ( c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-' ) {
+                decimal = true;
+            } else if ( c < '0' || c > '9' ) {
+                break;
+            }
+            pos++;
+        }
+        String number = text.substring( start, pos );
+        try {
+            return decimal ? (Object) Double.valueOf( number ) : (Object) Long.valueOf( number );
+        } catch ( NumberFormatException e ) {
+            throw error( "Invalid number " + number );
+        }
+    }
+
+    private Object literal( String literal, Object value ) {
+        if ( !text.startsWith( literal, pos ) ) {
+            throw error( "Unexpected character '" + text.charAt( pos ) + "'" );
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private void expect( char c ) {
+        if ( peek() != c ) {
+            throw error( "Expected '" + c + "'" );
+        }
+        pos++;
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt( pos ) : 0;
+    }
+
+    private void skipWhitespace() {
+        while ( pos < text.length() && Character.isWhitespace( text.charAt( pos ) ) ) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error( String message ) {
+        return new IllegalArgumentException( message + " at column " + ( pos + 1 ) );
+    }
+}
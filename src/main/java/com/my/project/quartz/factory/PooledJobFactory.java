@@ -0,0 +1,212 @@
+package com.my.project.quartz.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.PersistJobDataAfterExecution;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.simpl.PropertySettingJobFactory;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.utils.ClassUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 复用无状态 Job 实例的 JobFactory
+ *
+ * <pre>
+ * Quartz 默认的 PropertySettingJobFactory 每次触发都通过反射（Class.newInstance）创建一个新的 Job，
+ * 再把 SchedulerContext、JobDetail 和 Trigger 的 JobDataMap 合并后按属性名设置到 Job 上。
+ *
+ * 本类只复用明确声明为无状态的 Job 类：
+ *   - 类上标记了 @StatelessJob，或者类名在 statelessJobClasses 中（用于不能修改源码的类）；
+ *   - 标记了 @PersistJobDataAfterExecution 的类永远不复用；
+ *   - SHARED 范围所有线程共用一个实例，PER_THREAD 范围每个工作线程一个实例
+ *     （VirtualThreadPool 每次执行都是新线程，PER_THREAD 不起作用）；
+ *   - 复用的实例不设置 JobDataMap 属性，数据从 JobExecutionContext 中读取。
+ *
+ * 其他 Job 每次创建新实例，与 PropertySettingJobFactory 的行为相同，但使用缓存的 MethodHandle
+ * 调用构造方法。设置 injectJobData=false 可以跳过属性设置（以及为此进行的 JobDataMap 合并）。
+ *
+ *   org.quartz.scheduler.jobFactory.class = com.my.project.quartz.factory.PooledJobFactory
+ *   org.quartz.scheduler.jobFactory.statelessJobClasses = com.example.AJob,com.example.BJob
+ *   org.quartz.scheduler.jobFactory.injectJobData = true
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class PooledJobFactory extends PropertySettingJobFactory {
+
+    private static final Logger      LOG                 = LoggerFactory.getLogger( PooledJobFactory.class );
+    private static final MethodType  JOB_CONSTRUCTOR     = MethodType.methodType( Job.class );
+
+    private final ClassValue < Entry > entries           = new ClassValue < Entry >() {
+
+                                                             @Override
+                                                             protected Entry computeValue( Class < ? > type ) {
+                                                                 return newEntry( type );
+                                                             }
+                                                         };
+    private volatile Set < String >  statelessJobClasses = Collections.emptySet();
+    private boolean                  injectJobData       = true;
+    private final AtomicLong         created             = new AtomicLong();
+    private final AtomicLong         reused              = new AtomicLong();
+
+    @Override
+    public Job newJob( TriggerFiredBundle bundle, Scheduler scheduler ) throws SchedulerException {
+        JobDetail jobDetail = bundle.getJobDetail();
+        Entry entry = entries.get( jobDetail.getJobClass() );
+        if ( entry.error != null ) {
+            throw new SchedulerException( "Problem instantiating class '" + jobDetail.getJobClass().getName() + "'",
+                    entry.error );
+        }
+        if ( entry.scope == StatelessJob.Scope.SHARED ) {
+            return entry.shared();
+        }
+        if ( entry.scope == StatelessJob.Scope.PER_THREAD ) {
+            Job job = entry.perThread.get();
+            if ( job == null ) {
+                job = entry.create();
+                entry.perThread.set( job );
+            } else {
+                reused.incrementAndGet();
+            }
+            return job;
+        }
+        Job job = entry.create();
+        if ( injectJobData ) {
+            JobDataMap jobDataMap = new JobDataMap();
+            jobDataMap.putAll( scheduler.getContext() );
+            jobDataMap.putAll( jobDetail.getJobDataMap() );
+            jobDataMap.putAll( bundle.getTrigger().getJobDataMap() );
+            setBeanProps( job, jobDataMap );
+        }
+        return job;
+    }
+
+    /**
+     * 逗号分隔的类名，这些类即使没有标记 @StatelessJob 也按 SHARED 范围复用，只对之后第一次使用的类生效
+     */
+    public void setStatelessJobClasses( String classNames ) {
+        Set < String > names = new HashSet < String >();
+        for ( String name : classNames.split( "," ) ) {
+            if ( name.trim().length() > 0 ) {
+                names.add( name.trim() );
+            }
+        }
+        this.statelessJobClasses = names;
+    }
+
+    /**
+     * 是否按 JobDataMap 设置新建 Job 的属性，默认为 true（与 PropertySettingJobFactory 相同）
+     */
+    public void setInjectJobData( boolean injectJobData ) {
+        this.injectJobData = injectJobData;
+    }
+
+    /**
+     * @return 创建的 Job 实例数
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return 复用已有实例的次数
+     */
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    private Entry newEntry( Class < ? > type ) {
+        MethodHandle constructor;
+        try {
+            Constructor < ? > c = type.getDeclaredConstructor();
+            c.setAccessible( true );
+            constructor = MethodHandles.lookup().unreflectConstructor( c ).asType( JOB_CONSTRUCTOR );
+        } catch ( Exception e ) {
+            return new Entry( e );
+        }
+
+        StatelessJob annotation = type.getAnnotation( StatelessJob.class );
+        StatelessJob.Scope scope = annotation != null ? annotation.value()
+                : statelessJobClasses.contains( type.getName() ) ? StatelessJob.Scope.SHARED : null;
+        if ( scope != null && ClassUtils.isAnnotationPresent( type, PersistJobDataAfterExecution.class ) ) {
+            LOG.warn( "Job class '" + type.getName()
+                    + "' is annotated with @PersistJobDataAfterExecution, instances will not be reused" );
+            scope = null;
+        }
+        LOG.debug( "Job class '" + type.getName() + "' " + ( scope == null ? "is not reused" : "reused: " + scope ) );
+        return new Entry( type.getName(), constructor, scope );
+    }
+
+    /**
+     * 一个 Job 类的构造方法和复用方式
+     */
+    private final class Entry {
+
+        final String              className;
+        final MethodHandle        constructor;
+        /** 为 null 时每次创建新实例 */
+        final StatelessJob.Scope  scope;
+        final ThreadLocal < Job > perThread;
+        final Throwable           error;
+        private volatile Job      shared;
+
+        Entry( String className, MethodHandle constructor, StatelessJob.Scope scope ) {
+            this.className = className;
+            this.constructor = constructor;
+            this.scope = scope;
+            this.perThread = scope == StatelessJob.Scope.PER_THREAD ? new ThreadLocal < Job >() : null;
+            this.error = null;
+        }
+
+        Entry( Throwable error ) {
+            this.className = null;
+            this.constructor = null;
+            this.scope = null;
+            this.perThread = null;
+            this.error = error;
+        }
+
+        /**
+         * 第一次使用时创建共享的实例，构造方法失败时下次触发重试
+         */
+        Job shared() throws SchedulerException {
+            Job job = shared;
+            if ( job == null ) {
+                synchronized ( this ) {
+                    job = shared;
+                    if ( job == null ) {
+                        job = create();
+                        shared = job;
+                    }
+                }
+                return job;
+            }
+            reused.incrementAndGet();
+            return job;
+        }
+
+        Job create() throws SchedulerException {
+            try {
+                Job job = (Job) constructor.invokeExact();
+                created.incrementAndGet();
+                return job;
+            } catch ( Throwable t ) {
+                throw new SchedulerException( "Problem instantiating class '" + className + "'", t );
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.my.project.quartz.factory;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记 Job 类没有可变状态、可以并发调用 execute，PooledJobFactory 会复用它的实例
+ *
+ * <pre>
+ * Job 的所有数据都应该从 JobExecutionContext 中读取，不能依赖 PropertySettingJobFactory
+ * 按 JobDataMap 设置的属性（复用的实例不再设置属性）。
+ * 同时标记了 @PersistJobDataAfterExecution 的类不会被复用。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@Documented
+@Inherited
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface StatelessJob {
+
+    /**
+     * @return 复用的范围
+     */
+    Scope value() default Scope.SHARED;
+
+    enum Scope {
+        /** 所有线程共用一个实例，execute 必须是线程安全的 */
+        SHARED,
+        /** 每个工作线程一个实例，实例数不超过线程池的线程数；execute 不需要线程安全，但不能在两次执行之间保留状态 */
+        PER_THREAD
+    }
+}
@@ -4,10 +4,17 @@ import java.util.Date;
 
 import org.apache.log4j.Logger;
 import org.quartz.Job;
-import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import com.my.project.event.ExecutionEvents;
+import com.my.project.quartz.data.CompactDataMap;
+import com.my.project.quartz.factory.StatelessJob;
+import com.my.project.quartz.retry.RetryOnFailure;
+
+@StatelessJob
+@RetryOnFailure( maxAttempts = 3, initialDelayMillis = 2000 )
 public class HelloJob implements Job {
 
     private static final Logger logger   = Logger.getLogger( HelloJob.class );
@@ -18,10 +25,31 @@ public class HelloJob implements Job {
      */
     @Override
     public void execute( JobExecutionContext context ) throws JobExecutionException {
-        Thread t = Thread.currentThread();
-        JobDataMap dataMap = context.getJobDetail().getJobDataMap();
-        logger.info( String.format( "[%s, %s, %s, %4$tF %4$tT] type=%5$s", t.getName(), t.getPriority(), t
-                .getThreadGroup().getName(), new Date(), dataMap.get( JOB_TYPE ) ) );
+        JobDetail jobDetail = context.getJobDetail();
+        // 每个 JobKey 只在第一次执行时注册名称，之后只发布事件，由后台线程格式化输出
+        int jobId = ExecutionEvents.lookup( jobDetail.getKey() );
+        if ( jobId < 0 ) {
+            jobId = ExecutionEvents.register( jobDetail.getKey(), jobDetail.getKey() + " type=" + type( context ) );
+        }
+        ExecutionEvents.publish( jobId, ExecutionEvents.FAILURE );
+        // 原来每次执行都输出的详细信息保留在 DEBUG 级别，type 取本次触发合并后的值
+        if ( logger.isDebugEnabled() ) {
+            Thread t = Thread.currentThread();
+            logger.debug( String.format( "[%s, %s, %s, %4$tF %4$tT] type=%5$s", t.getName(), t.getPriority(), t
+                    .getThreadGroup().getName(), new Date(), type( context ) ) );
+        }
         throw new JobExecutionException( "Job Executetion Failed." );
     }
+
+    /**
+     * 没有用 CompactDataMap 保存数据的 Job（例如用 usingJobData 创建的）从普通的 JobDataMap 中读取
+     */
+    private static String type( JobExecutionContext context ) {
+        CompactDataMap data = CompactDataMap.merged( context );
+        if ( data.containsKey( JOB_TYPE ) ) {
+            return data.getString( JOB_TYPE );
+        }
+        Object type = context.getMergedJobDataMap().get( JOB_TYPE );
+        return type == null ? null : type.toString();
+    }
 }
@@ -0,0 +1,405 @@
+package com.my.project.quartz.listener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quartz.InterruptableJob;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.metrics.Histogram;
+import com.my.project.quartz.async.ThreadBoundListener;
+import com.my.project.quartz.pool.RecyclableThreadPool;
+import com.my.project.quartz.pool.ThreadPoolRegistry;
+import com.my.project.scheduled.wheel.TimingWheelScheduledExecutor;
+
+/**
+ * 限制 Job 的执行时间，超时后逐级升级处理，回收被卡住的工作线程
+ *
+ * <pre>
+ * 所有执行的截止时间放在同一个时间轮（TimingWheelScheduledExecutor）中，
+ * 开始和结束时各一次 O(1) 的插入和取消，不为每个 Job 创建监视线程。超时后：
+ *   1. InterruptableJob 调用 interrupt()，由 Job 自己结束；
+ *   2. interruptGraceMillis 之后仍在执行，中断工作线程（Thread.interrupt），阻塞的 I/O 和 sleep 会结束；
+ *   3. 再过 recycleGraceMillis 仍在执行，由 RecyclableThreadPool 放弃该线程、归还它占用的容量。
+ * 不是 InterruptableJob 的 Job 直接从第 2 步开始。SimpleThreadPool 不能放弃线程，第 3 步只记录 unrecyclable。
+ *
+ * 截止时间（毫秒）按以下顺序取第一个大于 0 的值：
+ *   - Trigger 或 JobDetail 的 JobDataMap 中的 DEADLINE_MILLIS（Trigger 优先）；
+ *   - setDeadline( jobKey, millis )；
+ *   - setDefaultDeadlineMillis，默认为 0，即不限制。
+ *
+ *   DeadlineEnforcer deadlines = new DeadlineEnforcer();
+ *   deadlines.setDefaultDeadlineMillis( 30000 );
+ *   deadlines.register( scheduler );
+ *
+ * 标记了 @StatelessJob 的 Job 实例被所有执行共用，interrupt() 会影响同一个 Job 类的所有执行，
+ * 因此 InterruptableJob 不应该标记 @StatelessJob。
+ *
+ * 截止时间限制的是工作线程：AsyncJob 返回 CompletionStage 后工作线程就结束了这次执行，
+ * 本类实现 ThreadBoundListener，不等待 CompletionStage 完成。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class DeadlineEnforcer implements JobListener, ThreadBoundListener {
+
+    /** JobDataMap 中的截止时间，单位毫秒 */
+    public static final String                         DEADLINE_MILLIS      = "deadlineMillis";
+
+    private static final Logger                        LOG                  = LoggerFactory
+                                                                                    .getLogger( DeadlineEnforcer.class );
+    /** 超时时长最大可区分 24 小时 */
+    private static final long                          MAX_OVERRUN_MILLIS   = TimeUnit.HOURS.toMillis( 24 );
+
+    private final String                               name;
+    private volatile TimingWheelScheduledExecutor      timer;
+    private final ConcurrentMap < String, Execution >  executions           = new ConcurrentHashMap < String, Execution >();
+    private final ConcurrentMap < JobKey, Long >       deadlines            = new ConcurrentHashMap < JobKey, Long >();
+    private final ConcurrentMap < JobKey, AtomicLong > overrunsByJob        = new ConcurrentHashMap < JobKey, AtomicLong >();
+    private volatile long                              defaultDeadlineMillis;
+    private volatile long                              interruptGraceMillis = 5000;
+    private volatile long                              recycleGraceMillis   = 5000;
+    private volatile RecyclableThreadPool              threadPool;
+
+    private final AtomicLong                           overruns             = new AtomicLong();
+    private final AtomicLong                           jobInterrupts        = new AtomicLong();
+    private final AtomicLong                           threadInterrupts     = new AtomicLong();
+    private final AtomicLong                           recycled             = new AtomicLong();
+    private final AtomicLong                           unrecyclable         = new AtomicLong();
+    /** 超时的执行最终结束时超出截止时间的毫秒数 */
+    private final Histogram                            overrunMillis        = new Histogram( MAX_OVERRUN_MILLIS, 4 );
+
+    public DeadlineEnforcer() {
+        this( "DeadlineEnforcer" );
+    }
+
+    public DeadlineEnforcer( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * 注册为所有 Job 的 JobListener 并启动时间轮，调度器关闭时停止时间轮
+     */
+    public void register( Scheduler scheduler ) throws SchedulerException {
+        start();
+        scheduler.getListenerManager().addJobListener( this, EverythingMatcher.allJobs() );
+        scheduler.getListenerManager().addSchedulerListener( new SchedulerListenerSupport() {
+
+            @Override
+            public void schedulerShutdown() {
+                shutdown();
+            }
+        } );
+    }
+
+    /**
+     * 启动 10ms 精度的时间轮，升级处理在时间轮的一个工作线程中执行；register 会调用此方法，
+     * 自行添加为 JobListener 时需要先调用。未启动时不跟踪任何执行
+     */
+    public synchronized void start() {
+        if ( timer == null ) {
+            timer = new TimingWheelScheduledExecutor( 10, TimeUnit.MILLISECONDS, 64, 4, 1 );
+        }
+    }
+
+    public void setDefaultDeadlineMillis( long defaultDeadlineMillis ) {
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+    }
+
+    /**
+     * 设置 Job 的截止时间，millis 小于等于 0 时删除
+     */
+    public void setDeadline( JobKey key, long millis ) {
+        if ( millis > 0 ) {
+            deadlines.put( key, millis );
+        } else {
+            deadlines.remove( key );
+        }
+    }
+
+    /**
+     * 调用 InterruptableJob.interrupt() 之后等待多久中断线程，默认 5 秒
+     */
+    public void setInterruptGraceMillis( long interruptGraceMillis ) {
+        this.interruptGraceMillis = interruptGraceMillis;
+    }
+
+    /**
+     * 中断线程之后等待多久放弃线程，默认 5 秒
+     */
+    public void setRecycleGraceMillis( long recycleGraceMillis ) {
+        this.recycleGraceMillis = recycleGraceMillis;
+    }
+
+    /**
+     * 指定放弃线程的线程池；不指定时按调度器名称从 ThreadPoolRegistry 中查找
+     */
+    public void setThreadPool( RecyclableThreadPool threadPool ) {
+        this.threadPool = threadPool;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void jobToBeExecuted( JobExecutionContext context ) {
+        long deadline = deadlineOf( context );
+        if ( deadline <= 0 || timer == null ) {
+            return;
+        }
+        Execution execution = new Execution( context, Thread.currentThread(), System.currentTimeMillis() + deadline );
+        executions.put( context.getFireInstanceId(), execution );
+        execution.escalateAfter( deadline );
+    }
+
+    @Override
+    public void jobExecutionVetoed( JobExecutionContext context ) {
+    }
+
+    @Override
+    public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+        Execution execution = executions.remove( context.getFireInstanceId() );
+        if ( execution != null ) {
+            execution.finish();
+        }
+    }
+
+    /**
+     * 停止时间轮，不再处理超时
+     */
+    public synchronized void shutdown() {
+        if ( timer != null ) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        executions.clear();
+    }
+
+    /**
+     * @return 超过截止时间的执行次数
+     */
+    public long getOverrunCount() {
+        return overruns.get();
+    }
+
+    /**
+     * @return Job 超过截止时间的次数
+     */
+    public long getOverrunCount( JobKey key ) {
+        AtomicLong count = overrunsByJob.get( key );
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return 调用 InterruptableJob.interrupt() 的次数
+     */
+    public long getJobInterruptCount() {
+        return jobInterrupts.get();
+    }
+
+    /**
+     * @return 中断工作线程的次数
+     */
+    public long getThreadInterruptCount() {
+        return threadInterrupts.get();
+    }
+
+    /**
+     * @return 放弃的工作线程数
+     */
+    public long getRecycledCount() {
+        return recycled.get();
+    }
+
+    /**
+     * @return 需要放弃、但线程池不支持放弃的次数
+     */
+    public long getUnrecyclableCount() {
+        return unrecyclable.get();
+    }
+
+    /**
+     * @return 超时的执行最终结束时超出截止时间的毫秒数
+     */
+    public Histogram.Snapshot getOverrunMillis() {
+        return overrunMillis.snapshot();
+    }
+
+    /**
+     * @return 正在执行且有截止时间的 Job 数（包括被放弃、仍未结束的 Job）
+     */
+    public int getTrackedCount() {
+        return executions.size();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[overruns=" + overruns + ", jobInterrupts=" + jobInterrupts + ", threadInterrupts="
+                + threadInterrupts + ", recycled=" + recycled + ", unrecyclable=" + unrecyclable + ", overrunMillis="
+                + overrunMillis.snapshot() + "]";
+    }
+
+    private long deadlineOf( JobExecutionContext context ) {
+        JobDataMap data = context.getMergedJobDataMap();
+        Object value = data.get( DEADLINE_MILLIS );
+        if ( value != null ) {
+            try {
+                long millis = value instanceof Number ? ( (Number) value ).longValue()
+                        : Long.parseLong( value.toString().trim() );
+                if ( millis > 0 ) {
+                    return millis;
+                }
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Invalid " + DEADLINE_MILLIS + " of job " + context.getJobDetail().getKey() + ": " + value );
+            }
+        }
+        Long millis = deadlines.get( context.getJobDetail().getKey() );
+        return millis != null ? millis : defaultDeadlineMillis;
+    }
+
+    private RecyclableThreadPool threadPoolOf( JobExecutionContext context ) {
+        RecyclableThreadPool pool = threadPool;
+        if ( pool != null ) {
+            return pool;
+        }
+        try {
+            return ThreadPoolRegistry.lookup( context.getScheduler().getSchedulerName() );
+        } catch ( SchedulerException e ) {
+            return null;
+        }
+    }
+
+    private AtomicLong overrunsOf( JobKey key ) {
+        AtomicLong count = overrunsByJob.get( key );
+        if ( count == null ) {
+            AtomicLong created = new AtomicLong();
+            count = overrunsByJob.putIfAbsent( key, created );
+            if ( count == null ) {
+                count = created;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 一次有截止时间的执行，升级处理在时间轮的工作线程中执行，与 finish 通过 synchronized ( this ) 互斥，
+     * 保证 Job 结束之后不会再中断已经在执行其他 Job 的线程
+     */
+    private final class Execution implements Runnable {
+
+        private static final int          STAGE_PENDING          = 0;
+        private static final int          STAGE_JOB_INTERRUPTED  = 1;
+        private static final int          STAGE_THREAD_INTERRUPT = 2;
+        private static final int          STAGE_RECYCLED         = 3;
+
+        private final JobExecutionContext context;
+        private final Thread              thread;
+        private final long                deadline;
+        private int                       stage                  = STAGE_PENDING;
+        private boolean                   finished;
+        private Future < ? >              timeout;
+
+        Execution( JobExecutionContext context, Thread thread, long deadline ) {
+            this.context = context;
+            this.thread = thread;
+            this.deadline = deadline;
+        }
+
+        synchronized void escalateAfter( long millis ) {
+            TimingWheelScheduledExecutor wheel = timer;
+            if ( finished || wheel == null ) {
+                return;
+            }
+            try {
+                timeout = wheel.schedule( this, millis, TimeUnit.MILLISECONDS );
+            } catch ( RejectedExecutionException e ) {
+                // 已经 shutdown
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized ( this ) {
+                if ( finished ) {
+                    return;
+                }
+                JobKey key = context.getJobDetail().getKey();
+                if ( stage == STAGE_PENDING ) {
+                    overruns.incrementAndGet();
+                    overrunsOf( key ).incrementAndGet();
+                    Job job = context.getJobInstance();
+                    if ( job instanceof InterruptableJob ) {
+                        stage = STAGE_JOB_INTERRUPTED;
+                        LOG.warn( "Job {} exceeded its deadline, interrupting it", key );
+                        jobInterrupts.incrementAndGet();
+                        try {
+                            ( (InterruptableJob) job ).interrupt();
+                        } catch ( Exception e ) {
+                            LOG.warn( "Failed to interrupt job " + key, e );
+                        }
+                        escalateAfter( interruptGraceMillis );
+                        return;
+                    }
+                    LOG.warn( "Job {} exceeded its deadline and is not interruptable", key );
+                }
+                if ( stage < STAGE_THREAD_INTERRUPT ) {
+                    stage = STAGE_THREAD_INTERRUPT;
+                    LOG.warn( "Job {} is still running, interrupting thread {}", key, thread.getName() );
+                    threadInterrupts.incrementAndGet();
+                    thread.interrupt();
+                    escalateAfter( recycleGraceMillis );
+                    return;
+                }
+                // 记录保留到 Job 真正结束（jobWasExecuted），以便清除线程的中断标志
+                stage = STAGE_RECYCLED;
+                RecyclableThreadPool pool = threadPoolOf( context );
+                if ( pool != null && pool.recycle( thread ) ) {
+                    recycled.incrementAndGet();
+                    LOG.error( "Job {} ignored interruption, abandoned thread {}", key, thread.getName() );
+                } else {
+                    unrecyclable.incrementAndGet();
+                    LOG.error( "Job {} ignored interruption and thread {} cannot be recycled", key, thread.getName() );
+                }
+            }
+        }
+
+        /**
+         * Job 结束，在执行 Job 的线程中调用
+         */
+        void finish() {
+            boolean interrupted;
+            synchronized ( this ) {
+                finished = true;
+                if ( timeout != null ) {
+                    timeout.cancel( false );
+                }
+                interrupted = stage >= STAGE_THREAD_INTERRUPT;
+                if ( stage != STAGE_PENDING ) {
+                    overrunMillis.record( System.currentTimeMillis() - deadline );
+                }
+            }
+            if ( interrupted && Thread.currentThread() == thread ) {
+                // Job 已经结束，清除中断标志，避免影响这个线程执行的下一个 Job
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.my.project.quartz.listener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Matcher;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerKey;
+import org.quartz.TriggerListener;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.quartz.utils.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按 Matcher 建立索引的 JobListener / TriggerListener 注册表
+ *
+ * <pre>
+ * Quartz 每次触发都会对所有监听器逐个取出 Matcher 列表并判断，监听器多的时候是线性扫描。
+ * 本类作为一个匹配所有 Job 和 Trigger 的监听器注册到 Quartz，再把事件分发给自己管理的监听器：
+ * KeyMatcher、GroupMatcher（EQUALS）、EverythingMatcher 以及由它们组成的 OrMatcher 被索引到 HashMap 中，
+ * 每次触发只需要常数次查找；其他 Matcher 仍然逐个判断。
+ *
+ *   IndexedListenerRegistry listeners = new IndexedListenerRegistry();
+ *   listeners.register( scheduler );
+ *   listeners.addJobListener( myListener, KeyMatcher.keyEquals( jobKey( "myJob", "myGroup" ) ) );
+ *   listeners.addAsyncJobListener( slowListener, GroupMatcher.jobGroupEquals( "reports" ) );
+ *
+ * 用 addAsync* 注册的监听器在共享的后台线程中执行，同一个监听器的回调按顺序执行，
+ * 不再占用执行 Job 的线程；积压超过 maxPending 时丢弃回调。TriggerListener.vetoJobExecution
+ * 需要返回结果，总是同步调用。
+ *
+ * 监听器抛出的异常只记录日志，不影响其他监听器和 Job 的执行。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class IndexedListenerRegistry implements JobListener, TriggerListener {
+
+    private static final Logger                                           LOG                 = LoggerFactory
+                                                                                                      .getLogger( IndexedListenerRegistry.class );
+    public static final int                                               DEFAULT_MAX_PENDING = 10000;
+
+    private final String                                                  name;
+    private final int                                                     asyncThreads;
+    private final int                                                     maxPending;
+    private final AtomicLong                                              seq                 = new AtomicLong();
+    private volatile ListenerIndex < JobKey, JobListener >                jobListeners        = new ListenerIndex < JobKey, JobListener >();
+    private volatile ListenerIndex < TriggerKey, TriggerListener >        triggerListeners    = new ListenerIndex < TriggerKey, TriggerListener >();
+    private final ThreadLocal < List < ListenerIndex.Registration < JobKey, JobListener > > >         jobTargets          = new ThreadLocal < List < ListenerIndex.Registration < JobKey, JobListener > > >();
+    private final ThreadLocal < List < ListenerIndex.Registration < TriggerKey, TriggerListener > > > triggerTargets      = new ThreadLocal < List < ListenerIndex.Registration < TriggerKey, TriggerListener > > >();
+    private ExecutorService                                               asyncExecutor;
+
+    public IndexedListenerRegistry() {
+        this( "IndexedListenerRegistry", 2, DEFAULT_MAX_PENDING );
+    }
+
+    /**
+     * @param name 注册到 Quartz 时使用的监听器名称
+     * @param asyncThreads 执行异步监听器的线程数
+     * @param maxPending 每个异步监听器最多积压的回调数
+     */
+    public IndexedListenerRegistry( String name, int asyncThreads, int maxPending ) {
+        this.name = name;
+        this.asyncThreads = asyncThreads;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * 注册到 scheduler，scheduler 关闭时同时关闭异步监听器的线程
+     */
+    public void register( Scheduler scheduler ) throws SchedulerException {
+        scheduler.getListenerManager().addJobListener( this, EverythingMatcher.allJobs() );
+        scheduler.getListenerManager().addTriggerListener( this, EverythingMatcher.allTriggers() );
+        scheduler.getListenerManager().addSchedulerListener( new SchedulerListenerSupport() {
+
+            @Override
+            public void schedulerShutdown() {
+                shutdown();
+            }
+        } );
+    }
+
+    /**
+     * 添加同步调用的 JobListener，没有 matcher 时匹配所有 Job；同名的监听器被替换
+     */
+    @SafeVarargs
+    public final void addJobListener( JobListener listener, Matcher < JobKey >... matchers ) {
+        List < Matcher < JobKey > > list = new ArrayList < Matcher < JobKey > >( matchers.length );
+        for ( Matcher < JobKey > matcher : matchers ) {
+            list.add( matcher );
+        }
+        addJobListener( listener, false, list );
+    }
+
+    /**
+     * 添加在后台线程中调用的 JobListener
+     */
+    @SafeVarargs
+    public final void addAsyncJobListener( JobListener listener, Matcher < JobKey >... matchers ) {
+        List < Matcher < JobKey > > list = new ArrayList < Matcher < JobKey > >( matchers.length );
+        for ( Matcher < JobKey > matcher : matchers ) {
+            list.add( matcher );
+        }
+        addJobListener( listener, true, list );
+    }
+
+    /**
+     * 添加同步调用的 TriggerListener，没有 matcher 时匹配所有 Trigger；同名的监听器被替换
+     */
+    @SafeVarargs
+    public final void addTriggerListener( TriggerListener listener, Matcher < TriggerKey >... matchers ) {
+        List < Matcher < TriggerKey > > list = new ArrayList < Matcher < TriggerKey > >( matchers.length );
+        for ( Matcher < TriggerKey > matcher : matchers ) {
+            list.add( matcher );
+        }
+        addTriggerListener( listener, false, list );
+    }
+
+    /**
+     * 添加在后台线程中调用的 TriggerListener（vetoJobExecution 除外）
+     */
+    @SafeVarargs
+    public final void addAsyncTriggerListener( TriggerListener listener, Matcher < TriggerKey >... matchers ) {
+        List < Matcher < TriggerKey > > list = new ArrayList < Matcher < TriggerKey > >( matchers.length );
+        for ( Matcher < TriggerKey > matcher : matchers ) {
+            list.add( matcher );
+        }
+        addTriggerListener( listener, true, list );
+    }
+
+    public synchronized boolean removeJobListener( String listenerName ) {
+        boolean found = jobListeners.get( listenerName ) != null;
+        jobListeners = jobListeners.without( listenerName );
+        return found;
+    }
+
+    public synchronized boolean removeTriggerListener( String listenerName ) {
+        boolean found = triggerListeners.get( listenerName ) != null;
+        triggerListeners = triggerListeners.without( listenerName );
+        return found;
+    }
+
+    public List < JobListener > getJobListeners() {
+        List < JobListener > result = new ArrayList < JobListener >();
+        for ( ListenerIndex.Registration < JobKey, JobListener > r : jobListeners.getAll() ) {
+            result.add( r.listener );
+        }
+        return result;
+    }
+
+    public List < TriggerListener > getTriggerListeners() {
+        List < TriggerListener > result = new ArrayList < TriggerListener >();
+        for ( ListenerIndex.Registration < TriggerKey, TriggerListener > r : triggerListeners.getAll() ) {
+            result.add( r.listener );
+        }
+        return result;
+    }
+
+    /**
+     * @return 名为 listenerName 的异步监听器因为积压过多而丢弃的回调数
+     */
+    public long getDropped( String listenerName ) {
+        long dropped = 0;
+        ListenerIndex.Registration < JobKey, JobListener > job = jobListeners.get( listenerName );
+        if ( job != null && job.dispatcher != null ) {
+            dropped += job.dispatcher.getDropped();
+        }
+        ListenerIndex.Registration < TriggerKey, TriggerListener > trigger = triggerListeners.get( listenerName );
+        if ( trigger != null && trigger.dispatcher != null ) {
+            dropped += trigger.dispatcher.getDropped();
+        }
+        return dropped;
+    }
+
+    /**
+     * 关闭异步监听器的线程，已经提交的回调会执行完
+     */
+    public synchronized void shutdown() {
+        if ( asyncExecutor != null ) {
+            asyncExecutor.shutdown();
+            try {
+                asyncExecutor.awaitTermination( 5, TimeUnit.SECONDS );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void jobToBeExecuted( final JobExecutionContext context ) {
+        dispatch( collect( context.getJobDetail().getKey() ), "JobListener", new Callback < JobListener >() {
+
+            @Override
+            public void call( JobListener listener ) {
+                listener.jobToBeExecuted( context );
+            }
+        } );
+    }
+
+    @Override
+    public void jobExecutionVetoed( final JobExecutionContext context ) {
+        dispatch( collect( context.getJobDetail().getKey() ), "JobListener", new Callback < JobListener >() {
+
+            @Override
+            public void call( JobListener listener ) {
+                listener.jobExecutionVetoed( context );
+            }
+        } );
+    }
+
+    @Override
+    public void jobWasExecuted( final JobExecutionContext context, final JobExecutionException jobException ) {
+        dispatch( collect( context.getJobDetail().getKey() ), "JobListener", new Callback < JobListener >() {
+
+            @Override
+            public void call( JobListener listener ) {
+                listener.jobWasExecuted( context, jobException );
+            }
+        } );
+    }
+
+    @Override
+    public void triggerFired( final Trigger trigger, final JobExecutionContext context ) {
+        dispatch( collect( trigger.getKey() ), "TriggerListener", new Callback < TriggerListener >() {
+
+            @Override
+            public void call( TriggerListener listener ) {
+                listener.triggerFired( trigger, context );
+            }
+        } );
+    }
+
+    @Override
+    public boolean vetoJobExecution( Trigger trigger, JobExecutionContext context ) {
+        List < ListenerIndex.Registration < TriggerKey, TriggerListener > > targets = collect( trigger.getKey() );
+        try {
+            boolean vetoed = false;
+            // 与 Quartz 一致：所有监听器都会被询问，任何一个否决即否决
+            for ( int i = 0; i < targets.size(); i++ ) {
+                ListenerIndex.Registration < TriggerKey, TriggerListener > r = targets.get( i );
+                try {
+                    if ( r.listener.vetoJobExecution( trigger, context ) ) {
+                        vetoed = true;
+                    }
+                } catch ( Throwable t ) {
+                    LOG.error( "TriggerListener '" + r.name + "' threw exception", t );
+                }
+            }
+            return vetoed;
+        } finally {
+            targets.clear();
+        }
+    }
+
+    @Override
+    public void triggerMisfired( final Trigger trigger ) {
+        dispatch( collect( trigger.getKey() ), "TriggerListener", new Callback < TriggerListener >() {
+
+            @Override
+            public void call( TriggerListener listener ) {
+                listener.triggerMisfired( trigger );
+            }
+        } );
+    }
+
+    @Override
+    public void triggerComplete( final Trigger trigger, final JobExecutionContext context,
+            final CompletedExecutionInstruction triggerInstructionCode ) {
+        dispatch( collect( trigger.getKey() ), "TriggerListener", new Callback < TriggerListener >() {
+
+            @Override
+            public void call( TriggerListener listener ) {
+                listener.triggerComplete( trigger, context, triggerInstructionCode );
+            }
+        } );
+    }
+
+    /**
+     * 把一次回调分发给 targets 中的监听器：异步监听器交给各自的 SerialDispatcher，
+     * 同步监听器直接调用，异常只记录日志。结束后清空 targets 以便复用
+     */
+    private < K extends Key < K >, L > void dispatch( List < ListenerIndex.Registration < K, L > > targets,
+            String kind, final Callback < L > callback ) {
+        try {
+            for ( int i = 0; i < targets.size(); i++ ) {
+                final ListenerIndex.Registration < K, L > r = targets.get( i );
+                if ( r.dispatcher != null ) {
+                    r.dispatcher.execute( new Runnable() {
+
+                        @Override
+                        public void run() {
+                            callback.call( r.listener );
+                        }
+                    } );
+                } else {
+                    try {
+                        callback.call( r.listener );
+                    } catch ( Throwable t ) {
+                        LOG.error( kind + " '" + r.name + "' threw exception", t );
+                    }
+                }
+            }
+        } finally {
+            targets.clear();
+        }
+    }
+
+    private synchronized void addJobListener( JobListener listener, boolean async,
+            List < Matcher < JobKey > > matchers ) {
+        List < Matcher < JobKey > > list = matchers.isEmpty() ? Arrays
+                .< Matcher < JobKey > > asList( EverythingMatcher.allJobs() ) : matchers;
+        jobListeners = jobListeners.with( new ListenerIndex.Registration < JobKey, JobListener >( listener.getName(),
+                listener, list, seq.incrementAndGet(), async ? newDispatcher( listener.getName() ) : null ) );
+    }
+
+    private synchronized void addTriggerListener( TriggerListener listener, boolean async,
+            List < Matcher < TriggerKey > > matchers ) {
+        List < Matcher < TriggerKey > > list = matchers.isEmpty() ? Arrays
+                .< Matcher < TriggerKey > > asList( EverythingMatcher.allTriggers() ) : matchers;
+        triggerListeners = triggerListeners.with( new ListenerIndex.Registration < TriggerKey, TriggerListener >(
+                listener.getName(), listener, list, seq.incrementAndGet(), async ? newDispatcher( listener.getName() )
+                        : null ) );
+    }
+
+    private SerialDispatcher newDispatcher( String listenerName ) {
+        if ( asyncExecutor == null ) {
+            final AtomicInteger counter = new AtomicInteger();
+            asyncExecutor = Executors.newFixedThreadPool( asyncThreads, new ThreadFactory() {
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = new Thread( r, name + "-async-" + counter.incrementAndGet() );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        return new SerialDispatcher( listenerName, asyncExecutor, maxPending );
+    }
+
+    /**
+     * 每个线程复用一个结果列表；监听器中再次触发分发（嵌套调用）时使用新的列表
+     */
+    private List < ListenerIndex.Registration < JobKey, JobListener > > collect( JobKey key ) {
+        List < ListenerIndex.Registration < JobKey, JobListener > > targets = jobTargets.get();
+        if ( targets == null || !targets.isEmpty() ) {
+            targets = new ArrayList < ListenerIndex.Registration < JobKey, JobListener > >();
+            if ( jobTargets.get() == null ) {
+                jobTargets.set( targets );
+            }
+        }
+        jobListeners.collect( key, targets );
+        return targets;
+    }
+
+    private List < ListenerIndex.Registration < TriggerKey, TriggerListener > > collect( TriggerKey key ) {
+        List < ListenerIndex.Registration < TriggerKey, TriggerListener > > targets = triggerTargets.get();
+        if ( targets == null || !targets.isEmpty() ) {
+            targets = new ArrayList < ListenerIndex.Registration < TriggerKey, TriggerListener > >();
+            if ( triggerTargets.get() == null ) {
+                triggerTargets.set( targets );
+            }
+        }
+        triggerListeners.collect( key, targets );
+        return targets;
+    }
+
+    /**
+     * 对单个监听器的一次回调
+     */
+    private interface Callback < L > {
+
+        void call( L listener );
+    }
+}
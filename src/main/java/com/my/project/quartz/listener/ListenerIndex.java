@@ -0,0 +1,236 @@
+package com.my.project.quartz.listener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quartz.Matcher;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.KeyMatcher;
+import org.quartz.impl.matchers.OrMatcher;
+import org.quartz.impl.matchers.StringMatcher.StringOperatorName;
+import org.quartz.utils.Key;
+
+/**
+ * 按 Matcher 建立索引的监听器集合（不可变）
+ *
+ * <pre>
+ * KeyMatcher 按 Key 索引，GroupMatcher（EQUALS）按分组索引，EverythingMatcher 和 anyGroup 放入全局列表，
+ * OrMatcher 的两边都能索引时分别索引；其他 Matcher（前缀、包含、And、Not、自定义等）只能逐个判断。
+ * 查找某个 Key 的监听器只需要两次 HashMap 查找，再加上需要逐个判断的那部分。
+ *
+ * 修改时重新建立整个索引并替换引用，查找时不加锁。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+final class ListenerIndex < K extends Key < K >, L > {
+
+    private final List < Registration < K, L > >                 all;
+    private final Map < K, List < Registration < K, L > > >      byKey   = new HashMap < K, List < Registration < K, L > > >();
+    private final Map < String, List < Registration < K, L > > > byGroup = new HashMap < String, List < Registration < K, L > > >();
+    private final List < Registration < K, L > >                 global  = new ArrayList < Registration < K, L > >();
+    private final List < Registration < K, L > >                 scan    = new ArrayList < Registration < K, L > >();
+
+    ListenerIndex() {
+        this( Collections.< Registration < K, L > > emptyList() );
+    }
+
+    private ListenerIndex( List < Registration < K, L > > all ) {
+        this.all = all;
+        for ( Registration < K, L > registration : all ) {
+            for ( Matcher < K > matcher : registration.matchers ) {
+                if ( isIndexable( matcher ) ) {
+                    index( matcher, registration );
+                } else {
+                    registration.scanMatchers.add( matcher );
+                    if ( !scan.contains( registration ) ) {
+                        scan.add( registration );
+                        registration.indexCount++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 加入 registration 之后的新索引，同名的监听器被替换
+     */
+    ListenerIndex < K, L > with( Registration < K, L > registration ) {
+        List < Registration < K, L > > copy = new ArrayList < Registration < K, L > >( all.size() + 1 );
+        for ( Registration < K, L > r : all ) {
+            if ( !r.name.equals( registration.name ) ) {
+                copy.add( r.copy() );
+            }
+        }
+        copy.add( registration );
+        return new ListenerIndex < K, L >( copy );
+    }
+
+    /**
+     * @return 去掉名为 name 的监听器之后的新索引
+     */
+    ListenerIndex < K, L > without( String name ) {
+        List < Registration < K, L > > copy = new ArrayList < Registration < K, L > >( all.size() );
+        for ( Registration < K, L > r : all ) {
+            if ( !r.name.equals( name ) ) {
+                copy.add( r.copy() );
+            }
+        }
+        return new ListenerIndex < K, L >( copy );
+    }
+
+    Registration < K, L > get( String name ) {
+        for ( Registration < K, L > r : all ) {
+            if ( r.name.equals( name ) ) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    List < Registration < K, L > > getAll() {
+        return all;
+    }
+
+    /**
+     * 把与 key 匹配的监听器按注册顺序放入 out，每个监听器只出现一次
+     */
+    void collect( K key, List < Registration < K, L > > out ) {
+        out.clear();
+        if ( all.isEmpty() ) {
+            return;
+        }
+        addAll( byKey.get( key ), out );
+        addAll( byGroup.get( key.getGroup() ), out );
+        addAll( global, out );
+        for ( int i = 0; i < scan.size(); i++ ) {
+            Registration < K, L > r = scan.get( i );
+            if ( r.matchesByScan( key ) ) {
+                add( r, out );
+            }
+        }
+        // 各个来源的结果合并之后恢复注册顺序，数量很少，插入排序即可
+        for ( int i = 1; i < out.size(); i++ ) {
+            Registration < K, L > r = out.get( i );
+            int j = i - 1;
+            while ( j >= 0 && out.get( j ).seq > r.seq ) {
+                out.set( j + 1, out.get( j ) );
+                j--;
+            }
+            out.set( j + 1, r );
+        }
+    }
+
+    private static < K extends Key < K >, L > void addAll( List < Registration < K, L > > source,
+            List < Registration < K, L > > out ) {
+        if ( source != null ) {
+            for ( int i = 0; i < source.size(); i++ ) {
+                add( source.get( i ), out );
+            }
+        }
+    }
+
+    private static < K extends Key < K >, L > void add( Registration < K, L > r, List < Registration < K, L > > out ) {
+        // 只有被索引到多处的监听器才可能重复
+        if ( r.indexCount > 1 && out.contains( r ) ) {
+            return;
+        }
+        out.add( r );
+    }
+
+    private static boolean isIndexable( Matcher < ? > matcher ) {
+        if ( matcher instanceof KeyMatcher || matcher instanceof EverythingMatcher ) {
+            return true;
+        }
+        if ( matcher instanceof GroupMatcher ) {
+            StringOperatorName operator = ( (GroupMatcher < ? >) matcher ).getCompareWithOperator();
+            return operator == StringOperatorName.EQUALS || operator == StringOperatorName.ANYTHING;
+        }
+        if ( matcher instanceof OrMatcher ) {
+            OrMatcher < ? > or = (OrMatcher < ? >) matcher;
+            return isIndexable( or.getLeftOperand() ) && isIndexable( or.getRightOperand() );
+        }
+        return false;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private void index( Matcher < K > matcher, Registration < K, L > registration ) {
+        if ( matcher instanceof KeyMatcher ) {
+            put( byKey, ( (KeyMatcher < K >) matcher ).getCompareToValue(), registration );
+        } else if ( matcher instanceof EverythingMatcher ) {
+            addOnce( global, registration );
+        } else if ( matcher instanceof GroupMatcher ) {
+            GroupMatcher < K > group = (GroupMatcher < K >) matcher;
+            if ( group.getCompareWithOperator() == StringOperatorName.ANYTHING ) {
+                addOnce( global, registration );
+            } else {
+                put( byGroup, group.getCompareToValue(), registration );
+            }
+        } else {
+            OrMatcher < K > or = (OrMatcher < K >) matcher;
+            index( or.getLeftOperand(), registration );
+            index( or.getRightOperand(), registration );
+        }
+    }
+
+    private static < T, K extends Key < K >, L > void put( Map < T, List < Registration < K, L > > > map, T key,
+            Registration < K, L > registration ) {
+        List < Registration < K, L > > list = map.get( key );
+        if ( list == null ) {
+            list = new ArrayList < Registration < K, L > >( 2 );
+            map.put( key, list );
+        }
+        addOnce( list, registration );
+    }
+
+    private static < K extends Key < K >, L > void addOnce( List < Registration < K, L > > list,
+            Registration < K, L > registration ) {
+        if ( !list.contains( registration ) ) {
+            list.add( registration );
+            registration.indexCount++;
+        }
+    }
+
+    /**
+     * 一个已注册的监听器
+     */
+    static final class Registration < K extends Key < K >, L > {
+
+        final String                 name;
+        final L                      listener;
+        final List < Matcher < K > > matchers;
+        final long                   seq;
+        /** 为 null 时同步调用 */
+        final SerialDispatcher       dispatcher;
+        final List < Matcher < K > > scanMatchers = new ArrayList < Matcher < K > >( 1 );
+        /** 被索引到的位置数（包括逐个判断的列表），大于 1 时查找结果需要去重 */
+        int                          indexCount;
+
+        Registration( String name, L listener, List < Matcher < K > > matchers, long seq,
+                SerialDispatcher dispatcher ) {
+            this.name = name;
+            this.listener = listener;
+            this.matchers = matchers;
+            this.seq = seq;
+            this.dispatcher = dispatcher;
+        }
+
+        Registration < K, L > copy() {
+            return new Registration < K, L >( name, listener, matchers, seq, dispatcher );
+        }
+
+        boolean matchesByScan( K key ) {
+            for ( int i = 0; i < scanMatchers.size(); i++ ) {
+                if ( scanMatchers.get( i ).isMatch( key ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
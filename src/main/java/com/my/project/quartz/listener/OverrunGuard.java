@@ -0,0 +1,333 @@
+package com.my.project.quartz.listener;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.OverrunPolicy;
+
+/**
+ * 按 OverrunPolicy 否决 Quartz 中超时执行造成的补触发
+ *
+ * <pre>
+ * 一次执行超过 Trigger 的周期时，Quartz 的行为取决于 Job 类：
+ *   - 标记了 @DisallowConcurrentExecution：执行期间 Trigger 被阻塞，结束后在 misfireThreshold 之内
+ *     错过的触发逐个背靠背执行；
+ *   - 没有标记：每次触发都开始一次新的执行，同时执行的数量没有上限。
+ * 本类同时是 TriggerListener 和 JobListener，在 vetoJobExecution 中按策略否决：
+ *   - SKIP：计划触发时间早于上一次执行结束时间（执行期间错过）的触发全部否决；
+ *   - COALESCE：计划触发时间早于上一次执行开始时间的触发已经被那次执行覆盖，否决；
+ *     执行期间到达的触发否决，执行结束后用 triggerJob 补执行一次；
+ *   - OVERLAP：同时执行的数量达到上限时否决。
+ * 被否决的触发不执行 Job，Trigger 照常计算下一次触发时间。
+ *
+ * 策略按 JobKey 用 setPolicy 设置，或者放在 JobDataMap 中：
+ *   JobBuilder.newJob( MyJob.class ).usingJobData( OverrunGuard.POLICY, "COALESCE" )
+ *           .usingJobData( OverrunGuard.MAX_CONCURRENT_RUNS, 2 )...
+ * 没有策略的 Job 不受影响。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class OverrunGuard implements JobListener, TriggerListener {
+
+    /** JobDataMap 中的策略名称 */
+    public static final String                       POLICY              = "overrunPolicy";
+    /** JobDataMap 中 OVERLAP 同时执行的上限，默认为 1 */
+    public static final String                       MAX_CONCURRENT_RUNS = "overrunMaxConcurrentRuns";
+
+    private static final Logger                      LOG                 = LoggerFactory.getLogger( OverrunGuard.class );
+    /** 放在 JobExecutionContext 中，标记本次执行已经计入 running */
+    private static final String                      ADMITTED            = OverrunGuard.class.getName() + ".admitted";
+
+    private final String                             name;
+    private final ConcurrentMap < JobKey, Config >   policies            = new ConcurrentHashMap < JobKey, Config >();
+    private final ConcurrentMap < JobKey, State >    states              = new ConcurrentHashMap < JobKey, State >();
+
+    public OverrunGuard() {
+        this( "OverrunGuard" );
+    }
+
+    public OverrunGuard( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * 把本对象同时注册为所有 Job 的 JobListener 和所有 Trigger 的 TriggerListener
+     */
+    public void register( Scheduler scheduler ) throws SchedulerException {
+        scheduler.getListenerManager().addJobListener( this, EverythingMatcher.allJobs() );
+        scheduler.getListenerManager().addTriggerListener( this, EverythingMatcher.allTriggers() );
+    }
+
+    /**
+     * 设置 Job 的策略，优先于 JobDataMap 中的配置
+     *
+     * @param maxConcurrentRuns OVERLAP 同时执行的上限，其他策略忽略
+     */
+    public void setPolicy( JobKey key, OverrunPolicy policy, int maxConcurrentRuns ) {
+        if ( policy == null ) {
+            throw new NullPointerException( "policy" );
+        }
+        if ( maxConcurrentRuns <= 0 ) {
+            throw new IllegalArgumentException( "maxConcurrentRuns must be > 0" );
+        }
+        policies.put( key, new Config( policy, policy == OverrunPolicy.OVERLAP ? maxConcurrentRuns : 1 ) );
+    }
+
+    public void removePolicy( JobKey key ) {
+        policies.remove( key );
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void triggerFired( Trigger trigger, JobExecutionContext context ) {
+    }
+
+    @Override
+    public boolean vetoJobExecution( Trigger trigger, JobExecutionContext context ) {
+        Config config = configOf( context );
+        if ( config == null ) {
+            return false;
+        }
+        Date scheduled = context.getScheduledFireTime();
+        long scheduledFireTime = scheduled != null ? scheduled.getTime() : context.getFireTime().getTime();
+        State state = state( context.getJobDetail().getKey() );
+        synchronized ( state ) {
+            if ( config.policy == OverrunPolicy.OVERLAP ) {
+                if ( state.running >= config.maxConcurrentRuns ) {
+                    state.skipped++;
+                    return true;
+                }
+            } else if ( state.running > 0 ) {
+                if ( config.policy == OverrunPolicy.SKIP ) {
+                    state.skipped++;
+                } else if ( state.pending ) {
+                    state.coalesced++;
+                } else {
+                    // 第一个被否决的触发由结束后的补执行代替，之后的触发合并到补执行中
+                    state.pending = true;
+                }
+                return true;
+            } else if ( scheduledFireTime < state.watermark ) {
+                if ( config.policy == OverrunPolicy.SKIP ) {
+                    state.skipped++;
+                } else {
+                    state.coalesced++;
+                }
+                return true;
+            }
+            state.running++;
+            state.runs++;
+            if ( config.policy == OverrunPolicy.COALESCE ) {
+                // 这次执行覆盖开始之前到期的所有触发
+                state.watermark = Math.max( state.watermark, System.currentTimeMillis() );
+            }
+        }
+        context.put( ADMITTED, config );
+        return false;
+    }
+
+    @Override
+    public void triggerMisfired( Trigger trigger ) {
+    }
+
+    @Override
+    public void triggerComplete( Trigger trigger, JobExecutionContext context,
+            CompletedExecutionInstruction triggerInstructionCode ) {
+    }
+
+    @Override
+    public void jobToBeExecuted( JobExecutionContext context ) {
+    }
+
+    /**
+     * 其他 TriggerListener 否决了本类放行的执行
+     */
+    @Override
+    public void jobExecutionVetoed( JobExecutionContext context ) {
+        if ( context.get( ADMITTED ) != null ) {
+            State state = state( context.getJobDetail().getKey() );
+            synchronized ( state ) {
+                state.running--;
+                state.runs--;
+            }
+        }
+    }
+
+    @Override
+    public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+        Config config = (Config) context.get( ADMITTED );
+        if ( config == null ) {
+            return;
+        }
+        JobKey key = context.getJobDetail().getKey();
+        State state = state( key );
+        boolean rerun = false;
+        synchronized ( state ) {
+            state.running--;
+            if ( config.policy == OverrunPolicy.SKIP ) {
+                state.watermark = Math.max( state.watermark, System.currentTimeMillis() );
+            } else if ( config.policy == OverrunPolicy.COALESCE && state.pending && state.running == 0 ) {
+                state.pending = false;
+                rerun = true;
+            }
+        }
+        if ( rerun ) {
+            try {
+                context.getScheduler().triggerJob( key, new JobDataMap( context.getTrigger().getJobDataMap() ) );
+            } catch ( SchedulerException e ) {
+                LOG.warn( "Failed to run coalesced execution of job " + key, e );
+            }
+        }
+    }
+
+    /**
+     * @return 没有经过策略判断的 Job 返回 null
+     */
+    public OverrunStats getStats( JobKey key ) {
+        State state = states.get( key );
+        return state == null ? null : state.snapshot();
+    }
+
+    public Map < JobKey, OverrunStats > getAllStats() {
+        Map < JobKey, OverrunStats > result = new HashMap < JobKey, OverrunStats >();
+        for ( Map.Entry < JobKey, State > entry : states.entrySet() ) {
+            result.put( entry.getKey(), entry.getValue().snapshot() );
+        }
+        return result;
+    }
+
+    private Config configOf( JobExecutionContext context ) {
+        Config config = policies.get( context.getJobDetail().getKey() );
+        if ( config != null ) {
+            return config;
+        }
+        JobDataMap data = context.getMergedJobDataMap();
+        Object policy = data.get( POLICY );
+        if ( policy == null ) {
+            return null;
+        }
+        try {
+            OverrunPolicy p = policy instanceof OverrunPolicy ? (OverrunPolicy) policy
+                    : OverrunPolicy.valueOf( policy.toString().trim().toUpperCase() );
+            int max = p == OverrunPolicy.OVERLAP && data.containsKey( MAX_CONCURRENT_RUNS )
+                    ? Integer.parseInt( data.get( MAX_CONCURRENT_RUNS ).toString().trim() ) : 1;
+            return new Config( p, Math.max( 1, max ) );
+        } catch ( IllegalArgumentException e ) {
+            LOG.warn( "Invalid overrun policy of job " + context.getJobDetail().getKey() + ": " + policy );
+            return null;
+        }
+    }
+
+    private State state( JobKey key ) {
+        State state = states.get( key );
+        if ( state == null ) {
+            State created = new State();
+            state = states.putIfAbsent( key, created );
+            if ( state == null ) {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    private static final class Config {
+
+        final OverrunPolicy policy;
+        final int           maxConcurrentRuns;
+
+        Config( OverrunPolicy policy, int maxConcurrentRuns ) {
+            this.policy = policy;
+            this.maxConcurrentRuns = maxConcurrentRuns;
+        }
+    }
+
+    /**
+     * 一个 Job 的执行状态，只在 synchronized ( this ) 内访问
+     */
+    private static final class State {
+
+        int     running;
+        long    runs;
+        long    skipped;
+        long    coalesced;
+        /** SKIP：上一次执行结束的时间；COALESCE：上一次执行开始的时间 */
+        long    watermark;
+        /** COALESCE：执行期间有触发被否决，结束后需要补执行一次 */
+        boolean pending;
+
+        synchronized OverrunStats snapshot() {
+            return new OverrunStats( runs, skipped, coalesced, running );
+        }
+    }
+
+    /**
+     * 一个 Job 的统计数据副本
+     */
+    public static class OverrunStats {
+
+        private final long runs;
+        private final long skipped;
+        private final long coalesced;
+        private final int  running;
+
+        OverrunStats( long runs, long skipped, long coalesced, int running ) {
+            this.runs = runs;
+            this.skipped = skipped;
+            this.coalesced = coalesced;
+            this.running = running;
+        }
+
+        /**
+         * @return 放行的执行次数
+         */
+        public long getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return 被否决并丢弃的触发数
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return 被否决并合并到其他执行中的触发数
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        @Override
+        public String toString() {
+            return "runs=" + runs + " skipped=" + skipped + " coalesced=" + coalesced + " running=" + running;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.my.project.quartz.listener;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 在共享线程池中按提交顺序、逐个执行同一个监听器的回调
+ *
+ * <pre>
+ * 同一个监听器的回调不会并发执行，顺序与 Quartz 调用的顺序一致；不同监听器之间互不影响。
+ * 积压的回调超过 maxPending 时丢弃新的回调并计数，慢监听器不会无限占用内存。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+final class SerialDispatcher implements Runnable {
+
+    private static final Logger          LOG       = LoggerFactory.getLogger( SerialDispatcher.class );
+    /** 每次最多连续执行的回调数，之后让出线程给其他监听器 */
+    private static final int             MAX_BATCH = 64;
+
+    private final String                 name;
+    private final Executor               executor;
+    private final int                    maxPending;
+    private final ArrayDeque < Runnable > queue     = new ArrayDeque < Runnable >();
+    private final AtomicLong             dropped   = new AtomicLong();
+    private boolean                      scheduled;
+
+    SerialDispatcher( String name, Executor executor, int maxPending ) {
+        this.name = name;
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    void execute( Runnable task ) {
+        synchronized ( this ) {
+            if ( queue.size() >= maxPending ) {
+                dropped.incrementAndGet();
+                return;
+            }
+            queue.add( task );
+            if ( scheduled ) {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    @Override
+    public void run() {
+        for ( int i = 0; i < MAX_BATCH; i++ ) {
+            Runnable task;
+            synchronized ( this ) {
+                task = queue.poll();
+                if ( task == null ) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch ( Throwable t ) {
+                LOG.error( "Listener '" + name + "' threw exception", t );
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * @return 因为积压过多而丢弃的回调数
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    synchronized int getPending() {
+        return queue.size();
+    }
+
+    private void schedule() {
+        try {
+            executor.execute( this );
+        } catch ( RejectedExecutionException e ) {
+            synchronized ( this ) {
+                dropped.addAndGet( queue.size() );
+                queue.clear();
+                scheduled = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.my.project.quartz.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.SchedulerPlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.metrics.Histogram;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 通过 JMX 和 Prometheus 文本格式的 HTTP 接口导出 InstrumentedRAMJobStore 记录的指标
+ *
+ * <pre>
+ * 在 quartz.properties 中配置：
+ *   org.quartz.jobStore.class = com.my.project.quartz.store.InstrumentedRAMJobStore
+ *   org.quartz.plugin.instrumentation.class = com.my.project.quartz.metrics.InstrumentationPlugin
+ *   org.quartz.plugin.instrumentation.httpPort = 9404
+ *
+ * httpPort 为 0（默认）时不启动 HTTP 服务；httpHost 默认只监听 127.0.0.1。
+ * 启动后 curl http://127.0.0.1:9404/metrics 得到：
+ *   quartz_store_lock_wait_seconds{scheduler="MyScheduler",op="acquire",quantile="0.99"} 2.1E-6
+ *   quartz_acquire_batch_size_count{scheduler="MyScheduler"} 1832
+ *   quartz_pending_fire_backlog{scheduler="MyScheduler"} 0
+ *   quartz_workers_busy{scheduler="MyScheduler"} 3
+ *   ...
+ *
+ * 指标只在抓取时汇总，调度和执行 Job 时的开销只有 InstrumentedRAMJobStore 的记录。
+ * 积压（backlog）需要在 JobStore 的锁中从最早的 Trigger 开始数，最多数到 backlogLimit 个。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class InstrumentationPlugin implements SchedulerPlugin, SchedulerInstrumentsMXBean {
+
+    private static final Logger        LOG          = LoggerFactory.getLogger( InstrumentationPlugin.class );
+    private static final double[]      QUANTILES    = { 0.5, 0.9, 0.99, 0.999 };
+    private static final double        NANOS        = 1e9;
+    private static final double        MILLIS       = 1e3;
+
+    private String                     httpHost     = "127.0.0.1";
+    private int                        httpPort;
+    private boolean                    jmx          = true;
+    private int                        backlogLimit = 10000;
+
+    private String                     schedulerName;
+    private volatile InstrumentedStore store;
+    private HttpServer                 server;
+    private ObjectName                 objectName;
+
+    public void setHttpHost( String httpHost ) {
+        this.httpHost = httpHost;
+    }
+
+    /**
+     * @param httpPort Prometheus 文本格式的 HTTP 端口，0 表示不启动
+     */
+    public void setHttpPort( int httpPort ) {
+        this.httpPort = httpPort;
+    }
+
+    /**
+     * @param jmx 是否注册 SchedulerInstrumentsMXBean
+     */
+    public void setJmx( boolean jmx ) {
+        this.jmx = jmx;
+    }
+
+    public void setBacklogLimit( int backlogLimit ) {
+        this.backlogLimit = backlogLimit;
+    }
+
+    @Override
+    public void initialize( String name, Scheduler scheduler, ClassLoadHelper loadHelper ) throws SchedulerException {
+        schedulerName = scheduler.getSchedulerName();
+    }
+
+    /**
+     * JobStore 在插件之后初始化，所以在调度器启动时才查找
+     */
+    @Override
+    public void start() {
+        store = InstrumentedStoreRegistry.lookup( schedulerName );
+        if ( store == null ) {
+            LOG.warn( "Scheduler " + schedulerName + " does not use an InstrumentedStore, nothing to export" );
+            return;
+        }
+        if ( jmx ) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                objectName = new ObjectName(
+                        "com.my.project.quartz:type=SchedulerInstruments,name=" + ObjectName.quote( schedulerName ) );
+                if ( server.isRegistered( objectName ) ) {
+                    server.unregisterMBean( objectName );
+                }
+                server.registerMBean( this, objectName );
+            } catch ( JMException e ) {
+                LOG.warn( "Failed to register " + objectName, e );
+                objectName = null;
+            }
+        }
+        if ( httpPort > 0 ) {
+            try {
+                server = HttpServer.create( new InetSocketAddress( httpHost, httpPort ), 0 );
+                server.createContext( "/metrics", new HttpHandler() {
+
+                    @Override
+                    public void handle( HttpExchange exchange ) throws IOException {
+                        byte[] body = getPrometheusText().getBytes( StandardCharsets.UTF_8 );
+                        exchange.getResponseHeaders().set( "Content-Type", "text/plain; version=0.0.4; charset=utf-8" );
+                        exchange.sendResponseHeaders( 200, body.length );
+                        OutputStream out = exchange.getResponseBody();
+                        try {
+                            out.write( body );
+                        } finally {
+                            out.close();
+                        }
+                    }
+                } );
+                server.start();
+                LOG.info( "Exporting metrics of " + schedulerName + " on http://" + httpHost + ":" + httpPort
+                        + "/metrics" );
+            } catch ( IOException e ) {
+                LOG.warn( "Failed to start metrics endpoint on " + httpHost + ":" + httpPort, e );
+                server = null;
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if ( server != null ) {
+            server.stop( 0 );
+            server = null;
+        }
+        if ( objectName != null ) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+            } catch ( JMException e ) {
+                LOG.debug( "Failed to unregister " + objectName, e );
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public Map < String, Long > getLockWaitP99Nanos() {
+        return lockTimes( true, 99 );
+    }
+
+    @Override
+    public Map < String, Long > getLockWaitMaxNanos() {
+        return lockTimes( true, 100 );
+    }
+
+    @Override
+    public Map < String, Long > getLockHoldP99Nanos() {
+        return lockTimes( false, 99 );
+    }
+
+    @Override
+    public Map < String, Long > getLockHoldMaxNanos() {
+        return lockTimes( false, 100 );
+    }
+
+    @Override
+    public long getAcquires() {
+        return store == null ? 0 : instruments().getBatchSize().getCount() + instruments().getEmptyAcquires();
+    }
+
+    @Override
+    public long getEmptyAcquires() {
+        return store == null ? 0 : instruments().getEmptyAcquires();
+    }
+
+    @Override
+    public double getMeanBatchSize() {
+        return store == null ? 0 : instruments().getBatchSize().snapshot().getMean();
+    }
+
+    @Override
+    public long getMaxBatchSize() {
+        return store == null ? 0 : instruments().getBatchSize().snapshot().getMax();
+    }
+
+    @Override
+    public long getTimeToNextTriggerP50Millis() {
+        return store == null ? 0 : instruments().getTimeToNextTrigger().snapshot().getValueAtPercentile( 50 );
+    }
+
+    @Override
+    public long getNextFireDelayMillis() {
+        if ( store == null ) {
+            return Long.MAX_VALUE;
+        }
+        long next = store.peekNextFireTime();
+        return next == Long.MAX_VALUE ? next : next - System.currentTimeMillis();
+    }
+
+    @Override
+    public int getBacklog() {
+        return store == null ? 0 : store.countDueTriggers( System.currentTimeMillis(), backlogLimit );
+    }
+
+    @Override
+    public int getPoolSize() {
+        return store == null ? 0 : instruments().getPoolSize();
+    }
+
+    @Override
+    public int getBusyWorkers() {
+        return store == null ? 0 : instruments().getBusyWorkers();
+    }
+
+    @Override
+    public int getPeakBusyWorkers() {
+        return store == null ? 0 : instruments().getPeakBusyWorkers();
+    }
+
+    @Override
+    public long getSaturations() {
+        return store == null ? 0 : instruments().getSaturations();
+    }
+
+    @Override
+    public long getSaturatedMillis() {
+        return store == null ? 0 : instruments().getSaturatedNanos() / 1000000;
+    }
+
+    @Override
+    public long getTriggersFired() {
+        return store == null ? 0 : instruments().getTriggersFired();
+    }
+
+    @Override
+    public long getMisfires() {
+        return store == null ? 0 : instruments().getMisfires();
+    }
+
+    @Override
+    public String getPrometheusText() {
+        StringBuilder out = new StringBuilder( 4096 );
+        if ( store == null ) {
+            return out.toString();
+        }
+        SchedulerInstruments instruments = instruments();
+        String scheduler = "scheduler=\"" + escape( schedulerName ) + "\"";
+
+        header( out, "quartz_store_lock_wait_seconds", "summary", "Time spent waiting for the JobStore lock" );
+        for ( Map.Entry < String, SchedulerInstruments.LockTimer > e : instruments.getLockTimers().entrySet() ) {
+            summary( out, "quartz_store_lock_wait_seconds", scheduler + ",op=\"" + e.getKey() + "\"",
+                    e.getValue().getWait(), NANOS );
+        }
+        header( out, "quartz_store_lock_hold_seconds", "summary", "Time spent holding the JobStore lock" );
+        for ( Map.Entry < String, SchedulerInstruments.LockTimer > e : instruments.getLockTimers().entrySet() ) {
+            summary( out, "quartz_store_lock_hold_seconds", scheduler + ",op=\"" + e.getKey() + "\"",
+                    e.getValue().getHold(), NANOS );
+        }
+        header( out, "quartz_acquire_batch_size", "summary", "Triggers returned by a non-empty acquireNextTriggers" );
+        summary( out, "quartz_acquire_batch_size", scheduler, instruments.getBatchSize(), 1 );
+        header( out, "quartz_acquire_empty_total", "counter",
+                "acquireNextTriggers calls that found nothing, after which the scheduler thread idles" );
+        sample( out, "quartz_acquire_empty_total", scheduler, instruments.getEmptyAcquires() );
+        header( out, "quartz_time_to_next_trigger_seconds", "summary",
+                "Time from acquisition to the fire time of the first acquired trigger" );
+        summary( out, "quartz_time_to_next_trigger_seconds", scheduler, instruments.getTimeToNextTrigger(), MILLIS );
+        long delay = getNextFireDelayMillis();
+        if ( delay != Long.MAX_VALUE ) {
+            header( out, "quartz_next_fire_delay_seconds", "gauge",
+                    "Time until the earliest waiting trigger, negative when overdue" );
+            sample( out, "quartz_next_fire_delay_seconds", scheduler, delay / MILLIS );
+        }
+        header( out, "quartz_pending_fire_backlog", "gauge", "Due triggers not yet acquired, capped at backlogLimit" );
+        sample( out, "quartz_pending_fire_backlog", scheduler, getBacklog() );
+        header( out, "quartz_workers_pool_size", "gauge", "Worker threads" );
+        sample( out, "quartz_workers_pool_size", scheduler, instruments.getPoolSize() );
+        header( out, "quartz_workers_busy", "gauge", "Jobs currently executing" );
+        sample( out, "quartz_workers_busy", scheduler, instruments.getBusyWorkers() );
+        header( out, "quartz_workers_busy_peak", "gauge", "Highest number of jobs executing at the same time" );
+        sample( out, "quartz_workers_busy_peak", scheduler, instruments.getPeakBusyWorkers() );
+        header( out, "quartz_workers_saturated_total", "counter", "Times every worker thread became busy" );
+        sample( out, "quartz_workers_saturated_total", scheduler, instruments.getSaturations() );
+        header( out, "quartz_workers_saturated_seconds_total", "counter", "Time with every worker thread busy" );
+        sample( out, "quartz_workers_saturated_seconds_total", scheduler, instruments.getSaturatedNanos() / NANOS );
+        header( out, "quartz_triggers_fired_total", "counter", "Triggers fired" );
+        sample( out, "quartz_triggers_fired_total", scheduler, instruments.getTriggersFired() );
+        header( out, "quartz_misfires_total", "counter", "Triggers that misfired" );
+        sample( out, "quartz_misfires_total", scheduler, instruments.getMisfires() );
+        return out.toString();
+    }
+
+    private SchedulerInstruments instruments() {
+        return store.getInstruments();
+    }
+
+    private Map < String, Long > lockTimes( boolean wait, double percentile ) {
+        Map < String, Long > times = new LinkedHashMap < String, Long >();
+        if ( store == null ) {
+            return times;
+        }
+        for ( Map.Entry < String, SchedulerInstruments.LockTimer > e : instruments().getLockTimers().entrySet() ) {
+            Histogram histogram = wait ? e.getValue().getWait() : e.getValue().getHold();
+            times.put( e.getKey(), histogram.snapshot().getValueAtPercentile( percentile ) );
+        }
+        return times;
+    }
+
+    private static void header( StringBuilder out, String name, String type, String help ) {
+        out.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+        out.append( "# TYPE " ).append( name ).append( ' ' ).append( type ).append( '\n' );
+    }
+
+    /**
+     * 按 unit 把 Histogram 的值换算成 Prometheus 的基本单位（秒）
+     */
+    private static void summary( StringBuilder out, String name, String labels, Histogram histogram, double unit ) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        for ( double quantile : QUANTILES ) {
+            sample( out, name, labels + ",quantile=\"" + quantile + "\"",
+                    snapshot.getValueAtPercentile( quantile * 100 ) / unit );
+        }
+        sample( out, name + "_sum", labels, snapshot.getSum() / unit );
+        sample( out, name + "_count", labels, snapshot.getCount() );
+    }
+
+    private static void sample( StringBuilder out, String name, String labels, double value ) {
+        out.append( name ).append( '{' ).append( labels ).append( "} " ).append( value ).append( '\n' );
+    }
+
+    private static void sample( StringBuilder out, String name, String labels, long value ) {
+        out.append( name ).append( '{' ).append( labels ).append( "} " ).append( value ).append( '\n' );
+    }
+
+    private static String escape( String value ) {
+        return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+    }
+}
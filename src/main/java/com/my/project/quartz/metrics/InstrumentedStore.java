@@ -0,0 +1,24 @@
+package com.my.project.quartz.metrics;
+
+/**
+ * 记录 SchedulerInstruments 的 JobStore，由 InstrumentedStoreRegistry 按调度器名称登记
+ *
+ * @author yang.dongdong
+ *
+ */
+public interface InstrumentedStore {
+
+    SchedulerInstruments getInstruments();
+
+    /**
+     * 等待触发的积压：计划触发时间不晚于 now、还没有被调度线程获取的 Trigger 数
+     *
+     * @param limit 最多数到 limit 个，避免积压很多时长时间持有锁
+     */
+    int countDueTriggers( long now, int limit );
+
+    /**
+     * @return 等待中的 Trigger 最早的计划触发时间，没有时返回 Long.MAX_VALUE
+     */
+    long peekNextFireTime();
+}
@@ -0,0 +1,41 @@
+package com.my.project.quartz.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按调度器名称查找 InstrumentedStore
+ *
+ * <pre>
+ * Quartz 不公开调度器使用的 JobStore 实例（与 ThreadPoolRegistry 相同），JobStore 在 initialize 时登记、
+ * shutdown 时注销；SchedulerPlugin 在 JobStore 之前初始化，所以 InstrumentationPlugin 在 start 时才查找。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class InstrumentedStoreRegistry {
+
+    private static final ConcurrentMap < String, InstrumentedStore > STORES = new ConcurrentHashMap < String, InstrumentedStore >();
+
+    private InstrumentedStoreRegistry() {
+    }
+
+    public static void register( String schedulerName, InstrumentedStore store ) {
+        STORES.put( schedulerName, store );
+    }
+
+    /**
+     * 只有登记的仍然是 store 时才注销，避免同名的新调度器被误删
+     */
+    public static void unregister( String schedulerName, InstrumentedStore store ) {
+        STORES.remove( schedulerName, store );
+    }
+
+    /**
+     * @return 没有登记时返回 null
+     */
+    public static InstrumentedStore lookup( String schedulerName ) {
+        return STORES.get( schedulerName );
+    }
+}
@@ -0,0 +1,341 @@
+package com.my.project.quartz.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+
+import com.my.project.metrics.Histogram;
+
+/**
+ * 按 JobKey 和 Job 分组统计触发延迟、执行时间和 misfire 次数
+ *
+ * <pre>
+ * 触发延迟（lag）= Job 开始执行的时间 - Trigger 计划触发的时间（getScheduledFireTime），
+ * 包括调度线程获取 Trigger、等待线程池的时间；lag 持续增长说明调度器已经饱和。
+ * 执行时间取 JobExecutionContext.getJobRunTime()。两者的单位都是毫秒。
+ *
+ * 每个 Job 和每个分组各有一组固定大小的 Histogram，记录时只有原子操作、不分配对象；
+ * Job 很多时可以 setTrackJobs(false) 只统计分组。
+ * Job 被删除时（包括非持久 Job 最后一次触发后被自动删除）丢弃它的统计数据，分组的统计数据保留。
+ *
+ *   JobMetricsListener metrics = new JobMetricsListener();
+ *   metrics.register( scheduler );
+ *   ...
+ *   for ( JobKey key : metrics.getTopJobsByLag( 10, 99 ) ) {
+ *       logger.info( key + " " + metrics.getJobSnapshot( key ) );
+ *   }
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class JobMetricsListener implements JobListener, TriggerListener {
+
+    /** 默认最大可区分 24 小时 */
+    public static final long                         DEFAULT_HIGHEST_TRACKABLE_MILLIS = 24L * 60 * 60 * 1000;
+    /** 默认相对误差约 6% */
+    public static final int                          DEFAULT_PRECISION_BITS           = 4;
+
+    private final String                             name;
+    private final long                               highestTrackableMillis;
+    private final int                                precisionBits;
+    private final ConcurrentMap < JobKey, Stats >    jobs                             = new ConcurrentHashMap < JobKey, Stats >();
+    private final ConcurrentMap < String, Stats >    groups                           = new ConcurrentHashMap < String, Stats >();
+    private volatile boolean                         trackJobs                        = true;
+
+    public JobMetricsListener() {
+        this( "JobMetricsListener" );
+    }
+
+    public JobMetricsListener( String name ) {
+        this( name, DEFAULT_HIGHEST_TRACKABLE_MILLIS, DEFAULT_PRECISION_BITS );
+    }
+
+    public JobMetricsListener( String name, long highestTrackableMillis, int precisionBits ) {
+        this.name = name;
+        this.highestTrackableMillis = highestTrackableMillis;
+        this.precisionBits = precisionBits;
+    }
+
+    /**
+     * 是否按 JobKey 统计，关闭后只统计分组
+     */
+    public void setTrackJobs( boolean trackJobs ) {
+        this.trackJobs = trackJobs;
+    }
+
+    /**
+     * 把本对象同时注册为所有 Job 的 JobListener 和所有 Trigger 的 TriggerListener，
+     * 并在 Job 被删除时丢弃它的统计数据
+     */
+    public void register( Scheduler scheduler ) throws SchedulerException {
+        scheduler.getListenerManager().addJobListener( this, EverythingMatcher.allJobs() );
+        scheduler.getListenerManager().addTriggerListener( this, EverythingMatcher.allTriggers() );
+        scheduler.getListenerManager().addSchedulerListener( new SchedulerListenerSupport() {
+
+            @Override
+            public void jobDeleted( JobKey jobKey ) {
+                jobs.remove( jobKey );
+            }
+
+            @Override
+            public void schedulingDataCleared() {
+                jobs.clear();
+            }
+        } );
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void jobToBeExecuted( JobExecutionContext context ) {
+        Date scheduled = context.getScheduledFireTime();
+        if ( scheduled == null ) {
+            return;
+        }
+        long lag = System.currentTimeMillis() - scheduled.getTime();
+        JobKey key = context.getJobDetail().getKey();
+        groupStats( key.getGroup() ).lag.record( lag );
+        if ( trackJobs ) {
+            jobStats( key ).lag.record( lag );
+        }
+    }
+
+    @Override
+    public void jobExecutionVetoed( JobExecutionContext context ) {
+        JobKey key = context.getJobDetail().getKey();
+        groupStats( key.getGroup() ).vetoed.incrementAndGet();
+        if ( trackJobs ) {
+            jobStats( key ).vetoed.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+        long runTime = context.getJobRunTime();
+        JobKey key = context.getJobDetail().getKey();
+        Stats group = groupStats( key.getGroup() );
+        group.runTime.record( runTime );
+        if ( jobException != null ) {
+            group.failures.incrementAndGet();
+        }
+        if ( trackJobs ) {
+            Stats job = jobStats( key );
+            job.runTime.record( runTime );
+            if ( jobException != null ) {
+                job.failures.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void triggerFired( Trigger trigger, JobExecutionContext context ) {
+    }
+
+    @Override
+    public boolean vetoJobExecution( Trigger trigger, JobExecutionContext context ) {
+        return false;
+    }
+
+    @Override
+    public void triggerMisfired( Trigger trigger ) {
+        JobKey key = trigger.getJobKey();
+        groupStats( key.getGroup() ).misfires.incrementAndGet();
+        if ( trackJobs ) {
+            jobStats( key ).misfires.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void triggerComplete( Trigger trigger, JobExecutionContext context,
+            CompletedExecutionInstruction triggerInstructionCode ) {
+    }
+
+    /**
+     * @return 没有统计数据时返回 null
+     */
+    public StatsSnapshot getJobSnapshot( JobKey key ) {
+        Stats stats = jobs.get( key );
+        return stats == null ? null : stats.snapshot();
+    }
+
+    /**
+     * @return 没有统计数据时返回 null
+     */
+    public StatsSnapshot getGroupSnapshot( String group ) {
+        Stats stats = groups.get( group );
+        return stats == null ? null : stats.snapshot();
+    }
+
+    public Map < JobKey, StatsSnapshot > getJobSnapshots() {
+        Map < JobKey, StatsSnapshot > result = new HashMap < JobKey, StatsSnapshot >();
+        for ( Map.Entry < JobKey, Stats > entry : jobs.entrySet() ) {
+            result.put( entry.getKey(), entry.getValue().snapshot() );
+        }
+        return result;
+    }
+
+    public Map < String, StatsSnapshot > getGroupSnapshots() {
+        Map < String, StatsSnapshot > result = new HashMap < String, StatsSnapshot >();
+        for ( Map.Entry < String, Stats > entry : groups.entrySet() ) {
+            result.put( entry.getKey(), entry.getValue().snapshot() );
+        }
+        return result;
+    }
+
+    /**
+     * 按触发延迟的百分位从大到小排序，找出调度器饱和时受影响最严重的 Job
+     */
+    public List < JobKey > getTopJobsByLag( int limit, double percentile ) {
+        return top( getJobSnapshots(), limit, percentile, true );
+    }
+
+    /**
+     * 按执行时间的百分位从大到小排序，找出占用线程最多的 Job
+     */
+    public List < JobKey > getTopJobsByRunTime( int limit, double percentile ) {
+        return top( getJobSnapshots(), limit, percentile, false );
+    }
+
+    /**
+     * 清空所有统计数据
+     */
+    public void clear() {
+        jobs.clear();
+        groups.clear();
+    }
+
+    private static List < JobKey > top( final Map < JobKey, StatsSnapshot > snapshots, int limit,
+            final double percentile, final boolean byLag ) {
+        List < JobKey > keys = new ArrayList < JobKey >( snapshots.keySet() );
+        Collections.sort( keys, new Comparator < JobKey >() {
+
+            @Override
+            public int compare( JobKey a, JobKey b ) {
+                return Long.compare( valueOf( snapshots.get( b ) ), valueOf( snapshots.get( a ) ) );
+            }
+
+            private long valueOf( StatsSnapshot snapshot ) {
+                return ( byLag ? snapshot.getLag() : snapshot.getRunTime() ).getValueAtPercentile( percentile );
+            }
+        } );
+        return keys.size() > limit ? new ArrayList < JobKey >( keys.subList( 0, limit ) ) : keys;
+    }
+
+    private Stats jobStats( JobKey key ) {
+        Stats stats = jobs.get( key );
+        if ( stats == null ) {
+            Stats created = new Stats( highestTrackableMillis, precisionBits );
+            stats = jobs.putIfAbsent( key, created );
+            if ( stats == null ) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    private Stats groupStats( String group ) {
+        Stats stats = groups.get( group );
+        if ( stats == null ) {
+            Stats created = new Stats( highestTrackableMillis, precisionBits );
+            stats = groups.putIfAbsent( group, created );
+            if ( stats == null ) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    static class Stats {
+
+        final Histogram  lag;
+        final Histogram  runTime;
+        final AtomicLong misfires = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong vetoed   = new AtomicLong();
+
+        Stats( long highestTrackableMillis, int precisionBits ) {
+            lag = new Histogram( highestTrackableMillis, precisionBits );
+            runTime = new Histogram( highestTrackableMillis, precisionBits );
+        }
+
+        StatsSnapshot snapshot() {
+            return new StatsSnapshot( lag.snapshot(), runTime.snapshot(), misfires.get(), failures.get(),
+                    vetoed.get() );
+        }
+    }
+
+    /**
+     * 一个 Job 或分组的统计数据副本
+     */
+    public static class StatsSnapshot {
+
+        private final Histogram.Snapshot lag;
+        private final Histogram.Snapshot runTime;
+        private final long               misfires;
+        private final long               failures;
+        private final long               vetoed;
+
+        StatsSnapshot( Histogram.Snapshot lag, Histogram.Snapshot runTime, long misfires, long failures, long vetoed ) {
+            this.lag = lag;
+            this.runTime = runTime;
+            this.misfires = misfires;
+            this.failures = failures;
+            this.vetoed = vetoed;
+        }
+
+        /**
+         * @return 触发延迟，单位毫秒
+         */
+        public Histogram.Snapshot getLag() {
+            return lag;
+        }
+
+        /**
+         * @return 执行时间，单位毫秒
+         */
+        public Histogram.Snapshot getRunTime() {
+            return runTime;
+        }
+
+        public long getMisfires() {
+            return misfires;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getVetoed() {
+            return vetoed;
+        }
+
+        @Override
+        public String toString() {
+            return "lag[" + lag + "] runTime[" + runTime + "] misfires=" + misfires + " failures=" + failures
+                    + " vetoed=" + vetoed;
+        }
+    }
+}
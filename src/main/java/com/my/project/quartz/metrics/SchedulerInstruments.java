@@ -0,0 +1,230 @@
+package com.my.project.quartz.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.my.project.metrics.Histogram;
+
+/**
+ * 调度器内部的计数器和计时器：JobStore 锁的等待/持有时间、批量获取的大小、到下一个 Trigger 的时间、
+ * 工作线程的占用和 misfire 次数
+ *
+ * <pre>
+ * 由 InstrumentedRAMJobStore 在调度线程和工作线程中直接记录，InstrumentationPlugin 通过 JMX 和
+ * Prometheus 文本格式导出。记录只有 System.nanoTime 和几次原子操作，不分配对象，可以在生产环境中一直打开。
+ *
+ * 锁的时间按操作分别统计，单位为纳秒：
+ *   acquire  - acquireNextTriggers（调度线程获取即将触发的 Trigger，包括检查 misfire）
+ *   release  - releaseAcquiredTrigger
+ *   fire     - triggersFired（调度线程在触发前更新 Trigger）
+ *   complete - triggeredJobComplete（工作线程在 Job 执行完后更新 Trigger）
+ *   write    - storeJob、storeTrigger、removeTrigger
+ *
+ * 工作线程按"执行中的 Job 数"统计：triggersFired 成功时加一，triggeredJobComplete 时减一，
+ * 达到线程池大小后调度线程会阻塞在 blockForAvailableThreads 上，这段时间记为饱和。
+ * AsyncJob 在 CompletionStage 完成之前一直计入。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class SchedulerInstruments {
+
+    public static final String[]            OPERATIONS      = { "acquire", "release", "fire", "complete", "write" };
+
+    /** 锁的时间最大可区分 60 秒 */
+    private static final long               HIGHEST_NANOS   = 60L * 1000 * 1000 * 1000;
+    /** 到下一个 Trigger 的时间最大可区分 24 小时 */
+    private static final long               HIGHEST_MILLIS  = 24L * 60 * 60 * 1000;
+    private static final int                PRECISION_BITS  = 4;
+
+    private final LockTimer                 acquire         = new LockTimer();
+    private final LockTimer                 release         = new LockTimer();
+    private final LockTimer                 fire            = new LockTimer();
+    private final LockTimer                 complete        = new LockTimer();
+    private final LockTimer                 write           = new LockTimer();
+    private final Histogram                 batchSize       = new Histogram( 1 << 16, PRECISION_BITS );
+    private final Histogram                 timeToNext      = new Histogram( HIGHEST_MILLIS, PRECISION_BITS );
+    private final AtomicLong                emptyAcquires   = new AtomicLong();
+    private final AtomicLong                fired           = new AtomicLong();
+    private final AtomicLong                misfires        = new AtomicLong();
+    private final AtomicInteger             busyWorkers     = new AtomicInteger();
+    private final AtomicInteger             peakBusyWorkers = new AtomicInteger();
+    private final AtomicLong                saturations     = new AtomicLong();
+    private final AtomicLong                saturatedNanos  = new AtomicLong();
+    /** 开始饱和的 System.nanoTime()，0 表示没有饱和 */
+    private final AtomicLong                saturatedSince  = new AtomicLong();
+    private volatile int                    poolSize        = Integer.MAX_VALUE;
+
+    public LockTimer getAcquire() {
+        return acquire;
+    }
+
+    public LockTimer getRelease() {
+        return release;
+    }
+
+    public LockTimer getFire() {
+        return fire;
+    }
+
+    public LockTimer getComplete() {
+        return complete;
+    }
+
+    public LockTimer getWrite() {
+        return write;
+    }
+
+    /**
+     * @return 按 OPERATIONS 的顺序
+     */
+    public Map < String, LockTimer > getLockTimers() {
+        Map < String, LockTimer > timers = new LinkedHashMap < String, LockTimer >();
+        timers.put( OPERATIONS[0], acquire );
+        timers.put( OPERATIONS[1], release );
+        timers.put( OPERATIONS[2], fire );
+        timers.put( OPERATIONS[3], complete );
+        timers.put( OPERATIONS[4], write );
+        return Collections.unmodifiableMap( timers );
+    }
+
+    /**
+     * 记录一次 acquireNextTriggers 的结果
+     *
+     * @param acquired 获取到的 Trigger 数，0 表示调度线程将空闲等待
+     * @param firstFireTime 第一个 Trigger 的计划触发时间
+     */
+    public void acquired( int acquired, long firstFireTime, long now ) {
+        if ( acquired == 0 ) {
+            emptyAcquires.incrementAndGet();
+            return;
+        }
+        batchSize.record( acquired );
+        timeToNext.record( firstFireTime - now );
+    }
+
+    /**
+     * triggersFired 成功触发了 count 个 Trigger，每个占用一个工作线程
+     */
+    public void workersStarted( int count ) {
+        if ( count == 0 ) {
+            return;
+        }
+        fired.addAndGet( count );
+        int busy = busyWorkers.addAndGet( count );
+        int peak;
+        while ( busy > ( peak = peakBusyWorkers.get() ) ) {
+            if ( peakBusyWorkers.compareAndSet( peak, busy ) ) {
+                break;
+            }
+        }
+        if ( busy >= poolSize && saturatedSince.compareAndSet( 0, System.nanoTime() ) ) {
+            saturations.incrementAndGet();
+        }
+    }
+
+    public void workerFinished() {
+        int busy = busyWorkers.decrementAndGet();
+        if ( busy < poolSize ) {
+            long since = saturatedSince.getAndSet( 0 );
+            if ( since != 0 ) {
+                saturatedNanos.addAndGet( System.nanoTime() - since );
+            }
+        }
+    }
+
+    public void misfired() {
+        misfires.incrementAndGet();
+    }
+
+    public void setPoolSize( int poolSize ) {
+        this.poolSize = poolSize;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return 每次 acquireNextTriggers 获取到的 Trigger 数，不含没有获取到的
+     */
+    public Histogram getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return 获取时距离第一个 Trigger 触发的时间（毫秒），已经晚于计划时间的记为 0
+     */
+    public Histogram getTimeToNextTrigger() {
+        return timeToNext;
+    }
+
+    /**
+     * @return 没有获取到 Trigger、调度线程空闲等待的次数
+     */
+    public long getEmptyAcquires() {
+        return emptyAcquires.get();
+    }
+
+    public long getTriggersFired() {
+        return fired.get();
+    }
+
+    public long getMisfires() {
+        return misfires.get();
+    }
+
+    public int getBusyWorkers() {
+        return busyWorkers.get();
+    }
+
+    public int getPeakBusyWorkers() {
+        return peakBusyWorkers.get();
+    }
+
+    /**
+     * @return 所有工作线程都被占用的次数
+     */
+    public long getSaturations() {
+        return saturations.get();
+    }
+
+    /**
+     * @return 所有工作线程都被占用的累计时间（纳秒），包括当前仍在持续的饱和
+     */
+    public long getSaturatedNanos() {
+        long since = saturatedSince.get();
+        return saturatedNanos.get() + ( since == 0 ? 0 : System.nanoTime() - since );
+    }
+
+    /**
+     * 一种 JobStore 操作的锁等待时间和持有时间（纳秒）
+     */
+    public static class LockTimer {
+
+        private final Histogram wait = new Histogram( HIGHEST_NANOS, PRECISION_BITS );
+        private final Histogram hold = new Histogram( HIGHEST_NANOS, PRECISION_BITS );
+
+        /**
+         * @param requested 开始请求锁的 System.nanoTime()
+         * @param locked 获得锁的 System.nanoTime()
+         * @param released 释放锁之前的 System.nanoTime()
+         */
+        public void record( long requested, long locked, long released ) {
+            wait.record( locked - requested );
+            hold.record( released - locked );
+        }
+
+        public Histogram getWait() {
+            return wait;
+        }
+
+        public Histogram getHold() {
+            return hold;
+        }
+    }
+}
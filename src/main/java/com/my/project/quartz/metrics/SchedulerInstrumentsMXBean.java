@@ -0,0 +1,65 @@
+package com.my.project.quartz.metrics;
+
+import java.util.Map;
+
+/**
+ * 通过 JMX 查看 SchedulerInstruments，ObjectName 为 com.my.project.quartz:type=SchedulerInstruments,name=调度器名称
+ *
+ * @author yang.dongdong
+ *
+ */
+public interface SchedulerInstrumentsMXBean {
+
+    /**
+     * @return 按操作（acquire、release、fire、complete、write）的锁等待时间 p99（纳秒）
+     */
+    Map < String, Long > getLockWaitP99Nanos();
+
+    Map < String, Long > getLockWaitMaxNanos();
+
+    /**
+     * @return 按操作的锁持有时间 p99（纳秒）
+     */
+    Map < String, Long > getLockHoldP99Nanos();
+
+    Map < String, Long > getLockHoldMaxNanos();
+
+    long getAcquires();
+
+    long getEmptyAcquires();
+
+    double getMeanBatchSize();
+
+    long getMaxBatchSize();
+
+    long getTimeToNextTriggerP50Millis();
+
+    /**
+     * @return 到最早的等待中 Trigger 的时间（毫秒），已经晚于计划时间时为负数，没有 Trigger 时为 Long.MAX_VALUE
+     */
+    long getNextFireDelayMillis();
+
+    /**
+     * @return 计划触发时间已到、还没有被获取的 Trigger 数
+     */
+    int getBacklog();
+
+    int getPoolSize();
+
+    int getBusyWorkers();
+
+    int getPeakBusyWorkers();
+
+    long getSaturations();
+
+    long getSaturatedMillis();
+
+    long getTriggersFired();
+
+    long getMisfires();
+
+    /**
+     * @return Prometheus 文本格式的全部指标
+     */
+    String getPrometheusText();
+}
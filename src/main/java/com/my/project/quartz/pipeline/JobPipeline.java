@@ -0,0 +1,235 @@
+package com.my.project.quartz.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quartz.JobKey;
+
+/**
+ * 由 JobKey 组成的有向无环图，描述一组 Job 之间的依赖
+ *
+ * <pre>
+ * 每个节点是一个已经存储在 Scheduler 中的持久（storeDurably）Job，节点的所有上游都完成后才触发它，
+ * 没有依赖关系的分支同时执行。fanOut 节点把同一个 Job 按分区触发多次，全部分区完成后该节点才算完成，
+ * 下游得到按分区顺序排列的结果列表。
+ *
+ *   JobPipeline pipeline = JobPipeline.builder( "nightly" )
+ *           .fanOut( extract, 4 )
+ *           .job( transform, extract )
+ *           .job( audit, extract )
+ *           .job( load, transform, audit )
+ *           .maxParallelism( 3 )
+ *           .build();
+ *
+ * 定义不可变，可以被多次、同时运行，运行由 PipelineRunner 负责。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class JobPipeline {
+
+    private final String               name;
+    private final int                  maxParallelism;
+    /** 按拓扑顺序 */
+    private final Map < JobKey, Node > nodes;
+    private final List < Node >        roots;
+
+    private JobPipeline( String name, int maxParallelism, Map < JobKey, Node > nodes, List < Node > roots ) {
+        this.name = name;
+        this.maxParallelism = maxParallelism;
+        this.nodes = nodes;
+        this.roots = roots;
+    }
+
+    public static Builder builder( String name ) {
+        return new Builder( name );
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 一次运行中同时执行的 Job 数量上限（每个分区计一次）
+     */
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    /**
+     * @return 全部节点，按拓扑顺序
+     */
+    public List < Node > getNodes() {
+        return Collections.unmodifiableList( new ArrayList < Node >( nodes.values() ) );
+    }
+
+    public Node getNode( JobKey key ) {
+        return nodes.get( key );
+    }
+
+    /**
+     * @return 没有上游的节点
+     */
+    public List < Node > getRoots() {
+        return roots;
+    }
+
+    @Override
+    public String toString() {
+        return "JobPipeline[" + name + " " + nodes.values() + "]";
+    }
+
+    /**
+     * 图中的一个节点
+     */
+    public static final class Node {
+
+        private final JobKey          key;
+        private final int             partitions;
+        private final List < JobKey > upstream;
+        private final List < JobKey > downstream = new ArrayList < JobKey >();
+
+        Node( JobKey key, int partitions, List < JobKey > upstream ) {
+            this.key = key;
+            this.partitions = partitions;
+            this.upstream = Collections.unmodifiableList( upstream );
+        }
+
+        public JobKey getKey() {
+            return key;
+        }
+
+        /**
+         * @return 分区数，普通节点为 1
+         */
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public List < JobKey > getUpstream() {
+            return upstream;
+        }
+
+        public List < JobKey > getDownstream() {
+            return Collections.unmodifiableList( downstream );
+        }
+
+        @Override
+        public String toString() {
+            return key + ( partitions > 1 ? "[" + partitions + "]" : "" )
+                    + ( upstream.isEmpty() ? "" : "<-" + upstream );
+        }
+    }
+
+    public static final class Builder {
+
+        private final String               name;
+        private final Map < JobKey, Node > nodes          = new LinkedHashMap < JobKey, Node >();
+        private int                        maxParallelism = Integer.MAX_VALUE;
+
+        Builder( String name ) {
+            if ( name == null ) {
+                throw new NullPointerException( "name" );
+            }
+            this.name = name;
+        }
+
+        /**
+         * 添加一个节点，upstream 中的节点全部完成后触发
+         */
+        public Builder job( JobKey key, JobKey... upstream ) {
+            return fanOut( key, 1, upstream );
+        }
+
+        /**
+         * 添加一个按分区触发 partitions 次的节点，分区号在 JobDataMap 的 PipelineRunner.PARTITION 中
+         */
+        public Builder fanOut( JobKey key, int partitions, JobKey... upstream ) {
+            if ( key == null ) {
+                throw new NullPointerException( "key" );
+            }
+            if ( partitions <= 0 ) {
+                throw new IllegalArgumentException( "partitions must be > 0" );
+            }
+            if ( nodes.containsKey( key ) ) {
+                throw new IllegalArgumentException( "Duplicate node " + key + " in pipeline " + name );
+            }
+            nodes.put( key, new Node( key, partitions, new ArrayList < JobKey >( Arrays.asList( upstream ) ) ) );
+            return this;
+        }
+
+        public Builder maxParallelism( int maxParallelism ) {
+            if ( maxParallelism <= 0 ) {
+                throw new IllegalArgumentException( "maxParallelism must be > 0" );
+            }
+            this.maxParallelism = maxParallelism;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException 没有节点、上游不存在或者存在环
+         */
+        public JobPipeline build() {
+            if ( nodes.isEmpty() ) {
+                throw new IllegalArgumentException( "Pipeline " + name + " has no job" );
+            }
+            // 重新创建节点，同一个 Builder 可以多次 build
+            Map < JobKey, Node > copies = new LinkedHashMap < JobKey, Node >();
+            Map < JobKey, Integer > inDegree = new HashMap < JobKey, Integer >();
+            for ( Node node : nodes.values() ) {
+                copies.put( node.key, new Node( node.key, node.partitions, node.upstream ) );
+                inDegree.put( node.key, node.upstream.size() );
+            }
+            List < Node > roots = new ArrayList < Node >();
+            ArrayDeque < Node > ready = new ArrayDeque < Node >();
+            for ( Node node : copies.values() ) {
+                for ( JobKey up : node.upstream ) {
+                    Node upstream = copies.get( up );
+                    if ( upstream == null ) {
+                        throw new IllegalArgumentException(
+                                "Upstream " + up + " of " + node.key + " is not in pipeline " + name );
+                    }
+                    upstream.downstream.add( node.key );
+                }
+            }
+            for ( JobKey key : nodes.keySet() ) {
+                Node node = copies.get( key );
+                if ( node.upstream.isEmpty() ) {
+                    roots.add( node );
+                    ready.add( node );
+                }
+            }
+            // Kahn 算法：按拓扑顺序排列，剩下的节点在环上
+            Map < JobKey, Node > sorted = new LinkedHashMap < JobKey, Node >();
+            while ( !ready.isEmpty() ) {
+                Node node = ready.poll();
+                sorted.put( node.key, node );
+                for ( JobKey down : node.downstream ) {
+                    int remaining = inDegree.get( down ) - 1;
+                    inDegree.put( down, remaining );
+                    if ( remaining == 0 ) {
+                        ready.add( copies.get( down ) );
+                    }
+                }
+            }
+            if ( sorted.size() < copies.size() ) {
+                List < JobKey > cycle = new ArrayList < JobKey >();
+                for ( JobKey key : nodes.keySet() ) {
+                    if ( !sorted.containsKey( key ) ) {
+                        cycle.add( key );
+                    }
+                }
+                throw new IllegalArgumentException( "Pipeline " + name + " has a cycle through " + cycle );
+            }
+            return new JobPipeline( name, maxParallelism, Collections.unmodifiableMap( sorted ),
+                    Collections.unmodifiableList( roots ) );
+        }
+    }
+}
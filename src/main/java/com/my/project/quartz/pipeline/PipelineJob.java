@@ -0,0 +1,40 @@
+package com.my.project.quartz.pipeline;
+
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.SchedulerException;
+
+/**
+ * 按 Trigger 运行 pipeline 的 Job，只有 pipeline 的入口需要 Trigger
+ *
+ * <pre>
+ * 下游 Job 不再各自配置留有余量的 cron，整个 pipeline 由一个 Trigger 开始：
+ *   runner.addPipeline( pipeline );
+ *   JobBuilder.newJob( PipelineJob.class ).usingJobData( PipelineRunner.PIPELINE, "nightly" )...
+ * JobDataMap 中的其他数据作为参数传给每个节点。开始运行后立即返回，不等待 pipeline 结束。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class PipelineJob implements Job {
+
+    @Override
+    public void execute( JobExecutionContext context ) throws JobExecutionException {
+        JobDataMap data = context.getMergedJobDataMap();
+        String pipeline = data.getString( PipelineRunner.PIPELINE );
+        JobDataMap parameters = new JobDataMap( data );
+        parameters.remove( PipelineRunner.PIPELINE );
+        try {
+            PipelineRunner runner = (PipelineRunner) context.getScheduler().getContext().get( PipelineRunner.KEY );
+            if ( runner == null ) {
+                throw new SchedulerException( "PipelineRunner is not registered" );
+            }
+            context.setResult( runner.start( pipeline, parameters ) );
+        } catch ( SchedulerException e ) {
+            throw new JobExecutionException( "Failed to start pipeline " + pipeline, e );
+        }
+    }
+}
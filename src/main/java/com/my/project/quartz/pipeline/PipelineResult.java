@@ -0,0 +1,76 @@
+package com.my.project.quartz.pipeline;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+
+/**
+ * 一次 pipeline 运行的结果
+ *
+ * @author yang.dongdong
+ *
+ */
+public class PipelineResult {
+
+    private final String                 runId;
+    private final String                 pipeline;
+    private final long                   latencyMillis;
+    private final Map < JobKey, Object > results;
+    private final JobKey                 failedNode;
+    private final JobExecutionException  failure;
+
+    PipelineResult( String runId, String pipeline, long latencyMillis, Map < JobKey, Object > results,
+            JobKey failedNode, JobExecutionException failure ) {
+        this.runId = runId;
+        this.pipeline = pipeline;
+        this.latencyMillis = latencyMillis;
+        this.results = Collections.unmodifiableMap( results );
+        this.failedNode = failedNode;
+        this.failure = failure;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return 从 start 到最后一个节点完成的时间（毫秒）
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @return 已经完成的节点的结果，按拓扑顺序；fanOut 节点的结果是按分区顺序排列的 List
+     */
+    public Map < JobKey, Object > getResults() {
+        return results;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * @return 第一个失败的节点，成功或者因为调度器关闭而失败时为 null
+     */
+    public JobKey getFailedNode() {
+        return failedNode;
+    }
+
+    public JobExecutionException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineResult[" + pipeline + " " + runId + ( isSuccess() ? " succeeded" : " failed at " + failedNode )
+                + " in " + latencyMillis + "ms]";
+    }
+}
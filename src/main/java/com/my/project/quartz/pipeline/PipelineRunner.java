@@ -0,0 +1,542 @@
+package com.my.project.quartz.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.metrics.Histogram;
+import com.my.project.quartz.async.AsyncJobSupport;
+import com.my.project.quartz.retry.RetryJobListener;
+
+/**
+ * 运行 JobPipeline：上游完成时在 jobWasExecuted 中触发下游，不需要为下游配置留有余量的 Trigger 或者轮询
+ *
+ * <pre>
+ * start 开始一次运行，用 triggerJob 触发所有没有上游的节点；每个节点的 Trigger 的 JobDataMap 中带有：
+ *   - RUN_ID、PIPELINE：本次运行，jobWasExecuted 据此找到运行并触发下游；
+ *   - PARTITION、PARTITIONS：fanOut 节点的分区号和分区数；
+ *   - start 传入的参数，以及每个上游的结果（context.setResult 的值），用 upstreamResult 读取，
+ *     fanOut 上游的结果是按分区顺序排列的 List。
+ * 一次运行中同时执行的 Job 数不超过 maxParallelism，就绪的节点按拓扑顺序排队。
+ *
+ * 节点失败（包括被 TriggerListener 否决）时不再触发新的节点，正在执行的节点结束后运行以失败结束；
+ * 不会再报告结果的情况下运行立即以失败结束：还没有完成的节点的 Job 被删除、节点的 Trigger 没有触发就结束
+ * （例如 misfire 后不再触发）、调度器关闭。之后才报告的结果被忽略。
+ * RetryJobListener 安排了重试的失败不算失败，等待重试的结果。因此需要在 RetryJobListener 之后注册。
+ * AsyncJob 节点在 CompletionStage 完成时才算完成，register 用 AsyncJobSupport.wrap 注册本对象。
+ *
+ * 每个 pipeline 名称记录运行次数、失败次数和端到端延迟（从 start 到最后一个节点完成，毫秒）的直方图，
+ * 每次运行结束时输出一行 INFO 日志。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class PipelineRunner implements JobListener {
+
+    /** SchedulerContext 中本对象的键，PipelineJob 通过它找到 PipelineRunner */
+    public static final String                          KEY            = PipelineRunner.class.getName();
+    /** JobDataMap 中本次运行的 ID */
+    public static final String                          RUN_ID         = "pipelineRunId";
+    /** JobDataMap 中 pipeline 的名称 */
+    public static final String                          PIPELINE       = "pipeline";
+    /** JobDataMap 中 fanOut 节点的分区号，从 0 开始 */
+    public static final String                          PARTITION      = "pipelinePartition";
+    /** JobDataMap 中 fanOut 节点的分区数 */
+    public static final String                          PARTITIONS     = "pipelinePartitions";
+    /** JobDataMap 中上游结果的键的前缀，后接上游的 JobKey */
+    public static final String                          RESULT_PREFIX  = "pipelineResult.";
+
+    private static final Logger                         LOG            = LoggerFactory
+            .getLogger( PipelineRunner.class );
+    private static final long                           HIGHEST_MILLIS = 24L * 3600 * 1000;
+    private static final int                            PRECISION_BITS = 5;
+
+    private final String                                name;
+    private final ConcurrentMap < String, JobPipeline > pipelines      =
+            new ConcurrentHashMap < String, JobPipeline >();
+    private final ConcurrentMap < String, Run >         runs           = new ConcurrentHashMap < String, Run >();
+    private final ConcurrentMap < String, Stats >       stats          = new ConcurrentHashMap < String, Stats >();
+    private volatile Scheduler                          scheduler;
+
+    public PipelineRunner() {
+        this( "PipelineRunner" );
+    }
+
+    public PipelineRunner( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * 注册为所有 Job 的 JobListener，并放入 SchedulerContext；
+     * 同时注册 SchedulerListener，在节点不会再报告结果时结束运行
+     */
+    public void register( Scheduler scheduler ) throws SchedulerException {
+        this.scheduler = scheduler;
+        scheduler.getContext().put( KEY, this );
+        scheduler.getListenerManager().addJobListener( AsyncJobSupport.wrap( this ), EverythingMatcher.allJobs() );
+        scheduler.getListenerManager().addSchedulerListener( new SchedulerListenerSupport() {
+
+            @Override
+            public void jobDeleted( JobKey jobKey ) {
+                for ( Run run : runs.values() ) {
+                    boolean pending;
+                    synchronized ( run ) {
+                        NodeState node = run.nodes.get( jobKey );
+                        pending = node != null && node.remainingPartitions > 0;
+                    }
+                    if ( pending ) {
+                        abort( run, jobKey, "Job " + jobKey + " was deleted" );
+                    }
+                }
+            }
+
+            /**
+             * 触发过的 Trigger 结束时结果已经（或将由 AsyncJob 完成时）报告，只处理没有触发过的
+             */
+            @Override
+            public void triggerFinalized( Trigger trigger ) {
+                Object runId = trigger.getJobDataMap().get( RUN_ID );
+                Run run = runId == null ? null : runs.get( runId.toString() );
+                if ( run != null && trigger.getPreviousFireTime() == null ) {
+                    abort( run, trigger.getJobKey(), "Trigger " + trigger.getKey() + " was finalized without firing" );
+                }
+            }
+
+            @Override
+            public void schedulerShuttingdown() {
+                for ( Run run : runs.values() ) {
+                    abort( run, null, "Scheduler is shutting down" );
+                }
+            }
+        } );
+    }
+
+    /**
+     * 保存 pipeline 定义，之后可以按名称运行（例如由 PipelineJob 按 cron 运行）
+     */
+    public void addPipeline( JobPipeline pipeline ) {
+        pipelines.put( pipeline.getName(), pipeline );
+    }
+
+    public JobPipeline getPipeline( String name ) {
+        return pipelines.get( name );
+    }
+
+    /**
+     * 按名称运行 addPipeline 保存的 pipeline
+     */
+    public CompletableFuture < PipelineResult > start( String pipelineName, JobDataMap parameters )
+            throws SchedulerException {
+        JobPipeline pipeline = pipelines.get( pipelineName );
+        if ( pipeline == null ) {
+            throw new SchedulerException( "Unknown pipeline: " + pipelineName );
+        }
+        return start( pipeline, parameters );
+    }
+
+    /**
+     * 开始一次运行
+     *
+     * @param parameters 传给每个节点的数据，可以为 null
+     * @return 运行结束时完成，失败的运行也正常完成，由 PipelineResult.isSuccess 区分
+     * @throws SchedulerException 没有 register，或者节点的 Job 不存在
+     */
+    public CompletableFuture < PipelineResult > start( JobPipeline pipeline, JobDataMap parameters )
+            throws SchedulerException {
+        Scheduler scheduler = this.scheduler;
+        if ( scheduler == null ) {
+            throw new SchedulerException( "PipelineRunner " + name + " is not registered" );
+        }
+        for ( JobPipeline.Node node : pipeline.getNodes() ) {
+            if ( !scheduler.checkExists( node.getKey() ) ) {
+                throw new SchedulerException( "Job " + node.getKey() + " of pipeline " + pipeline.getName()
+                        + " does not exist, nodes must be stored durably" );
+            }
+        }
+        Run run = new Run( UUID.randomUUID().toString(), pipeline,
+                parameters == null ? new JobDataMap() : new JobDataMap( parameters ) );
+        runs.put( run.id, run );
+        stats( pipeline.getName() ).started.incrementAndGet();
+        List < Launch > launches;
+        synchronized ( run ) {
+            for ( JobPipeline.Node root : pipeline.getRoots() ) {
+                run.enqueue( root );
+            }
+            launches = run.poll();
+        }
+        launch( run, launches );
+        return run.future;
+    }
+
+    /**
+     * @return 本次执行的节点的上游 upstream 的结果，不是由 PipelineRunner 触发或者上游没有结果时返回 null
+     */
+    public static Object upstreamResult( JobExecutionContext context, JobKey upstream ) {
+        return context.getMergedJobDataMap().get( RESULT_PREFIX + upstream );
+    }
+
+    /**
+     * @return 本次执行所属的运行的 ID，不是由 PipelineRunner 触发时返回 null
+     */
+    public static String runIdOf( JobExecutionContext context ) {
+        Object runId = context.getTrigger().getJobDataMap().get( RUN_ID );
+        return runId == null ? null : runId.toString();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void jobToBeExecuted( JobExecutionContext context ) {
+    }
+
+    @Override
+    public void jobExecutionVetoed( JobExecutionContext context ) {
+        Run run = runOf( context );
+        if ( run != null ) {
+            completed( run, context, null,
+                    new JobExecutionException( "Execution of " + context.getJobDetail().getKey() + " was vetoed" ) );
+        }
+    }
+
+    @Override
+    public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+        Run run = runOf( context );
+        if ( run == null ) {
+            return;
+        }
+        if ( jobException != null && RetryJobListener.isRetryScheduled( context ) ) {
+            // 重试的 Trigger 带有同样的 JobDataMap，由重试的执行报告结果
+            return;
+        }
+        completed( run, context, context.getResult(), jobException );
+    }
+
+    /**
+     * @return 按 pipeline 名称的统计数据
+     */
+    public Map < String, PipelineStats > getStats() {
+        Map < String, PipelineStats > result = new LinkedHashMap < String, PipelineStats >();
+        for ( Map.Entry < String, Stats > entry : stats.entrySet() ) {
+            result.put( entry.getKey(), entry.getValue().snapshot() );
+        }
+        return result;
+    }
+
+    /**
+     * @return 正在运行的次数
+     */
+    public int getActiveRuns() {
+        return runs.size();
+    }
+
+    private Run runOf( JobExecutionContext context ) {
+        String runId = runIdOf( context );
+        return runId == null ? null : runs.get( runId );
+    }
+
+    private void completed( Run run, JobExecutionContext context, Object result, JobExecutionException exception ) {
+        JobKey key = context.getJobDetail().getKey();
+        Object partition = context.getTrigger().getJobDataMap().get( PARTITION );
+        List < Launch > launches;
+        boolean finished;
+        synchronized ( run ) {
+            NodeState node = run.nodes.get( key );
+            if ( node == null ) {
+                return;
+            }
+            run.running--;
+            if ( exception != null ) {
+                if ( run.failure == null ) {
+                    run.failure = exception;
+                    run.failedNode = key;
+                }
+                run.ready.clear();
+            } else {
+                node.results[partition == null ? 0 : ( (Number) partition ).intValue()] = result;
+                if ( --node.remainingPartitions == 0 && run.failure == null ) {
+                    for ( JobKey down : node.node.getDownstream() ) {
+                        NodeState downstream = run.nodes.get( down );
+                        if ( --downstream.remainingUpstream == 0 ) {
+                            run.enqueue( downstream.node );
+                        }
+                    }
+                }
+            }
+            launches = run.poll();
+            finished = launches.isEmpty() && run.running == 0 && run.ready.isEmpty();
+        }
+        if ( finished ) {
+            finish( run );
+        } else {
+            launch( run, launches );
+        }
+    }
+
+    private void launch( Run run, List < Launch > launches ) {
+        for ( int i = 0; i < launches.size(); i++ ) {
+            Launch launch = launches.get( i );
+            JobDataMap data = new JobDataMap( run.parameters );
+            data.put( RUN_ID, run.id );
+            data.put( PIPELINE, run.pipeline.getName() );
+            if ( launch.node.getPartitions() > 1 ) {
+                data.put( PARTITION, launch.partition );
+                data.put( PARTITIONS, launch.node.getPartitions() );
+            }
+            boolean failed;
+            boolean finished = false;
+            synchronized ( run ) {
+                // 已经有节点失败（包括本次循环中触发失败的节点），不再触发剩下的节点，归还它们占用的并发数
+                failed = run.failure != null;
+                if ( failed ) {
+                    run.running -= launches.size() - i;
+                    finished = run.running == 0;
+                } else {
+                    for ( JobKey up : launch.node.getUpstream() ) {
+                        data.put( RESULT_PREFIX + up, run.nodes.get( up ).result() );
+                    }
+                }
+            }
+            if ( failed ) {
+                if ( finished ) {
+                    finish( run );
+                }
+                return;
+            }
+            try {
+                scheduler.triggerJob( launch.node.getKey(), data );
+            } catch ( SchedulerException e ) {
+                LOG.error( "Failed to trigger " + launch.node.getKey() + " of pipeline " + run.pipeline.getName(), e );
+                // 按失败处理，与执行失败走同样的路径
+                failedToLaunch( run, launch, new JobExecutionException( e ) );
+            }
+        }
+    }
+
+    private void failedToLaunch( Run run, Launch launch, JobExecutionException exception ) {
+        boolean finished;
+        synchronized ( run ) {
+            run.running--;
+            if ( run.failure == null ) {
+                run.failure = exception;
+                run.failedNode = launch.node.getKey();
+            }
+            run.ready.clear();
+            finished = run.running == 0;
+        }
+        if ( finished ) {
+            finish( run );
+        }
+    }
+
+    /**
+     * 不等待正在执行的节点，立即以失败结束运行
+     */
+    private void abort( Run run, JobKey node, String message ) {
+        synchronized ( run ) {
+            if ( run.failure == null ) {
+                run.failure = new JobExecutionException( message );
+                run.failedNode = node;
+            }
+            run.ready.clear();
+        }
+        finish( run );
+    }
+
+    private void finish( Run run ) {
+        if ( runs.remove( run.id ) == null ) {
+            return;
+        }
+        long latency = System.currentTimeMillis() - run.startTime;
+        Stats s = stats( run.pipeline.getName() );
+        s.latency.record( latency );
+        PipelineResult result;
+        synchronized ( run ) {
+            Map < JobKey, Object > results = new LinkedHashMap < JobKey, Object >();
+            for ( NodeState node : run.nodes.values() ) {
+                if ( node.remainingPartitions == 0 ) {
+                    results.put( node.node.getKey(), node.result() );
+                }
+            }
+            result = new PipelineResult( run.id, run.pipeline.getName(), latency, results, run.failedNode,
+                    run.failure );
+        }
+        if ( result.isSuccess() ) {
+            s.succeeded.incrementAndGet();
+            LOG.info( "Pipeline {} run {} completed in {}ms", run.pipeline.getName(), run.id, latency );
+        } else {
+            s.failed.incrementAndGet();
+            LOG.warn( "Pipeline {} run {} failed at {} after {}ms: {}", run.pipeline.getName(), run.id,
+                    run.failedNode, latency, run.failure.getMessage() );
+        }
+        run.future.complete( result );
+    }
+
+    private Stats stats( String pipeline ) {
+        Stats s = stats.get( pipeline );
+        if ( s == null ) {
+            Stats created = new Stats();
+            s = stats.putIfAbsent( pipeline, created );
+            if ( s == null ) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * 一次运行，除 future 外只在 synchronized ( run ) 内访问
+     */
+    private static final class Run {
+
+        final String                               id;
+        final JobPipeline                          pipeline;
+        final JobDataMap                           parameters;
+        final long                                 startTime = System.currentTimeMillis();
+        final Map < JobKey, NodeState >            nodes     = new HashMap < JobKey, NodeState >();
+        /** 就绪、等待触发的分区，按就绪的顺序 */
+        final ArrayDeque < Launch >                ready     = new ArrayDeque < Launch >();
+        final CompletableFuture < PipelineResult > future    = new CompletableFuture < PipelineResult >();
+        int                                        running;
+        JobKey                                     failedNode;
+        JobExecutionException                      failure;
+
+        Run( String id, JobPipeline pipeline, JobDataMap parameters ) {
+            this.id = id;
+            this.pipeline = pipeline;
+            this.parameters = parameters;
+            for ( JobPipeline.Node node : pipeline.getNodes() ) {
+                nodes.put( node.getKey(), new NodeState( node ) );
+            }
+        }
+
+        void enqueue( JobPipeline.Node node ) {
+            for ( int i = 0; i < node.getPartitions(); i++ ) {
+                ready.add( new Launch( node, i ) );
+            }
+        }
+
+        /**
+         * @return 在 maxParallelism 之内可以触发的分区，计入 running
+         */
+        List < Launch > poll() {
+            List < Launch > launches = new ArrayList < Launch >();
+            while ( running < pipeline.getMaxParallelism() && !ready.isEmpty() ) {
+                launches.add( ready.poll() );
+                running++;
+            }
+            return launches;
+        }
+    }
+
+    private static final class NodeState {
+
+        final JobPipeline.Node node;
+        final Object[]         results;
+        int                    remainingUpstream;
+        int                    remainingPartitions;
+
+        NodeState( JobPipeline.Node node ) {
+            this.node = node;
+            this.results = new Object[node.getPartitions()];
+            this.remainingUpstream = node.getUpstream().size();
+            this.remainingPartitions = node.getPartitions();
+        }
+
+        Object result() {
+            return node.getPartitions() == 1 ? results[0]
+                    : Collections.unmodifiableList( new ArrayList < Object >( Arrays.asList( results ) ) );
+        }
+    }
+
+    private static final class Launch {
+
+        final JobPipeline.Node node;
+        final int              partition;
+
+        Launch( JobPipeline.Node node, int partition ) {
+            this.node = node;
+            this.partition = partition;
+        }
+    }
+
+    private static final class Stats {
+
+        final AtomicLong started   = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed    = new AtomicLong();
+        final Histogram  latency   = new Histogram( HIGHEST_MILLIS, PRECISION_BITS );
+
+        PipelineStats snapshot() {
+            return new PipelineStats( started.get(), succeeded.get(), failed.get(), latency.snapshot() );
+        }
+    }
+
+    /**
+     * 一个 pipeline 的统计数据副本
+     */
+    public static class PipelineStats {
+
+        private final long               started;
+        private final long               succeeded;
+        private final long               failed;
+        private final Histogram.Snapshot latency;
+
+        PipelineStats( long started, long succeeded, long failed, Histogram.Snapshot latency ) {
+            this.started = started;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.latency = latency;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return 结束的运行从 start 到最后一个节点完成的时间（毫秒）
+         */
+        public Histogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "started=" + started + " succeeded=" + succeeded + " failed=" + failed + " latency=" + latency;
+        }
+    }
+}
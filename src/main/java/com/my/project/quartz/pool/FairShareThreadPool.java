@@ -0,0 +1,707 @@
+package com.my.project.quartz.pool;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.SchedulerConfigException;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.core.JobRunShell;
+import org.quartz.core.QuartzScheduler;
+import org.quartz.spi.OperableTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.my.project.metrics.Histogram;
+
+/**
+ * 按 Job 分组加权公平调度的 Quartz ThreadPool
+ *
+ * <pre>
+ * SimpleThreadPool 按 runInThread 的先后顺序执行，一个分组突发大量触发时会占满所有线程，
+ * 其他分组的 Job 只能排在后面，触发延迟不断增大。
+ *
+ * 本类在 Trigger 获取和工作线程之间加一层按分组的队列：
+ *   - runInThread 按 JobRunShell 中 JobDetail 的分组放入对应的队列，立即返回；
+ *   - 工作线程按赤字轮询（Deficit Round Robin）从各分组取任务：每一轮分组的额度增加 weight，
+ *     每执行一个任务消耗 1，额度用完或队列为空时轮到下一个分组，所以积压时各分组执行的任务数与权重成正比；
+ *   - 正在执行的任务数达到分组并发上限（maxConcurrency）的分组本轮跳过，不占用其他分组的线程；
+ *   - blockForAvailableThreads 返回空闲线程数与队列剩余容量之和，队列满时阻塞调度线程。
+ *
+ * 进入队列的 Trigger 对 JobStore 来说已经触发，不会再判定为 misfire，排队时间由分组的统计记录：
+ *   - queueLag：从 runInThread 到开始执行的时间；
+ *   - fireLag：从 Trigger 计划触发时间到开始执行的时间。
+ * 用 getGroupStats 查看，偏斜负载下两者在低负载分组上应当保持很小。
+ *
+ * 在 quartz.properties 中配置：
+ *   org.quartz.threadPool.class = com.my.project.quartz.pool.FairShareThreadPool
+ *   org.quartz.threadPool.threadCount = 3
+ *   org.quartz.threadPool.queueCapacity = 100
+ *   org.quartz.threadPool.groupWeights = myJobGroup=1,myJobCronGroup=3
+ *   org.quartz.threadPool.groupMaxConcurrency = myJobGroup=2
+ *
+ * 没有配置的分组权重为 defaultWeight（默认 1），并发上限为 threadCount。
+ *
+ * recycle 放弃卡住的工作线程时，它占用的分组并发数立即归还，并启动一个新的工作线程代替它；
+ * 被放弃的线程执行完当前的 Job 后退出。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class FairShareThreadPool implements RecyclableThreadPool {
+
+    private static final Logger         LOG                = LoggerFactory.getLogger( FairShareThreadPool.class );
+    /** 统计的最大延迟：1 小时（微秒） */
+    private static final long           MAX_LAG_MICROS     = TimeUnit.HOURS.toMicros( 1 );
+    private static final Field          JEC_FIELD          = shellField( "jec" );
+    private static final Field          QS_FIELD           = shellField( "qs" );
+    private static final Method         JOB_VETOED         = jobVetoedMethod();
+
+    private int                         threadCount        = -1;
+    private int                         queueCapacity      = -1;
+    private int                         threadPriority     = Thread.NORM_PRIORITY;
+    private boolean                     makeThreadsDaemons = false;
+    private String                      threadNamePrefix;
+    private String                      instanceName       = "QuartzScheduler";
+    private int                         defaultWeight      = 1;
+    private Map < String, Integer >     weights            = Collections.emptyMap();
+    private Map < String, Integer >     maxConcurrency     = Collections.emptyMap();
+
+    private final ReentrantLock         lock               = new ReentrantLock();
+    /** 有新任务或有任务结束（分组并发数减少）时唤醒工作线程 */
+    private final Condition             workAvailable      = lock.newCondition();
+    /** 有空位时唤醒调度线程 */
+    private final Condition             slotAvailable      = lock.newCondition();
+    private final Map < String, Group > groups             = new LinkedHashMap < String, Group >();
+    /** 有任务排队的分组，队首是当前轮到的分组 */
+    private final ArrayDeque < Group >  active             = new ArrayDeque < Group >();
+    /** 没有被放弃的工作线程 */
+    private final List < Worker >       workers            = new ArrayList < Worker >();
+    private String                      workerNamePrefix;
+    private int                         workerSequence;
+    private long                        recycled;
+    /** 排队和正在执行的任务数 */
+    private int                         occupied;
+    private int                         running;
+    private boolean                     shutdown;
+    private boolean                     drainOnShutdown;
+
+    public void setThreadCount( int threadCount ) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * 所有分组共用的排队任务数上限，默认为 threadCount 的 10 倍
+     */
+    public void setQueueCapacity( int queueCapacity ) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setThreadPriority( int threadPriority ) {
+        this.threadPriority = threadPriority;
+    }
+
+    public void setMakeThreadsDaemons( boolean makeThreadsDaemons ) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    public void setThreadNamePrefix( String threadNamePrefix ) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    /**
+     * 没有在 groupWeights 中配置的分组的权重
+     */
+    public void setDefaultWeight( int defaultWeight ) {
+        this.defaultWeight = defaultWeight;
+    }
+
+    /**
+     * 分组权重，格式为 group=weight,group=weight，权重为正整数
+     */
+    public void setGroupWeights( String groupWeights ) {
+        this.weights = parse( "groupWeights", groupWeights );
+    }
+
+    /**
+     * 分组同时执行的任务数上限，格式同 groupWeights
+     */
+    public void setGroupMaxConcurrency( String groupMaxConcurrency ) {
+        this.maxConcurrency = parse( "groupMaxConcurrency", groupMaxConcurrency );
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threadCount;
+    }
+
+    @Override
+    public void setInstanceId( String schedInstId ) {
+    }
+
+    @Override
+    public void setInstanceName( String schedName ) {
+        this.instanceName = schedName;
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if ( threadCount <= 0 ) {
+            throw new SchedulerConfigException( "Thread count must be > 0" );
+        }
+        if ( threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY ) {
+            throw new SchedulerConfigException( "Thread priority must be > 0 and <= 10" );
+        }
+        if ( defaultWeight <= 0 ) {
+            throw new SchedulerConfigException( "Default weight must be > 0" );
+        }
+        if ( queueCapacity < 0 ) {
+            queueCapacity = threadCount * 10;
+        }
+        for ( Map.Entry < String, Integer > e : weights.entrySet() ) {
+            if ( e.getValue() <= 0 ) {
+                throw new SchedulerConfigException( "Weight of group '" + e.getKey() + "' must be > 0" );
+            }
+        }
+        for ( Map.Entry < String, Integer > e : maxConcurrency.entrySet() ) {
+            if ( e.getValue() <= 0 ) {
+                throw new SchedulerConfigException( "Max concurrency of group '" + e.getKey() + "' must be > 0" );
+            }
+        }
+        if ( JEC_FIELD == null ) {
+            LOG.warn( "Cannot read the job group from JobRunShell, all jobs share the DEFAULT group" );
+        }
+
+        workerNamePrefix = threadNamePrefix != null ? threadNamePrefix : instanceName + "_FairWorker";
+        lock.lock();
+        try {
+            for ( int i = 0; i < threadCount; i++ ) {
+                startWorker();
+            }
+        } finally {
+            lock.unlock();
+        }
+        ThreadPoolRegistry.register( instanceName, this );
+    }
+
+    @Override
+    public boolean runInThread( Runnable runnable ) {
+        if ( runnable == null ) {
+            return false;
+        }
+        JobExecutionContext context = contextOf( runnable );
+        String groupName = context != null ? context.getJobDetail().getKey().getGroup() : JobKey.DEFAULT_GROUP;
+        long scheduledFireTime = context != null && context.getScheduledFireTime() != null
+                ? context.getScheduledFireTime().getTime() : 0;
+
+        lock.lock();
+        try {
+            while ( occupied >= threadCount + queueCapacity && !shutdown ) {
+                slotAvailable.awaitUninterruptibly();
+            }
+            if ( shutdown ) {
+                return false;
+            }
+            Group group = group( groupName );
+            group.queue.addLast( new Task( runnable, System.nanoTime(), scheduledFireTime ) );
+            group.peakQueued = Math.max( group.peakQueued, group.queue.size() );
+            if ( !group.active ) {
+                group.active = true;
+                active.addLast( group );
+            }
+            occupied++;
+            workAvailable.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        lock.lock();
+        try {
+            while ( occupied >= threadCount + queueCapacity && !shutdown ) {
+                slotAvailable.awaitUninterruptibly();
+            }
+            return Math.max( 0, threadCount + queueCapacity - occupied );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * waitForJobsToComplete 为 true 时执行完已经排队的任务，否则丢弃排队的任务，只等待正在执行的任务
+     */
+    @Override
+    public void shutdown( boolean waitForJobsToComplete ) {
+        ThreadPoolRegistry.unregister( instanceName, this );
+        List < Task > dropped = new ArrayList < Task >();
+        List < Worker > toJoin;
+        lock.lock();
+        try {
+            toJoin = new ArrayList < Worker >( workers );
+            shutdown = true;
+            drainOnShutdown = waitForJobsToComplete;
+            if ( !waitForJobsToComplete ) {
+                for ( Group group : active ) {
+                    occupied -= group.queue.size();
+                    dropped.addAll( group.queue );
+                    group.queue.clear();
+                    group.active = false;
+                }
+                active.clear();
+            }
+            workAvailable.signalAll();
+            slotAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if ( !dropped.isEmpty() ) {
+            LOG.warn( "Dropped {} queued jobs on shutdown", dropped.size() );
+            for ( Task task : dropped ) {
+                veto( task.runnable );
+            }
+        }
+        if ( waitForJobsToComplete ) {
+            for ( Worker worker : toJoin ) {
+                try {
+                    worker.thread.join();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if ( LOG.isInfoEnabled() ) {
+            for ( GroupStats stats : getGroupStats().values() ) {
+                LOG.info( "Group stats on shutdown: {}", stats );
+            }
+        }
+    }
+
+    /**
+     * 放弃卡住的工作线程：归还它占用的容量，启动新的工作线程代替它
+     */
+    @Override
+    public boolean recycle( Thread thread ) {
+        lock.lock();
+        try {
+            for ( Worker worker : workers ) {
+                if ( worker.thread == thread ) {
+                    if ( worker.current == null ) {
+                        return false;
+                    }
+                    worker.retired = true;
+                    workers.remove( worker );
+                    finished( worker.current );
+                    worker.current = null;
+                    recycled++;
+                    if ( !shutdown ) {
+                        startWorker();
+                    }
+                    LOG.warn( "Abandoned stuck thread {}, started a replacement", thread.getName() );
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getRecycledCount() {
+        lock.lock();
+        try {
+            return recycled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 正在执行的任务数
+     */
+    public int getBusyCount() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 所有分组排队的任务数
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return occupied - running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 各分组当前的统计，按分组第一次出现的顺序
+     */
+    public Map < String, GroupStats > getGroupStats() {
+        Map < String, GroupStats > stats = new LinkedHashMap < String, GroupStats >();
+        lock.lock();
+        try {
+            for ( Group group : groups.values() ) {
+                stats.put( group.name, new GroupStats( group ) );
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    /**
+     * 按赤字轮询选出下一个任务，调用时持有 lock
+     *
+     * @return 没有可执行的任务（队列为空或有任务的分组都达到并发上限）时返回 null
+     */
+    private Task next() {
+        int skipped = 0;
+        while ( !active.isEmpty() && skipped < active.size() ) {
+            Group group = active.peekFirst();
+            if ( group.queue.isEmpty() ) {
+                // 队列空了，分组退出本轮，剩余额度不保留，避免空闲后积累额度突发
+                active.pollFirst();
+                group.active = false;
+                group.deficit = 0;
+                continue;
+            }
+            if ( group.running >= group.maxConcurrency ) {
+                active.addLast( active.pollFirst() );
+                skipped++;
+                continue;
+            }
+            if ( group.deficit <= 0 ) {
+                group.deficit += group.weight;
+            }
+            Task task = group.queue.pollFirst();
+            group.deficit--;
+            group.running++;
+            if ( group.deficit <= 0 ) {
+                active.addLast( active.pollFirst() );
+            }
+            task.group = group;
+            return task;
+        }
+        return null;
+    }
+
+    /**
+     * 创建并启动一个工作线程，调用时持有 lock
+     */
+    private void startWorker() {
+        Worker worker = new Worker();
+        worker.thread = new Thread( worker, workerNamePrefix + "-" + ( ++workerSequence ) );
+        worker.thread.setPriority( threadPriority );
+        worker.thread.setDaemon( makeThreadsDaemons );
+        workers.add( worker );
+        worker.thread.start();
+    }
+
+    /**
+     * 任务结束或被放弃，归还分组并发数和队列空位，调用时持有 lock
+     */
+    private void finished( Task task ) {
+        task.group.running--;
+        running--;
+        occupied--;
+        // 分组的并发数减少后，被跳过的任务可能可以执行了
+        workAvailable.signal();
+        slotAvailable.signal();
+    }
+
+    private Group group( String name ) {
+        Group group = groups.get( name );
+        if ( group == null ) {
+            Integer weight = weights.get( name );
+            Integer max = maxConcurrency.get( name );
+            group = new Group( name, weight != null ? weight : defaultWeight,
+                    max != null ? Math.min( max, threadCount ) : threadCount );
+            groups.put( name, group );
+        }
+        return group;
+    }
+
+    private static JobExecutionContext contextOf( Runnable runnable ) {
+        if ( JEC_FIELD == null || !( runnable instanceof JobRunShell ) ) {
+            return null;
+        }
+        try {
+            return (JobExecutionContext) JEC_FIELD.get( runnable );
+        } catch ( IllegalAccessException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * <pre>
+     * 按 JobRunShell 被 TriggerListener 否决时的流程结束被丢弃的任务：
+     * 由 Trigger 决定完成指令并通知 JobStore，否则 Trigger 会一直停留在已获取状态，
+     * 有状态 Job 的其他 Trigger 也会一直被阻塞
+     * </pre>
+     */
+    private static void veto( Runnable runnable ) {
+        JobExecutionContext context = contextOf( runnable );
+        if ( context == null || QS_FIELD == null || JOB_VETOED == null ) {
+            LOG.warn( "Cannot complete dropped job {}, its trigger stays acquired in the JobStore", runnable );
+            return;
+        }
+        OperableTrigger trigger = (OperableTrigger) context.getTrigger();
+        try {
+            CompletedExecutionInstruction instCode = trigger.executionComplete( context, null );
+            JOB_VETOED.invoke( QS_FIELD.get( runnable ), trigger, context.getJobDetail(), instCode );
+        } catch ( Exception e ) {
+            LOG.error( "Failed to complete dropped job {} fired by {}", context.getJobDetail().getKey(),
+                    trigger.getKey(), e );
+        } finally {
+            ( (JobRunShell) runnable ).passivate();
+        }
+    }
+
+    /**
+     * QuartzScheduler.notifyJobStoreJobVetoed 是受保护方法，JobRunShell 在同一个包中才能直接调用
+     */
+    private static Method jobVetoedMethod() {
+        try {
+            Method method = QuartzScheduler.class.getDeclaredMethod( "notifyJobStoreJobVetoed", OperableTrigger.class,
+                    JobDetail.class, CompletedExecutionInstruction.class );
+            method.setAccessible( true );
+            return method;
+        } catch ( Exception e ) {
+            return null;
+        }
+    }
+
+    /**
+     * JobRunShell 没有公开执行上下文和调度器，initialize 之后它们保存在受保护字段 jec 和 qs 中
+     */
+    private static Field shellField( String name ) {
+        try {
+            Field field = JobRunShell.class.getDeclaredField( name );
+            field.setAccessible( true );
+            return field;
+        } catch ( Exception e ) {
+            return null;
+        }
+    }
+
+    private static Map < String, Integer > parse( String property, String value ) {
+        Map < String, Integer > result = new HashMap < String, Integer >();
+        if ( value == null ) {
+            return result;
+        }
+        for ( String pair : value.split( "," ) ) {
+            if ( pair.trim().length() == 0 ) {
+                continue;
+            }
+            int index = pair.lastIndexOf( '=' );
+            if ( index <= 0 ) {
+                throw new IllegalArgumentException( "Invalid " + property + " entry, expected group=value: " + pair );
+            }
+            result.put( pair.substring( 0, index ).trim(), Integer.valueOf( pair.substring( index + 1 ).trim() ) );
+        }
+        return result;
+    }
+
+    private final class Worker implements Runnable {
+
+        Thread  thread;
+        /** 正在执行的任务，只在 lock 内访问 */
+        Task    current;
+        /** 已经被 recycle 放弃，只在 lock 内访问 */
+        boolean retired;
+
+        @Override
+        public void run() {
+            while ( true ) {
+                Task task;
+                lock.lock();
+                try {
+                    while ( ( task = next() ) == null ) {
+                        if ( shutdown && ( !drainOnShutdown || active.isEmpty() ) ) {
+                            workers.remove( this );
+                            return;
+                        }
+                        workAvailable.awaitUninterruptibly();
+                    }
+                    running++;
+                    current = task;
+                } finally {
+                    lock.unlock();
+                }
+
+                task.group.started( task );
+                try {
+                    task.runnable.run();
+                } catch ( Throwable t ) {
+                    LOG.error( "Error while executing the Runnable: ", t );
+                }
+
+                lock.lock();
+                try {
+                    if ( retired ) {
+                        // 容量已经在 recycle 时归还，替代的线程已经启动
+                        return;
+                    }
+                    current = null;
+                    finished( task );
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private static final class Task {
+
+        final Runnable runnable;
+        final long     enqueueNanos;
+        /** Trigger 的计划触发时间，未知时为 0 */
+        final long     scheduledFireTime;
+        Group          group;
+
+        Task( Runnable runnable, long enqueueNanos, long scheduledFireTime ) {
+            this.runnable = runnable;
+            this.enqueueNanos = enqueueNanos;
+            this.scheduledFireTime = scheduledFireTime;
+        }
+    }
+
+    /**
+     * 一个分组的队列和统计，除统计外只在 lock 内访问
+     */
+    private static final class Group {
+
+        final String              name;
+        final int                 weight;
+        final int                 maxConcurrency;
+        final ArrayDeque < Task > queue      = new ArrayDeque < Task >();
+        final Histogram           queueLag   = new Histogram( MAX_LAG_MICROS, 5 );
+        final Histogram           fireLag    = new Histogram( MAX_LAG_MICROS, 5 );
+        final AtomicLong          dispatched = new AtomicLong();
+        int                       deficit;
+        int                       running;
+        int                       peakQueued;
+        /** 是否在 active 中 */
+        boolean                   active;
+
+        Group( String name, int weight, int maxConcurrency ) {
+            this.name = name;
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        void started( Task task ) {
+            dispatched.incrementAndGet();
+            queueLag.record( TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - task.enqueueNanos ) );
+            if ( task.scheduledFireTime > 0 ) {
+                fireLag.record( TimeUnit.MILLISECONDS.toMicros( System.currentTimeMillis() - task.scheduledFireTime ) );
+            }
+        }
+    }
+
+    /**
+     * 一个分组的统计快照，延迟单位为微秒
+     */
+    public static final class GroupStats {
+
+        private final String             group;
+        private final int                weight;
+        private final int                maxConcurrency;
+        private final int                queued;
+        private final int                peakQueued;
+        private final int                running;
+        private final long               dispatched;
+        private final Histogram.Snapshot queueLag;
+        private final Histogram.Snapshot fireLag;
+
+        GroupStats( Group group ) {
+            this.group = group.name;
+            this.weight = group.weight;
+            this.maxConcurrency = group.maxConcurrency;
+            this.queued = group.queue.size();
+            this.peakQueued = group.peakQueued;
+            this.running = group.running;
+            this.dispatched = group.dispatched.get();
+            this.queueLag = group.queueLag.snapshot();
+            this.fireLag = group.fireLag.snapshot();
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getPeakQueued() {
+            return peakQueued;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public long getDispatched() {
+            return dispatched;
+        }
+
+        /**
+         * @return 从进入队列到开始执行的时间（微秒）
+         */
+        public Histogram.Snapshot getQueueLag() {
+            return queueLag;
+        }
+
+        /**
+         * @return 从计划触发时间到开始执行的时间（微秒）
+         */
+        public Histogram.Snapshot getFireLag() {
+            return fireLag;
+        }
+
+        @Override
+        public String toString() {
+            return group + "[weight=" + weight + ", maxConcurrency=" + maxConcurrency + ", queued=" + queued
+                    + ", peakQueued=" + peakQueued + ", running=" + running + ", dispatched=" + dispatched
+                    + ", queueLag=" + queueLag + ", fireLag=" + fireLag + "]";
+        }
+    }
+}
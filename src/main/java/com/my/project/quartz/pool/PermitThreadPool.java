@@ -0,0 +1,282 @@
+package com.my.project.quartz.pool;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.quartz.SchedulerConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 用许可数实现 Quartz ThreadPool 语义的基类
+ *
+ * <pre>
+ * QuartzSchedulerThread 先调用 blockForAvailableThreads 得到空闲线程数 n，
+ * 再获取最多 n 个 Trigger，然后逐个调用 runInThread，期望每次调用都能立即执行。
+ * 本类用 threadCount 个许可表示“线程”：runInThread 占用一个许可，任务结束时归还，
+ * 子类只需要提供真正执行任务的 Executor。
+ *
+ * 归还许可只有一次原子减操作；只有在调度线程正在等待许可时才需要加锁唤醒。
+ *
+ * recycle 放弃一个卡住的线程时立即归还它的许可，Job 结束时不再重复归还。
+ * 许可归还后能否真正多执行一个 Job 取决于 Executor：VirtualThreadPool 每个 Job 一个新线程，
+ * WorkStealingThreadPool 的 ForkJoinPool 线程数固定，卡住的 worker 仍然减少了并行度。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public abstract class PermitThreadPool implements RecyclableThreadPool {
+
+    private static final Logger                                   LOG             = LoggerFactory
+                                                                                          .getLogger( PermitThreadPool.class );
+    private static final AtomicIntegerFieldUpdater < PermitTask > PERMIT_RELEASED = AtomicIntegerFieldUpdater
+                                                                                          .newUpdater( PermitTask.class,
+                                                                                                  "permitReleased" );
+
+    private int                                                   threadCount     = -1;
+    private String                                                instanceName    = "QuartzScheduler";
+    private final AtomicInteger                                   busy            = new AtomicInteger();
+    private final ReentrantLock                                   lock            = new ReentrantLock();
+    private final Condition                                       released        = lock.newCondition();
+    /** 正在执行的任务，用于按线程放弃任务 */
+    private final ConcurrentMap < Thread, PermitTask >            running         = new ConcurrentHashMap < Thread, PermitTask >();
+    private final AtomicLong                                      recycled        = new AtomicLong();
+    /** 正在等待许可的线程数，只在 lock 内修改 */
+    private volatile int                                          waiters;
+    private volatile boolean                                      shutdown;
+
+    public void setThreadCount( int threadCount ) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threadCount;
+    }
+
+    /**
+     * @return 正在执行的任务数
+     */
+    public int getBusyCount() {
+        return busy.get();
+    }
+
+    @Override
+    public void setInstanceId( String schedInstId ) {
+    }
+
+    @Override
+    public void setInstanceName( String schedName ) {
+        this.instanceName = schedName;
+    }
+
+    protected String getInstanceName() {
+        return instanceName;
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if ( threadCount <= 0 ) {
+            throw new SchedulerConfigException( "Thread count must be > 0" );
+        }
+        start();
+        ThreadPoolRegistry.register( instanceName, this );
+    }
+
+    /**
+     * 创建执行任务的 Executor
+     */
+    protected abstract void start() throws SchedulerConfigException;
+
+    /**
+     * 在 Executor 中执行任务，调用时已经占用了许可
+     */
+    protected abstract void execute( Runnable task );
+
+    /**
+     * 关闭 Executor，waitForJobsToComplete 为 true 时等待正在执行的任务结束
+     */
+    protected abstract void stop( boolean waitForJobsToComplete );
+
+    @Override
+    public boolean runInThread( Runnable runnable ) {
+        if ( runnable == null || !acquire() ) {
+            return false;
+        }
+        try {
+            execute( new PermitTask( runnable ) );
+            return true;
+        } catch ( RejectedExecutionException e ) {
+            release();
+            LOG.warn( "Job rejected by thread pool: {}", e.getMessage() );
+            return false;
+        }
+    }
+
+    @Override
+    public int blockForAvailableThreads() {
+        if ( busy.get() >= threadCount ) {
+            await();
+        }
+        return Math.max( 0, threadCount - busy.get() );
+    }
+
+    @Override
+    public void shutdown( boolean waitForJobsToComplete ) {
+        lock.lock();
+        try {
+            shutdown = true;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        ThreadPoolRegistry.unregister( instanceName, this );
+        stop( waitForJobsToComplete );
+    }
+
+    @Override
+    public boolean recycle( Thread thread ) {
+        PermitTask task = running.remove( thread );
+        if ( task == null || !task.releasePermit() ) {
+            return false;
+        }
+        recycled.incrementAndGet();
+        LOG.warn( "Abandoned stuck thread {}, its permit has been released", thread.getName() );
+        return true;
+    }
+
+    @Override
+    public long getRecycledCount() {
+        return recycled.get();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * 等待所有任务结束
+     *
+     * @return 超时之前所有任务都已结束返回 true
+     */
+    protected boolean awaitIdle( long timeout, TimeUnit unit ) {
+        long deadline = System.nanoTime() + unit.toNanos( timeout );
+        lock.lock();
+        try {
+            waiters++;
+            try {
+                while ( busy.get() > 0 ) {
+                    long remaining = deadline - System.nanoTime();
+                    if ( remaining <= 0 ) {
+                        return false;
+                    }
+                    released.awaitNanos( remaining );
+                }
+                return true;
+            } finally {
+                waiters--;
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return busy.get() == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean acquire() {
+        while ( !shutdown ) {
+            int n = busy.get();
+            if ( n < threadCount ) {
+                if ( busy.compareAndSet( n, n + 1 ) ) {
+                    return true;
+                }
+            } else {
+                await();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 等待有许可被归还或线程池关闭
+     */
+    private void await() {
+        lock.lock();
+        try {
+            // 先登记再检查，与 release 中先归还再检查 waiters 配合，不会丢失唤醒
+            waiters++;
+            try {
+                while ( busy.get() >= threadCount && !shutdown ) {
+                    released.awaitNanos( TimeUnit.MILLISECONDS.toNanos( 500 ) );
+                }
+            } finally {
+                waiters--;
+            }
+        } catch ( InterruptedException ignore ) {
+            // 与 SimpleThreadPool 一致，调度线程的等待不响应中断
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        busy.decrementAndGet();
+        if ( waiters > 0 ) {
+            lock.lock();
+            try {
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 任务结束（包括抛出异常）时归还许可，已经被 recycle 归还的不再归还
+     */
+    private final class PermitTask implements Runnable {
+
+        private final Runnable task;
+        /** AtomicIntegerFieldUpdater 要求调用方可以访问，不能是 private */
+        volatile int           permitReleased;
+
+        PermitTask( Runnable task ) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            Thread thread = Thread.currentThread();
+            running.put( thread, this );
+            try {
+                task.run();
+            } catch ( Throwable t ) {
+                LOG.error( "Error while executing the Runnable: ", t );
+            } finally {
+                running.remove( thread, this );
+                releasePermit();
+            }
+        }
+
+        boolean releasePermit() {
+            if ( !PERMIT_RELEASED.compareAndSet( this, 0, 1 ) ) {
+                return false;
+            }
+            release();
+            return true;
+        }
+    }
+}
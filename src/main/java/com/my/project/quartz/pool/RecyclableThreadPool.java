@@ -0,0 +1,32 @@
+package com.my.project.quartz.pool;
+
+import org.quartz.spi.ThreadPool;
+
+/**
+ * 可以放弃被卡住的工作线程、恢复执行能力的 ThreadPool
+ *
+ * <pre>
+ * Java 不能安全地强制停止线程。Job 对中断没有响应时，只能让线程池不再等待它：
+ * 它占用的容量（许可、分组并发数）立即归还，必要时启动新的工作线程代替它。
+ * Job 最终结束时不再重复归还容量，线程之后是否继续使用由实现决定。
+ *
+ * 实现类在 initialize 时以调度器名称登记到 ThreadPoolRegistry，DeadlineEnforcer 据此找到线程池。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public interface RecyclableThreadPool extends ThreadPool {
+
+    /**
+     * 放弃正在执行 Job 的工作线程
+     *
+     * @return thread 不是本线程池正在执行 Job 的线程，或者已经被放弃时返回 false
+     */
+    boolean recycle( Thread thread );
+
+    /**
+     * @return 被放弃的线程数
+     */
+    long getRecycledCount();
+}
@@ -0,0 +1,41 @@
+package com.my.project.quartz.pool;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按调度器名称查找 RecyclableThreadPool
+ *
+ * <pre>
+ * Quartz 不公开调度器使用的 ThreadPool 实例（与 SchedulerRepository 按名称登记 Scheduler 相同），
+ * 线程池在 initialize 时登记、shutdown 时注销。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class ThreadPoolRegistry {
+
+    private static final ConcurrentMap < String, RecyclableThreadPool > POOLS = new ConcurrentHashMap < String, RecyclableThreadPool >();
+
+    private ThreadPoolRegistry() {
+    }
+
+    public static void register( String schedulerName, RecyclableThreadPool pool ) {
+        POOLS.put( schedulerName, pool );
+    }
+
+    /**
+     * 只有登记的仍然是 pool 时才注销，避免同名的新调度器被误删
+     */
+    public static void unregister( String schedulerName, RecyclableThreadPool pool ) {
+        POOLS.remove( schedulerName, pool );
+    }
+
+    /**
+     * @return 没有登记时返回 null
+     */
+    public static RecyclableThreadPool lookup( String schedulerName ) {
+        return POOLS.get( schedulerName );
+    }
+}
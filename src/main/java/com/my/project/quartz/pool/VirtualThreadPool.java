@@ -0,0 +1,67 @@
+package com.my.project.quartz.pool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.SchedulerConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 每个 Job 一个虚拟线程的 Quartz ThreadPool
+ *
+ * <pre>
+ * HelloJob 这类阻塞在 I/O 上的 Job 会占住平台线程，threadCount 决定了能同时阻塞的 Job 数。
+ * 虚拟线程阻塞时只占用很少的内存，不占用操作系统线程，threadCount 可以设置到数千甚至更多，
+ * 它只用来限制并发执行的 Job 数（blockForAvailableThreads 返回的剩余许可数）。
+ *
+ * 虚拟线程需要 Java 21，VirtualThreads 以多版本 jar 的方式提供；在 Java 8 ~ 20 上
+ * （或者直接从 target/classes 运行时）退化为复用平台线程的线程池。
+ *
+ * 在 quartz.properties 中配置：
+ *   org.quartz.threadPool.class = com.my.project.quartz.pool.VirtualThreadPool
+ *   org.quartz.threadPool.threadCount = 5000
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class VirtualThreadPool extends PermitThreadPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger( VirtualThreadPool.class );
+
+    private String              threadNamePrefix;
+    private ExecutorService     executor;
+
+    public void setThreadNamePrefix( String threadNamePrefix ) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    @Override
+    protected void start() throws SchedulerConfigException {
+        String prefix = threadNamePrefix != null ? threadNamePrefix : getInstanceName() + "_VirtualWorker";
+        executor = VirtualThreads.newThreadPerTaskExecutor( prefix );
+        if ( !VirtualThreads.isSupported() ) {
+            LOG.warn( "Virtual threads are not available on Java {}, falling back to platform threads",
+                    System.getProperty( "java.version" ) );
+        }
+    }
+
+    @Override
+    protected void execute( Runnable task ) {
+        executor.execute( task );
+    }
+
+    @Override
+    protected void stop( boolean waitForJobsToComplete ) {
+        if ( executor == null ) {
+            return;
+        }
+        executor.shutdown();
+        if ( waitForJobsToComplete ) {
+            while ( !awaitIdle( 1, TimeUnit.SECONDS ) ) {
+                LOG.debug( "Waiting for {} jobs to complete", getBusyCount() );
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.my.project.quartz.pool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 创建“每个任务一个线程”的 Executor
+ *
+ * <pre>
+ * 这是 Java 8 的版本：没有虚拟线程，使用可以复用平台线程的 cachedThreadPool。
+ * Java 21 的版本在 src/main/java21 中，打包为多版本 jar（META-INF/versions/21），
+ * 在 Java 21 及以上运行时自动替换本类，每个任务使用一个虚拟线程。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return 当前运行时是否使用虚拟线程
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    public static ExecutorService newThreadPerTaskExecutor( final String namePrefix ) {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool( new ThreadFactory() {
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, namePrefix + "-" + counter.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+}
@@ -0,0 +1,119 @@
+package com.my.project.quartz.pool;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.quartz.SchedulerConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于 ForkJoinPool 的 Quartz ThreadPool
+ *
+ * <pre>
+ * SimpleThreadPool 的所有 worker 通过同一把锁交接任务；ForkJoinPool 每个 worker 有自己的任务队列，
+ * 空闲的 worker 从其他队列窃取任务，Job 内部 fork 的子任务（ForkJoinTask）也在同一个池中并行执行。
+ * 并发执行的 Job 数由许可严格限制为 threadCount，blockForAvailableThreads 返回的就是剩余许可数。
+ *
+ * 在 quartz.properties 中配置：
+ *   org.quartz.threadPool.class = com.my.project.quartz.pool.WorkStealingThreadPool
+ *   org.quartz.threadPool.threadCount = 8
+ *
+ * 长时间阻塞（I/O）的 Job 仍然会占住 worker，这类 Job 应该使用 VirtualThreadPool。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class WorkStealingThreadPool extends PermitThreadPool {
+
+    private static final Logger LOG                                  = LoggerFactory
+                                                                             .getLogger( WorkStealingThreadPool.class );
+
+    private int                 threadPriority                       = Thread.NORM_PRIORITY;
+    private boolean             makeThreadsDaemons                   = true;
+    private String              threadNamePrefix;
+    private boolean             threadsInheritContextClassLoaderOfInitializingThread;
+    private ForkJoinPool        pool;
+
+    public void setThreadPriority( int threadPriority ) {
+        this.threadPriority = threadPriority;
+    }
+
+    public void setMakeThreadsDaemons( boolean makeThreadsDaemons ) {
+        this.makeThreadsDaemons = makeThreadsDaemons;
+    }
+
+    public void setThreadNamePrefix( String threadNamePrefix ) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+    public void setThreadsInheritContextClassLoaderOfInitializingThread( boolean inherit ) {
+        this.threadsInheritContextClassLoaderOfInitializingThread = inherit;
+    }
+
+    /**
+     * @return 窃取任务的次数，用于观察负载是否均衡
+     */
+    public long getStealCount() {
+        return pool == null ? 0 : pool.getStealCount();
+    }
+
+    @Override
+    protected void start() throws SchedulerConfigException {
+        if ( threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY ) {
+            throw new SchedulerConfigException( "Thread priority must be > 0 and <= 10" );
+        }
+        final String prefix = threadNamePrefix != null ? threadNamePrefix : getInstanceName() + "_FJWorker";
+        final ClassLoader contextClassLoader = threadsInheritContextClassLoaderOfInitializingThread
+                ? Thread.currentThread().getContextClassLoader() : null;
+        final AtomicInteger counter = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+            @Override
+            public ForkJoinWorkerThread newThread( ForkJoinPool pool ) {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread( pool ) {
+                };
+                thread.setName( prefix + "-" + counter.incrementAndGet() );
+                thread.setPriority( threadPriority );
+                thread.setDaemon( makeThreadsDaemons );
+                if ( contextClassLoader != null ) {
+                    thread.setContextClassLoader( contextClassLoader );
+                }
+                return thread;
+            }
+        };
+        // asyncMode：worker 按 FIFO 处理自己队列中的任务，适合事件式的任务而不是递归分解
+        pool = new ForkJoinPool( getThreadCount(), factory, new Thread.UncaughtExceptionHandler() {
+
+            @Override
+            public void uncaughtException( Thread t, Throwable e ) {
+                LOG.error( "Uncaught exception in " + t.getName(), e );
+            }
+        }, true );
+    }
+
+    @Override
+    protected void execute( Runnable task ) {
+        pool.execute( task );
+    }
+
+    @Override
+    protected void stop( boolean waitForJobsToComplete ) {
+        if ( pool == null ) {
+            return;
+        }
+        pool.shutdown();
+        if ( waitForJobsToComplete ) {
+            try {
+                while ( !pool.awaitTermination( 1, TimeUnit.SECONDS ) ) {
+                    LOG.debug( "Waiting for {} jobs to complete", getBusyCount() );
+                }
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
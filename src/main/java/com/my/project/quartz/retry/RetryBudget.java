@@ -0,0 +1,57 @@
+package com.my.project.quartz.retry;
+
+/**
+ * 一个 Job 分组的重试预算（令牌桶）
+ *
+ * <pre>
+ * 每次重试消耗一个令牌，令牌按 refillPerSecond 的速度补充，最多 capacity 个。
+ * 下游故障时整个分组的 Job 同时失败，预算限制了重试产生的额外负载：
+ * 令牌用完后新的失败不再重试，直接按重试耗尽处理。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class RetryBudget {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double       tokens;
+    private long         lastRefillNanos;
+
+    /**
+     * @param capacity 最多积累的令牌数，即允许的突发重试数
+     * @param refillPerSecond 每秒补充的令牌数，即长期允许的重试速率
+     */
+    public RetryBudget( int capacity, double refillPerSecond ) {
+        if ( capacity <= 0 || refillPerSecond < 0 ) {
+            throw new IllegalArgumentException( "Invalid retry budget: capacity=" + capacity + ", refillPerSecond="
+                    + refillPerSecond );
+        }
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1e9;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * @return 有令牌时消耗一个并返回 true
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min( capacity, tokens + ( now - lastRefillNanos ) * refillPerNano );
+        lastRefillNanos = now;
+        if ( tokens < 1 ) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * @return 当前剩余的令牌数（不含尚未补充的部分）
+     */
+    public synchronized double getAvailable() {
+        return tokens;
+    }
+}
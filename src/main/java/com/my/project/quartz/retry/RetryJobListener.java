@@ -0,0 +1,340 @@
+package com.my.project.quartz.retry;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
+import org.quartz.JobListener;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.matchers.EverythingMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Job 失败后按退避策略重试的 JobListener
+ *
+ * <pre>
+ * Job 抛出 JobExecutionException 时，Quartz 只能立即重新执行（refireImmediately，占着工作线程反复失败），
+ * 或者由监听器自行处理。本类为失败的执行注册一个一次性的 SimpleTrigger，在退避时间之后再执行，
+ * 等待期间不占用任何线程：
+ *   - 策略来自 setPolicy( jobKey, policy )、setDefaultPolicy，或者 Job 类上的 @RetryOnFailure；
+ *   - 已经执行的次数保存在重试 Trigger 的 JobDataMap（ATTEMPT）中，与 Trigger 一起持久化，
+ *     使用 JournalingJobStore 等持久化的 JobStore 时重启后继续计数；
+ *   - 重试 Trigger 复制原 Trigger 的 JobDataMap，misfire 时立即执行；
+ *   - 分组设置了 RetryBudget 时，每次重试消耗一个令牌，令牌用完不再重试；
+ *   - Job 自己设置了 refireImmediately 时不重复处理。
+ *
+ * 注册在其他 JobListener 之前，它们可以用 isRetryScheduled 判断本次失败是否已经安排了重试：
+ *   RetryJobListener retries = new RetryJobListener();
+ *   retries.setGroupBudget( "myJobGroup", new RetryBudget( 10, 1 ) );
+ *   retries.register( scheduler );
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class RetryJobListener implements JobListener {
+
+    /** 重试 Trigger 的 JobDataMap 中已经执行的次数 */
+    public static final String                          ATTEMPT         = "retryAttempt";
+    /** 重试 Trigger 的 JobDataMap 中第一次执行的计划触发时间 */
+    public static final String                          FIRST_FIRE_TIME = "retryFirstFireTime";
+    /** 重试 Trigger 所在的分组 */
+    public static final String                          TRIGGER_GROUP   = "RETRY";
+
+    private static final Logger                         LOG             = LoggerFactory.getLogger( RetryJobListener.class );
+    /** 放在 JobExecutionContext 中，值为安排的重试 Trigger */
+    private static final String                         RETRY_TRIGGER   = RetryJobListener.class.getName() + ".trigger";
+
+    private final String                                name;
+    private final ConcurrentMap < JobKey, RetryPolicy > policies        = new ConcurrentHashMap < JobKey, RetryPolicy >();
+    private final ClassValue < RetryPolicy >            annotated       = new AnnotatedPolicy();
+    private final ConcurrentMap < String, RetryBudget > budgets         = new ConcurrentHashMap < String, RetryBudget >();
+    private final ConcurrentMap < String, Stats >       stats           = new ConcurrentHashMap < String, Stats >();
+    private volatile RetryPolicy                        defaultPolicy;
+
+    public RetryJobListener() {
+        this( "RetryJobListener" );
+    }
+
+    public RetryJobListener( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * 注册为所有 Job 的 JobListener
+     */
+    public void register( Scheduler scheduler ) throws SchedulerException {
+        scheduler.getListenerManager().addJobListener( this, EverythingMatcher.allJobs() );
+    }
+
+    /**
+     * 设置 Job 的重试策略，优先于 @RetryOnFailure；policy 为 null 时删除
+     */
+    public void setPolicy( JobKey key, RetryPolicy policy ) {
+        if ( policy == null ) {
+            policies.remove( key );
+        } else {
+            policies.put( key, policy );
+        }
+    }
+
+    /**
+     * 没有设置策略、也没有 @RetryOnFailure 的 Job 使用的策略，默认为 null，即不重试
+     */
+    public void setDefaultPolicy( RetryPolicy defaultPolicy ) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * 设置 Job 分组的重试预算；budget 为 null 时不限制
+     */
+    public void setGroupBudget( String group, RetryBudget budget ) {
+        if ( budget == null ) {
+            budgets.remove( group );
+        } else {
+            budgets.put( group, budget );
+        }
+    }
+
+    /**
+     * @return 本次执行失败后已经安排了重试
+     */
+    public static boolean isRetryScheduled( JobExecutionContext context ) {
+        return context.get( RETRY_TRIGGER ) != null;
+    }
+
+    /**
+     * @return 本次执行是第几次执行，从 1 开始
+     */
+    public static int getAttempt( JobExecutionContext context ) {
+        JobDataMap data = context.getTrigger().getJobDataMap();
+        return data.containsKey( ATTEMPT ) ? data.getIntValue( ATTEMPT ) : 1;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void jobToBeExecuted( JobExecutionContext context ) {
+    }
+
+    @Override
+    public void jobExecutionVetoed( JobExecutionContext context ) {
+    }
+
+    @Override
+    public void jobWasExecuted( JobExecutionContext context, JobExecutionException jobException ) {
+        JobKey key = context.getJobDetail().getKey();
+        int attempt = getAttempt( context );
+        if ( jobException == null ) {
+            if ( attempt > 1 ) {
+                stats( key.getGroup() ).recovered.incrementAndGet();
+            }
+            return;
+        }
+        if ( jobException.refireImmediately() ) {
+            return;
+        }
+        RetryPolicy policy = policyOf( context );
+        if ( policy == null ) {
+            return;
+        }
+        Stats groupStats = stats( key.getGroup() );
+        groupStats.failures.incrementAndGet();
+        if ( attempt >= policy.getMaxAttempts() ) {
+            groupStats.exhausted.incrementAndGet();
+            LOG.warn( "Job {} failed after {} attempts, giving up", key, attempt );
+            return;
+        }
+        RetryBudget budget = budgets.get( key.getGroup() );
+        if ( budget != null && !budget.tryAcquire() ) {
+            groupStats.budgetDenied.incrementAndGet();
+            LOG.warn( "Retry budget of group {} is exhausted, job {} will not be retried", key.getGroup(), key );
+            return;
+        }
+
+        long delay = policy.delayMillis( attempt, ThreadLocalRandom.current() );
+        Trigger trigger = context.getTrigger();
+        JobDataMap data = new JobDataMap( trigger.getJobDataMap() );
+        data.put( ATTEMPT, attempt + 1 );
+        if ( !data.containsKey( FIRST_FIRE_TIME ) ) {
+            Date first = context.getScheduledFireTime() != null ? context.getScheduledFireTime() : context
+                    .getFireTime();
+            data.put( FIRST_FIRE_TIME, first.getTime() );
+        }
+        Trigger retry = TriggerBuilder.newTrigger()
+                .withIdentity( context.getFireInstanceId() + "-" + ( attempt + 1 ), TRIGGER_GROUP ).forJob( key )
+                .usingJobData( data ).startAt( new Date( System.currentTimeMillis() + delay ) )
+                .withPriority( trigger.getPriority() )
+                .withSchedule( SimpleScheduleBuilder.simpleSchedule().withMisfireHandlingInstructionFireNow() )
+                .build();
+        try {
+            context.getScheduler().scheduleJob( retry );
+        } catch ( SchedulerException e ) {
+            groupStats.scheduleFailures.incrementAndGet();
+            LOG.error( "Failed to schedule retry of job " + key, e );
+            return;
+        }
+        context.put( RETRY_TRIGGER, retry );
+        groupStats.retries.incrementAndGet();
+        groupStats.backoffMillis.addAndGet( delay );
+        LOG.info( "Job {} failed (attempt {}/{}), retrying in {}ms", key, attempt, policy.getMaxAttempts(), delay );
+    }
+
+    /**
+     * @return 没有重试数据时返回 null
+     */
+    public RetryStats getGroupStats( String group ) {
+        Stats s = stats.get( group );
+        return s == null ? null : s.snapshot();
+    }
+
+    public Map < String, RetryStats > getAllGroupStats() {
+        Map < String, RetryStats > result = new HashMap < String, RetryStats >();
+        for ( Map.Entry < String, Stats > entry : stats.entrySet() ) {
+            result.put( entry.getKey(), entry.getValue().snapshot() );
+        }
+        return result;
+    }
+
+    private RetryPolicy policyOf( JobExecutionContext context ) {
+        RetryPolicy policy = policies.get( context.getJobDetail().getKey() );
+        if ( policy == null ) {
+            policy = annotated.get( context.getJobDetail().getJobClass() );
+        }
+        return policy != null ? policy : defaultPolicy;
+    }
+
+    private Stats stats( String group ) {
+        Stats s = stats.get( group );
+        if ( s == null ) {
+            Stats created = new Stats();
+            s = stats.putIfAbsent( group, created );
+            if ( s == null ) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * 读取 Job 类上的 @RetryOnFailure，每个类只解析一次
+     */
+    static class AnnotatedPolicy extends ClassValue < RetryPolicy > {
+
+        @Override
+        protected RetryPolicy computeValue( Class < ? > type ) {
+            RetryOnFailure annotation = type.getAnnotation( RetryOnFailure.class );
+            return annotation == null ? null : RetryPolicy.of( annotation );
+        }
+    }
+
+    static class Stats {
+
+        final AtomicLong failures         = new AtomicLong();
+        final AtomicLong retries          = new AtomicLong();
+        final AtomicLong recovered        = new AtomicLong();
+        final AtomicLong exhausted        = new AtomicLong();
+        final AtomicLong budgetDenied     = new AtomicLong();
+        final AtomicLong scheduleFailures = new AtomicLong();
+        final AtomicLong backoffMillis    = new AtomicLong();
+
+        RetryStats snapshot() {
+            return new RetryStats( failures.get(), retries.get(), recovered.get(), exhausted.get(),
+                    budgetDenied.get(), scheduleFailures.get(), backoffMillis.get() );
+        }
+    }
+
+    /**
+     * 一个 Job 分组的重试统计副本
+     */
+    public static class RetryStats {
+
+        private final long failures;
+        private final long retries;
+        private final long recovered;
+        private final long exhausted;
+        private final long budgetDenied;
+        private final long scheduleFailures;
+        private final long backoffMillis;
+
+        RetryStats( long failures, long retries, long recovered, long exhausted, long budgetDenied,
+                long scheduleFailures, long backoffMillis ) {
+            this.failures = failures;
+            this.retries = retries;
+            this.recovered = recovered;
+            this.exhausted = exhausted;
+            this.budgetDenied = budgetDenied;
+            this.scheduleFailures = scheduleFailures;
+            this.backoffMillis = backoffMillis;
+        }
+
+        /**
+         * @return 有重试策略的 Job 失败的次数（包括重试的失败）
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return 安排的重试次数
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return 重试后执行成功的次数
+         */
+        public long getRecovered() {
+            return recovered;
+        }
+
+        /**
+         * @return 达到最多执行次数后放弃的次数
+         */
+        public long getExhausted() {
+            return exhausted;
+        }
+
+        /**
+         * @return 因为分组的重试预算用完而放弃的次数
+         */
+        public long getBudgetDenied() {
+            return budgetDenied;
+        }
+
+        public long getScheduleFailures() {
+            return scheduleFailures;
+        }
+
+        /**
+         * @return 所有重试的退避时间之和（毫秒）
+         */
+        public long getBackoffMillis() {
+            return backoffMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "failures=" + failures + " retries=" + retries + " recovered=" + recovered + " exhausted="
+                    + exhausted + " budgetDenied=" + budgetDenied + " scheduleFailures=" + scheduleFailures
+                    + " backoffMillis=" + backoffMillis;
+        }
+    }
+}
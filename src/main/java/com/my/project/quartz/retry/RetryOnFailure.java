@@ -0,0 +1,43 @@
+package com.my.project.quartz.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明 Job 执行失败（抛出 JobExecutionException）时的重试策略，由 RetryJobListener 执行
+ *
+ * <pre>
+ * 第 n 次重试的等待时间为 initialDelayMillis * multiplier^(n-1)，不超过 maxDelayMillis，
+ * 再随机减少最多 jitter 比例，避免同时失败的 Job 同时重试。
+ * RetryJobListener.setPolicy 设置的策略优先于本注解。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+@Documented
+@Inherited
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface RetryOnFailure {
+
+    /**
+     * @return 最多执行的次数，包括第一次执行
+     */
+    int maxAttempts() default 3;
+
+    long initialDelayMillis() default 1000;
+
+    double multiplier() default 2.0;
+
+    long maxDelayMillis() default 60000;
+
+    /**
+     * @return 0 ~ 1，等待时间随机减少的最大比例
+     */
+    double jitter() default 0.2;
+}
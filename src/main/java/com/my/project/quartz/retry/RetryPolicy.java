@@ -0,0 +1,132 @@
+package com.my.project.quartz.retry;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试策略：最多执行次数和带随机抖动的指数退避
+ *
+ * <pre>
+ *   RetryPolicy policy = RetryPolicy.builder().maxAttempts( 5 ).initialDelay( 1, TimeUnit.SECONDS )
+ *           .multiplier( 2 ).maxDelay( 1, TimeUnit.MINUTES ).jitter( 0.2 ).build();
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class RetryPolicy {
+
+    private final int    maxAttempts;
+    private final long   initialDelayMillis;
+    private final double multiplier;
+    private final long   maxDelayMillis;
+    private final double jitter;
+
+    private RetryPolicy( int maxAttempts, long initialDelayMillis, double multiplier, long maxDelayMillis, double jitter ) {
+        if ( maxAttempts < 1 ) {
+            throw new IllegalArgumentException( "maxAttempts must be >= 1: " + maxAttempts );
+        }
+        if ( initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis ) {
+            throw new IllegalArgumentException( "Invalid delay: initial=" + initialDelayMillis + ", max="
+                    + maxDelayMillis );
+        }
+        if ( multiplier < 1 ) {
+            throw new IllegalArgumentException( "multiplier must be >= 1: " + multiplier );
+        }
+        if ( jitter < 0 || jitter > 1 ) {
+            throw new IllegalArgumentException( "jitter must be in [0, 1]: " + jitter );
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.multiplier = multiplier;
+        this.maxDelayMillis = maxDelayMillis;
+        this.jitter = jitter;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static RetryPolicy of( RetryOnFailure annotation ) {
+        return new RetryPolicy( annotation.maxAttempts(), annotation.initialDelayMillis(), annotation.multiplier(),
+                annotation.maxDelayMillis(), annotation.jitter() );
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @param attempt 已经失败的执行次数，从 1 开始
+     * @return 下一次执行之前的等待时间（毫秒）
+     */
+    public long delayMillis( int attempt, Random random ) {
+        double delay = initialDelayMillis * Math.pow( multiplier, Math.max( 0, attempt - 1 ) );
+        long capped = delay >= maxDelayMillis ? maxDelayMillis : (long) delay;
+        return capped - (long) ( capped * jitter * random.nextDouble() );
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[maxAttempts=" + maxAttempts + ", initialDelayMillis=" + initialDelayMillis
+                + ", multiplier=" + multiplier + ", maxDelayMillis=" + maxDelayMillis + ", jitter=" + jitter + "]";
+    }
+
+    public static final class Builder {
+
+        private int    maxAttempts        = 3;
+        private long   initialDelayMillis = 1000;
+        private double multiplier         = 2.0;
+        private long   maxDelayMillis     = 60000;
+        private double jitter             = 0.2;
+
+        private Builder() {
+        }
+
+        public Builder maxAttempts( int maxAttempts ) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder initialDelay( long delay, TimeUnit unit ) {
+            this.initialDelayMillis = unit.toMillis( delay );
+            return this;
+        }
+
+        public Builder multiplier( double multiplier ) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        public Builder maxDelay( long delay, TimeUnit unit ) {
+            this.maxDelayMillis = unit.toMillis( delay );
+            return this;
+        }
+
+        public Builder jitter( double jitter ) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy( maxAttempts, initialDelayMillis, multiplier, Math.max( maxDelayMillis,
+                    initialDelayMillis ), jitter );
+        }
+    }
+}
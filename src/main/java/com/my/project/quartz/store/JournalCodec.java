@@ -0,0 +1,465 @@
+package com.my.project.quartz.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.quartz.Calendar;
+import org.quartz.DateBuilder.IntervalUnit;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.TimeOfDay;
+import org.quartz.TriggerKey;
+import org.quartz.impl.JobDetailImpl;
+import org.quartz.impl.triggers.AbstractTrigger;
+import org.quartz.impl.triggers.CronTriggerImpl;
+import org.quartz.impl.triggers.DailyTimeIntervalTriggerImpl;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+
+import com.my.project.quartz.cron.CompiledCronTriggerImpl;
+
+/**
+ * 日志记录的二进制编码
+ *
+ * <pre>
+ * 项目中使用的 SimpleTrigger、CronTrigger、DailyTimeIntervalTrigger 和 JobDetailImpl 逐字段编码，
+ * 一个 Trigger 通常不到 100 字节；其他类型（以及包含非基本类型值的 JobDataMap）回退到 Java 序列化。
+ * Java 序列化每条记录都要写出完整的类描述，体积是逐字段编码的十倍以上，恢复时也慢得多。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class JournalCodec {
+
+    public static final byte   PUT_JOB          = 1;
+    public static final byte   REMOVE_JOB       = 2;
+    public static final byte   PUT_TRIGGER      = 3;
+    public static final byte   REMOVE_TRIGGER   = 4;
+    public static final byte   PUT_CALENDAR     = 5;
+    public static final byte   REMOVE_CALENDAR  = 6;
+    public static final byte   PAUSED_GROUPS    = 7;
+    public static final byte   CLEAR            = 8;
+
+    private static final byte  SERIALIZED       = 0;
+    private static final byte  SIMPLE           = 1;
+    private static final byte  CRON             = 2;
+    private static final byte  COMPILED_CRON    = 3;
+    private static final byte  DAILY            = 4;
+    private static final byte  JOB_DETAIL       = 1;
+
+    private static final byte  V_STRING         = 1;
+    private static final byte  V_INT            = 2;
+    private static final byte  V_LONG           = 3;
+    private static final byte  V_BOOLEAN        = 4;
+    private static final byte  V_DOUBLE         = 5;
+
+    private static final long  NULL_DATE        = Long.MIN_VALUE;
+
+    private final ClassLoadHelper                                   loadHelper;
+    /** ClassLoadHelper 依次尝试多个 ClassLoader，恢复时每条记录都加载一次代价很高 */
+    private final ConcurrentHashMap < String, Class < ? > >         jobClasses = new ConcurrentHashMap < String, Class < ? > >();
+
+    public JournalCodec( ClassLoadHelper loadHelper ) {
+        this.loadHelper = loadHelper;
+    }
+
+    public void writeJob( DataOutput out, JobDetail job ) throws IOException {
+        if ( job.getClass() != JobDetailImpl.class ) {
+            out.writeByte( SERIALIZED );
+            writeSerialized( out, job );
+            return;
+        }
+        out.writeByte( JOB_DETAIL );
+        writeKey( out, job.getKey().getName(), job.getKey().getGroup() );
+        writeNullableString( out, job.getDescription() );
+        out.writeUTF( job.getJobClass().getName() );
+        out.writeBoolean( job.isDurable() );
+        out.writeBoolean( job.requestsRecovery() );
+        writeDataMap( out, job.getJobDataMap() );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public JobDetail readJob( DataInput in ) throws IOException {
+        byte kind = in.readByte();
+        if ( kind == SERIALIZED ) {
+            return (JobDetail) readSerialized( in );
+        }
+        JobDetailImpl job = new JobDetailImpl();
+        job.setKey( readJobKey( in ) );
+        job.setDescription( readNullableString( in ) );
+        String className = in.readUTF();
+        Class < ? > jobClass = jobClasses.get( className );
+        if ( jobClass == null ) {
+            try {
+                jobClass = loadHelper.loadClass( className );
+            } catch ( ClassNotFoundException e ) {
+                throw new IOException( "Job class not found: " + className, e );
+            }
+            jobClasses.put( className, jobClass );
+        }
+        job.setJobClass( (Class < ? extends Job >) jobClass );
+        job.setDurability( in.readBoolean() );
+        job.setRequestsRecovery( in.readBoolean() );
+        job.setJobDataMap( readDataMap( in ) );
+        return job;
+    }
+
+    public void writeTrigger( DataOutput out, OperableTrigger trigger ) throws IOException {
+        Class < ? > type = trigger.getClass();
+        byte kind;
+        if ( type == SimpleTriggerImpl.class ) {
+            kind = SIMPLE;
+        } else if ( type == CronTriggerImpl.class ) {
+            kind = CRON;
+        } else if ( type == CompiledCronTriggerImpl.class ) {
+            kind = COMPILED_CRON;
+        } else if ( type == DailyTimeIntervalTriggerImpl.class ) {
+            kind = DAILY;
+        } else {
+            out.writeByte( SERIALIZED );
+            writeSerialized( out, trigger );
+            return;
+        }
+        out.writeByte( kind );
+        writeKey( out, trigger.getKey().getName(), trigger.getKey().getGroup() );
+        writeKey( out, trigger.getJobKey().getName(), trigger.getJobKey().getGroup() );
+        writeNullableString( out, trigger.getDescription() );
+        writeNullableString( out, trigger.getCalendarName() );
+        out.writeInt( trigger.getPriority() );
+        out.writeInt( trigger.getMisfireInstruction() );
+        writeDate( out, trigger.getStartTime() );
+        writeDate( out, trigger.getEndTime() );
+        writeDate( out, trigger.getNextFireTime() );
+        writeDate( out, trigger.getPreviousFireTime() );
+        writeDataMap( out, trigger.getJobDataMap() );
+        switch ( kind ) {
+            case SIMPLE: {
+                SimpleTriggerImpl t = (SimpleTriggerImpl) trigger;
+                out.writeInt( t.getRepeatCount() );
+                out.writeLong( t.getRepeatInterval() );
+                out.writeInt( t.getTimesTriggered() );
+                break;
+            }
+            case CRON:
+            case COMPILED_CRON: {
+                CronTriggerImpl t = (CronTriggerImpl) trigger;
+                out.writeUTF( t.getCronExpression() );
+                out.writeUTF( t.getTimeZone().getID() );
+                break;
+            }
+            default: {
+                DailyTimeIntervalTriggerImpl t = (DailyTimeIntervalTriggerImpl) trigger;
+                out.writeInt( t.getRepeatInterval() );
+                out.writeByte( t.getRepeatIntervalUnit().ordinal() );
+                int days = 0;
+                for ( Integer day : t.getDaysOfWeek() ) {
+                    days |= 1 << day;
+                }
+                out.writeByte( days );
+                writeTimeOfDay( out, t.getStartTimeOfDay() );
+                writeTimeOfDay( out, t.getEndTimeOfDay() );
+                out.writeInt( t.getRepeatCount() );
+                out.writeInt( t.getTimesTriggered() );
+                break;
+            }
+        }
+    }
+
+    public OperableTrigger readTrigger( DataInput in ) throws IOException {
+        byte kind = in.readByte();
+        if ( kind == SERIALIZED ) {
+            return (OperableTrigger) readSerialized( in );
+        }
+        AbstractTrigger < ? > trigger;
+        switch ( kind ) {
+            case SIMPLE:
+                trigger = new SimpleTriggerImpl();
+                break;
+            case CRON:
+                trigger = new CronTriggerImpl();
+                break;
+            case COMPILED_CRON:
+                trigger = new CompiledCronTriggerImpl();
+                break;
+            case DAILY:
+                trigger = new DailyTimeIntervalTriggerImpl();
+                break;
+            default:
+                throw new IOException( "Unknown trigger kind: " + kind );
+        }
+        trigger.setKey( readTriggerKey( in ) );
+        trigger.setJobKey( readJobKey( in ) );
+        trigger.setDescription( readNullableString( in ) );
+        trigger.setCalendarName( readNullableString( in ) );
+        trigger.setPriority( in.readInt() );
+        trigger.setMisfireInstruction( in.readInt() );
+        trigger.setStartTime( readDate( in ) );
+        trigger.setEndTime( readDate( in ) );
+        trigger.setNextFireTime( readDate( in ) );
+        trigger.setPreviousFireTime( readDate( in ) );
+        trigger.setJobDataMap( readDataMap( in ) );
+        switch ( kind ) {
+            case SIMPLE: {
+                SimpleTriggerImpl t = (SimpleTriggerImpl) trigger;
+                t.setRepeatCount( in.readInt() );
+                t.setRepeatInterval( in.readLong() );
+                t.setTimesTriggered( in.readInt() );
+                break;
+            }
+            case CRON:
+            case COMPILED_CRON: {
+                CronTriggerImpl t = (CronTriggerImpl) trigger;
+                String expression = in.readUTF();
+                t.setTimeZone( TimeZone.getTimeZone( in.readUTF() ) );
+                try {
+                    t.setCronExpression( expression );
+                } catch ( java.text.ParseException e ) {
+                    throw new IOException( "Invalid cron expression: " + expression, e );
+                }
+                break;
+            }
+            default: {
+                DailyTimeIntervalTriggerImpl t = (DailyTimeIntervalTriggerImpl) trigger;
+                t.setRepeatInterval( in.readInt() );
+                t.setRepeatIntervalUnit( IntervalUnit.values()[in.readByte()] );
+                int days = in.readByte();
+                Set < Integer > daysOfWeek = new HashSet < Integer >();
+                for ( int day = 1; day <= 7; day++ ) {
+                    if ( ( days & ( 1 << day ) ) != 0 ) {
+                        daysOfWeek.add( day );
+                    }
+                }
+                t.setDaysOfWeek( daysOfWeek );
+                t.setStartTimeOfDay( readTimeOfDay( in ) );
+                t.setEndTimeOfDay( readTimeOfDay( in ) );
+                t.setRepeatCount( in.readInt() );
+                t.setTimesTriggered( in.readInt() );
+                break;
+            }
+        }
+        return trigger;
+    }
+
+    public void writeCalendar( DataOutput out, Calendar calendar ) throws IOException {
+        writeSerialized( out, calendar );
+    }
+
+    public Calendar readCalendar( DataInput in ) throws IOException {
+        return (Calendar) readSerialized( in );
+    }
+
+    public void writeTriggerKey( DataOutput out, TriggerKey key ) throws IOException {
+        writeKey( out, key.getName(), key.getGroup() );
+    }
+
+    public TriggerKey readTriggerKey( DataInput in ) throws IOException {
+        String name = in.readUTF();
+        return new TriggerKey( name, in.readUTF() );
+    }
+
+    public void writeJobKey( DataOutput out, JobKey key ) throws IOException {
+        writeKey( out, key.getName(), key.getGroup() );
+    }
+
+    public JobKey readJobKey( DataInput in ) throws IOException {
+        String name = in.readUTF();
+        return new JobKey( name, in.readUTF() );
+    }
+
+    public void writeStrings( DataOutput out, Set < String > values ) throws IOException {
+        out.writeInt( values.size() );
+        for ( String value : values ) {
+            out.writeUTF( value );
+        }
+    }
+
+    public Set < String > readStrings( DataInput in ) throws IOException {
+        int size = in.readInt();
+        Set < String > values = new HashSet < String >();
+        for ( int i = 0; i < size; i++ ) {
+            values.add( in.readUTF() );
+        }
+        return values;
+    }
+
+    private static void writeKey( DataOutput out, String name, String group ) throws IOException {
+        out.writeUTF( name );
+        out.writeUTF( group );
+    }
+
+    private static void writeNullableString( DataOutput out, String value ) throws IOException {
+        out.writeBoolean( value != null );
+        if ( value != null ) {
+            out.writeUTF( value );
+        }
+    }
+
+    private static String readNullableString( DataInput in ) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDate( DataOutput out, Date date ) throws IOException {
+        out.writeLong( date == null ? NULL_DATE : date.getTime() );
+    }
+
+    private static Date readDate( DataInput in ) throws IOException {
+        long time = in.readLong();
+        return time == NULL_DATE ? null : new Date( time );
+    }
+
+    private static void writeTimeOfDay( DataOutput out, TimeOfDay time ) throws IOException {
+        out.writeBoolean( time != null );
+        if ( time != null ) {
+            out.writeByte( time.getHour() );
+            out.writeByte( time.getMinute() );
+            out.writeByte( time.getSecond() );
+        }
+    }
+
+    private static TimeOfDay readTimeOfDay( DataInput in ) throws IOException {
+        if ( !in.readBoolean() ) {
+            return null;
+        }
+        int hour = in.readByte();
+        int minute = in.readByte();
+        return new TimeOfDay( hour, minute, in.readByte() );
+    }
+
+    /**
+     * 键为 String、值为 String 或基本类型包装类的 JobDataMap 逐项编码，否则整个 Map 使用 Java 序列化
+     */
+    private void writeDataMap( DataOutput out, JobDataMap map ) throws IOException {
+        if ( map == null || map.isEmpty() ) {
+            out.writeInt( 0 );
+            return;
+        }
+        if ( !isPrimitiveMap( map ) ) {
+            out.writeInt( -1 );
+            writeSerialized( out, map );
+            return;
+        }
+        out.writeInt( map.size() );
+        for ( Map.Entry < String, Object > e : map.getWrappedMap().entrySet() ) {
+            out.writeUTF( e.getKey() );
+            Object value = e.getValue();
+            if ( value instanceof String ) {
+                out.writeByte( V_STRING );
+                out.writeUTF( (String) value );
+            } else if ( value instanceof Integer ) {
+                out.writeByte( V_INT );
+                out.writeInt( (Integer) value );
+            } else if ( value instanceof Long ) {
+                out.writeByte( V_LONG );
+                out.writeLong( (Long) value );
+            } else if ( value instanceof Boolean ) {
+                out.writeByte( V_BOOLEAN );
+                out.writeBoolean( (Boolean) value );
+            } else {
+                out.writeByte( V_DOUBLE );
+                out.writeDouble( (Double) value );
+            }
+        }
+    }
+
+    private JobDataMap readDataMap( DataInput in ) throws IOException {
+        int size = in.readInt();
+        if ( size == 0 ) {
+            return new JobDataMap();
+        }
+        if ( size < 0 ) {
+            return (JobDataMap) readSerialized( in );
+        }
+        JobDataMap map = new JobDataMap();
+        for ( int i = 0; i < size; i++ ) {
+            String key = in.readUTF();
+            byte type = in.readByte();
+            switch ( type ) {
+                case V_STRING:
+                    map.put( key, in.readUTF() );
+                    break;
+                case V_INT:
+                    map.put( key, in.readInt() );
+                    break;
+                case V_LONG:
+                    map.put( key, in.readLong() );
+                    break;
+                case V_BOOLEAN:
+                    map.put( key, in.readBoolean() );
+                    break;
+                default:
+                    map.put( key, in.readDouble() );
+                    break;
+            }
+        }
+        map.clearDirtyFlag();
+        return map;
+    }
+
+    private static boolean isPrimitiveMap( JobDataMap map ) {
+        for ( Map.Entry < String, Object > e : map.getWrappedMap().entrySet() ) {
+            Object value = e.getValue();
+            if ( e.getKey() == null || value == null ) {
+                return false;
+            }
+            Class < ? > type = value.getClass();
+            if ( type == String.class ) {
+                // writeUTF 最多 65535 字节
+                if ( ( (String) value ).length() > 16383 ) {
+                    return false;
+                }
+            } else if ( type != Integer.class && type != Long.class && type != Boolean.class
+                    && type != Double.class ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeSerialized( DataOutput out, Object value ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 512 );
+        ObjectOutputStream oos = new ObjectOutputStream( bytes );
+        oos.writeObject( value );
+        oos.close();
+        out.writeInt( bytes.size() );
+        out.write( bytes.toByteArray() );
+    }
+
+    private Object readSerialized( DataInput in ) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        ObjectInputStream ois = new ObjectInputStream( new ByteArrayInputStream( bytes ) ) {
+
+            @Override
+            protected Class < ? > resolveClass( ObjectStreamClass desc ) throws IOException, ClassNotFoundException {
+                try {
+                    return loadHelper.loadClass( desc.getName() );
+                } catch ( ClassNotFoundException e ) {
+                    return super.resolveClass( desc );
+                }
+            }
+        };
+        try {
+            return ois.readObject();
+        } catch ( ClassNotFoundException e ) {
+            throw new IOException( e );
+        } finally {
+            ois.close();
+        }
+    }
+}
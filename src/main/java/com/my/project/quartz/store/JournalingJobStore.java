@@ -0,0 +1,1327 @@
+package com.my.project.quartz.store;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于内存映射日志的持久化 JobStore
+ *
+ * <pre>
+ * 在 ShardedRAMJobStore 的基础上，每个分片把 Job、Trigger、Calendar 的变化追加到自己的 MappedJournal，
+ * 记录在分片锁内写入，因此日志顺序与内存中的修改顺序一致；等待落盘（组提交）在释放分片锁之后进行。
+ *
+ * 日志中保存的是修改后的状态而不是操作：触发后 Trigger 的 nextFireTime、previousFireTime、timesTriggered，
+ * 错过触发时按 misfire 策略更新后的 Trigger，暂停的分组和 Trigger 状态。恢复时按顺序折叠快照和日志，
+ * 得到每个 key 的最终状态后一次性装入分片，不需要逐条重放 RAMJobStore 的操作。
+ *
+ * 恢复后 Trigger 保留最后一次记录的 nextFireTime，停机期间错过的触发在第一次 acquireNextTriggers 时
+ * 按照 Trigger 自己的 misfire 策略处理，与调度器暂停后恢复的行为一致（SimpleTrigger 的剩余次数、
+ * DailyTimeIntervalTrigger 的 timesTriggered 都来自日志）。
+ *
+ * 快照定期生成：在分片锁内切换到新的日志段并编码分片状态，锁外写入 snapshot-序号.dat，
+ * 之后删除更早的日志段。启动时恢复完成后立即生成一次快照，分片数变化时数据也会按新的分片重新写入。
+ *
+ * 在 quartz.properties 中配置：
+ *   org.quartz.jobStore.class = com.my.project.quartz.store.JournalingJobStore
+ *   org.quartz.jobStore.journalDir = quartz-journal
+ *   org.quartz.jobStore.syncCommit = true
+ *   org.quartz.jobStore.snapshotIntervalMillis = 60000
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class JournalingJobStore extends ShardedRAMJobStore {
+
+    private static final Logger LOG             = LoggerFactory.getLogger( JournalingJobStore.class );
+
+    private static final String SHARD           = "shard-";
+    private static final String SNAPSHOT        = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+
+    /** TriggerWrapper 的状态常量 */
+    private static final int    STATE_COMPLETE  = 3;
+    private static final int    STATE_ERROR     = 7;
+    private static final Field  STATE_FIELD;
+
+    static {
+        try {
+            STATE_FIELD = Class.forName( "org.quartz.simpl.TriggerWrapper" ).getDeclaredField( "state" );
+            STATE_FIELD.setAccessible( true );
+        } catch ( Exception e ) {
+            throw new ExceptionInInitializerError( e );
+        }
+    }
+
+    private String              journalDir             = "quartz-journal";
+    private int                 segmentSize            = 64 << 20;
+    private boolean             syncCommit             = true;
+    private long                flushIntervalMillis    = 10L;
+    private long                snapshotIntervalMillis = 60000L;
+    private long                snapshotJournalBytes   = 256L << 20;
+
+    private JournalCodec        codec;
+    private SchedulerSignaler   signaler;
+    private Thread              snapshotter;
+    private volatile boolean    shutdown;
+    /** 恢复时没有读到日志记录，并且目录与当前的分片一一对应 */
+    private boolean             compact;
+
+    public void setJournalDir( String journalDir ) {
+        this.journalDir = journalDir;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public void setSegmentSize( int segmentSize ) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * @param syncCommit 为 true 时修改在日志落盘后才返回；为 false 时每隔 flushIntervalMillis 异步落盘
+     */
+    public void setSyncCommit( boolean syncCommit ) {
+        this.syncCommit = syncCommit;
+    }
+
+    public void setFlushIntervalMillis( long flushIntervalMillis ) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void setSnapshotIntervalMillis( long snapshotIntervalMillis ) {
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * @param snapshotJournalBytes 分片的日志超过这个大小时立即生成快照
+     */
+    public void setSnapshotJournalBytes( long snapshotJournalBytes ) {
+        this.snapshotJournalBytes = snapshotJournalBytes;
+    }
+
+    @Override
+    public boolean supportsPersistence() {
+        return true;
+    }
+
+    @Override
+    protected Shard createShard( int index ) {
+        return new JournalShard( index );
+    }
+
+    @Override
+    public void initialize( ClassLoadHelper loadHelper, SchedulerSignaler signaler ) throws SchedulerConfigException {
+        this.codec = new JournalCodec( loadHelper );
+        this.signaler = signaler;
+        super.initialize( loadHelper, new JournalSignaler( signaler ) );
+        File root = new File( journalDir );
+        try {
+            long start = System.currentTimeMillis();
+            int[] counts = recover( root );
+            for ( Shard shard : shards ) {
+                JournalShard js = (JournalShard) shard;
+                js.journal = new MappedJournal( shardDir( root, js.index ), segmentSize, flushIntervalMillis );
+                if ( compact ) {
+                    // 快照之后的日志段都是空的，不需要重新生成快照
+                    js.journal.deleteBefore( js.journal.getSegmentSeq() );
+                    js.lastSnapshot = System.currentTimeMillis();
+                } else {
+                    snapshot( js );
+                }
+            }
+            // 分片数减少后多出来的目录已经合并到新的快照中
+            for ( File dir : shardDirs( root ) ) {
+                if ( shardIndex( dir ) >= shards.length ) {
+                    deleteDir( dir );
+                }
+            }
+            LOG.info( "Recovered {} jobs and {} triggers from {} in {} ms", counts[0], counts[1],
+                    root.getAbsolutePath(), System.currentTimeMillis() - start );
+        } catch ( IOException e ) {
+            throw new SchedulerConfigException( "Failed to recover journal from " + root.getAbsolutePath(), e );
+        }
+        snapshotter = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                snapshotLoop();
+            }
+        }, "journal-snapshot" );
+        snapshotter.setDaemon( true );
+        snapshotter.start();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if ( snapshotter != null ) {
+            snapshotter.interrupt();
+            try {
+                snapshotter.join();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for ( Shard shard : shards ) {
+            MappedJournal journal = ( (JournalShard) shard ).journal;
+            if ( journal != null ) {
+                journal.close();
+            }
+        }
+        super.shutdown();
+    }
+
+    private void snapshotLoop() {
+        while ( !shutdown ) {
+            try {
+                Thread.sleep( 1000L );
+            } catch ( InterruptedException e ) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for ( Shard shard : shards ) {
+                JournalShard js = (JournalShard) shard;
+                long bytes = js.journal.getWrittenSinceRoll();
+                if ( bytes >= snapshotJournalBytes
+                        || ( bytes > 0 && now - js.lastSnapshot >= snapshotIntervalMillis ) ) {
+                    try {
+                        snapshot( js );
+                    } catch ( IOException e ) {
+                        LOG.error( "Failed to snapshot " + shardDir( new File( journalDir ), js.index ), e );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成分片的快照并删除快照之前的日志段
+     */
+    private void snapshot( JournalShard shard ) throws IOException {
+        File dir = shardDir( new File( journalDir ), shard.index );
+        RecordBuffer records = new RecordBuffer();
+        long seq;
+        synchronized ( shard.lock() ) {
+            seq = shard.journal.roll();
+            shard.writeState( records );
+        }
+        File file = new File( dir, String.format( "%s%016d%s", SNAPSHOT, seq, SNAPSHOT_SUFFIX ) );
+        File tmp = new File( dir, file.getName() + ".tmp" );
+        FileOutputStream fos = new FileOutputStream( tmp );
+        try {
+            BufferedOutputStream out = new BufferedOutputStream( fos, 1 << 20 );
+            records.writeTo( out );
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        shard.journal.deleteBefore( seq );
+        for ( File old : snapshots( dir ) ) {
+            if ( !old.equals( file ) && !old.delete() ) {
+                LOG.warn( "Cannot delete snapshot {}", old );
+            }
+        }
+        shard.lastSnapshot = System.currentTimeMillis();
+    }
+
+    /**
+     * 读取所有分片目录，折叠出每个 key 的最终状态并装入当前的分片
+     *
+     * @return 恢复的 Job 数和 Trigger 数
+     */
+    private int[] recover( File root ) throws IOException {
+        File[] dirs = shardDirs( root );
+        final Recovered[] recovered = new Recovered[dirs.length];
+        final IOException[] errors = new IOException[dirs.length];
+        Thread[] readers = new Thread[dirs.length];
+        // 每个目录各自折叠（同一个 Trigger 可能先后属于不同的分片，只有目录内的顺序是有意义的）
+        for ( int i = 0; i < dirs.length; i++ ) {
+            final int n = i;
+            final File dir = dirs[i];
+            readers[i] = new Thread( new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        recovered[n] = readDir( dir );
+                    } catch ( IOException e ) {
+                        errors[n] = e;
+                    }
+                }
+            }, "journal-recovery-" + dir.getName() );
+            readers[i].start();
+        }
+        join( readers );
+        for ( IOException e : errors ) {
+            if ( e != null ) {
+                throw e;
+            }
+        }
+        compact = dirs.length == shards.length;
+        for ( int i = 0; i < dirs.length; i++ ) {
+            compact &= recovered[i].journalRecords == 0 && shardIndex( dirs[i] ) < shards.length;
+        }
+
+        // 合并所有目录，按当前的分片数重新分配
+        final Recovered[] byShard = new Recovered[shards.length];
+        for ( int i = 0; i < shards.length; i++ ) {
+            byShard[i] = new Recovered();
+        }
+        for ( Recovered r : recovered ) {
+            for ( Recovered target : byShard ) {
+                target.calendars.putAll( r.calendars );
+                target.pausedTriggerGroups.addAll( r.pausedTriggerGroups );
+                target.pausedJobGroups.addAll( r.pausedJobGroups );
+            }
+            for ( JobDetail job : r.jobs.values() ) {
+                byShard[shardIndex( job.getKey() )].jobs.put( job.getKey(), job );
+            }
+            for ( Map.Entry < TriggerKey, OperableTrigger > e : r.triggers.entrySet() ) {
+                Recovered target = byShard[shardIndex( e.getValue().getJobKey() )];
+                target.triggers.put( e.getKey(), e.getValue() );
+                TriggerState state = r.states.get( e.getKey() );
+                if ( state != null ) {
+                    target.states.put( e.getKey(), state );
+                }
+            }
+        }
+        Thread[] loaders = new Thread[shards.length];
+        final int[] counts = new int[2];
+        for ( int i = 0; i < shards.length; i++ ) {
+            final JournalShard shard = (JournalShard) shards[i];
+            final Recovered r = byShard[i];
+            loaders[i] = new Thread( new Runnable() {
+
+                @Override
+                public void run() {
+                    int[] loaded = shard.load( r );
+                    synchronized ( counts ) {
+                        counts[0] += loaded[0];
+                        counts[1] += loaded[1];
+                    }
+                }
+            }, "journal-recovery-shard-" + i );
+            loaders[i].start();
+        }
+        join( loaders );
+        return counts;
+    }
+
+    private Recovered readDir( File dir ) throws IOException {
+        final Recovered r = new Recovered();
+        final RecordInput input = new RecordInput();
+        final DataInputStream in = new DataInputStream( input );
+        MappedJournal.RecordHandler handler = new MappedJournal.RecordHandler() {
+
+            @Override
+            public void record( byte[] buf, int len ) throws IOException {
+                input.reset( buf, len );
+                r.apply( in );
+            }
+        };
+        File[] snapshots = snapshots( dir );
+        long start = 0;
+        if ( snapshots.length > 0 ) {
+            File latest = snapshots[snapshots.length - 1];
+            if ( !MappedJournal.read( latest, handler ) ) {
+                throw new IOException( "Corrupted snapshot " + latest );
+            }
+            String name = latest.getName();
+            start = Long.parseLong( name.substring( SNAPSHOT.length(), name.length() - SNAPSHOT_SUFFIX.length() ) );
+        }
+        final int[] journalRecords = new int[1];
+        MappedJournal.RecordHandler counting = new MappedJournal.RecordHandler() {
+
+            @Override
+            public void record( byte[] buf, int len ) throws IOException {
+                journalRecords[0]++;
+                input.reset( buf, len );
+                r.apply( in );
+            }
+        };
+        for ( long seq : MappedJournal.segmentSeqs( dir ) ) {
+            if ( seq < start ) {
+                continue;
+            }
+            File segment = MappedJournal.segmentFile( dir, seq );
+            if ( !MappedJournal.read( segment, counting ) ) {
+                // 崩溃时没有写完（也就没有确认过）的记录，之后的内容都不可信
+                LOG.warn( "Journal {} ends with an incomplete record, ignoring the rest", segment );
+                break;
+            }
+        }
+        r.journalRecords = journalRecords[0];
+        return r;
+    }
+
+    private void fail( String message, IOException e ) {
+        LOG.error( message, e );
+        signaler.notifySchedulerListenersError( message, new JobPersistenceException( message, e ) );
+    }
+
+    private static File shardDir( File root, int index ) {
+        return new File( root, SHARD + index );
+    }
+
+    private static int shardIndex( File dir ) {
+        return Integer.parseInt( dir.getName().substring( SHARD.length() ) );
+    }
+
+    private static File[] shardDirs( File root ) {
+        File[] dirs = root.listFiles( new FileFilter() {
+
+            @Override
+            public boolean accept( File f ) {
+                return f.isDirectory() && f.getName().matches( SHARD + "\\d+" );
+            }
+        } );
+        return dirs == null ? new File[0] : dirs;
+    }
+
+    private static File[] snapshots( File dir ) {
+        File[] files = dir.listFiles( new FileFilter() {
+
+            @Override
+            public boolean accept( File f ) {
+                return f.getName().startsWith( SNAPSHOT ) && f.getName().endsWith( SNAPSHOT_SUFFIX );
+            }
+        } );
+        if ( files == null ) {
+            return new File[0];
+        }
+        // 序号定长，按文件名排序即按序号排序
+        Arrays.sort( files );
+        return files;
+    }
+
+    private static void deleteDir( File dir ) {
+        File[] files = dir.listFiles();
+        if ( files != null ) {
+            for ( File f : files ) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void join( Thread[] threads ) throws IOException {
+        for ( Thread t : threads ) {
+            try {
+                t.join();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted during recovery", e );
+            }
+        }
+    }
+
+    /**
+     * 一个目录中快照和日志折叠后的状态
+     */
+    private final class Recovered {
+
+        final Map < JobKey, JobDetail >            jobs                = new HashMap < JobKey, JobDetail >();
+        final Map < TriggerKey, OperableTrigger >  triggers            = new HashMap < TriggerKey, OperableTrigger >();
+        /** 只记录非 NORMAL 的状态 */
+        final Map < TriggerKey, TriggerState >     states              = new HashMap < TriggerKey, TriggerState >();
+        final Map < String, Calendar >             calendars           = new HashMap < String, Calendar >();
+        final Set < String >                       pausedTriggerGroups = new HashSet < String >();
+        final Set < String >                       pausedJobGroups     = new HashSet < String >();
+        int                                        journalRecords;
+
+        void apply( DataInputStream in ) throws IOException {
+            byte type = in.readByte();
+            switch ( type ) {
+                case JournalCodec.PUT_JOB: {
+                    JobDetail job = codec.readJob( in );
+                    jobs.put( job.getKey(), job );
+                    break;
+                }
+                case JournalCodec.REMOVE_JOB:
+                    jobs.remove( codec.readJobKey( in ) );
+                    break;
+                case JournalCodec.PUT_TRIGGER: {
+                    TriggerState state = TriggerState.values()[in.readByte()];
+                    OperableTrigger trigger = codec.readTrigger( in );
+                    triggers.put( trigger.getKey(), trigger );
+                    if ( state == TriggerState.NORMAL ) {
+                        states.remove( trigger.getKey() );
+                    } else {
+                        states.put( trigger.getKey(), state );
+                    }
+                    break;
+                }
+                case JournalCodec.REMOVE_TRIGGER: {
+                    TriggerKey key = codec.readTriggerKey( in );
+                    triggers.remove( key );
+                    states.remove( key );
+                    break;
+                }
+                case JournalCodec.PUT_CALENDAR: {
+                    String name = in.readUTF();
+                    calendars.put( name, codec.readCalendar( in ) );
+                    break;
+                }
+                case JournalCodec.REMOVE_CALENDAR:
+                    calendars.remove( in.readUTF() );
+                    break;
+                case JournalCodec.PAUSED_GROUPS:
+                    pausedTriggerGroups.clear();
+                    pausedTriggerGroups.addAll( codec.readStrings( in ) );
+                    pausedJobGroups.clear();
+                    pausedJobGroups.addAll( codec.readStrings( in ) );
+                    break;
+                case JournalCodec.CLEAR:
+                    jobs.clear();
+                    triggers.clear();
+                    states.clear();
+                    calendars.clear();
+                    break;
+                default:
+                    throw new IOException( "Unknown journal record type: " + type );
+            }
+        }
+    }
+
+    /**
+     * 可以重复使用的 ByteArrayInputStream，用于解码记录
+     */
+    private static final class RecordInput extends ByteArrayInputStream {
+
+        RecordInput() {
+            super( new byte[0] );
+        }
+
+        void reset( byte[] buf, int len ) {
+            this.buf = buf;
+            this.pos = 0;
+            this.count = len;
+            this.mark = 0;
+        }
+    }
+
+    /**
+     * 可以直接取出内部数组的 ByteArrayOutputStream，用于编码记录
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        final DataOutputStream out = new DataOutputStream( this );
+        private final CRC32    crc = new CRC32();
+
+        RecordBuffer() {
+            super( 256 );
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        /**
+         * 在缓冲区末尾开始一条带 [长度][CRC32] 头的记录，返回记录头的位置
+         */
+        int beginFramed() throws IOException {
+            int mark = count;
+            out.writeLong( 0L );
+            return mark;
+        }
+
+        void endFramed( int mark ) {
+            int len = count - mark - 8;
+            crc.reset();
+            crc.update( buf, mark + 8, len );
+            putInt( mark, len );
+            putInt( mark + 4, (int) crc.getValue() );
+        }
+
+        private void putInt( int pos, int v ) {
+            buf[pos] = (byte) ( v >>> 24 );
+            buf[pos + 1] = (byte) ( v >>> 16 );
+            buf[pos + 2] = (byte) ( v >>> 8 );
+            buf[pos + 3] = (byte) v;
+        }
+    }
+
+    /**
+     * 只关心哪些 Trigger 在 applyMisfire 中被修改了，其余通知原样转发
+     */
+    private final class JournalSignaler implements SchedulerSignaler {
+
+        private final SchedulerSignaler delegate;
+
+        JournalSignaler( SchedulerSignaler delegate ) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void notifyTriggerListenersMisfired( Trigger trigger ) {
+            ( (JournalShard) shardOf( trigger.getJobKey() ) ).dirty.add( trigger.getKey() );
+            delegate.notifyTriggerListenersMisfired( trigger );
+        }
+
+        @Override
+        public void notifySchedulerListenersFinalized( Trigger trigger ) {
+            ( (JournalShard) shardOf( trigger.getJobKey() ) ).dirty.add( trigger.getKey() );
+            delegate.notifySchedulerListenersFinalized( trigger );
+        }
+
+        @Override
+        public void notifySchedulerListenersJobDeleted( JobKey jobKey ) {
+            delegate.notifySchedulerListenersJobDeleted( jobKey );
+        }
+
+        @Override
+        public void signalSchedulingChange( long candidateNewNextFireTime ) {
+            delegate.signalSchedulingChange( candidateNewNextFireTime );
+        }
+
+        @Override
+        public void notifySchedulerListenersError( String string, SchedulerException jpe ) {
+            delegate.notifySchedulerListenersError( string, jpe );
+        }
+    }
+
+    /**
+     * 把修改写入日志的分片
+     *
+     * <pre>
+     * RAMJobStore 的公开方法之间会相互调用（例如 storeJobsAndTriggers 调用 storeJob、storeTrigger），
+     * 每个方法只记录自己造成的变化；最外层的调用返回之前等待本线程写入的记录落盘。
+     * </pre>
+     */
+    protected class JournalShard extends Shard {
+
+        final int                      index;
+        volatile MappedJournal         journal;
+        volatile long                  lastSnapshot;
+        /** applyMisfire 修改过的 Trigger，只在 lock 内访问 */
+        final Set < TriggerKey >       dirty   = new LinkedHashSet < TriggerKey >();
+        private final RecordBuffer     buffer  = new RecordBuffer();
+        /** [嵌套深度, 本线程最后写入的记录位置] */
+        private final ThreadLocal < long[] > pending = new ThreadLocal < long[] >() {
+
+                                                         @Override
+                                                         protected long[] initialValue() {
+                                                             return new long[2];
+                                                         }
+                                                     };
+        private boolean                suppressed;
+
+        JournalShard( int index ) {
+            this.index = index;
+        }
+
+        Object lock() {
+            return lock;
+        }
+
+        private void begin() {
+            pending.get()[0]++;
+        }
+
+        private void end() {
+            long[] p = pending.get();
+            if ( --p[0] == 0 && p[1] > 0 ) {
+                long position = p[1];
+                p[1] = 0;
+                if ( syncCommit ) {
+                    try {
+                        journal.awaitDurable( position );
+                    } catch ( IOException e ) {
+                        fail( "Failed to sync journal", e );
+                    }
+                }
+            }
+        }
+
+        /**
+         * 追加 buffer 中已经编码好的记录，调用方持有 lock
+         */
+        private void append() {
+            try {
+                pending.get()[1] = journal.append( buffer.array(), 0, buffer.size() );
+            } catch ( IOException e ) {
+                fail( "Failed to append journal", e );
+            }
+        }
+
+        private boolean journaling() {
+            if ( journal == null || suppressed ) {
+                return false;
+            }
+            buffer.reset();
+            return true;
+        }
+
+        private void logJob( JobDetail job ) {
+            if ( journaling() ) {
+                try {
+                    buffer.out.writeByte( JournalCodec.PUT_JOB );
+                    codec.writeJob( buffer.out, job );
+                    append();
+                } catch ( IOException e ) {
+                    fail( "Failed to encode job " + job.getKey(), e );
+                }
+            }
+        }
+
+        private void logJobRemoved( JobKey key ) {
+            if ( journaling() ) {
+                try {
+                    buffer.out.writeByte( JournalCodec.REMOVE_JOB );
+                    codec.writeJobKey( buffer.out, key );
+                    append();
+                } catch ( IOException e ) {
+                    fail( "Failed to encode job " + key, e );
+                }
+            }
+        }
+
+        private void logTrigger( OperableTrigger trigger ) {
+            if ( journaling() ) {
+                try {
+                    writeTrigger( buffer.out, trigger, getTriggerState( trigger.getKey() ) );
+                    append();
+                } catch ( IOException e ) {
+                    fail( "Failed to encode trigger " + trigger.getKey(), e );
+                }
+            }
+        }
+
+        private void logTrigger( TriggerKey key ) {
+            Object wrapper = triggersByKey.get( key );
+            if ( wrapper != null ) {
+                logTrigger( triggerOf( wrapper ) );
+            }
+        }
+
+        private void logTriggerRemoved( TriggerKey key ) {
+            if ( journaling() ) {
+                try {
+                    buffer.out.writeByte( JournalCodec.REMOVE_TRIGGER );
+                    codec.writeTriggerKey( buffer.out, key );
+                    append();
+                } catch ( IOException e ) {
+                    fail( "Failed to encode trigger " + key, e );
+                }
+            }
+        }
+
+        /**
+         * 记录所有满足条件的 Trigger，jobMatcher、triggerMatcher 为 null 表示不限制
+         */
+        private void logTriggers( GroupMatcher < JobKey > jobMatcher, GroupMatcher < TriggerKey > triggerMatcher ) {
+            if ( journal == null || suppressed ) {
+                return;
+            }
+            for ( Object wrapper : triggers ) {
+                OperableTrigger trigger = triggerOf( wrapper );
+                if ( ( jobMatcher == null || jobMatcher.isMatch( trigger.getJobKey() ) )
+                        && ( triggerMatcher == null || triggerMatcher.isMatch( trigger.getKey() ) ) ) {
+                    logTrigger( trigger );
+                }
+            }
+        }
+
+        private void logDirty() {
+            for ( TriggerKey key : dirty ) {
+                logTrigger( key );
+            }
+            dirty.clear();
+        }
+
+        private void logPausedGroups() {
+            if ( journaling() ) {
+                try {
+                    buffer.out.writeByte( JournalCodec.PAUSED_GROUPS );
+                    codec.writeStrings( buffer.out, pausedTriggerGroups );
+                    codec.writeStrings( buffer.out, pausedJobGroups );
+                    append();
+                } catch ( IOException e ) {
+                    fail( "Failed to encode paused groups", e );
+                }
+            }
+        }
+
+        private void writeTrigger( DataOutputStream out, OperableTrigger trigger, TriggerState state )
+                throws IOException {
+            out.writeByte( JournalCodec.PUT_TRIGGER );
+            out.writeByte( state.ordinal() );
+            codec.writeTrigger( out, trigger );
+        }
+
+        @Override
+        public TriggerState getTriggerState( TriggerKey triggerKey ) {
+            try {
+                return super.getTriggerState( triggerKey );
+            } catch ( JobPersistenceException e ) {
+                // RAMJobStore 不会抛出
+                throw new IllegalStateException( e );
+            }
+        }
+
+        @Override
+        public void storeJobAndTrigger( JobDetail newJob, OperableTrigger newTrigger )
+                throws JobPersistenceException {
+            begin();
+            try {
+                super.storeJobAndTrigger( newJob, newTrigger );
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void storeJobsAndTriggers( Map < JobDetail, Set < ? extends Trigger > > triggersAndJobs,
+                boolean replace ) throws JobPersistenceException {
+            // 整批只等待一次落盘
+            begin();
+            try {
+                super.storeJobsAndTriggers( triggersAndJobs, replace );
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public boolean removeJobs( List < JobKey > jobKeys ) throws JobPersistenceException {
+            begin();
+            try {
+                return super.removeJobs( jobKeys );
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public boolean removeTriggers( List < TriggerKey > triggerKeys ) throws JobPersistenceException {
+            begin();
+            try {
+                return super.removeTriggers( triggerKeys );
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void storeJob( JobDetail newJob, boolean replaceExisting ) throws ObjectAlreadyExistsException {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.storeJob( newJob, replaceExisting );
+                    logJob( newJob );
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public boolean removeJob( JobKey jobKey ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    boolean removed = super.removeJob( jobKey );
+                    if ( removed ) {
+                        logJobRemoved( jobKey );
+                    }
+                    return removed;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void storeTrigger( OperableTrigger newTrigger, boolean replaceExisting )
+                throws JobPersistenceException {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.storeTrigger( newTrigger, replaceExisting );
+                    logTrigger( newTrigger );
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public boolean removeTrigger( TriggerKey triggerKey ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    boolean removed = super.removeTrigger( triggerKey );
+                    if ( removed ) {
+                        logTriggerRemoved( triggerKey );
+                    }
+                    return removed;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public boolean removeTriggerKeepingJob( TriggerKey triggerKey ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    boolean removed = super.removeTriggerKeepingJob( triggerKey );
+                    if ( removed ) {
+                        logTriggerRemoved( triggerKey );
+                    }
+                    return removed;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public boolean replaceTrigger( TriggerKey triggerKey, OperableTrigger newTrigger )
+                throws JobPersistenceException {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    // 新 Trigger 通过 storeTrigger 记录，这里只需要记录旧 key 的删除
+                    boolean found = super.replaceTrigger( triggerKey, newTrigger );
+                    if ( found && !triggerKey.equals( newTrigger.getKey() ) ) {
+                        logTriggerRemoved( triggerKey );
+                    }
+                    return found;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void clearAllSchedulingData() throws JobPersistenceException {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    suppressed = true;
+                    try {
+                        super.clearAllSchedulingData();
+                    } finally {
+                        suppressed = false;
+                    }
+                    if ( journaling() ) {
+                        buffer.out.writeByte( JournalCodec.CLEAR );
+                        append();
+                    }
+                }
+            } catch ( IOException e ) {
+                throw new JobPersistenceException( "Failed to encode clear", e );
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void storeCalendar( String name, Calendar calendar, boolean replaceExisting, boolean updateTriggers )
+                throws ObjectAlreadyExistsException {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.storeCalendar( name, calendar, replaceExisting, updateTriggers );
+                    if ( journaling() ) {
+                        try {
+                            buffer.out.writeByte( JournalCodec.PUT_CALENDAR );
+                            buffer.out.writeUTF( name );
+                            codec.writeCalendar( buffer.out, calendar );
+                            append();
+                        } catch ( IOException e ) {
+                            fail( "Failed to encode calendar " + name, e );
+                        }
+                    }
+                    if ( updateTriggers && journal != null ) {
+                        for ( Object wrapper : triggers ) {
+                            OperableTrigger trigger = triggerOf( wrapper );
+                            if ( name.equals( trigger.getCalendarName() ) ) {
+                                logTrigger( trigger );
+                            }
+                        }
+                    }
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public boolean removeCalendar( String calName ) throws JobPersistenceException {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    boolean removed = super.removeCalendar( calName );
+                    if ( removed && journaling() ) {
+                        buffer.out.writeByte( JournalCodec.REMOVE_CALENDAR );
+                        buffer.out.writeUTF( calName );
+                        append();
+                    }
+                    return removed;
+                }
+            } catch ( IOException e ) {
+                throw new JobPersistenceException( "Failed to encode calendar " + calName, e );
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void pauseTrigger( TriggerKey triggerKey ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.pauseTrigger( triggerKey );
+                    logTrigger( triggerKey );
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public List < String > pauseTriggers( GroupMatcher < TriggerKey > matcher ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    List < String > groups = super.pauseTriggers( matcher );
+                    logPausedGroups();
+                    logTriggers( null, matcher );
+                    return groups;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void pauseJob( JobKey jobKey ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.pauseJob( jobKey );
+                    for ( OperableTrigger trigger : getTriggersForJob( jobKey ) ) {
+                        logTrigger( trigger );
+                    }
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public List < String > pauseJobs( GroupMatcher < JobKey > matcher ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    List < String > groups = super.pauseJobs( matcher );
+                    logPausedGroups();
+                    logTriggers( matcher, null );
+                    return groups;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void resumeTrigger( TriggerKey triggerKey ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.resumeTrigger( triggerKey );
+                    dirty.add( triggerKey );
+                    logDirty();
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public List < String > resumeTriggers( GroupMatcher < TriggerKey > matcher ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    List < String > groups = super.resumeTriggers( matcher );
+                    dirty.clear();
+                    logPausedGroups();
+                    logTriggers( null, matcher );
+                    return groups;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void resumeJob( JobKey jobKey ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.resumeJob( jobKey );
+                    dirty.clear();
+                    for ( OperableTrigger trigger : getTriggersForJob( jobKey ) ) {
+                        logTrigger( trigger );
+                    }
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public Collection < String > resumeJobs( GroupMatcher < JobKey > matcher ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    Collection < String > groups = super.resumeJobs( matcher );
+                    dirty.clear();
+                    logPausedGroups();
+                    logTriggers( matcher, null );
+                    return groups;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void pauseAll() {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.pauseAll();
+                    logPausedGroups();
+                    logTriggers( null, null );
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void resumeAll() {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.resumeAll();
+                    dirty.clear();
+                    logPausedGroups();
+                    logTriggers( null, null );
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public List < OperableTrigger > acquireNextTriggers( long noLaterThan, int maxCount, long timeWindow ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    List < OperableTrigger > acquired = super.acquireNextTriggers( noLaterThan, maxCount, timeWindow );
+                    // 错过触发的 Trigger 按 misfire 策略更新过，需要记录新的触发时间
+                    logDirty();
+                    return acquired;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public List < TriggerFiredResult > triggersFired( List < OperableTrigger > firedTriggers ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    List < TriggerFiredResult > results = super.triggersFired( firedTriggers );
+                    for ( TriggerFiredResult result : results ) {
+                        logTrigger( result.getTriggerFiredBundle().getTrigger().getKey() );
+                    }
+                    return results;
+                }
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public void triggeredJobComplete( OperableTrigger trigger, JobDetail jobDetail,
+                CompletedExecutionInstruction triggerInstCode ) {
+            begin();
+            try {
+                synchronized ( lock ) {
+                    super.triggeredJobComplete( trigger, jobDetail, triggerInstCode );
+                    if ( jobDetail.isPersistJobDataAfterExecution() ) {
+                        JobDetail stored = retrieveJob( jobDetail.getKey() );
+                        if ( stored != null ) {
+                            logJob( stored );
+                        }
+                    }
+                    // DELETE_TRIGGER 通过 removeTrigger 记录
+                    switch ( triggerInstCode ) {
+                        case SET_TRIGGER_COMPLETE:
+                        case SET_TRIGGER_ERROR:
+                            logTrigger( trigger.getKey() );
+                            break;
+                        case SET_ALL_JOB_TRIGGERS_COMPLETE:
+                        case SET_ALL_JOB_TRIGGERS_ERROR:
+                            for ( OperableTrigger t : getTriggersForJob( trigger.getJobKey() ) ) {
+                                logTrigger( t );
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                end();
+            }
+        }
+
+        /**
+         * 把分片的完整状态编码为快照记录，调用方持有 lock
+         */
+        void writeState( RecordBuffer records ) throws IOException {
+            int mark = records.beginFramed();
+            records.out.writeByte( JournalCodec.PAUSED_GROUPS );
+            codec.writeStrings( records.out, pausedTriggerGroups );
+            codec.writeStrings( records.out, pausedJobGroups );
+            records.endFramed( mark );
+            for ( Map.Entry < String, Calendar > e : calendarsByName.entrySet() ) {
+                mark = records.beginFramed();
+                records.out.writeByte( JournalCodec.PUT_CALENDAR );
+                records.out.writeUTF( e.getKey() );
+                codec.writeCalendar( records.out, e.getValue() );
+                records.endFramed( mark );
+            }
+            for ( JobKey key : jobsByKey.keySet() ) {
+                mark = records.beginFramed();
+                records.out.writeByte( JournalCodec.PUT_JOB );
+                codec.writeJob( records.out, retrieveJob( key ) );
+                records.endFramed( mark );
+            }
+            for ( Object wrapper : triggers ) {
+                OperableTrigger trigger = triggerOf( wrapper );
+                mark = records.beginFramed();
+                writeTrigger( records.out, trigger, getTriggerState( trigger.getKey() ) );
+                records.endFramed( mark );
+            }
+        }
+
+        /**
+         * 装入恢复的状态，此时还没有打开日志，不会产生新的记录
+         *
+         * @return 装入的 Job 数和 Trigger 数
+         */
+        int[] load( Recovered r ) {
+            synchronized ( lock ) {
+                pausedTriggerGroups.addAll( r.pausedTriggerGroups );
+                pausedJobGroups.addAll( r.pausedJobGroups );
+                for ( Map.Entry < String, Calendar > e : r.calendars.entrySet() ) {
+                    try {
+                        storeCalendar( e.getKey(), e.getValue(), true, false );
+                    } catch ( JobPersistenceException ex ) {
+                        LOG.warn( "Cannot recover calendar " + e.getKey(), ex );
+                    }
+                }
+                // 已经结束（没有下次触发时间）的 Trigger 不再恢复，只被它们引用的非持久 Job 也随之删除
+                Set < JobKey > referenced = new HashSet < JobKey >();
+                List < OperableTrigger > live = new ArrayList < OperableTrigger >( r.triggers.size() );
+                for ( OperableTrigger trigger : r.triggers.values() ) {
+                    if ( trigger.getNextFireTime() != null ) {
+                        live.add( trigger );
+                        referenced.add( trigger.getJobKey() );
+                    }
+                }
+                int jobs = 0;
+                for ( JobDetail job : r.jobs.values() ) {
+                    if ( job.isDurable() || referenced.contains( job.getKey() ) ) {
+                        try {
+                            storeJob( job, true );
+                            jobs++;
+                        } catch ( JobPersistenceException ex ) {
+                            LOG.warn( "Cannot recover job " + job.getKey(), ex );
+                        }
+                    }
+                }
+                int count = 0;
+                for ( OperableTrigger trigger : live ) {
+                    try {
+                        storeTrigger( trigger, false );
+                        count++;
+                    } catch ( JobPersistenceException ex ) {
+                        LOG.warn( "Cannot recover trigger " + trigger.getKey(), ex );
+                        continue;
+                    }
+                    TriggerState state = r.states.get( trigger.getKey() );
+                    if ( state == TriggerState.PAUSED ) {
+                        pauseTrigger( trigger.getKey() );
+                    } else if ( state == TriggerState.COMPLETE ) {
+                        setState( trigger.getKey(), STATE_COMPLETE );
+                    } else if ( state == TriggerState.ERROR ) {
+                        setState( trigger.getKey(), STATE_ERROR );
+                    }
+                }
+                return new int[] { jobs, count };
+            }
+        }
+
+        private void setState( TriggerKey key, int state ) {
+            Object wrapper = triggersByKey.get( key );
+            timeTriggers.remove( wrapper );
+            try {
+                STATE_FIELD.setInt( wrapper, state );
+            } catch ( IllegalAccessException e ) {
+                throw new IllegalStateException( e );
+            }
+        }
+    }
+}
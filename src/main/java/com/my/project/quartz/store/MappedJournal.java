@@ -0,0 +1,409 @@
+package com.my.project.quartz.store;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于内存映射文件的追加写日志
+ *
+ * <pre>
+ * 日志由若干段文件（journal-序号.log）组成，每段预先分配 segmentSize 字节并映射到内存，
+ * 追加一条记录只是一次内存拷贝：[长度][CRC32][内容]。长度为 0 表示段的结尾（映射区域初始为 0），
+ * 长度越界或 CRC 不符说明是崩溃时没有写完的记录，读取到这里为止。
+ *
+ * 持久化（force）由单独的 flusher 线程完成，实现组提交：写入方调用 awaitDurable 等待自己的记录落盘，
+ * 一次 force 期间到达的所有记录由下一次 force 一起落盘，fsync 的次数与写入方的数量无关。
+ * syncCommit 为 false 时写入方不等待，flusher 每隔 flushIntervalMillis 落盘一次。
+ * force 失败后 flusher 停止，之后的 append 和 awaitDurable 都抛出同一个异常。
+ * 已经落盘的旧段和 close 时的所有段立即解除映射，不等待 GC。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class MappedJournal {
+
+    private static final Logger  LOG     = LoggerFactory.getLogger( MappedJournal.class );
+    /** sun.misc.Unsafe.invokeCleaner（JDK 9 及以上），不可用时为 null，只能等待 GC 解除映射 */
+    private static final Method  INVOKE_CLEANER;
+    private static final Object  UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class < ? > unsafeClass = Class.forName( "sun.misc.Unsafe" );
+            Field field = unsafeClass.getDeclaredField( "theUnsafe" );
+            field.setAccessible( true );
+            unsafe = field.get( null );
+            invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+        } catch ( Exception e ) {
+            LOG.debug( "Cannot unmap journal segments explicitly", e );
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    static final String          SEGMENT = "journal-";
+    static final String          SUFFIX  = ".log";
+
+    private final File           dir;
+    private final int            segmentSize;
+    private final long           flushIntervalMillis;
+    private final ReentrantLock  lock    = new ReentrantLock();
+    private final Condition      flushRequested = lock.newCondition();
+    private final Condition      flushed = lock.newCondition();
+    private final CRC32          crc     = new CRC32();
+    private final Thread         flusher;
+
+    private long                 segmentSeq;
+    private MappedByteBuffer     segment;
+    /** 已经写满、还没有落盘的段 */
+    private final List < MappedByteBuffer > unforced = new ArrayList < MappedByteBuffer >();
+    /** 写入的总字节数，作为记录的序号 */
+    private long                 written;
+    private long                 durable;
+    private long                 requested;
+    /** 上一次 roll 之后写入的字节数 */
+    private long                 writtenSinceRoll;
+    private IOException          failure;
+    private volatile boolean     closed;
+
+    /**
+     * 打开目录中的日志，新记录总是写入一个新的段，已有的段只用于恢复
+     */
+    public MappedJournal( File dir, int segmentSize, long flushIntervalMillis ) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        if ( !dir.isDirectory() && !dir.mkdirs() ) {
+            throw new IOException( "Cannot create journal directory " + dir );
+        }
+        long[] seqs = segmentSeqs( dir );
+        segmentSeq = seqs.length == 0 ? 0 : seqs[seqs.length - 1];
+        segment = map( ++segmentSeq, segmentSize );
+        flusher = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "journal-flusher-" + dir.getName() );
+        flusher.setDaemon( true );
+        flusher.start();
+    }
+
+    /**
+     * @return 当前正在写入的段的序号
+     */
+    public long getSegmentSeq() {
+        lock.lock();
+        try {
+            return segmentSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getWrittenSinceRoll() {
+        lock.lock();
+        try {
+            return writtenSinceRoll;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param len 必须大于 0，长度为 0 表示段的结尾
+     * @return 记录的结束位置，用于 awaitDurable
+     */
+    public long append( byte[] buf, int off, int len ) throws IOException {
+        if ( len <= 0 ) {
+            throw new IllegalArgumentException( "Journal record must not be empty" );
+        }
+        lock.lock();
+        try {
+            if ( closed ) {
+                throw new IOException( "Journal closed: " + dir );
+            }
+            if ( failure != null ) {
+                throw failure;
+            }
+            if ( segment.remaining() < len + 8 ) {
+                rollLocked( len + 8 );
+            }
+            crc.reset();
+            crc.update( buf, off, len );
+            segment.putInt( len );
+            segment.putInt( (int) crc.getValue() );
+            segment.put( buf, off, len );
+            written += len + 8;
+            writtenSinceRoll += len + 8;
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 切换到新的段，之后的记录都写入新段
+     *
+     * @return 新段的序号
+     */
+    public long roll() throws IOException {
+        lock.lock();
+        try {
+            if ( closed ) {
+                throw new IOException( "Journal closed: " + dir );
+            }
+            rollLocked( 0 );
+            writtenSinceRoll = 0;
+            return segmentSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rollLocked( int minSize ) throws IOException {
+        unforced.add( segment );
+        segment = map( segmentSeq + 1, Math.max( segmentSize, minSize ) );
+        segmentSeq++;
+    }
+
+    /**
+     * 等待 position 之前的记录全部落盘
+     */
+    public void awaitDurable( long position ) throws IOException {
+        lock.lock();
+        try {
+            if ( position > requested ) {
+                requested = position;
+                flushRequested.signal();
+            }
+            while ( durable < position && failure == null && !closed ) {
+                flushed.awaitUninterruptibly();
+            }
+            if ( failure != null ) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while ( true ) {
+            long target;
+            List < MappedByteBuffer > toForce;
+            lock.lock();
+            try {
+                while ( !closed && requested <= durable ) {
+                    if ( written > durable ) {
+                        // 异步落盘：没有等待者时定期落盘
+                        if ( !flushRequested.await( flushIntervalMillis, TimeUnit.MILLISECONDS ) ) {
+                            break;
+                        }
+                    } else {
+                        flushRequested.await();
+                    }
+                }
+                target = written;
+                toForce = new ArrayList < MappedByteBuffer >( unforced );
+                toForce.add( segment );
+            } catch ( InterruptedException e ) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            IOException error = null;
+            try {
+                for ( MappedByteBuffer buffer : toForce ) {
+                    buffer.force();
+                }
+            } catch ( RuntimeException e ) {
+                // force 的 IO 错误以 UncheckedIOException 等运行时异常的形式抛出
+                error = new IOException( "Failed to force journal " + dir, e );
+            }
+            lock.lock();
+            try {
+                if ( error != null ) {
+                    // 不再重试：落盘失败之后的记录无法保证持久，写入方通过 failure 得知
+                    LOG.error( error.getMessage(), error );
+                    failure = error;
+                    flushed.signalAll();
+                    return;
+                }
+                durable = Math.max( durable, target );
+                // roll 只在末尾追加，前面的段就是这次落盘的段，已经写满，不会再访问
+                List < MappedByteBuffer > retired = unforced.subList( 0, toForce.size() - 1 );
+                for ( MappedByteBuffer buffer : retired ) {
+                    unmap( buffer );
+                }
+                retired.clear();
+                flushed.signalAll();
+                if ( closed && durable >= written ) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 删除序号小于 seq 的段
+     */
+    public void deleteBefore( long seq ) {
+        for ( long s : segmentSeqs( dir ) ) {
+            if ( s < seq && !segmentFile( dir, s ).delete() ) {
+                LOG.warn( "Cannot delete journal segment {}", segmentFile( dir, s ) );
+            }
+        }
+    }
+
+    /**
+     * 落盘所有记录并停止 flusher 线程
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if ( closed ) {
+                return;
+            }
+            closed = true;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        lock.lock();
+        try {
+            for ( MappedByteBuffer buffer : unforced ) {
+                unmap( buffer );
+            }
+            unforced.clear();
+            unmap( segment );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void unmap( MappedByteBuffer buffer ) {
+        if ( INVOKE_CLEANER == null ) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke( UNSAFE, buffer );
+        } catch ( Exception e ) {
+            LOG.debug( "Cannot unmap journal segment", e );
+        }
+    }
+
+    private MappedByteBuffer map( long seq, int size ) throws IOException {
+        RandomAccessFile file = new RandomAccessFile( segmentFile( dir, seq ), "rw" );
+        try {
+            file.setLength( size );
+            // 关闭文件后映射仍然有效
+            return file.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, size );
+        } finally {
+            file.close();
+        }
+    }
+
+    static File segmentFile( File dir, long seq ) {
+        return new File( dir, String.format( "%s%016d%s", SEGMENT, seq, SUFFIX ) );
+    }
+
+    /**
+     * @return 目录中所有段的序号，从小到大排列
+     */
+    static long[] segmentSeqs( File dir ) {
+        File[] files = dir.listFiles( new FileFilter() {
+
+            @Override
+            public boolean accept( File f ) {
+                return f.getName().startsWith( SEGMENT ) && f.getName().endsWith( SUFFIX );
+            }
+        } );
+        if ( files == null ) {
+            return new long[0];
+        }
+        long[] seqs = new long[files.length];
+        for ( int i = 0; i < files.length; i++ ) {
+            String name = files[i].getName();
+            seqs[i] = Long.parseLong( name.substring( SEGMENT.length(), name.length() - SUFFIX.length() ) );
+        }
+        Arrays.sort( seqs );
+        return seqs;
+    }
+
+    /**
+     * 读取一个日志文件（段或快照）中的记录
+     */
+    public interface RecordHandler {
+
+        void record( byte[] buf, int len ) throws IOException;
+    }
+
+    /**
+     * 依次把文件中的记录交给 handler
+     *
+     * @return 文件以完整的记录结束返回 true；遇到没有写完的记录返回 false
+     */
+    static boolean read( File file, RecordHandler handler ) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            ByteBuffer buffer = raf.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, raf.length() );
+            byte[] buf = new byte[4096];
+            CRC32 crc = new CRC32();
+            while ( buffer.remaining() >= 8 ) {
+                int len = buffer.getInt();
+                if ( len == 0 ) {
+                    return true;
+                }
+                int sum = buffer.getInt();
+                if ( len < 0 || len > buffer.remaining() ) {
+                    return false;
+                }
+                if ( buf.length < len ) {
+                    buf = new byte[Math.max( len, buf.length * 2 )];
+                }
+                buffer.get( buf, 0, len );
+                crc.reset();
+                crc.update( buf, 0, len );
+                if ( (int) crc.getValue() != sum ) {
+                    return false;
+                }
+                handler.record( buf, len );
+            }
+            return true;
+        } finally {
+            raf.close();
+        }
+    }
+}
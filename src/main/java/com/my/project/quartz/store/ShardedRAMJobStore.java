@@ -0,0 +1,722 @@
+package com.my.project.quartz.store;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.quartz.Calendar;
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.SchedulerConfigException;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.Trigger.TriggerState;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.simpl.RAMJobStore;
+import org.quartz.spi.ClassLoadHelper;
+import org.quartz.spi.JobStore;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.SchedulerSignaler;
+import org.quartz.spi.TriggerFiredBundle;
+import org.quartz.spi.TriggerFiredResult;
+
+/**
+ * 分片的内存 JobStore
+ *
+ * <pre>
+ * RAMJobStore 用同一把锁保护所有 Job、Trigger 的存储、获取与触发，增加 threadCount 并不能提高吞吐量。
+ * 本类把数据按 JobKey 的哈希分散到多个 RAMJobStore 分片中，每个分片有自己的锁和按时间排序的 Trigger 索引。
+ *
+ * 分片使用 JobKey 而不是 TriggerKey 的哈希：Trigger 必须与它的 Job 在同一个分片中，
+ * 这样 @DisallowConcurrentExecution 的阻塞、非持久 Job 的自动删除等语义仍然由单个分片保证。
+ *
+ * acquireNextTriggers 没有全局锁：先读取每个分片最早的触发时间，按时间从早到晚依次在分片中获取，
+ * 合并排序后返回前 maxCount 个，多获取的 Trigger 立即释放回各自的分片。
+ *
+ * 在 quartz.properties 中配置：
+ *   org.quartz.jobStore.class = com.my.project.quartz.store.ShardedRAMJobStore
+ *   org.quartz.jobStore.shardCount = 8
+ *   org.quartz.jobStore.misfireThreshold = 5000
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class ShardedRAMJobStore implements JobStore {
+
+    private static final Field                  TRIGGER_FIELD;
+    /** RAMJobStore.removeTrigger( TriggerKey, boolean removeOrphanedJob )，替换 Trigger 时不删除 Job */
+    private static final Method                 REMOVE_TRIGGER;
+
+    static {
+        try {
+            TRIGGER_FIELD = Class.forName( "org.quartz.simpl.TriggerWrapper" ).getDeclaredField( "trigger" );
+            TRIGGER_FIELD.setAccessible( true );
+            REMOVE_TRIGGER = RAMJobStore.class.getDeclaredMethod( "removeTrigger", TriggerKey.class, boolean.class );
+            REMOVE_TRIGGER.setAccessible( true );
+        } catch ( Exception e ) {
+            throw new ExceptionInInitializerError( e );
+        }
+    }
+
+    private static final Comparator < Trigger > FIRE_ORDER = new Comparator < Trigger >() {
+
+                                                              @Override
+                                                              public int compare( Trigger t1, Trigger t2 ) {
+                                                                  long diff = t1.getNextFireTime().getTime()
+                                                                          - t2.getNextFireTime().getTime();
+                                                                  if ( diff != 0 ) {
+                                                                      return diff < 0 ? -1 : 1;
+                                                                  }
+                                                                  return t2.getPriority() - t1.getPriority();
+                                                              }
+                                                          };
+
+    private int                                 shardCount       = Runtime.getRuntime().availableProcessors();
+    private long                                misfireThreshold = 5000L;
+    protected Shard[]                           shards;
+
+    public void setShardCount( int shardCount ) {
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setMisfireThreshold( long misfireThreshold ) {
+        this.misfireThreshold = misfireThreshold;
+    }
+
+    public long getMisfireThreshold() {
+        return misfireThreshold;
+    }
+
+    /**
+     * 创建一个分片，子类可以覆盖以使用 RAMJobStore 的其他子类
+     */
+    protected Shard createShard( int index ) {
+        return new Shard();
+    }
+
+    protected Shard shardOf( JobKey jobKey ) {
+        return shards[shardIndex( jobKey )];
+    }
+
+    /**
+     * acquireNextTriggers 是否从第 index 个分片获取 Trigger，子类可以覆盖以只获取部分分片
+     */
+    protected boolean isAcquirable( int index ) {
+        return true;
+    }
+
+    protected int shardIndex( JobKey jobKey ) {
+        int h = jobKey.hashCode();
+        h ^= h >>> 16;
+        return ( h & 0x7fffffff ) % shards.length;
+    }
+
+    /**
+     * 查找 Trigger 所在的分片，TriggerKey 不决定分片，只能逐个检查
+     */
+    protected Shard shardOf( TriggerKey triggerKey ) throws JobPersistenceException {
+        for ( Shard shard : shards ) {
+            if ( shard.checkExists( triggerKey ) ) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void initialize( ClassLoadHelper loadHelper, SchedulerSignaler signaler ) throws SchedulerConfigException {
+        if ( shardCount <= 0 ) {
+            throw new SchedulerConfigException( "shardCount must be positive: " + shardCount );
+        }
+        shards = new Shard[shardCount];
+        for ( int i = 0; i < shardCount; i++ ) {
+            shards[i] = createShard( i );
+            shards[i].setMisfireThreshold( misfireThreshold );
+            shards[i].initialize( loadHelper, signaler );
+        }
+    }
+
+    @Override
+    public void schedulerStarted() throws SchedulerException {
+        for ( Shard shard : shards ) {
+            shard.schedulerStarted();
+        }
+    }
+
+    @Override
+    public void schedulerPaused() {
+        for ( Shard shard : shards ) {
+            shard.schedulerPaused();
+        }
+    }
+
+    @Override
+    public void schedulerResumed() {
+        for ( Shard shard : shards ) {
+            shard.schedulerResumed();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for ( Shard shard : shards ) {
+            shard.shutdown();
+        }
+    }
+
+    @Override
+    public boolean supportsPersistence() {
+        return false;
+    }
+
+    @Override
+    public long getEstimatedTimeToReleaseAndAcquireTrigger() {
+        return 5;
+    }
+
+    @Override
+    public boolean isClustered() {
+        return false;
+    }
+
+    @Override
+    public void storeJobAndTrigger( JobDetail newJob, OperableTrigger newTrigger ) throws JobPersistenceException {
+        if ( !newJob.getKey().equals( newTrigger.getJobKey() ) ) {
+            newTrigger.setJobKey( newJob.getKey() );
+        }
+        checkTriggerNotElsewhere( newTrigger, false );
+        shardOf( newJob.getKey() ).storeJobAndTrigger( newJob, newTrigger );
+    }
+
+    @Override
+    public void storeJob( JobDetail newJob, boolean replaceExisting ) throws JobPersistenceException {
+        shardOf( newJob.getKey() ).storeJob( newJob, replaceExisting );
+    }
+
+    @Override
+    public void storeJobsAndTriggers( Map < JobDetail, Set < ? extends Trigger > > triggersAndJobs, boolean replace )
+            throws JobPersistenceException {
+        // 按分片拆分，每个分片只加一次锁
+        Map < Shard, Map < JobDetail, Set < ? extends Trigger > > > byShard = new HashMap < Shard, Map < JobDetail, Set < ? extends Trigger > > >();
+        Map < TriggerKey, Trigger > triggers = new HashMap < TriggerKey, Trigger >();
+        for ( Map.Entry < JobDetail, Set < ? extends Trigger > > e : triggersAndJobs.entrySet() ) {
+            Shard shard = shardOf( e.getKey().getKey() );
+            Map < JobDetail, Set < ? extends Trigger > > part = byShard.get( shard );
+            if ( part == null ) {
+                part = new HashMap < JobDetail, Set < ? extends Trigger > >();
+                byShard.put( shard, part );
+            }
+            part.put( e.getKey(), e.getValue() );
+            for ( Trigger trigger : e.getValue() ) {
+                ( (OperableTrigger) trigger ).setJobKey( e.getKey().getKey() );
+                triggers.put( trigger.getKey(), trigger );
+            }
+        }
+        // 先检查所有分片再存储，冲突时不会只存进去一部分；每个分片检查一批 key 只加一次锁
+        for ( Shard shard : shards ) {
+            Map < JobDetail, Set < ? extends Trigger > > part = byShard.get( shard );
+            if ( !replace && part != null ) {
+                JobKey existing = shard.firstExistingJob( part.keySet() );
+                if ( existing != null ) {
+                    throw new ObjectAlreadyExistsException( "Unable to store Job : '" + existing
+                            + "', because one already exists with this identification." );
+                }
+            }
+            for ( TriggerKey key : shard.existingTriggers( triggers.keySet() ) ) {
+                Trigger trigger = triggers.get( key );
+                if ( !replace ) {
+                    throw new ObjectAlreadyExistsException( trigger );
+                }
+                if ( shardOf( trigger.getJobKey() ) != shard ) {
+                    shard.removeTriggerKeepingJob( key );
+                }
+            }
+        }
+        for ( Map.Entry < Shard, Map < JobDetail, Set < ? extends Trigger > > > e : byShard.entrySet() ) {
+            e.getKey().storeJobsAndTriggers( e.getValue(), replace );
+        }
+    }
+
+    @Override
+    public boolean removeJob( JobKey jobKey ) throws JobPersistenceException {
+        return shardOf( jobKey ).removeJob( jobKey );
+    }
+
+    @Override
+    public boolean removeJobs( List < JobKey > jobKeys ) throws JobPersistenceException {
+        boolean allFound = true;
+        for ( JobKey key : jobKeys ) {
+            allFound = removeJob( key ) && allFound;
+        }
+        return allFound;
+    }
+
+    @Override
+    public JobDetail retrieveJob( JobKey jobKey ) throws JobPersistenceException {
+        return shardOf( jobKey ).retrieveJob( jobKey );
+    }
+
+    @Override
+    public void storeTrigger( OperableTrigger newTrigger, boolean replaceExisting ) throws JobPersistenceException {
+        checkTriggerNotElsewhere( newTrigger, replaceExisting );
+        shardOf( newTrigger.getJobKey() ).storeTrigger( newTrigger, replaceExisting );
+    }
+
+    /**
+     * 同一个 TriggerKey 可能之前属于另一个分片中的 Job，存储前需要检查（或在替换时删除）
+     */
+    private void checkTriggerNotElsewhere( OperableTrigger trigger, boolean replaceExisting )
+            throws JobPersistenceException {
+        Shard target = shardOf( trigger.getJobKey() );
+        for ( Shard shard : shards ) {
+            if ( shard != target && shard.checkExists( trigger.getKey() ) ) {
+                if ( !replaceExisting ) {
+                    throw new ObjectAlreadyExistsException( trigger );
+                }
+                shard.removeTriggerKeepingJob( trigger.getKey() );
+            }
+        }
+    }
+
+    @Override
+    public boolean removeTrigger( TriggerKey triggerKey ) throws JobPersistenceException {
+        Shard shard = shardOf( triggerKey );
+        return shard != null && shard.removeTrigger( triggerKey );
+    }
+
+    @Override
+    public boolean removeTriggers( List < TriggerKey > triggerKeys ) throws JobPersistenceException {
+        boolean allFound = true;
+        for ( TriggerKey key : triggerKeys ) {
+            allFound = removeTrigger( key ) && allFound;
+        }
+        return allFound;
+    }
+
+    @Override
+    public boolean replaceTrigger( TriggerKey triggerKey, OperableTrigger newTrigger ) throws JobPersistenceException {
+        Shard shard = shardOf( triggerKey );
+        return shard != null && shard.replaceTrigger( triggerKey, newTrigger );
+    }
+
+    @Override
+    public OperableTrigger retrieveTrigger( TriggerKey triggerKey ) throws JobPersistenceException {
+        Shard shard = shardOf( triggerKey );
+        return shard == null ? null : shard.retrieveTrigger( triggerKey );
+    }
+
+    @Override
+    public boolean checkExists( JobKey jobKey ) throws JobPersistenceException {
+        return shardOf( jobKey ).checkExists( jobKey );
+    }
+
+    @Override
+    public boolean checkExists( TriggerKey triggerKey ) throws JobPersistenceException {
+        return shardOf( triggerKey ) != null;
+    }
+
+    @Override
+    public void clearAllSchedulingData() throws JobPersistenceException {
+        for ( Shard shard : shards ) {
+            shard.clearAllSchedulingData();
+        }
+    }
+
+    @Override
+    public void storeCalendar( String name, Calendar calendar, boolean replaceExisting, boolean updateTriggers )
+            throws JobPersistenceException {
+        // Calendar 可能被任何分片中的 Trigger 引用，每个分片保存一份
+        for ( Shard shard : shards ) {
+            shard.storeCalendar( name, calendar, replaceExisting, updateTriggers );
+        }
+    }
+
+    @Override
+    public boolean removeCalendar( String calName ) throws JobPersistenceException {
+        Calendar calendar = shards[0].retrieveCalendar( calName );
+        boolean removed = false;
+        for ( int i = 0; i < shards.length; i++ ) {
+            try {
+                removed = shards[i].removeCalendar( calName ) || removed;
+            } catch ( JobPersistenceException e ) {
+                // 仍有 Trigger 引用该 Calendar，恢复已经删除的分片
+                for ( int j = 0; j < i; j++ ) {
+                    shards[j].storeCalendar( calName, calendar, true, false );
+                }
+                throw e;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Calendar retrieveCalendar( String calName ) throws JobPersistenceException {
+        return shards[0].retrieveCalendar( calName );
+    }
+
+    @Override
+    public int getNumberOfJobs() throws JobPersistenceException {
+        int count = 0;
+        for ( Shard shard : shards ) {
+            count += shard.getNumberOfJobs();
+        }
+        return count;
+    }
+
+    @Override
+    public int getNumberOfTriggers() throws JobPersistenceException {
+        int count = 0;
+        for ( Shard shard : shards ) {
+            count += shard.getNumberOfTriggers();
+        }
+        return count;
+    }
+
+    @Override
+    public int getNumberOfCalendars() throws JobPersistenceException {
+        return shards[0].getNumberOfCalendars();
+    }
+
+    @Override
+    public Set < JobKey > getJobKeys( GroupMatcher < JobKey > matcher ) throws JobPersistenceException {
+        Set < JobKey > keys = new HashSet < JobKey >();
+        for ( Shard shard : shards ) {
+            keys.addAll( shard.getJobKeys( matcher ) );
+        }
+        return keys;
+    }
+
+    @Override
+    public Set < TriggerKey > getTriggerKeys( GroupMatcher < TriggerKey > matcher ) throws JobPersistenceException {
+        Set < TriggerKey > keys = new HashSet < TriggerKey >();
+        for ( Shard shard : shards ) {
+            keys.addAll( shard.getTriggerKeys( matcher ) );
+        }
+        return keys;
+    }
+
+    @Override
+    public List < String > getJobGroupNames() throws JobPersistenceException {
+        Set < String > names = new LinkedHashSet < String >();
+        for ( Shard shard : shards ) {
+            names.addAll( shard.getJobGroupNames() );
+        }
+        return new ArrayList < String >( names );
+    }
+
+    @Override
+    public List < String > getTriggerGroupNames() throws JobPersistenceException {
+        Set < String > names = new LinkedHashSet < String >();
+        for ( Shard shard : shards ) {
+            names.addAll( shard.getTriggerGroupNames() );
+        }
+        return new ArrayList < String >( names );
+    }
+
+    @Override
+    public List < String > getCalendarNames() throws JobPersistenceException {
+        return shards[0].getCalendarNames();
+    }
+
+    @Override
+    public List < OperableTrigger > getTriggersForJob( JobKey jobKey ) throws JobPersistenceException {
+        return shardOf( jobKey ).getTriggersForJob( jobKey );
+    }
+
+    @Override
+    public TriggerState getTriggerState( TriggerKey triggerKey ) throws JobPersistenceException {
+        Shard shard = shardOf( triggerKey );
+        return shard == null ? TriggerState.NONE : shard.getTriggerState( triggerKey );
+    }
+
+    @Override
+    public void pauseTrigger( TriggerKey triggerKey ) throws JobPersistenceException {
+        Shard shard = shardOf( triggerKey );
+        if ( shard != null ) {
+            shard.pauseTrigger( triggerKey );
+        }
+    }
+
+    @Override
+    public Collection < String > pauseTriggers( GroupMatcher < TriggerKey > matcher ) throws JobPersistenceException {
+        // 每个分片都要记录被暂停的分组，之后加入该分组的 Trigger 才会处于暂停状态
+        Set < String > groups = new HashSet < String >();
+        for ( Shard shard : shards ) {
+            groups.addAll( shard.pauseTriggers( matcher ) );
+        }
+        return groups;
+    }
+
+    @Override
+    public void pauseJob( JobKey jobKey ) throws JobPersistenceException {
+        shardOf( jobKey ).pauseJob( jobKey );
+    }
+
+    @Override
+    public Collection < String > pauseJobs( GroupMatcher < JobKey > matcher ) throws JobPersistenceException {
+        Set < String > groups = new HashSet < String >();
+        for ( Shard shard : shards ) {
+            groups.addAll( shard.pauseJobs( matcher ) );
+        }
+        return groups;
+    }
+
+    @Override
+    public void resumeTrigger( TriggerKey triggerKey ) throws JobPersistenceException {
+        Shard shard = shardOf( triggerKey );
+        if ( shard != null ) {
+            shard.resumeTrigger( triggerKey );
+        }
+    }
+
+    @Override
+    public Collection < String > resumeTriggers( GroupMatcher < TriggerKey > matcher ) throws JobPersistenceException {
+        Set < String > groups = new HashSet < String >();
+        for ( Shard shard : shards ) {
+            groups.addAll( shard.resumeTriggers( matcher ) );
+        }
+        return groups;
+    }
+
+    @Override
+    public Set < String > getPausedTriggerGroups() throws JobPersistenceException {
+        Set < String > groups = new HashSet < String >();
+        for ( Shard shard : shards ) {
+            groups.addAll( shard.getPausedTriggerGroups() );
+        }
+        return groups;
+    }
+
+    @Override
+    public void resumeJob( JobKey jobKey ) throws JobPersistenceException {
+        shardOf( jobKey ).resumeJob( jobKey );
+    }
+
+    @Override
+    public Collection < String > resumeJobs( GroupMatcher < JobKey > matcher ) throws JobPersistenceException {
+        Set < String > groups = new HashSet < String >();
+        for ( Shard shard : shards ) {
+            groups.addAll( shard.resumeJobs( matcher ) );
+        }
+        return groups;
+    }
+
+    @Override
+    public void pauseAll() throws JobPersistenceException {
+        for ( Shard shard : shards ) {
+            shard.pauseAll();
+        }
+    }
+
+    @Override
+    public void resumeAll() throws JobPersistenceException {
+        for ( Shard shard : shards ) {
+            shard.resumeAll();
+        }
+    }
+
+    @Override
+    public List < OperableTrigger > acquireNextTriggers( long noLaterThan, int maxCount, long timeWindow )
+            throws JobPersistenceException {
+        long limit = noLaterThan + timeWindow;
+        // 1. 读取每个分片最早的触发时间（每个分片只短暂持有自己的锁）
+        int n = shards.length;
+        long[] heads = new long[n];
+        Integer[] order = new Integer[n];
+        int candidates = 0;
+        for ( int i = 0; i < n; i++ ) {
+            heads[i] = isAcquirable( i ) ? shards[i].peekNextFireTime() : Long.MAX_VALUE;
+            if ( heads[i] <= limit ) {
+                order[candidates++] = i;
+            }
+        }
+        if ( candidates == 0 ) {
+            return Collections.emptyList();
+        }
+        final long[] h = heads;
+        java.util.Arrays.sort( order, 0, candidates, new Comparator < Integer >() {
+
+            @Override
+            public int compare( Integer a, Integer b ) {
+                return h[a] < h[b] ? -1 : ( h[a] > h[b] ? 1 : 0 );
+            }
+        } );
+
+        // 2. 按最早触发时间从早到晚在各分片中获取；已经凑满 maxCount 且下一个分片的最早时间
+        //    晚于已获取的最晚时间时，剩下的分片不可能再提供更早的 Trigger
+        List < OperableTrigger > result = new ArrayList < OperableTrigger >();
+        for ( int k = 0; k < candidates; k++ ) {
+            int i = order[k];
+            if ( result.size() >= maxCount && heads[i] >= latest( result ) ) {
+                break;
+            }
+            List < OperableTrigger > acquired = shards[i].acquireNextTriggers( noLaterThan, maxCount, timeWindow );
+            if ( !acquired.isEmpty() ) {
+                result.addAll( acquired );
+                if ( result.size() > maxCount ) {
+                    Collections.sort( result, FIRE_ORDER );
+                    List < OperableTrigger > extra = result.subList( maxCount, result.size() );
+                    for ( OperableTrigger trigger : extra ) {
+                        shardOf( trigger.getJobKey() ).releaseAcquiredTrigger( trigger );
+                    }
+                    extra.clear();
+                }
+            }
+        }
+        Collections.sort( result, FIRE_ORDER );
+        return result;
+    }
+
+    private static long latest( List < OperableTrigger > triggers ) {
+        long latest = Long.MIN_VALUE;
+        for ( OperableTrigger trigger : triggers ) {
+            latest = Math.max( latest, trigger.getNextFireTime().getTime() );
+        }
+        return latest;
+    }
+
+    @Override
+    public void releaseAcquiredTrigger( OperableTrigger trigger ) {
+        shardOf( trigger.getJobKey() ).releaseAcquiredTrigger( trigger );
+    }
+
+    @Override
+    public List < TriggerFiredResult > triggersFired( List < OperableTrigger > firedTriggers )
+            throws JobPersistenceException {
+        Map < Shard, List < OperableTrigger > > byShard = new HashMap < Shard, List < OperableTrigger > >();
+        for ( OperableTrigger trigger : firedTriggers ) {
+            Shard shard = shardOf( trigger.getJobKey() );
+            List < OperableTrigger > part = byShard.get( shard );
+            if ( part == null ) {
+                part = new ArrayList < OperableTrigger >();
+                byShard.put( shard, part );
+            }
+            part.add( trigger );
+        }
+        Map < TriggerKey, TriggerFiredResult > fired = new HashMap < TriggerKey, TriggerFiredResult >();
+        for ( Map.Entry < Shard, List < OperableTrigger > > e : byShard.entrySet() ) {
+            for ( TriggerFiredResult result : e.getKey().triggersFired( e.getValue() ) ) {
+                fired.put( result.getTriggerFiredBundle().getTrigger().getKey(), result );
+            }
+        }
+        // QuartzSchedulerThread 按下标把结果与 Trigger 对应，没有触发的 Trigger 用空结果占位
+        List < TriggerFiredResult > results = new ArrayList < TriggerFiredResult >( firedTriggers.size() );
+        for ( OperableTrigger trigger : firedTriggers ) {
+            TriggerFiredResult result = fired.get( trigger.getKey() );
+            results.add( result != null ? result : new TriggerFiredResult( (TriggerFiredBundle) null ) );
+        }
+        return results;
+    }
+
+    @Override
+    public void triggeredJobComplete( OperableTrigger trigger, JobDetail jobDetail,
+            CompletedExecutionInstruction triggerInstCode ) {
+        shardOf( jobDetail.getKey() ).triggeredJobComplete( trigger, jobDetail, triggerInstCode );
+    }
+
+    @Override
+    public void setInstanceId( String schedInstId ) {
+    }
+
+    @Override
+    public void setInstanceName( String schedName ) {
+    }
+
+    @Override
+    public void setThreadPoolSize( int poolSize ) {
+    }
+
+    /**
+     * 一个分片，在 RAMJobStore 的基础上增加了查看最早触发时间的方法
+     */
+    public static class Shard extends RAMJobStore {
+
+        /**
+         * @return 分片中最早的触发时间，没有等待触发的 Trigger 时返回 Long.MAX_VALUE
+         */
+        public long peekNextFireTime() {
+            synchronized ( lock ) {
+                if ( timeTriggers.isEmpty() ) {
+                    return Long.MAX_VALUE;
+                }
+                OperableTrigger trigger = triggerOf( timeTriggers.first() );
+                return trigger.getNextFireTime() == null ? Long.MIN_VALUE : trigger.getNextFireTime().getTime();
+            }
+        }
+
+        /**
+         * 删除 Trigger，但不删除因此没有 Trigger 的非持久 Job，与 RAMJobStore 替换 Trigger 时相同
+         */
+        public boolean removeTriggerKeepingJob( TriggerKey key ) {
+            try {
+                return (Boolean) REMOVE_TRIGGER.invoke( this, key, false );
+            } catch ( IllegalAccessException e ) {
+                throw new IllegalStateException( e );
+            } catch ( InvocationTargetException e ) {
+                throw new IllegalStateException( e.getCause() );
+            }
+        }
+
+        /**
+         * @return keys 中第一个已经存在于本分片的 JobKey，都不存在时返回 null
+         */
+        public JobKey firstExistingJob( Collection < JobDetail > jobs ) {
+            synchronized ( lock ) {
+                for ( JobDetail job : jobs ) {
+                    if ( jobsByKey.containsKey( job.getKey() ) ) {
+                        return job.getKey();
+                    }
+                }
+                return null;
+            }
+        }
+
+        /**
+         * @return keys 中已经存在于本分片的 TriggerKey
+         */
+        public List < TriggerKey > existingTriggers( Collection < TriggerKey > keys ) {
+            List < TriggerKey > existing = new ArrayList < TriggerKey >();
+            synchronized ( lock ) {
+                if ( triggersByKey.isEmpty() ) {
+                    return existing;
+                }
+                for ( TriggerKey key : keys ) {
+                    if ( triggersByKey.containsKey( key ) ) {
+                        existing.add( key );
+                    }
+                }
+            }
+            return existing;
+        }
+
+        /**
+         * @return RAMJobStore 内部 TriggerWrapper（包私有类）中保存的 Trigger，调用方需要持有 lock
+         */
+        protected static OperableTrigger triggerOf( Object wrapper ) {
+            try {
+                return (OperableTrigger) TRIGGER_FIELD.get( wrapper );
+            } catch ( IllegalAccessException e ) {
+                throw new IllegalStateException( e );
+            }
+        }
+    }
+}
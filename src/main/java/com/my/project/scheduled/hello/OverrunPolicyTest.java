@@ -0,0 +1,63 @@
+package com.my.project.scheduled.hello;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.my.project.OverrunPolicy;
+import com.my.project.scheduled.overrun.OverrunFuture;
+import com.my.project.scheduled.overrun.OverrunScheduler;
+
+/**
+ * 使用 OverrunScheduler 按策略处理超时执行
+ *
+ * <pre>
+ * 与 ScheduledExecutorTooLongTest 相同：每隔 1 秒执行一次，第一次执行耗时 3.5 秒。
+ * scheduleAtFixedRate 在第一次结束后立即连续执行 3 次追赶错过的周期；本例依次使用三种策略：
+ *   - SKIP：丢弃错过的 3 个周期，从下一个周期时间点继续，skipped = 3；
+ *   - COALESCE：结束后立即执行 1 次代替错过的 3 个周期，coalesced = 2；
+ *   - OVERLAP：最多同时执行 2 次，第一次执行期间每秒照常开始新的执行。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class OverrunPolicyTest implements Runnable {
+
+    private final String     jobName;
+    private volatile boolean slow = true;
+
+    public OverrunPolicyTest( String jobName ) {
+        this.jobName = jobName;
+    }
+
+    @Override
+    public void run() {
+        Thread t = Thread.currentThread();
+        System.out.println( String.format( "[%s, %2$tT.%2$tL] execute %3$s", t.getName(), new Date(), jobName ) );
+        if ( slow ) {
+            slow = false;
+            try {
+                Thread.sleep( 3500 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main( String[] args ) throws InterruptedException {
+        ScheduledExecutorService service = Executors.newScheduledThreadPool( 4 );
+        OverrunScheduler scheduler = new OverrunScheduler( service );
+
+        for ( OverrunPolicy policy : OverrunPolicy.values() ) {
+            OverrunFuture future = scheduler.scheduleAtFixedRate( new OverrunPolicyTest( policy.name() ), 0, 1,
+                    TimeUnit.SECONDS, policy );
+            Thread.sleep( 6500 );
+            future.cancel( false );
+            System.out.println( String.format( "%s: runs=%d, skipped=%d, coalesced=%d", policy,
+                    future.getRunCount(), future.getSkippedCount(), future.getCoalescedCount() ) );
+        }
+        service.shutdown();
+    }
+}
@@ -1,11 +1,12 @@
 package com.my.project.scheduled.hello;
 
-import java.util.Date;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import com.my.project.event.ExecutionEvents;
+
 /**
  * 使用 ScheduledExecutor 进行任务调度
  * 
@@ -28,18 +29,17 @@ import java.util.concurrent.TimeUnit;
  */
 public class ScheduledExecutorTest implements Runnable {
 
-    private String jobName = "";
+    private final int jobId;
 
     public ScheduledExecutorTest( String jobName ) {
         super();
-        this.jobName = jobName;
+        this.jobId = ExecutionEvents.register( jobName );
     }
 
     @Override
     public void run() {
-        Thread t = Thread.currentThread();
-        System.out.println( String.format( "[%s, %s, %s, %4$tF %4$tT] execute %5$s", t.getName(), t.getPriority(), t
-                .getThreadGroup().getName(), new Date(), jobName ) );
+        // 只发布事件，由 ExecutionEvents 的后台线程格式化输出
+        ExecutionEvents.publish( jobId, ExecutionEvents.SUCCESS );
     }
 
     public static void main( String[] args ) {
@@ -72,5 +72,7 @@ public class ScheduledExecutorTest implements Runnable {
         if ( !service.isShutdown() ) {
             service.shutdown();
         }
+        // 输出还没有输出的执行事件
+        ExecutionEvents.flush();
     }
 }
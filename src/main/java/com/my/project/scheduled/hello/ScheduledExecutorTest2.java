@@ -1,5 +1,6 @@
 package com.my.project.scheduled.hello;
 
+import java.time.ZoneId;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimerTask;
@@ -7,6 +8,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import com.my.project.cron.CompiledCronExpression;
+import com.my.project.event.ExecutionEvents;
+
 /**
  * 用 ScheduledExecutor 和 Calendar 实现复杂任务调度
  * 
@@ -31,6 +35,9 @@ import java.util.concurrent.TimeUnit;
  * HOUR_OF_DAY；如果大于当前的 DAY_OF_WEEK，则直接调用 java.util.calenda 的 calendar.set(field, value)
  * 函数将当前日期的 DAY_OF_WEEK, HOUR_OF_DAY, MINUTE, SECOND 赋值为输入值，依次类推，直到比较
  * 至 SECOND。读者可以根据输入需求选择不同的组合方式来计算最近执行时间。
+ * 
+ * 也可以直接使用预编译的 Cron 表达式 "10 38 16 ? * TUE" 计算最近执行时间（见 getEarliestTime），
+ * 它用位图保存每个字段的取值，不需要反复修改 Calendar，也不分配对象。
  * </pre>
  * 
  * @author yang.dongdong
@@ -38,18 +45,17 @@ import java.util.concurrent.TimeUnit;
  */
 public class ScheduledExecutorTest2 extends TimerTask {
 
-    private String jobName = "";
+    private final int jobId;
 
     public ScheduledExecutorTest2( String jobName ) {
         super();
-        this.jobName = jobName;
+        this.jobId = ExecutionEvents.register( jobName );
     }
 
     @Override
     public void run() {
-        Thread t = Thread.currentThread();
-        System.out.println( String.format( "[%s, %s, %s, %4$tF %4$tT] execute %5$s", t.getName(), t.getPriority(), t
-                .getThreadGroup().getName(), new Date(), jobName ) );
+        // 只发布事件，由 ExecutionEvents 的后台线程格式化输出
+        ExecutionEvents.publish( jobId, ExecutionEvents.SUCCESS );
     }
 
     /**
@@ -82,7 +88,7 @@ public class ScheduledExecutorTest2 extends TimerTask {
                 // currentMinute，则WEEK_OF_YEAR需要推迟一周
                 if ( minuteOfHour < currentMinute ) {
                     weekLater = true;
-                } else if ( minuteOfHour == currentSecond ) {
+                } else if ( minuteOfHour == currentMinute ) {
                     // 当输入条件与当前日期的dayOfWeek, hourOfDay，
                     // minuteOfHour相等时，如果输入条件中的
                     // secondOfMinite小于当前日期的currentSecond，
@@ -106,6 +112,16 @@ public class ScheduledExecutorTest2 extends TimerTask {
 
     }
 
+    /**
+     * 计算从当前时间currentTime开始，满足Cron表达式cron的最近时间
+     * 
+     * @return 最近一次执行时间的毫秒数
+     */
+    public long getEarliestTime( long currentTime, CompiledCronExpression cron, ZoneId zone ) {
+        // nextFireAfter不包含currentTime所在的那一秒，减去1秒使当前这一秒也可以作为执行时间
+        return cron.nextFireAfter( currentTime - 1000, zone );
+    }
+
     public static void main( String[] args ) throws Exception {
 
         ScheduledExecutorTest2 test = new ScheduledExecutorTest2( "job1" );
@@ -115,8 +131,11 @@ public class ScheduledExecutorTest2 extends TimerTask {
         System.out.println( "Current Date = " + currentDate.getTime().toString() );
         // 计算满足条件的最近一次执行时间
         Calendar earliestDate = test.getEarliestDate( currentDate, 3, 16, 38, 10 );
-        long earliestDateLong = earliestDate.getTime().getTime();
         System.out.println( "Earliest Date = " + earliestDate.getTime().toString() );
+        // 使用预编译的Cron表达式计算，结果与Calendar的计算方式相同
+        CompiledCronExpression cron = CompiledCronExpression.compile( "10 38 16 ? * TUE" );
+        long earliestDateLong = test.getEarliestTime( currentDateLong, cron, ZoneId.systemDefault() );
+        System.out.println( "Earliest Date (cron) = " + new Date( earliestDateLong ).toString() );
         // 计算从当前时间到最近一次执行时间的时间间隔
         long delay = earliestDateLong - currentDateLong;
         // 计算执行周期为一星期
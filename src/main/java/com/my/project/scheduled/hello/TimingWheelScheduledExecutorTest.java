@@ -0,0 +1,62 @@
+package com.my.project.scheduled.hello;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.my.project.scheduled.wheel.TimingWheelScheduledExecutor;
+
+/**
+ * 使用时间轮实现的 ScheduledExecutorService 进行任务调度
+ *
+ * <pre>
+ * 与 ScheduledExecutorTest 完全相同的 ScheduleAtFixedRate 和 ScheduleWithFixedDelay 示例，
+ * 只是把 Executors.newScheduledThreadPool(10) 替换为 TimingWheelScheduledExecutor。
+ *
+ * 时间轮的插入和取消都是 O(1)，适合大量短时超时任务的场景。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class TimingWheelScheduledExecutorTest {
+
+    public static void main( String[] args ) {
+        ScheduledExecutorService service = new TimingWheelScheduledExecutor( 10 );
+
+        long initialDelay1 = 1;
+        long period1 = 1;
+        // 从现在开始1秒钟之后，每隔1秒钟执行一次job1
+        ScheduledFuture < ? > sf1 = service.scheduleAtFixedRate( new ScheduledExecutorTest( "job1" ), initialDelay1,
+                period1, TimeUnit.SECONDS );
+
+        long initialDelay2 = 2;
+        long delay2 = 2;
+        // 从现在开始2秒钟之后，每隔2秒钟执行一次job2
+        ScheduledFuture < ? > sf2 = service.scheduleWithFixedDelay( new ScheduledExecutorTest( "job2" ), initialDelay2,
+                delay2, TimeUnit.SECONDS );
+
+        // 长任务：与 ScheduledExecutorTooLongTest 相同，第一次执行耗时2秒
+        ScheduledFuture < ? > sf3 = service.scheduleAtFixedRate( new ScheduledExecutorTooLongTest( "job3" ),
+                initialDelay1, period1, TimeUnit.SECONDS );
+
+        try {
+            Thread.sleep( 10000 );
+        } catch ( InterruptedException e ) {
+            e.printStackTrace();
+        }
+
+        if ( !sf1.isCancelled() ) {
+            sf1.cancel( false );
+        }
+        if ( !sf2.isCancelled() ) {
+            sf2.cancel( false );
+        }
+        if ( !sf3.isCancelled() ) {
+            sf3.cancel( false );
+        }
+        if ( !service.isShutdown() ) {
+            service.shutdown();
+        }
+    }
+}
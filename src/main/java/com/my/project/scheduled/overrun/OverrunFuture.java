@@ -0,0 +1,36 @@
+package com.my.project.scheduled.overrun;
+
+import java.util.concurrent.ScheduledFuture;
+
+import com.my.project.OverrunPolicy;
+
+/**
+ * OverrunScheduler 返回的周期任务，在 ScheduledFuture 之外提供执行统计
+ *
+ * @author yang.dongdong
+ *
+ */
+public interface OverrunFuture extends ScheduledFuture < Void > {
+
+    OverrunPolicy getPolicy();
+
+    /**
+     * @return 执行完成的次数
+     */
+    long getRunCount();
+
+    /**
+     * @return 被丢弃的周期数（SKIP 错过的周期，OVERLAP 达到并发上限的周期）
+     */
+    long getSkippedCount();
+
+    /**
+     * @return 被合并到其他执行中、没有单独执行的周期数（COALESCE）
+     */
+    long getCoalescedCount();
+
+    /**
+     * @return 正在执行的数量
+     */
+    int getRunningCount();
+}
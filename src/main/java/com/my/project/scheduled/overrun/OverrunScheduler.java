@@ -0,0 +1,306 @@
+package com.my.project.scheduled.overrun;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.my.project.OverrunPolicy;
+
+/**
+ * 按 OverrunPolicy 处理超时执行的固定频率调度
+ *
+ * <pre>
+ * 包装任意 ScheduledExecutorService（ScheduledThreadPoolExecutor、TimingWheelScheduledExecutor 等），
+ * 每个周期只用一次性的 schedule 提交，下一次的时间始终落在 initialDelay + k * period 上：
+ *   - SKIP：执行结束时已经错过的周期全部丢弃，等到下一个还没到的周期时间点；
+ *   - COALESCE：错过了周期时立即再执行一次代替它们，之后回到周期时间点；
+ *   - OVERLAP：每个周期时间点都把任务交给 executor 执行，不等待上一次结束，
+ *     同时执行的数量达到 maxConcurrentRuns 时丢弃该周期。OVERLAP 的执行和调度共用 executor 的线程，
+ *     线程数应当大于 maxConcurrentRuns。
+ *
+ * 与 scheduleAtFixedRate 相同，任务抛出异常后不再执行，get 抛出 ExecutionException；
+ * executor 关闭后任务被取消。
+ *
+ *   OverrunScheduler scheduler = new OverrunScheduler( Executors.newScheduledThreadPool( 2 ) );
+ *   OverrunFuture f = scheduler.scheduleAtFixedRate( task, 1, 1, TimeUnit.SECONDS, OverrunPolicy.COALESCE );
+ *   ...
+ *   f.getCoalescedCount();
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class OverrunScheduler {
+
+    private final ScheduledExecutorService executor;
+
+    public OverrunScheduler( ScheduledExecutorService executor ) {
+        if ( executor == null ) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+    }
+
+    public ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * SKIP 和 COALESCE 同一时刻只有一次执行；OVERLAP 最多同时执行 2 次
+     */
+    public OverrunFuture scheduleAtFixedRate( Runnable command, long initialDelay, long period, TimeUnit unit,
+            OverrunPolicy policy ) {
+        return scheduleAtFixedRate( command, initialDelay, period, unit, policy, policy == OverrunPolicy.OVERLAP ? 2 : 1 );
+    }
+
+    /**
+     * @param maxConcurrentRuns OVERLAP 同时执行的上限，其他策略必须为 1
+     */
+    public OverrunFuture scheduleAtFixedRate( Runnable command, long initialDelay, long period, TimeUnit unit,
+            OverrunPolicy policy, int maxConcurrentRuns ) {
+        if ( command == null || unit == null || policy == null ) {
+            throw new NullPointerException();
+        }
+        if ( period <= 0 || maxConcurrentRuns <= 0 || ( policy != OverrunPolicy.OVERLAP && maxConcurrentRuns != 1 ) ) {
+            throw new IllegalArgumentException();
+        }
+        Task task = new Task( command, unit.toNanos( period ), policy, maxConcurrentRuns,
+                System.nanoTime() + unit.toNanos( Math.max( 0, initialDelay ) ) );
+        task.schedule( task.nextFireNanos - System.nanoTime() );
+        return task;
+    }
+
+    private final class Task implements OverrunFuture, Runnable {
+
+        private final Runnable                 command;
+        private final long                     periodNanos;
+        private final OverrunPolicy            policy;
+        private final int                      maxConcurrentRuns;
+        private final AtomicLong               runs      = new AtomicLong();
+        private final AtomicLong               skipped   = new AtomicLong();
+        private final AtomicLong               coalesced = new AtomicLong();
+        private final AtomicInteger            running   = new AtomicInteger();
+        private final CountDownLatch           done      = new CountDownLatch( 1 );
+        /** 下一个周期时间点（System.nanoTime），只由当前的调度线程修改 */
+        private volatile long                  nextFireNanos;
+        private volatile ScheduledFuture < ? > pending;
+        private volatile boolean               cancelled;
+        private volatile Throwable             failure;
+
+        Task( Runnable command, long periodNanos, OverrunPolicy policy, int maxConcurrentRuns, long firstFireNanos ) {
+            this.command = command;
+            this.periodNanos = periodNanos;
+            this.policy = policy;
+            this.maxConcurrentRuns = maxConcurrentRuns;
+            this.nextFireNanos = firstFireNanos;
+        }
+
+        @Override
+        public void run() {
+            if ( isDone() ) {
+                return;
+            }
+            if ( policy == OverrunPolicy.OVERLAP ) {
+                tickOverlap();
+            } else {
+                runSerial();
+            }
+        }
+
+        /**
+         * SKIP / COALESCE：在调度线程中执行，结束后根据错过的周期数决定下一次的时间
+         */
+        private void runSerial() {
+            running.incrementAndGet();
+            try {
+                command.run();
+                runs.incrementAndGet();
+            } catch ( Throwable t ) {
+                fail( t );
+                return;
+            } finally {
+                running.decrementAndGet();
+            }
+            long now = System.nanoTime();
+            long next = nextFireNanos + periodNanos;
+            if ( next <= now ) {
+                // 执行期间错过的周期时间点数：next, next + period, ... <= now
+                long missed = ( now - next ) / periodNanos + 1;
+                if ( policy == OverrunPolicy.SKIP ) {
+                    skipped.addAndGet( missed );
+                    next += missed * periodNanos;
+                } else {
+                    // 立即执行一次代替 missed 个周期，它占用最后一个错过的时间点
+                    coalesced.addAndGet( missed - 1 );
+                    next += ( missed - 1 ) * periodNanos;
+                }
+            }
+            nextFireNanos = next;
+            schedule( next - now );
+        }
+
+        /**
+         * OVERLAP：调度线程只负责提交执行，立即安排下一个周期
+         */
+        private void tickOverlap() {
+            if ( running.incrementAndGet() <= maxConcurrentRuns ) {
+                try {
+                    executor.execute( new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                if ( !isDone() ) {
+                                    command.run();
+                                    runs.incrementAndGet();
+                                }
+                            } catch ( Throwable t ) {
+                                fail( t );
+                            } finally {
+                                running.decrementAndGet();
+                            }
+                        }
+                    } );
+                } catch ( RejectedExecutionException e ) {
+                    running.decrementAndGet();
+                    cancel( false );
+                    return;
+                }
+            } else {
+                running.decrementAndGet();
+                skipped.incrementAndGet();
+            }
+            long now = System.nanoTime();
+            long next = nextFireNanos + periodNanos;
+            if ( next <= now ) {
+                // 调度线程本身被耽误（executor 的线程都在执行任务），错过的时间点同样丢弃
+                long missed = ( now - next ) / periodNanos + 1;
+                skipped.addAndGet( missed );
+                next += missed * periodNanos;
+            }
+            nextFireNanos = next;
+            schedule( next - now );
+        }
+
+        void schedule( long delayNanos ) {
+            if ( isDone() ) {
+                return;
+            }
+            try {
+                pending = executor.schedule( this, delayNanos, TimeUnit.NANOSECONDS );
+            } catch ( RejectedExecutionException e ) {
+                cancel( false );
+                return;
+            }
+            if ( isDone() ) {
+                // 与 cancel 并发：cancel 可能没有看到新的 pending
+                pending.cancel( false );
+            }
+        }
+
+        private void fail( Throwable t ) {
+            synchronized ( this ) {
+                if ( isDone() ) {
+                    return;
+                }
+                failure = t;
+            }
+            done.countDown();
+        }
+
+        @Override
+        public OverrunPolicy getPolicy() {
+            return policy;
+        }
+
+        @Override
+        public long getRunCount() {
+            return runs.get();
+        }
+
+        @Override
+        public long getSkippedCount() {
+            return skipped.get();
+        }
+
+        @Override
+        public long getCoalescedCount() {
+            return coalesced.get();
+        }
+
+        @Override
+        public int getRunningCount() {
+            return running.get();
+        }
+
+        @Override
+        public long getDelay( TimeUnit unit ) {
+            return unit.convert( nextFireNanos - System.nanoTime(), TimeUnit.NANOSECONDS );
+        }
+
+        @Override
+        public int compareTo( Delayed other ) {
+            if ( other == this ) {
+                return 0;
+            }
+            long diff = getDelay( TimeUnit.NANOSECONDS ) - other.getDelay( TimeUnit.NANOSECONDS );
+            return diff < 0 ? -1 : ( diff > 0 ? 1 : 0 );
+        }
+
+        @Override
+        public boolean cancel( boolean mayInterruptIfRunning ) {
+            synchronized ( this ) {
+                if ( isDone() ) {
+                    return false;
+                }
+                cancelled = true;
+            }
+            done.countDown();
+            ScheduledFuture < ? > p = pending;
+            if ( p != null ) {
+                p.cancel( mayInterruptIfRunning );
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled || failure != null;
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+
+        @Override
+        public Void get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException,
+                TimeoutException {
+            if ( !done.await( timeout, unit ) ) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+
+        private Void report() throws ExecutionException {
+            if ( cancelled ) {
+                throw new CancellationException();
+            }
+            throw new ExecutionException( failure );
+        }
+    }
+}
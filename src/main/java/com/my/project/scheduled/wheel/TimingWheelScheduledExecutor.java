@@ -0,0 +1,597 @@
+package com.my.project.scheduled.wheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于分层哈希时间轮（Hierarchical Hashed Timing Wheel）的 ScheduledExecutorService
+ *
+ * <pre>
+ * Timer 与 ScheduledThreadPoolExecutor 内部都使用二叉堆保存任务，每次插入和取消都是 O(log n)，
+ * 并且所有操作都竞争同一把锁。本类使用分层时间轮：
+ *
+ * 1. 第 0 层每个槽代表一个 tick（tickDuration），第 L 层每个槽代表 wheelSize^L 个 tick；
+ * 2. 调度时任务只被放入一个无锁队列（O(1)），由时间轮线程在下一个 tick 放入对应的槽；
+ * 3. 取消时只修改任务状态并放入取消队列，时间轮线程从双向链表中摘除（O(1)）；
+ * 4. 远期任务放在高层时间轮中，只有当低层时间轮转过一圈时才把高层对应槽中的任务
+ *    重新分配到低层（惰性级联），超过最高层范围的任务在最高层轮转等待；
+ * 5. 时间轮线程不逐个 tick 醒来，而是休眠到下一个有任务的槽（或需要级联的 tick），
+ *    提交的任务比这个时刻更早到期时由提交线程唤醒它。
+ *
+ * 到期的任务交给内部的工作线程池执行，时间轮线程本身不执行任何任务。
+ * 使用方式与 Executors.newScheduledThreadPool(n) 相同，可以直接替换。
+ * </pre>
+ *
+ * @author yang.dongdong
+ *
+ */
+public class TimingWheelScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final int            ST_RUNNING    = 0;
+    private static final int            ST_SHUTDOWN   = 1;
+    private static final int            ST_STOP       = 2;
+    private static final int            ST_TERMINATED = 3;
+
+    private final long                  tickNanos;
+    private final int                   wheelBits;
+    private final int                   wheelMask;
+    private final Bucket[][]            wheels;
+    private final long                  startNanos;
+
+    private final Queue < WheelTask < ? > > newTasks       = new ConcurrentLinkedQueue < WheelTask < ? > >();
+    private final Queue < WheelTask < ? > > cancelledTasks = new ConcurrentLinkedQueue < WheelTask < ? > >();
+    private final AtomicInteger         pending       = new AtomicInteger();
+    private final ThreadPoolExecutor    workers;
+    private final Thread                ticker;
+
+    private final AtomicInteger         state         = new AtomicInteger( ST_RUNNING );
+    /** 时间轮线程休眠到的时刻（相对于 startNanos），提交更早到期的任务时需要唤醒它；0 表示没有休眠 */
+    private volatile long               wakeupNanos;
+    /** 时间轮线程已经处理到的 tick，只由时间轮线程写入 */
+    private long                        currentTick;
+
+    /**
+     * 使用 1 毫秒的 tick、每层 64 个槽、共 4 层（约 4.6 小时内无需轮转）的时间轮
+     *
+     * @param poolSize 执行任务的工作线程数
+     */
+    public TimingWheelScheduledExecutor( int poolSize ) {
+        this( 1, TimeUnit.MILLISECONDS, 64, 4, poolSize );
+    }
+
+    /**
+     * @param tickDuration 时间轮精度
+     * @param unit tickDuration 的单位
+     * @param wheelSize 每层时间轮的槽数，会向上取整为 2 的幂
+     * @param levels 时间轮层数
+     * @param poolSize 执行任务的工作线程数
+     */
+    public TimingWheelScheduledExecutor( long tickDuration, TimeUnit unit, int wheelSize, int levels, int poolSize ) {
+        if ( tickDuration <= 0 || wheelSize <= 1 || levels <= 0 || poolSize <= 0 ) {
+            throw new IllegalArgumentException();
+        }
+        this.tickNanos = unit.toNanos( tickDuration );
+        this.wheelBits = 32 - Integer.numberOfLeadingZeros( wheelSize - 1 );
+        if ( wheelBits * levels > 62 ) {
+            throw new IllegalArgumentException( "wheelSize^levels is too large" );
+        }
+        this.wheelMask = ( 1 << wheelBits ) - 1;
+        this.wheels = new Bucket[levels][1 << wheelBits];
+        for ( Bucket[] wheel : wheels ) {
+            for ( int i = 0; i < wheel.length; i++ ) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.workers = new ThreadPoolExecutor( poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue < Runnable >(), new NamedThreadFactory( "wheel-worker-" ) );
+        this.startNanos = System.nanoTime();
+        this.ticker = new Thread( new Ticker(), "wheel-ticker" );
+        this.ticker.setDaemon( true );
+        this.ticker.start();
+    }
+
+    /**
+     * @return 尚未到期（包括周期任务的下一次执行）的任务数
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    @Override
+    public ScheduledFuture < ? > schedule( Runnable command, long delay, TimeUnit unit ) {
+        if ( command == null || unit == null ) {
+            throw new NullPointerException();
+        }
+        return enqueue( new WheelTask < Void >( command, null, deadline( delay, unit ), 0 ) );
+    }
+
+    @Override
+    public < V > ScheduledFuture < V > schedule( Callable < V > callable, long delay, TimeUnit unit ) {
+        if ( callable == null || unit == null ) {
+            throw new NullPointerException();
+        }
+        return enqueue( new WheelTask < V >( callable, deadline( delay, unit ) ) );
+    }
+
+    @Override
+    public ScheduledFuture < ? > scheduleAtFixedRate( Runnable command, long initialDelay, long period, TimeUnit unit ) {
+        if ( command == null || unit == null ) {
+            throw new NullPointerException();
+        }
+        if ( period <= 0 ) {
+            throw new IllegalArgumentException();
+        }
+        return enqueue( new WheelTask < Void >( command, null, deadline( initialDelay, unit ), unit.toNanos( period ) ) );
+    }
+
+    @Override
+    public ScheduledFuture < ? > scheduleWithFixedDelay( Runnable command, long initialDelay, long delay, TimeUnit unit ) {
+        if ( command == null || unit == null ) {
+            throw new NullPointerException();
+        }
+        if ( delay <= 0 ) {
+            throw new IllegalArgumentException();
+        }
+        return enqueue( new WheelTask < Void >( command, null, deadline( initialDelay, unit ), -unit.toNanos( delay ) ) );
+    }
+
+    @Override
+    public void execute( Runnable command ) {
+        schedule( command, 0, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * 与 ScheduledThreadPoolExecutor 的默认策略相同：已经提交的一次性任务照常执行，周期任务被取消。
+     * 时间轮中的周期任务由时间轮线程取消，已经到期、在工作线程池队列中等待的在这里取消。
+     */
+    @Override
+    public void shutdown() {
+        advanceState( ST_SHUTDOWN );
+        for ( Runnable queued : workers.getQueue() ) {
+            if ( queued instanceof WheelTask && ( (WheelTask < ? >) queued ).isPeriodic() ) {
+                ( (WheelTask < ? >) queued ).cancel( false );
+            }
+        }
+        LockSupport.unpark( ticker );
+    }
+
+    @Override
+    public List < Runnable > shutdownNow() {
+        advanceState( ST_STOP );
+        LockSupport.unpark( ticker );
+        try {
+            ticker.join();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        List < Runnable > remaining = new ArrayList < Runnable >();
+        for ( Bucket[] wheel : wheels ) {
+            for ( Bucket bucket : wheel ) {
+                bucket.drainTo( remaining );
+            }
+        }
+        WheelTask < ? > task;
+        while ( ( task = newTasks.poll() ) != null ) {
+            remaining.add( task );
+        }
+        remaining.addAll( workers.shutdownNow() );
+        pending.set( 0 );
+        return remaining;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state.get() != ST_RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return state.get() == ST_TERMINATED && workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination( long timeout, TimeUnit unit ) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos( timeout );
+        long millis = TimeUnit.NANOSECONDS.toMillis( unit.toNanos( timeout ) );
+        ticker.join( Math.max( 1, millis ) );
+        if ( ticker.isAlive() ) {
+            return false;
+        }
+        return workers.awaitTermination( Math.max( 0, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * 把状态推进到 target，已经处于 target 或之后的状态时不变
+     */
+    private void advanceState( int target ) {
+        for ( ;; ) {
+            int current = state.get();
+            if ( current >= target || state.compareAndSet( current, target ) ) {
+                return;
+            }
+        }
+    }
+
+    private long deadline( long delay, TimeUnit unit ) {
+        return System.nanoTime() - startNanos + unit.toNanos( Math.max( 0, delay ) );
+    }
+
+    private < V > WheelTask < V > enqueue( WheelTask < V > task ) {
+        if ( state.get() != ST_RUNNING ) {
+            throw new RejectedExecutionException( "Executor has been shut down" );
+        }
+        if ( !task.isPeriodic() && task.getDelay( TimeUnit.NANOSECONDS ) <= 0 ) {
+            // 已经到期的一次性任务不经过时间轮，避免多等待一个 tick
+            workers.execute( task );
+            return task;
+        }
+        offer( task );
+        if ( state.get() != ST_RUNNING && newTasks.remove( task ) ) {
+            // 与 shutdown 并发：时间轮线程可能已经退出，撤回还没有被取走的任务
+            pending.decrementAndGet();
+            throw new RejectedExecutionException( "Executor has been shut down" );
+        }
+        return task;
+    }
+
+    /**
+     * 放入新任务队列；时间轮为空，或者任务比时间轮线程计划醒来的时刻更早到期时唤醒它
+     */
+    private void offer( WheelTask < ? > task ) {
+        newTasks.offer( task );
+        if ( pending.incrementAndGet() == 1 || task.deadlineNanos < wakeupNanos ) {
+            LockSupport.unpark( ticker );
+        }
+    }
+
+    /**
+     * 周期任务执行完之后重新放回时间轮，shutdown 之后不再继续调度
+     */
+    private void reschedule( WheelTask < ? > task ) {
+        if ( state.get() != ST_RUNNING ) {
+            task.cancel( false );
+            return;
+        }
+        offer( task );
+    }
+
+    /**
+     * 把任务放入合适的层和槽：选择最低的一层 L，使得到期 tick 与当前 tick 在 L 层以上的高位完全相同。
+     * 这样任务所在的槽一定在当前指针之后，只会在指针到达时被级联到更低的层。超出最高层范围的任务
+     * 放在最高层，级联时再次判断。
+     */
+    private void place( WheelTask < ? > task ) {
+        long expireTick = ( task.deadlineNanos + tickNanos - 1 ) / tickNanos;
+        if ( expireTick < currentTick ) {
+            expireTick = currentTick;
+        }
+        int top = wheels.length - 1;
+        int level = 0;
+        while ( level < top && ( expireTick >>> ( wheelBits * ( level + 1 ) ) ) != ( currentTick >>> ( wheelBits * ( level + 1 ) ) ) ) {
+            level++;
+        }
+        int slot = (int) ( ( expireTick >>> ( wheelBits * level ) ) & wheelMask );
+        task.expireTick = expireTick;
+        wheels[level][slot].add( task );
+    }
+
+    private void cascade( int level ) {
+        int slot = (int) ( ( currentTick >>> ( wheelBits * level ) ) & wheelMask );
+        Bucket bucket = wheels[level][slot];
+        WheelTask < ? > task = bucket.head;
+        bucket.head = null;
+        bucket.tail = null;
+        while ( task != null ) {
+            WheelTask < ? > next = task.next;
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+            place( task );
+            task = next;
+        }
+    }
+
+    private void expire( Bucket bucket ) {
+        WheelTask < ? > task = bucket.head;
+        bucket.head = null;
+        bucket.tail = null;
+        while ( task != null ) {
+            WheelTask < ? > next = task.next;
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+            pending.decrementAndGet();
+            if ( !task.isCancelled() ) {
+                try {
+                    workers.execute( task );
+                } catch ( RejectedExecutionException e ) {
+                    task.cancel( false );
+                }
+            }
+            task = next;
+        }
+    }
+
+    private void processCancelled() {
+        WheelTask < ? > task;
+        while ( ( task = cancelledTasks.poll() ) != null ) {
+            if ( task.bucket != null ) {
+                task.bucket.remove( task );
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return 放入的任务中最早到期的 tick，没有放入任务时返回 Long.MAX_VALUE
+     */
+    private long processNew() {
+        long earliest = Long.MAX_VALUE;
+        WheelTask < ? > task;
+        while ( ( task = newTasks.poll() ) != null ) {
+            if ( task.isPeriodic() && state.get() != ST_RUNNING ) {
+                // shutdown 之前检查过状态、之后才放回的周期任务
+                task.cancel( false );
+            }
+            if ( task.isCancelled() ) {
+                pending.decrementAndGet();
+            } else {
+                place( task );
+                earliest = Math.min( earliest, task.expireTick );
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * shutdown 之后取消时间轮中的所有周期任务，由 processCancelled 从槽中摘除
+     */
+    private void cancelPeriodic() {
+        for ( Bucket[] wheel : wheels ) {
+            for ( Bucket bucket : wheel ) {
+                for ( WheelTask < ? > task = bucket.head; task != null; task = task.next ) {
+                    if ( task.isPeriodic() ) {
+                        task.cancel( false );
+                    }
+                }
+            }
+        }
+        processNew();
+        processCancelled();
+    }
+
+    /**
+     * @return currentTick 之后第一个需要处理的 tick：第 0 层有任务的槽，或者更高层有任务的槽开始级联的 tick。
+     *         第 L 层只保存第 L + 1 层当前这一圈内的任务，所以每层只需要检查当前指针之后到这一圈结束的槽；
+     *         最高层还要检查下一圈中当前指针之前的槽（超出范围、轮转等待的任务）
+     */
+    private long nextTick() {
+        int top = wheels.length - 1;
+        for ( int level = 0; level <= top; level++ ) {
+            int shift = wheelBits * level;
+            long index = currentTick >>> shift;
+            long last = level == top ? ( index | wheelMask ) + 1 + ( index & wheelMask ) : index | wheelMask;
+            for ( long i = index + 1; i <= last; i++ ) {
+                if ( wheels[level][(int) ( i & wheelMask )].head != null ) {
+                    return i << shift;
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void advance() {
+        // 先从高层向低层级联，再处理当前 tick 的第 0 层槽
+        for ( int level = wheels.length - 1; level > 0; level-- ) {
+            long lowMask = ( 1L << ( wheelBits * level ) ) - 1;
+            if ( ( currentTick & lowMask ) == 0 ) {
+                cascade( level );
+            }
+        }
+        processCancelled();
+        processNew();
+        expire( wheels[0][(int) ( currentTick & wheelMask )] );
+    }
+
+    private class Ticker implements Runnable {
+
+        @Override
+        public void run() {
+            boolean periodicCancelled = false;
+            // 下一次需要处理的 tick，不早于 currentTick
+            long wakeTick = 0;
+            while ( state.get() < ST_STOP ) {
+                if ( state.get() == ST_SHUTDOWN && !periodicCancelled ) {
+                    cancelPeriodic();
+                    periodicCancelled = true;
+                }
+                if ( state.get() == ST_SHUTDOWN && pending.get() == 0 ) {
+                    break;
+                }
+                long elapsed = System.nanoTime() - startNanos;
+                if ( pending.get() == 0 ) {
+                    // 时间轮为空时直接跳到当前时刻，并休眠到有新任务为止，避免空转
+                    currentTick = elapsed / tickNanos;
+                    wakeupNanos = Long.MAX_VALUE;
+                    if ( newTasks.isEmpty() ) {
+                        LockSupport.park( this );
+                    }
+                    wakeupNanos = 0;
+                    wakeTick = currentTick;
+                    continue;
+                }
+                long target = wakeTick > Long.MAX_VALUE / tickNanos ? Long.MAX_VALUE : wakeTick * tickNanos;
+                if ( elapsed < target ) {
+                    // 休眠到下一个有任务的 tick；期间提交的新任务如果更早到期会唤醒这里，放入时间轮后重新计算
+                    wakeupNanos = target;
+                    if ( newTasks.isEmpty() ) {
+                        LockSupport.parkNanos( this, target - elapsed );
+                    }
+                    wakeupNanos = 0;
+                    wakeTick = Math.min( wakeTick, processNew() );
+                    continue;
+                }
+                advance();
+                long nowTick = elapsed / tickNanos;
+                if ( nowTick > currentTick ) {
+                    // 落后多个 tick（例如长时间 park 之后）：跳过没有任务的槽，直接到下一个需要处理的 tick
+                    currentTick = Math.min( nextTick(), nowTick );
+                    wakeTick = currentTick;
+                } else {
+                    wakeTick = nextTick();
+                    currentTick++;
+                }
+            }
+            if ( state.get() < ST_STOP ) {
+                workers.shutdown();
+            }
+            advanceState( ST_TERMINATED );
+        }
+    }
+
+    /**
+     * 时间轮的一个槽，使用双向链表保存任务，只由时间轮线程访问
+     */
+    private static final class Bucket {
+
+        private WheelTask < ? > head;
+        private WheelTask < ? > tail;
+
+        void add( WheelTask < ? > task ) {
+            task.bucket = this;
+            if ( tail == null ) {
+                head = tail = task;
+            } else {
+                tail.next = task;
+                task.prev = tail;
+                tail = task;
+            }
+        }
+
+        void remove( WheelTask < ? > task ) {
+            if ( task.prev != null ) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if ( task.next != null ) {
+                task.next.prev = task.prev;
+            } else {
+                tail = task.prev;
+            }
+            task.prev = null;
+            task.next = null;
+            task.bucket = null;
+        }
+
+        void drainTo( List < Runnable > list ) {
+            for ( WheelTask < ? > task = head; task != null; task = task.next ) {
+                list.add( task );
+            }
+            head = null;
+            tail = null;
+        }
+    }
+
+    private class WheelTask < V > extends FutureTask < V > implements RunnableScheduledFuture < V > {
+
+        /** 相对于 startNanos 的到期时间 */
+        private volatile long   deadlineNanos;
+        /** 正数表示 fixed-rate，负数表示 fixed-delay，0 表示只执行一次 */
+        private final long      period;
+
+        private long            expireTick;
+        private Bucket          bucket;
+        private WheelTask < ? > prev;
+        private WheelTask < ? > next;
+
+        WheelTask( Runnable runnable, V result, long deadlineNanos, long period ) {
+            super( runnable, result );
+            this.deadlineNanos = deadlineNanos;
+            this.period = period;
+        }
+
+        WheelTask( Callable < V > callable, long deadlineNanos ) {
+            super( callable );
+            this.deadlineNanos = deadlineNanos;
+            this.period = 0;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay( TimeUnit unit ) {
+            return unit.convert( deadlineNanos - ( System.nanoTime() - startNanos ), TimeUnit.NANOSECONDS );
+        }
+
+        @Override
+        public int compareTo( Delayed other ) {
+            if ( other == this ) {
+                return 0;
+            }
+            long diff = getDelay( TimeUnit.NANOSECONDS ) - other.getDelay( TimeUnit.NANOSECONDS );
+            return diff < 0 ? -1 : ( diff > 0 ? 1 : 0 );
+        }
+
+        @Override
+        public boolean cancel( boolean mayInterruptIfRunning ) {
+            boolean cancelled = super.cancel( mayInterruptIfRunning );
+            if ( cancelled ) {
+                cancelledTasks.offer( this );
+            }
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if ( !isPeriodic() ) {
+                super.run();
+            } else if ( runAndReset() ) {
+                if ( period > 0 ) {
+                    deadlineNanos += period;
+                } else {
+                    deadlineNanos = System.nanoTime() - startNanos - period;
+                }
+                reschedule( this );
+            }
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory delegate = Executors.defaultThreadFactory();
+        private final AtomicInteger counter  = new AtomicInteger();
+        private final String        prefix;
+
+        NamedThreadFactory( String prefix ) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = delegate.newThread( r );
+            t.setName( prefix + counter.incrementAndGet() );
+            return t;
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package com.my.project.timer.hello;
 
-import java.util.Date;
 import java.util.Timer;
 import java.util.TimerTask;
 
+import com.my.project.event.ExecutionEvents;
+
 /**
  * 使用 Timer 进行任务调度
  * 
@@ -28,18 +29,17 @@ import java.util.TimerTask;
  */
 public class TimerTest extends TimerTask {
 
-    private String jobName = "";
+    private final int jobId;
 
     public TimerTest( String jobName ) {
         super();
-        this.jobName = jobName;
+        this.jobId = ExecutionEvents.register( jobName );
     }
 
     @Override
     public void run() {
-        Thread t = Thread.currentThread();
-        System.out.println( String.format( "[%s, %s, %s, %4$tF %4$tT] execute %5$s", t.getName(), t.getPriority(), t
-                .getThreadGroup().getName(), new Date(), jobName ) );
+        // 只发布事件，由 ExecutionEvents 的后台线程格式化输出
+        ExecutionEvents.publish( jobId, ExecutionEvents.SUCCESS );
     }
 
     public static void main( String[] args ) {
@@ -52,5 +52,15 @@ public class TimerTest extends TimerTask {
         long period2 = 2000;
         // 从现在开始 2 秒钟之后，每隔 2 秒钟执行一次 job2
         timer.schedule( new TimerTest( "job2" ), delay2, period2 );
+
+        try {
+            Thread.sleep( 10000 );
+        } catch ( InterruptedException e ) {
+            e.printStackTrace();
+        }
+
+        timer.cancel();
+        // 输出还没有输出的执行事件
+        ExecutionEvents.flush();
     }
 }
@@ -0,0 +1,24 @@
+package com.my.project.quartz.pool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 创建“每个任务一个线程”的 Executor（Java 21 版本，每个任务一个虚拟线程）
+ *
+ * @author yang.dongdong
+ *
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public static ExecutorService newThreadPerTaskExecutor( String namePrefix ) {
+        return Executors.newThreadPerTaskExecutor( Thread.ofVirtual().name( namePrefix + "-", 1 ).factory() );
+    }
+}